@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import estacionamentos.UsoDeVagaHorista;
+import estacionamentos.UsoDeVagaMensalista;
+import estacionamentos.UsoDeVagaTurno;
+import estacionamentos.Enums.TipoTurno;
+import estacionamentos.interfaces.CalcularUsoDeVaga;
+
+/**
+ * Benchmarks das estratégias de cálculo do valor de um uso de vaga.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalcularUsoDeVagaBenchmark {
+
+    private final CalcularUsoDeVaga horista = new UsoDeVagaHorista();
+    private final CalcularUsoDeVaga mensalista = new UsoDeVagaMensalista();
+    private final CalcularUsoDeVaga turnoDentro = new UsoDeVagaTurno(TipoTurno.MANHA);
+    private final CalcularUsoDeVaga turnoFora = new UsoDeVagaTurno(TipoTurno.NOITE);
+
+    private final LocalDateTime entrada = LocalDateTime.of(2023, 11, 20, 9, 10);
+    private final LocalDateTime saida = LocalDateTime.of(2023, 11, 20, 11, 47);
+
+    @Benchmark
+    public long horista() {
+        return horista.valorEmCentavos(entrada, saida);
+    }
+
+    @Benchmark
+    public long mensalista() {
+        return mensalista.valorEmCentavos(entrada, saida);
+    }
+
+    @Benchmark
+    public long turnoDentroDoTurno() {
+        return turnoDentro.valorEmCentavos(entrada, saida);
+    }
+
+    @Benchmark
+    public long turnoForaDoTurno() {
+        return turnoFora.valorEmCentavos(entrada, saida);
+    }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import simulacao.GeradorDeCarga;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+/**
+ * Vazão de entradas e saídas com uma cancela e com uma cancela por núcleo
+ * operando no mesmo estacionamento. Cada cancela (thread) alterna as placas de
+ * um grupo próprio entre estacionar e sair, e todas disputam as mesmas vagas;
+ * a razão entre as duas vazões mostra como o estacionamento escala com os
+ * núcleos disponíveis.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CancelasConcorrentesBenchmark {
+
+    public static final int PLACAS = 4096;
+
+    @State(Scope.Benchmark)
+    public static class Frota {
+        Estacionamento estacionamento;
+        String[] placas;
+
+        @Setup(Level.Trial)
+        public void popular() throws ExcecaoClienteNaoCadastrado {
+            estacionamento = new Estacionamento("Benchmark");
+            estacionamento.gerarVagas(PLACAS);
+            Cliente cliente = new Cliente("Frota", "1", TipoUso.HORISTA);
+            estacionamento.addCliente(cliente);
+            placas = new String[PLACAS];
+            for (int i = 0; i < PLACAS; i++) {
+                placas[i] = GeradorDeCarga.gerarPlaca(i);
+                estacionamento.addVeiculo(placas[i], cliente.getId(), TipoUso.HORISTA,
+                        UsoDeVagaFactory.criarHoristaFactory(), null);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cancela {
+        int inicio;
+        int quantidade;
+        int proxima;
+
+        @Setup(Level.Trial)
+        public void escolherPlacas(ThreadParams thread) {
+            quantidade = PLACAS / thread.getThreadCount();
+            inicio = thread.getThreadIndex() * quantidade;
+        }
+    }
+
+    private static double operar(Frota frota, Cancela cancela) {
+        String placa = frota.placas[cancela.inicio + cancela.proxima];
+        cancela.proxima = (cancela.proxima + 1) % cancela.quantidade;
+        if (frota.estacionamento.sessaoAtiva(placa) != null) {
+            return frota.estacionamento.sair(placa);
+        }
+        frota.estacionamento.estacionar(placa, null);
+        return 0.0;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public double umaCancela(Frota frota, Cancela cancela) {
+        return operar(frota, cancela);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double umaCancelaPorNucleo(Frota frota, Cancela cancela) {
+        return operar(frota, cancela);
+    }
+}
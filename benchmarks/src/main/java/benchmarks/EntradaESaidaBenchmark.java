@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de {@code estacionar} e {@code sair} medidos separadamente. Como
+ * cada operação muda o estado do estacionamento, cada iteração executa um lote
+ * de {@link #LOTE} operações em placas distintas depois de preparar o estado
+ * (todas fora para {@code estacionar}, todas dentro para {@code sair}). O tempo
+ * reportado é o do lote inteiro; divida por {@link #LOTE} para obter o custo por
+ * operação.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = EntradaESaidaBenchmark.LOTE)
+@Measurement(iterations = 20, batchSize = EntradaESaidaBenchmark.LOTE)
+@Fork(1)
+public class EntradaESaidaBenchmark {
+
+    public static final int LOTE = 1000;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int proxima;
+
+        @Setup(Level.Iteration)
+        public void reiniciar() {
+            proxima = 0;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Vazio {
+        @Setup(Level.Iteration)
+        public void esvaziar(EstadoEstacionamento estado) {
+            for (int i = 0; i < LOTE && i < estado.placas.length; i++) {
+                estado.estacionamento.sair(estado.placas[i]);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Lotado {
+        @Setup(Level.Iteration)
+        public void lotar(EstadoEstacionamento estado) {
+            for (int i = 0; i < LOTE && i < estado.placas.length; i++) {
+                if (estado.estacionamento.sessaoAtiva(estado.placas[i]) == null) {
+                    estado.estacionamento.estacionar(estado.placas[i], null);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void estacionar(EstadoEstacionamento estado, Vazio vazio, Cursor cursor) {
+        estado.estacionamento.estacionar(estado.placas[cursor.proxima++], null);
+    }
+
+    @Benchmark
+    public double sair(EstadoEstacionamento estado, Lotado lotado, Cursor cursor) {
+        return estado.estacionamento.sair(estado.placas[cursor.proxima++]);
+    }
+}
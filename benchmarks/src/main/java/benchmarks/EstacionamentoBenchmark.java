@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks das consultas do estacionamento e do ciclo completo de entrada e
+ * saída, sobre cadastros e históricos de tamanhos variados.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstacionamentoBenchmark {
+
+    private static String placaAleatoria(EstadoEstacionamento estado) {
+        return estado.placas[ThreadLocalRandom.current().nextInt(estado.placas.length)];
+    }
+
+    @Benchmark
+    public double estacionarESair(EstadoEstacionamento estado) {
+        String placa = placaAleatoria(estado);
+        estado.estacionamento.estacionar(placa, null);
+        return estado.estacionamento.sair(placa);
+    }
+
+    @Benchmark
+    public double arrecadacaoNoMes(EstadoEstacionamento estado) {
+        LocalDateTime agora = LocalDateTime.now();
+        return estado.estacionamento.arrecadacaoNoMes(agora.getMonthValue(), agora.getYear());
+    }
+
+    @Benchmark
+    public String top5Clientes(EstadoEstacionamento estado) {
+        return estado.estacionamento.top5Clientes(LocalDateTime.now().getMonthValue());
+    }
+
+    @Benchmark
+    public double valorMedioPorUso(EstadoEstacionamento estado) {
+        return estado.estacionamento.valorMedioPorUso();
+    }
+
+    @Benchmark
+    public String relatorioVeiculo(EstadoEstacionamento estado) throws Exception {
+        return estado.estacionamento.relatorioVeiculo(placaAleatoria(estado), 1);
+    }
+
+    @Benchmark
+    public String historicoCliente(EstadoEstacionamento estado) throws Exception {
+        String id = "ID" + ThreadLocalRandom.current().nextInt(estado.clientes);
+        return estado.estacionamento.historicoCliente(id, estado.inicioHistorico, estado.fimHistorico);
+    }
+}
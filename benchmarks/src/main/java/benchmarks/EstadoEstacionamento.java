@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.time.LocalDateTime;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import simulacao.GeradorDeCarga;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+/**
+ * Estacionamento populado usado pelos benchmarks. O tamanho do cadastro
+ * (clientes, um veículo por cliente) e do histórico (usos por veículo) são
+ * parametrizados para acompanhar como cada operação escala.
+ */
+@State(Scope.Benchmark)
+public class EstadoEstacionamento {
+
+    @Param({ "1000", "10000" })
+    public int clientes;
+
+    @Param({ "10", "100" })
+    public int usosPorVeiculo;
+
+    public Estacionamento estacionamento;
+    public String[] placas;
+    public LocalDateTime inicioHistorico;
+    public LocalDateTime fimHistorico;
+
+    @Setup(Level.Trial)
+    public void popular() throws ExcecaoClienteNaoCadastrado {
+        estacionamento = new Estacionamento("Benchmark");
+        estacionamento.gerarVagas(clientes + 1);
+        placas = new String[clientes];
+
+        for (int i = 0; i < clientes; i++) {
+            Cliente cliente = new Cliente("Cliente" + i, "ID" + i, TipoUso.HORISTA);
+            estacionamento.addCliente(cliente);
+            placas[i] = GeradorDeCarga.gerarPlaca(i);
+            estacionamento.addVeiculo(placas[i], cliente.getId(), TipoUso.HORISTA,
+                    UsoDeVagaFactory.criarHoristaFactory(), null);
+        }
+
+        for (int uso = 0; uso < usosPorVeiculo; uso++) {
+            for (String placa : placas) {
+                estacionamento.estacionar(placa, null);
+                estacionamento.sair(placa);
+            }
+        }
+
+        inicioHistorico = LocalDateTime.now().minusDays(1);
+        fimHistorico = LocalDateTime.now().plusDays(1);
+    }
+}
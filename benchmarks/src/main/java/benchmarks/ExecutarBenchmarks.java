@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ponto de entrada dos benchmarks. Aceita as mesmas opções da linha de comando
+ * do JMH (por exemplo um filtro de nomes ou {@code -p clientes=1000}) e sempre
+ * adiciona o profiler de GC, que reporta a taxa de alocação, os bytes alocados
+ * por operação e as coletas. Os resultados são gravados em JSON no diretório
+ * {@code resultados/}, um arquivo por execução, para comparação entre versões.
+ */
+public class ExecutarBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions linhaDeComando = new CommandLineOptions(args);
+        File diretorio = new File("resultados");
+        diretorio.mkdirs();
+        String arquivo = new File(diretorio,
+                "jmh-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json")
+                .getPath();
+
+        ChainedOptionsBuilder opcoes = new OptionsBuilder()
+                .parent(linhaDeComando)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(arquivo);
+
+        new Runner(opcoes.build()).run();
+        System.out.println("Resultados gravados em " + arquivo);
+    }
+}
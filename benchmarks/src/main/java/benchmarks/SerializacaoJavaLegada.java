@@ -0,0 +1,155 @@
+package benchmarks;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoUso;
+
+/**
+ * Reprodução da persistência antiga da aplicação, usada como base de comparação
+ * do snapshot binário: clientes (com seus veículos) gravados em
+ * {@code clientes.dat} uma vez por estacionamento e veículos gravados em
+ * {@code veiculos.dat}, ambos com {@link ObjectOutputStream} sobre
+ * {@link FileOutputStream} sem buffer.
+ *
+ * {@link Cliente} e {@link Veiculo} nunca implementaram {@link Serializable},
+ * então o grafo é copiado para classes espelho com os mesmos campos antes de
+ * ser gravado. A cópia é feita fora da medição.
+ */
+public class SerializacaoJavaLegada {
+
+    static class UsoSerializavel implements Serializable {
+        private static final long serialVersionUID = 1L;
+        int vaga;
+        LocalDateTime entrada;
+        LocalDateTime saida;
+        double valorPago;
+        TipoServico servico;
+    }
+
+    static class VeiculoSerializavel implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String placa;
+        TipoUso tipoUso;
+        List<UsoSerializavel> usos = new ArrayList<>();
+    }
+
+    static class ClienteSerializavel implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String nome;
+        String id;
+        TipoUso tipoUso;
+        List<VeiculoSerializavel> veiculos = new ArrayList<>();
+    }
+
+    private final List<List<ClienteSerializavel>> clientesPorEstacionamento = new ArrayList<>();
+
+    /**
+     * Copia o cadastro e o histórico dos estacionamentos para as classes espelho.
+     * Clientes compartilhados entre estacionamentos são copiados uma única vez.
+     */
+    public SerializacaoJavaLegada(List<Estacionamento> estacionamentos) {
+        Map<Cliente, ClienteSerializavel> copiados = new IdentityHashMap<>();
+        for (Estacionamento estacionamento : estacionamentos) {
+            List<ClienteSerializavel> clientes = new ArrayList<>();
+            for (Cliente cliente : estacionamento.getId().values()) {
+                clientes.add(copiados.computeIfAbsent(cliente, SerializacaoJavaLegada::copiar));
+            }
+            clientesPorEstacionamento.add(clientes);
+        }
+    }
+
+    private static ClienteSerializavel copiar(Cliente cliente) {
+        ClienteSerializavel copia = new ClienteSerializavel();
+        copia.nome = cliente.getNome();
+        copia.id = cliente.getId();
+        copia.tipoUso = cliente.getTipoUso();
+        for (Veiculo veiculo : cliente.getVeiculos()) {
+            VeiculoSerializavel veiculoCopia = new VeiculoSerializavel();
+            veiculoCopia.placa = veiculo.getPlaca();
+            veiculoCopia.tipoUso = veiculo.getTipoUso();
+            for (UsoDeVaga uso : veiculo.getListUsoDeVaga()) {
+                UsoSerializavel usoCopia = new UsoSerializavel();
+                usoCopia.vaga = uso.getVaga().getNumero();
+                usoCopia.entrada = uso.getEntrada();
+                usoCopia.saida = uso.getSaida();
+                usoCopia.valorPago = uso.getValorPago();
+                usoCopia.servico = uso.getTipoServico();
+                veiculoCopia.usos.add(usoCopia);
+            }
+            copia.veiculos.add(veiculoCopia);
+        }
+        return copia;
+    }
+
+    /**
+     * Grava os arquivos como o antigo {@code App.salvarDados}.
+     *
+     * @return tamanho somado dos dois arquivos em bytes
+     */
+    public long salvar(Path diretorio) throws IOException {
+        Path clientes = diretorio.resolve("clientes.dat");
+        Path veiculos = diretorio.resolve("veiculos.dat");
+        try (ObjectOutputStream outClientes = new ObjectOutputStream(new FileOutputStream(clientes.toFile()));
+                ObjectOutputStream outVeiculos = new ObjectOutputStream(new FileOutputStream(veiculos.toFile()))) {
+            for (List<ClienteSerializavel> lista : clientesPorEstacionamento) {
+                for (ClienteSerializavel cliente : lista) {
+                    outClientes.writeObject(cliente);
+                }
+            }
+            for (List<ClienteSerializavel> lista : clientesPorEstacionamento) {
+                for (ClienteSerializavel cliente : lista) {
+                    for (VeiculoSerializavel veiculo : cliente.veiculos) {
+                        outVeiculos.writeObject(veiculo);
+                    }
+                }
+            }
+        }
+        return clientes.toFile().length() + veiculos.toFile().length();
+    }
+
+    /**
+     * Lê os arquivos como o antigo {@code App.lerDados}, até o fim de cada um.
+     *
+     * @return quantidade de objetos lidos
+     */
+    public static int carregar(Path diretorio) throws IOException, ClassNotFoundException {
+        int lidos = 0;
+        try (ObjectInputStream inClientes = new ObjectInputStream(
+                new FileInputStream(diretorio.resolve("clientes.dat").toFile()));
+                ObjectInputStream inVeiculos = new ObjectInputStream(
+                        new FileInputStream(diretorio.resolve("veiculos.dat").toFile()))) {
+            lidos += lerAteOFim(inClientes);
+            lidos += lerAteOFim(inVeiculos);
+        }
+        return lidos;
+    }
+
+    private static int lerAteOFim(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        int lidos = 0;
+        while (true) {
+            try {
+                in.readObject();
+                lidos++;
+            } catch (EOFException e) {
+                return lidos;
+            }
+        }
+    }
+}
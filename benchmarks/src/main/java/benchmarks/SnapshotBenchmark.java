@@ -0,0 +1,148 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import persistencia.SnapshotBinario;
+import simulacao.ConfiguracaoCarga;
+import simulacao.GeradorDeCarga;
+
+/**
+ * Tempo de gravação e leitura do snapshot binário comparado com a serialização
+ * Java usada anteriormente ({@link SerializacaoJavaLegada}). A população segue
+ * a configuração padrão do gerador de carga (3 estacionamentos de 3000 vagas,
+ * 10.000 clientes com um veículo cada) e cada veículo recebe
+ * {@code usosPorVeiculo} usos encerrados, 1.000.000 de usos no total com os
+ * valores padrão. O tamanho dos arquivos é impresso ao final da preparação.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SnapshotBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Dados {
+
+        @Param({ "10000" })
+        public int clientes;
+
+        @Param({ "100" })
+        public int usosPorVeiculo;
+
+        public List<Estacionamento> estacionamentos;
+        public SerializacaoJavaLegada legada;
+        public Path diretorio;
+        public Path snapshot;
+
+        @Setup(Level.Trial)
+        public void popular() throws IOException {
+            ConfiguracaoCarga config = new ConfiguracaoCarga();
+            config.setClientes(clientes);
+            config.setPlacas(clientes);
+            estacionamentos = GeradorDeCarga.comPopulacao(config).getEstacionamentos();
+
+            LocalDateTime inicio = LocalDateTime.of(2023, 1, 2, 8, 0);
+            TipoServico[] servicos = TipoServico.values();
+            int indice = 0;
+            for (Cliente cliente : estacionamentos.get(0).getId().values()) {
+                for (Veiculo veiculo : cliente.getVeiculos()) {
+                    for (int i = 0; i < usosPorVeiculo; i++) {
+                        Estacionamento estacionamento = estacionamentos.get((indice + i) % estacionamentos.size());
+                        int vaga = 1 + (indice + i) % config.getVagasPorEstacionamento();
+                        LocalDateTime entrada = inicio.plusHours(i * 7L).plusMinutes(indice % 60);
+                        UsoDeVaga uso = veiculo.getUsoDeVagaFactory()
+                                .criarUsoDeVaga(estacionamento.getVaga(vaga), entrada);
+                        uso.setSaida(entrada.plusMinutes(15 + (indice + i) % 240));
+                        uso.setCentavosPagos(uso.valorEmCentavos(veiculo.getTipoUso()));
+                        if ((indice + i) % 10 == 0) {
+                            uso.setTipoServico(servicos[(indice + i) % servicos.length]);
+                        }
+                        veiculo.registrarUsoDeVaga(uso);
+                        estacionamento.restaurarUso(veiculo.getPlaca(), uso);
+                    }
+                    indice++;
+                }
+            }
+
+            legada = new SerializacaoJavaLegada(estacionamentos);
+            diretorio = Files.createTempDirectory("snapshot-benchmark");
+            snapshot = diretorio.resolve("estacionamentos.dat");
+            long tamanhoBinario = SnapshotBinario.salvar(snapshot, estacionamentos);
+            long tamanhoLegado = legada.salvar(diretorio);
+            System.out.printf("%nsnapshot binário: %,d bytes; serialização Java: %,d bytes%n",
+                    tamanhoBinario, tamanhoLegado);
+        }
+
+        @TearDown(Level.Trial)
+        public void apagar() throws IOException {
+            try (Stream<Path> arquivos = Files.walk(diretorio)) {
+                for (Path arquivo : (Iterable<Path>) arquivos.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(arquivo);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long salvarSnapshotBinario(Dados dados) throws IOException {
+        return SnapshotBinario.salvar(dados.snapshot, dados.estacionamentos);
+    }
+
+    /**
+     * Tempo até os estacionamentos poderem operar; o histórico continua a ser
+     * carregado em segundo plano.
+     */
+    @Benchmark
+    public List<Estacionamento> carregarSnapshotBinario(Dados dados) throws IOException {
+        return SnapshotBinario.carregar(dados.snapshot);
+    }
+
+    /**
+     * Tempo até o histórico de todos os estacionamentos estar carregado.
+     */
+    @Benchmark
+    public List<Estacionamento> carregarSnapshotBinarioCompleto(Dados dados) throws IOException {
+        List<Estacionamento> estacionamentos = SnapshotBinario.carregar(dados.snapshot);
+        for (Estacionamento estacionamento : estacionamentos) {
+            estacionamento.aguardarHistorico();
+        }
+        return estacionamentos;
+    }
+
+    @Benchmark
+    public long salvarSerializacaoJava(Dados dados) throws IOException {
+        return dados.legada.salvar(dados.diretorio);
+    }
+
+    @Benchmark
+    public int carregarSerializacaoJava(Dados dados) throws IOException, ClassNotFoundException {
+        return SerializacaoJavaLegada.carregar(dados.diretorio);
+    }
+}
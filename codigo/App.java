@@ -1,14 +1,18 @@
-import java.io.EOFException;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import excecoes.ExcecaoNenhumClienteCadastrado;
 import excecoes.ExcecaoSaidaJaFinalizada;
@@ -16,7 +20,6 @@ import estacionamentos.*;
 import estacionamentos.Enums.TipoServico;
 import estacionamentos.Enums.TipoTurno;
 import estacionamentos.Enums.TipoUso;
-import estacionamentos.interfaces.CalcularUsoDeVaga;
 import estacionamentos.interfaces.UsoDeVagaFactory;
 import excecoes.ExcecaoClienteJaCadastrado;
 import excecoes.ExcecaoClienteNaoCadastrado;
@@ -26,6 +29,14 @@ import excecoes.ExcecaoVeiculoJaCadastrado;
 import excecoes.ExcecaoVeiculoNaoCadastrado;
 import excecoes.ExcecaoOpicaoInvalida;
 import excecoes.ExcecaoRelatorioVazio;
+import persistencia.Armazenamento;
+import persistencia.Importador;
+import persistencia.PoliticaDeSincronizacao;
+import persistencia.ProjecaoEstacionamento;
+import persistencia.ReconstrucaoDeProjecoes;
+import persistencia.ResultadoReconstrucao;
+import simulacao.ConfiguracaoCarga;
+import simulacao.GeradorDeCarga;
 
 public class App {
 
@@ -33,16 +44,175 @@ public class App {
     private static Estacionamento[] estacionamentos = new Estacionamento[40];
     private static Estacionamento estacionamentoHelper;
     private static List<Estacionamento> todosEstacionamentos = new ArrayList<Estacionamento>();
+    private static RedeDeEstacionamentos rede = new RedeDeEstacionamentos();
     private static UsoDeVagaFactory usoDeVagaFactory;
+    private static final String DIRETORIO_DADOS = "arquivos";
+    /**
+     * Idade a partir da qual os usos são movidos para a camada fria.
+     */
+    private static final Duration IDADE_DO_HISTORICO_FRIO = Duration.ofDays(365);
+    private static Armazenamento armazenamento;
 
     public static void main(String args[]) {
+        if (args.length > 0 && args[0].equals("carga")) {
+            executarCarga(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("importar")) {
+            executarImportacao(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("reconstruir")) {
+            executarReconstrucao(args);
+            return;
+        }
         try {
-            criarDadosIniciais();
-            salvarDados();
-            lerDados(todosEstacionamentos);
+            if (!lerDados(todosEstacionamentos)) {
+                criarDadosIniciais();
+                salvarDados();
+            }
+            if (armazenamento != null) {
+                armazenamento.setIdadeDoHistoricoFrio(IDADE_DO_HISTORICO_FRIO);
+                armazenamento.agendarCompactacao(5, TimeUnit.MINUTES);
+            }
             menu();
+            salvarDados();
         } catch (Exception e) {
             System.out.println(e);
+        } finally {
+            fecharDados();
+        }
+    }
+
+    /**
+     * Executa o modo de geração de carga, que cadastra uma população sintética e
+     * dispara entradas e saídas concorrentes, exibindo vazão, latências e erros.
+     * Uso: {@code java App carga --estacionamentos=3 --clientes=10000 --placas=50000
+     * --eventos=1000000 --eventosPorSegundo=0 --cancelas=64 --vagas=3000 --mix=60,20,20}
+     *
+     * @param args argumentos da linha de comando
+     */
+    private static void executarCarga(String[] args) {
+        try {
+            ConfiguracaoCarga config = ConfiguracaoCarga.deArgumentos(args);
+            System.out.println("Configuração: " + config);
+            System.out.println("Threads virtuais: " + (GeradorDeCarga.usaThreadsVirtuais() ? "sim" : "não"));
+            long inicio = System.nanoTime();
+            GeradorDeCarga gerador = GeradorDeCarga.comPopulacao(config);
+            System.out.printf("População cadastrada em %.2f s%n", (System.nanoTime() - inicio) / 1e9);
+            System.out.println(gerador.executar());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Importa clientes, veículos e usos encerrados de arquivos CSV ou NDJSON
+     * para os estacionamentos do diretório {@link #DIRETORIO_DADOS}, exibindo
+     * as linhas por segundo e as rejeitadas de cada arquivo, e incorpora a
+     * importação ao snapshot ao final. Os arquivos informados são importados
+     * nessa ordem. Uso: {@code java App importar --clientes=clientes.csv
+     * --veiculos=veiculos.ndjson --usos=usos.csv --threads=8}
+     *
+     * @param args argumentos da linha de comando
+     */
+    private static void executarImportacao(String[] args) {
+        Map<String, String> arquivos = new HashMap<>();
+        int threads = 0;
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                continue;
+            }
+            String chave = arg.substring(2, arg.indexOf('='));
+            String valor = arg.substring(arg.indexOf('=') + 1);
+            if (chave.equals("threads")) {
+                threads = Integer.parseInt(valor);
+            } else if (chave.equals("clientes") || chave.equals("veiculos") || chave.equals("usos")) {
+                arquivos.put(chave, valor);
+            } else {
+                System.out.println("Erro: parâmetro de importação desconhecido: " + chave);
+                return;
+            }
+        }
+
+        // a compactação ao final torna a importação durável de uma vez
+        try (Armazenamento destino = Armazenamento.abrir(Paths.get(DIRETORIO_DADOS),
+                PoliticaDeSincronizacao.aoFechar())) {
+            if (destino.getEstacionamentos().isEmpty()) {
+                System.out.println("Erro: não há estacionamentos cadastrados para a importação");
+                return;
+            }
+            Importador importador = new Importador(destino.getEstacionamentos());
+            if (threads > 0) {
+                importador.setThreads(threads);
+            }
+            if (arquivos.containsKey("clientes")) {
+                System.out.print(importador.importarClientes(Paths.get(arquivos.get("clientes"))));
+            }
+            if (arquivos.containsKey("veiculos")) {
+                System.out.print(importador.importarVeiculos(Paths.get(arquivos.get("veiculos"))));
+            }
+            if (arquivos.containsKey("usos")) {
+                System.out.print(importador.importarUsos(Paths.get(arquivos.get("usos"))));
+            }
+            destino.compactar();
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Erro na importação: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reconstrói em paralelo a arrecadação, os maiores clientes e a ocupação dos
+     * estacionamentos do diretório {@link #DIRETORIO_DADOS} a partir dos usos
+     * registrados, exibindo a vazão da reprodução e comparando a arrecadação
+     * reconstruída com a do livro-caixa carregado. Uso:
+     * {@code java App reconstruir --threads=8 --particoes=64}
+     *
+     * @param args argumentos da linha de comando
+     */
+    private static void executarReconstrucao(String[] args) {
+        int threads = 0;
+        int particoes = 0;
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                continue;
+            }
+            String chave = arg.substring(2, arg.indexOf('='));
+            String valor = arg.substring(arg.indexOf('=') + 1);
+            if (chave.equals("threads")) {
+                threads = Integer.parseInt(valor);
+            } else if (chave.equals("particoes")) {
+                particoes = Integer.parseInt(valor);
+            } else {
+                System.out.println("Erro: parâmetro de reconstrução desconhecido: " + chave);
+                return;
+            }
+        }
+
+        ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+        try (Armazenamento origem = Armazenamento.abrir(Paths.get(DIRETORIO_DADOS))) {
+            ReconstrucaoDeProjecoes reconstrucao = new ReconstrucaoDeProjecoes(pool);
+            if (particoes > 0) {
+                reconstrucao.setParticoes(particoes);
+            }
+            ResultadoReconstrucao resultado = reconstrucao.reconstruir(origem.getEstacionamentos());
+            System.out.print(resultado);
+            for (ProjecaoEstacionamento projecao : resultado.getProjecoes()) {
+                long carregado = projecao.getEstacionamento().totalArrecadadoEmCentavos();
+                if (carregado != projecao.totalArrecadadoEmCentavos()) {
+                    System.out.printf("    %s: arrecadação carregada %.2f difere da reconstruída%n",
+                            projecao.getEstacionamento().getNome(), carregado / 100.0);
+                }
+            }
+            resultado.descartar();
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Erro na reconstrução: " + e.getMessage());
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
         }
     }
 
@@ -78,25 +248,33 @@ public class App {
      */
     private static void criarDadosIniciais() throws ExcecaoClienteJaCadastrado, ExcecaoVeiculoJaCadastrado,
             ExcecaoVeiculoNaoCadastrado, ExcecaoNaoPossuiVagasDisponiveis {
-        List<Estacionamento> todosEstacionamentos = criarEstacionamentos();
+        for (Estacionamento estacionamento : criarEstacionamentos()) {
+            persistirEstacionamento(estacionamento);
+            todosEstacionamentos.add(estacionamento);
+            rede.adicionarEstacionamento(estacionamento);
+        }
         List<Cliente> clientes = criarClientes(todosEstacionamentos);
         List<Veiculo> veiculos = criarVeiculos(clientes);
 
-        realizarUsosDeEstacionamento(clientes, todosEstacionamentos);
+        realizarUsosDeEstacionamento(veiculos, todosEstacionamentos);
     }
 
     /**
      * Cria uma lista de estacionamentos pré-definidos.
      * Este método inicializa e retorna uma lista contendo três estacionamentos com
-     * nomes distintos.
+     * nomes distintos, cada um com 30 vagas.
      *
      * @return Uma lista contendo objetos do tipo Estacionamento.
      */
     private static List<Estacionamento> criarEstacionamentos() {
-        return List.of(
+        List<Estacionamento> estacionamentos = List.of(
                 new Estacionamento("Estacionamento A"),
                 new Estacionamento("Estacionamento B"),
                 new Estacionamento("Estacionamento C"));
+        for (Estacionamento estacionamento : estacionamentos) {
+            estacionamento.gerarVagas(30);
+        }
+        return estacionamentos;
     }
 
     /**
@@ -126,8 +304,8 @@ public class App {
 
     /**
      * Adiciona uma lista de clientes a cada estacionamento na lista fornecida.
-     * Este método percorre cada estacionamento na lista e adiciona todos os
-     * clientes da lista de clientes a ele.
+     * Cada cliente é cadastrado uma única vez na rede e associado a todos os
+     * estacionamentos, que guardam apenas referências ao cadastro da rede.
      *
      * @param clientes        Lista de clientes a serem adicionados aos
      *                        estacionamentos.
@@ -136,9 +314,16 @@ public class App {
      */
     private static void adicionarClientesAEstacionamentos(List<Cliente> clientes,
             List<Estacionamento> estacionamentos) {
+        for (Cliente cliente : clientes) {
+            rede.cadastrarCliente(cliente);
+        }
         for (Estacionamento estacionamento : estacionamentos) {
             for (Cliente cliente : clientes) {
-                estacionamento.addCliente(cliente);
+                try {
+                    rede.associar(cliente.getId(), estacionamento);
+                } catch (ExcecaoClienteNaoCadastrado e) {
+                    throw new IllegalStateException(e);
+                }
             }
         }
     }
@@ -156,8 +341,8 @@ public class App {
         List<Veiculo> veiculos = new LinkedList<>();
         for (Cliente cliente : clientes) {
             for (int i = 0; i < 5; i++) {
-                String placa = "Placa" + cliente.getTipoUso().name().charAt(0) + (i + 1);
-                Veiculo veiculo = new Veiculo(placa, cliente.getTipoUso(), usoDeVagaFactory);
+                String placa = "Placa" + cliente.getId() + "-" + (i + 1);
+                Veiculo veiculo = new Veiculo(placa, cliente.getTipoUso(), fabricaDoTipo(cliente.getTipoUso()));
                 cliente.addVeiculo(veiculo);
                 veiculos.add(veiculo);
             }
@@ -167,119 +352,119 @@ public class App {
 
     /**
      * Simula usos de estacionamento por veículos de clientes em estacionamentos.
-     * Este método realiza uma série de operações de estacionamento, escolhendo
-     * aleatoriamente clientes,
-     * seus veículos e estacionamentos, e simula a entrada e saída dos veículos.
+     * Os eventos de entrada e saída são gerados pelo {@link GeradorDeCarga} em uma
+     * única cancela, passando pelas mesmas regras de vagas e sessões do
+     * estacionamento.
      *
-     * @param clientes        Lista de clientes com veículos para simular o uso do
-     *                        estacionamento.
+     * @param veiculos        Lista de veículos que irão utilizar os
+     *                        estacionamentos.
      * @param estacionamentos Lista de estacionamentos onde os veículos serão
      *                        estacionados.
      */
-    private static void realizarUsosDeEstacionamento(List<Cliente> clientes, List<Estacionamento> estacionamentos) {
-        Random random = new Random();
-        int numUsos = 50;
-
-        for (int i = 0; i < numUsos; i++) {
-            Cliente cliente = clientes.get(random.nextInt(clientes.size()));
-            Veiculo veiculo = cliente.getVeiculos().get(random.nextInt(cliente.getVeiculos().size()));
-            Estacionamento estacionamento = estacionamentos.get(random.nextInt(estacionamentos.size()));
-            char letraVaga = (char) ('A' + random.nextInt(3));
-            int numeroVaga = 1 + random.nextInt(10);
-            LocalDateTime entrada = LocalDateTime.now().minusHours(random.nextInt(6));
-            LocalDateTime saida = entrada.plusHours(random.nextInt(6));
+    private static void realizarUsosDeEstacionamento(List<Veiculo> veiculos, List<Estacionamento> estacionamentos) {
+        ConfiguracaoCarga config = new ConfiguracaoCarga();
+        config.setEventos(50);
+        config.setCancelas(1);
+        config.setSemente(System.nanoTime());
+
+        List<String> placas = new ArrayList<>();
+        for (Veiculo veiculo : veiculos) {
+            placas.add(veiculo.getPlaca());
+        }
 
-            CalcularUsoDeVaga calcularUsoDeVaga = getCalculoUsoDeVaga(veiculo.getTipoUso());
-            UsoDeVaga usoDeVaga = new UsoDeVaga(new Vaga(letraVaga, numeroVaga), calcularUsoDeVaga);
-            usoDeVaga.setSaida(saida);
-            veiculo.estacionar(new Vaga(letraVaga, numeroVaga));
-            veiculo.sair();
+        try {
+            new GeradorDeCarga(config, estacionamentos, placas).executar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Retorna uma instância de CalcularUsoDeVaga com base no tipo de uso.
-     * Este método seleciona e retorna uma implementação apropriada da interface
-     * CalcularUsoDeVaga
-     * com base no tipo de uso fornecido (Horista, Mensalista, Turno).
+     * Retorna a fábrica de uso de vaga correspondente ao tipo de uso.
      *
      * @param tipoUso Tipo de uso do veículo.
-     * @return Uma instância de CalcularUsoDeVaga correspondente ao tipo de uso.
+     * @return A fábrica de uso de vaga do tipo de uso informado.
      * @throws IllegalArgumentException Se o tipo de uso fornecido é desconhecido.
      */
-    private static CalcularUsoDeVaga getCalculoUsoDeVaga(TipoUso tipoUso) {
+    private static UsoDeVagaFactory fabricaDoTipo(TipoUso tipoUso) {
         switch (tipoUso) {
             case HORISTA:
-                return new UsoDeVagaHorista();
+                return UsoDeVagaFactory.criarHoristaFactory();
             case MENSALISTA:
-                return new UsoDeVagaMensalista();
+                return UsoDeVagaFactory.criarMensalistaFactory();
             case TURNO:
-                return new UsoDeVagaTurno();
+                return UsoDeVagaFactory.criarTurnoFactory(TipoTurno.MANHA);
             default:
                 throw new IllegalArgumentException("Tipo de uso desconhecido");
         }
     }
 
     /**
-     * Método para salvar os dados do sistema em um arquivo.
-     *
-     * @return
+     * Método para salvar os dados do sistema. As operações já são gravadas no
+     * diário de eventos à medida que acontecem; salvar incorpora o diário ao
+     * snapshot do diretório {@link #DIRETORIO_DADOS}.
      */
     public static void salvarDados() {
-        try (ObjectOutputStream outClientes = new ObjectOutputStream(new FileOutputStream("arquivos/clientes.dat"));
-                ObjectOutputStream outVeiculos = new ObjectOutputStream(
-                        new FileOutputStream("arquivos/veiculos.dat"))) {
-            // dados clientes
-            for (Estacionamento estacionamento : todosEstacionamentos) {
-                for (Cliente cliente : estacionamento.getId().values()) {
-                    outClientes.writeObject(cliente);
-                }
-            }
-            // dados veículos
-            for (Estacionamento estacionamento : todosEstacionamentos) {
-                for (Cliente cliente : estacionamento.getId().values()) {
-                    for (Veiculo veiculo : cliente.getVeiculos()) {
-                        outVeiculos.writeObject(veiculo);
-                    }
-                }
-            }
+        if (armazenamento == null) {
+            System.out.println("Erro ao salvar os dados: os dados não foram abertos");
+            return;
+        }
+        try {
+            armazenamento.compactar();
         } catch (IOException e) {
-            System.out.println(e.getMessage());
+            System.out.println("Erro ao salvar os dados: " + e.getMessage());
         }
     }
 
-    public static void lerDados(List<Estacionamento> todosEstacionamentos) {
-        try (ObjectInputStream inClientes = new ObjectInputStream(new FileInputStream("arquivos/clientes.dat"));
-                ObjectInputStream inVeiculos = new ObjectInputStream(new FileInputStream("arquivos/veiculos.dat"))) {
-
-            List<Cliente> clientesDeserializados = new ArrayList<>();
-            while (true) {
-                try {
-                    Cliente cliente = (Cliente) inClientes.readObject();
-                    clientesDeserializados.add(cliente);
-                    for (Estacionamento estacionamento : todosEstacionamentos) {
-                        estacionamento.addCliente(cliente);
-                    }
-                } catch (EOFException e) {
-                    break;
-                }
+    /**
+     * Método para ler os dados do sistema a partir do snapshot e do diário de
+     * eventos do diretório {@link #DIRETORIO_DADOS}, substituindo os
+     * estacionamentos da lista informada. A partir da leitura, as operações nos
+     * estacionamentos são gravadas no diário.
+     *
+     * @param todosEstacionamentos lista que receberá os estacionamentos lidos
+     * @return true se algum estacionamento foi lido, false caso não haja dados ou
+     *         eles não possam ser lidos
+     */
+    public static boolean lerDados(List<Estacionamento> todosEstacionamentos) {
+        try {
+            armazenamento = Armazenamento.abrir(Paths.get(DIRETORIO_DADOS));
+            todosEstacionamentos.clear();
+            todosEstacionamentos.addAll(armazenamento.getEstacionamentos());
+            rede = new RedeDeEstacionamentos();
+            for (Estacionamento estacionamento : todosEstacionamentos) {
+                rede.adicionarEstacionamento(estacionamento);
             }
+            return !todosEstacionamentos.isEmpty();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Erro ao ler os dados: " + e.getMessage());
+            return false;
+        }
+    }
 
-            while (true) {
-                try {
-                    Veiculo veiculo = (Veiculo) inVeiculos.readObject();
-                    for (Cliente cliente : clientesDeserializados) {
-                        if (cliente.possuiVeiculo(veiculo.getPlaca()) != null) {
-                            cliente.addVeiculo(veiculo);
-                        }
-                    }
-                } catch (EOFException e) {
-                    break;
-                }
-            }
+    /**
+     * Passa a gravar no diário de eventos as operações de um novo
+     * estacionamento.
+     *
+     * @param estacionamento estacionamento ainda sem clientes
+     */
+    private static void persistirEstacionamento(Estacionamento estacionamento) {
+        if (armazenamento != null) {
+            armazenamento.adicionarEstacionamento(estacionamento);
+        }
+    }
 
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Erro ao ler os dados: " + e.getMessage());
+    /**
+     * Fecha o diário de eventos, gravando no disco os eventos pendentes.
+     */
+    private static void fecharDados() {
+        if (armazenamento == null) {
+            return;
+        }
+        try {
+            armazenamento.close();
+        } catch (IOException e) {
+            System.out.println("Erro ao fechar os dados: " + e.getMessage());
         }
     }
 
@@ -362,7 +547,9 @@ public class App {
         nome = teclado.nextLine();
         estacionamento = new Estacionamento(nome);
 
+        persistirEstacionamento(estacionamento);
         todosEstacionamentos.add(estacionamento);
+        rede.adicionarEstacionamento(estacionamento);
         System.out.println("Estacionamento " + estacionamento.getNome() + " criado com sucesso!");
 
     }
@@ -442,6 +629,7 @@ public class App {
                 System.out.println("| 13. Histórico do Cliente                                                  |");
                 System.out.println("| --------------------------------------------------------------------------|");
                 System.out.println("| 14. Alterar plano do Cliente                                              |");
+                System.out.println("| 15. Exportar relatórios de todos os veículos para arquivo                 |");
                 System.out.println("| 0 . Sair                                                                  |");
                 System.out.println("|---------------------------------------------------------------------------|");
                 option = Integer.parseInt(teclado.nextLine());
@@ -489,6 +677,9 @@ public class App {
                     case 14:
                         mudarTipoUsoCliente(estacionamento);
                         break;
+                    case 15:
+                        exportarRelatoriosDosVeiculos(estacionamento);
+                        break;
                     case 0:
                         break;
                     default:
@@ -545,6 +736,10 @@ public class App {
 
         UsoDeVagaFactory usoDeVagaFactory;
 
+        if (cliente == null) {
+            System.out.println("Erro: Nao ha clientes cadastrados com o id informado");
+            return;
+        }
         if (cliente.getTipoUso() != tipoUso) {
             throw new ExcecaoOpicaoInvalida("Tipo de uso do veiculo diferente do cliente cadastrado.");
         }
@@ -559,14 +754,18 @@ public class App {
                 break;
             case TURNO:
                 tipoTurno = selecionarTurno();
-                usoDeVagaFactory = UsoDeVagaFactory.criarTurnoFactory();
+                usoDeVagaFactory = UsoDeVagaFactory.criarTurnoFactory(tipoTurno);
                 break;
             default:
                 throw new IllegalArgumentException("Tipo de uso inválido");
         }
         // ! add veiculo tem que ser atualiado para poder aceitar os tipoTurno caso não
         // seja Turnista
-        estacionamento.addVeiculo(placa, idCli, tipoUso, usoDeVagaFactory, tipoTurno);
+        try {
+            estacionamento.addVeiculo(placa, idCli, tipoUso, usoDeVagaFactory, tipoTurno);
+        } catch (ExcecaoClienteNaoCadastrado e) {
+            System.out.println("Erro: " + e.getMessage());
+        }
 
     }
 
@@ -586,8 +785,6 @@ public class App {
         String placa = teclado.nextLine();
         System.out.println("Veiculo estacionado com sucesso!");
         TipoServico servico = selecionarServico();
-        // ! estacionar precisa ser atualizar para poder aceitar o servicos prestados
-        // pelo estacionamento
         estacionamento.estacionar(placa, servico);
     }
 
@@ -634,7 +831,7 @@ public class App {
         System.out.println("Digite a placa da vaga na qual o veiculo irá sair");
         try {
             String placa = teclado.nextLine();
-            Double valor = estacionamento.sair(placa);
+            double valor = estacionamento.sair(placa);
             if (valor != 0.0) {
                 System.out.println("Veículo retirado. Valor pago = " + valor);
             }
@@ -743,7 +940,7 @@ public class App {
         }
 
         Comparator<Estacionamento> c = (e1, e2) -> {
-            return Double.compare(e1.arrecadacaoNoMes(mes, ano), e2.arrecadacaoNoMes(mes, ano));
+            return Long.compare(e1.arrecadacaoNoMesEmCentavos(mes, ano), e2.arrecadacaoNoMesEmCentavos(mes, ano));
         };
 
         estacionametosOrdenados.sort(c);
@@ -752,6 +949,7 @@ public class App {
             Estacionamento estacionamento = estacionametosOrdenados.get(i);
             System.out.println(i + "- " + estacionamento.getNome() + ": " + estacionamento.arrecadacaoNoMes(mes, ano));
         }
+        System.out.println("Total da rede: " + rede.arrecadacaoNoMesEmCentavos(mes, ano) / 100.0);
 
     }
 
@@ -820,8 +1018,10 @@ public class App {
      *                       placa informada pelo usuário.
      * @throws ExcecaoOpicaoInvalida exceção lançada caso o usuário selecione uma
      *                               opção que não seja válida.
+     * @throws IOException           exceção lançada caso a escrita no console
+     *                               falhe.
      */
-    public static void relatorioDoVeiculo(Estacionamento estacionamento) throws ExcecaoOpicaoInvalida {
+    public static void relatorioDoVeiculo(Estacionamento estacionamento) throws ExcecaoOpicaoInvalida, IOException {
 
         System.out.println("Digite a placa do veiculo");
         String placa = teclado.nextLine();
@@ -833,14 +1033,35 @@ public class App {
 
         int metodoOrdenar = Integer.parseInt(teclado.nextLine());
 
+        PrintWriter saida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
         try {
-            String relatorio = estacionamento.relatorioVeiculo(placa, metodoOrdenar);
-            System.out.println(relatorio);
+            estacionamento.relatorioVeiculo(placa, metodoOrdenar, saida);
+            saida.println();
         } catch (ExcecaoVeiculoNaoCadastrado | ExcecaoRelatorioVazio e) {
-            System.out.println("Erro: " + e.getMessage());
+            saida.println("Erro: " + e.getMessage());
+        } finally {
+            saida.flush();
         }
     }
 
+    /**
+     * Método responsável por gravar em um arquivo os relatórios de todos os
+     * veículos do estacionamento. Os relatórios são escritos veículo a veículo,
+     * sem montar o relatório completo em memória.
+     * 
+     * @param estacionamento estacionamento cujos veículos serão exportados
+     * @throws IOException exceção lançada caso não seja possível gravar o arquivo
+     */
+    public static void exportarRelatoriosDosVeiculos(Estacionamento estacionamento) throws IOException {
+        System.out.println("Digite o caminho do arquivo de destino");
+        String caminho = teclado.nextLine();
+
+        try (BufferedWriter saida = Files.newBufferedWriter(Paths.get(caminho), StandardCharsets.UTF_8)) {
+            estacionamento.gerarRelatoriosDeTodosVeiculos(saida);
+        }
+        System.out.println("Relatórios gravados em " + caminho);
+    }
+
     /**
      * Método responsável por buscar o histórico de um cliente especificado pelo seu
      * ID e mostrar para o usuário no console do sistema
@@ -851,9 +1072,11 @@ public class App {
      *                                     uma opção que não seja válida.
      * @throws ExcecaoClienteNaoCadastrado exceção lançada no caso do cliente
      *                                     buscado não existir.
+     * @throws IOException                 exceção lançada caso a escrita no
+     *                                     console falhe.
      */
     public static void historicoCliente(Estacionamento estacionamento)
-            throws ExcecaoOpicaoInvalida, ExcecaoClienteNaoCadastrado {
+            throws ExcecaoOpicaoInvalida, ExcecaoClienteNaoCadastrado, IOException {
         String idCliente;
         String dataInicio = "";
         String dataFim = "";
@@ -895,8 +1118,10 @@ public class App {
             // Convertendo a string para um objeto LocalDate
             dataIncioLocalDateTime = LocalDateTime.parse(dataInicio, formato);
             dataFimLocalDateTime = LocalDateTime.parse(dataFim, formato);
-            System.out
-                    .println(estacionamento.historicoCliente(idCliente, dataIncioLocalDateTime, dataFimLocalDateTime));
+            PrintWriter saida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+            estacionamento.historicoCliente(idCliente, dataIncioLocalDateTime, dataFimLocalDateTime, saida);
+            saida.println();
+            saida.flush();
         } catch (DateTimeParseException e) {
             System.err.println("Erro ao converter a data: " + e.getMessage());
         }
@@ -916,7 +1141,11 @@ public class App {
         id = teclado.nextLine();
         System.out.println("Digite o tipo de uso (HORISTA, MENSALISTA OU TURNO): ");
         TipoUso tipoUso = TipoUso.valueOf(teclado.nextLine().toUpperCase());
-        estacionamento.alteraTipoUsoCliente(tipoUso, id);
+        try {
+            estacionamento.alteraTipoUsoCliente(tipoUso, id);
+        } catch (ExcecaoClienteNaoCadastrado e) {
+            System.out.println("Erro: " + e.getMessage());
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,331 @@
+package estacionamentos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import estacionamentos.Enums.TipoServico;
+
+/**
+ * Arquivo colunar, mapeado em memória, dos usos de vaga encerrados. Cada uso
+ * arquivado ocupa 33 bytes fora do heap, distribuídos nas colunas:
+ * <pre>
+ * long entrada   milissegundos desde a época (UTC)
+ * long saida     milissegundos desde a época (UTC)
+ * long centavos  valor pago em centavos
+ * int  vaga      identificador da vaga no arquivo
+ * int  placa     identificador da placa no arquivo
+ * byte servico   ordinal + 1 do serviço, 0 para nenhum
+ * </pre>
+ * O arquivo é dividido em segmentos de {@value #USOS_POR_SEGMENTO} usos, cada
+ * um mapeado separadamente e com as colunas contíguas, de forma que uma
+ * consulta percorre apenas as colunas de que precisa e o heap guarda uma
+ * referência por segmento, e não um objeto por uso. As posições dos usos de
+ * cada veículo, em ordem de entrada, ficam no {@link HistoricoDeUsos} do
+ * veículo, que localiza os usos de um intervalo por busca binária.
+ *
+ * Vagas e placas são gravadas pelo identificador; os dicionários têm uma
+ * entrada por vaga e por placa, e não por uso. As datas perdem a precisão
+ * abaixo do milissegundo e o valor é arredondado para centavos.
+ *
+ * O arquivo é uma área de trabalho: é criado vazio a cada abertura e preenchido
+ * com os usos encerrados à medida que o snapshot e o diário são carregados. A
+ * durabilidade dos usos continua a cargo da persistência.
+ *
+ * Os usos são lidos sem bloqueio. A gravação de um uso e a alteração das
+ * posições de um veículo são feitas sob o monitor do veículo, que também
+ * protege a leitura das posições. Cancelas de veículos diferentes gravam em
+ * paralelo: cada uso reserva a sua posição em um contador atômico e preenche
+ * as colunas sem trava; o monitor do arquivo só é tomado para mapear um novo
+ * segmento e para registrar uma vaga ou uma placa nova nos dicionários, que
+ * são lidos sem bloqueio.
+ */
+public class ArquivoDeUsos implements Closeable {
+
+    public static final int USOS_POR_SEGMENTO = 1 << 16;
+
+    private static final int BITS_DO_SEGMENTO = 16;
+    private static final int MASCARA_DO_SEGMENTO = USOS_POR_SEGMENTO - 1;
+
+    private static final long COLUNA_ENTRADA = 0;
+    private static final long COLUNA_SAIDA = COLUNA_ENTRADA + 8L * USOS_POR_SEGMENTO;
+    private static final long COLUNA_CENTAVOS = COLUNA_SAIDA + 8L * USOS_POR_SEGMENTO;
+    private static final long COLUNA_VAGA = COLUNA_CENTAVOS + 8L * USOS_POR_SEGMENTO;
+    private static final long COLUNA_PLACA = COLUNA_VAGA + 4L * USOS_POR_SEGMENTO;
+    private static final long COLUNA_SERVICO = COLUNA_PLACA + 4L * USOS_POR_SEGMENTO;
+    private static final long TAMANHO_DO_SEGMENTO = COLUNA_SERVICO + USOS_POR_SEGMENTO;
+
+    private static final TipoServico[] SERVICOS = TipoServico.values();
+
+    private final Path caminho;
+    private final FileChannel canal;
+    private volatile MappedByteBuffer[] segmentos = new MappedByteBuffer[0];
+    private final AtomicInteger reservados = new AtomicInteger();
+    private final AtomicInteger quantidade = new AtomicInteger();
+
+    // Vaga não redefine equals: o mapa concorrente compara as vagas pela identidade
+    private final Map<Vaga, Integer> idsDasVagas = new ConcurrentHashMap<>();
+    private final Entradas<Vaga> vagas = new Entradas<>();
+    private final Entradas<String> placas = new Entradas<>();
+    private final MapaLongInt idsDosCodigos = new MapaLongInt();
+    private final Map<String, Integer> idsDasPlacas = new HashMap<>();
+
+    /**
+     * Entradas de um dicionário do arquivo, lidas sem bloqueio. A entrada nova,
+     * acrescentada sob o monitor do arquivo, é gravada no vetor antes de a
+     * quantidade ser publicada; um vetor cheio é copiado para um maior, que só
+     * é trocado depois de conter todas as entradas já publicadas.
+     */
+    private static final class Entradas<T> {
+        private volatile Object[] valores = new Object[16];
+        private volatile int quantidade;
+
+        int adicionar(T valor) {
+            int id = quantidade;
+            Object[] atuais = valores;
+            if (id == atuais.length) {
+                atuais = Arrays.copyOf(atuais, id * 2);
+                valores = atuais;
+            }
+            atuais[id] = valor;
+            quantidade = id + 1;
+            return id;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int id) {
+            if (id < 0 || id >= quantidade) {
+                throw new IndexOutOfBoundsException("Identificador inexistente no arquivo: " + id);
+            }
+            return (T) valores[id];
+        }
+    }
+
+    private ArquivoDeUsos(Path caminho, FileChannel canal) {
+        this.caminho = caminho;
+        this.canal = canal;
+    }
+
+    /**
+     * Cria um arquivo de usos vazio, substituindo um arquivo anterior no mesmo
+     * caminho.
+     *
+     * @param caminho caminho do arquivo
+     * @return arquivo de usos vazio
+     * @throws IOException caso o arquivo não possa ser criado
+     */
+    public static ArquivoDeUsos criar(Path caminho) throws IOException {
+        // o arquivo anterior é removido, e não truncado, porque ainda pode estar
+        // mapeado por estacionamentos carregados anteriormente
+        Files.deleteIfExists(caminho);
+        FileChannel canal = FileChannel.open(caminho, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new ArquivoDeUsos(caminho, canal);
+    }
+
+    /**
+     * Cria um arquivo de usos vazio em um arquivo temporário, removido quando o
+     * arquivo de usos é fechado.
+     *
+     * @return arquivo de usos vazio
+     * @throws IOException caso o arquivo não possa ser criado
+     */
+    public static ArquivoDeUsos criarTemporario() throws IOException {
+        return criar(Files.createTempFile("usos", ".arquivo"));
+    }
+
+    public Path getCaminho() {
+        return caminho;
+    }
+
+    /**
+     * @return quantidade de usos arquivados
+     */
+    public int quantidade() {
+        return quantidade.get();
+    }
+
+    /**
+     * @return entrada do uso, em milissegundos desde a época (UTC)
+     */
+    public long entrada(int uso) {
+        return segmento(uso).getLong(posicao(uso, COLUNA_ENTRADA, 8));
+    }
+
+    /**
+     * @return saída do uso, em milissegundos desde a época (UTC)
+     */
+    public long saida(int uso) {
+        return segmento(uso).getLong(posicao(uso, COLUNA_SAIDA, 8));
+    }
+
+    /**
+     * @return valor pago pelo uso, em centavos
+     */
+    public long centavos(int uso) {
+        return segmento(uso).getLong(posicao(uso, COLUNA_CENTAVOS, 8));
+    }
+
+    /**
+     * @return identificador da vaga do uso, resolvido por {@link #getVaga(int)}
+     */
+    public int vaga(int uso) {
+        return segmento(uso).getInt(posicao(uso, COLUNA_VAGA, 4));
+    }
+
+    /**
+     * @return identificador da placa do uso, resolvido por {@link #getPlaca(int)}
+     */
+    public int placa(int uso) {
+        return segmento(uso).getInt(posicao(uso, COLUNA_PLACA, 4));
+    }
+
+    /**
+     * @return serviço contratado no uso, ou null
+     */
+    public TipoServico servico(int uso) {
+        int codigo = segmento(uso).get(posicao(uso, COLUNA_SERVICO, 1));
+        return codigo == 0 ? null : SERVICOS[codigo - 1];
+    }
+
+    /**
+     * @param id identificador da vaga
+     * @return a vaga com o identificador
+     */
+    public Vaga getVaga(int id) {
+        return vagas.get(id);
+    }
+
+    /**
+     * @param id identificador da placa
+     * @return a placa com o identificador
+     */
+    public String getPlaca(int id) {
+        return placas.get(id);
+    }
+
+    /**
+     * Retorna o identificador de uma placa, registrando-a caso ainda não esteja
+     * no arquivo.
+     */
+    synchronized int idDaPlaca(String placa) {
+        long codigo = CodigoDePlaca.codificar(placa);
+        if (codigo != CodigoDePlaca.SEM_CODIGO) {
+            int id = idsDosCodigos.get(codigo);
+            if (id == MapaLongInt.AUSENTE) {
+                id = placas.adicionar(placa);
+                idsDosCodigos.put(codigo, id);
+            }
+            return id;
+        }
+        Integer id = idsDasPlacas.get(placa);
+        if (id == null) {
+            id = placas.adicionar(placa);
+            idsDasPlacas.put(placa, id);
+        }
+        return id;
+    }
+
+    /**
+     * Retorna o identificador de uma vaga, registrando-a caso ainda não esteja
+     * no arquivo. Apenas o registro toma o monitor do arquivo.
+     */
+    private int idDaVaga(Vaga vaga) {
+        Integer id = idsDasVagas.get(vaga);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = idsDasVagas.get(vaga);
+            if (id == null) {
+                id = vagas.adicionar(vaga);
+                idsDasVagas.put(vaga, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Acrescenta um uso encerrado ao arquivo. A posição do uso é reservada no
+     * contador e as colunas são preenchidas sem trava; o uso só é lido por quem
+     * recebe a posição, sob o monitor do veículo.
+     *
+     * @return índice do uso no arquivo
+     * @throws IOException caso o arquivo não possa crescer
+     */
+    int arquivar(int placa, Vaga vaga, long entrada, long saida, long centavos, TipoServico servico)
+            throws IOException {
+        int idVaga = idDaVaga(vaga);
+        int uso = reservados.getAndUpdate(reservado -> reservado == Integer.MAX_VALUE ? reservado : reservado + 1);
+        if (uso == Integer.MAX_VALUE) {
+            throw new IOException("O arquivo de usos atingiu a quantidade máxima de usos");
+        }
+        if ((uso >>> BITS_DO_SEGMENTO) >= segmentos.length) {
+            mapearAte(uso >>> BITS_DO_SEGMENTO);
+        }
+
+        MappedByteBuffer segmento = segmento(uso);
+        segmento.putLong(posicao(uso, COLUNA_ENTRADA, 8), entrada);
+        segmento.putLong(posicao(uso, COLUNA_SAIDA, 8), saida);
+        segmento.putLong(posicao(uso, COLUNA_CENTAVOS, 8), centavos);
+        segmento.putInt(posicao(uso, COLUNA_VAGA, 4), idVaga);
+        segmento.putInt(posicao(uso, COLUNA_PLACA, 4), placa);
+        segmento.put(posicao(uso, COLUNA_SERVICO, 1), (byte) (servico != null ? servico.ordinal() + 1 : 0));
+        quantidade.incrementAndGet();
+        return uso;
+    }
+
+    /**
+     * Mapeia os segmentos que faltam até o índice informado. Cancelas que
+     * reservam posições do mesmo segmento novo esperam apenas o mapeamento.
+     */
+    private synchronized void mapearAte(int indice) throws IOException {
+        MappedByteBuffer[] atuais = segmentos;
+        if (indice < atuais.length) {
+            return;
+        }
+        MappedByteBuffer[] novos = Arrays.copyOf(atuais, indice + 1);
+        for (int i = atuais.length; i <= indice; i++) {
+            novos[i] = canal.map(FileChannel.MapMode.READ_WRITE, i * TAMANHO_DO_SEGMENTO, TAMANHO_DO_SEGMENTO);
+        }
+        segmentos = novos;
+    }
+
+    private MappedByteBuffer segmento(int uso) {
+        return segmentos[uso >>> BITS_DO_SEGMENTO];
+    }
+
+    private static int posicao(int uso, long coluna, int largura) {
+        return (int) (coluna + (long) (uso & MASCARA_DO_SEGMENTO) * largura);
+    }
+
+    /**
+     * Fecha e remove o arquivo. Os segmentos já mapeados continuam legíveis até
+     * serem descartados pelo coletor de lixo.
+     */
+    @Override
+    public void close() throws IOException {
+        canal.close();
+        Files.deleteIfExists(caminho);
+    }
+
+    public static long paraEpoca(LocalDateTime dataHora) {
+        return dataHora.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime deEpoca(long milissegundos) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(milissegundos), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,655 @@
+package estacionamentos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import estacionamentos.Enums.TipoServico;
+
+/**
+ * Armazenamento em log dos usos de vaga encerrados e antigos, gravados em
+ * blocos comprimidos com {@link Deflater}. Cada bloco guarda até
+ * {@value #USOS_POR_BLOCO} usos de um único veículo, em ordem de entrada, com
+ * as colunas contíguas antes da compressão:
+ * <pre>
+ * int  quantidade
+ * long entrada   diferença para a entrada anterior (a primeira, absoluta)
+ * long duracao   saída menos entrada
+ * long centavos  valor pago em centavos
+ * int  vaga      identificador da vaga no arquivo
+ * byte servico   ordinal + 1 do serviço, 0 para nenhum
+ * </pre>
+ * O índice de cada veículo é esparso: o {@link HistoricoDeUsos} guarda apenas
+ * a descrição de cada bloco ({@link Bloco}), com o segmento e a posição, o
+ * intervalo de entradas, a quantidade de usos e o valor somado. As somas e
+ * contagens de um bloco inteiramente dentro do intervalo consultado não
+ * descomprimem o bloco; blocos fora do intervalo não são lidos.
+ *
+ * Os blocos são acrescentados ao fim do segmento ativo, um arquivo do
+ * diretório que é trocado por um novo ao atingir o tamanho configurado; os
+ * segmentos nunca são regravados. A fusão ({@link #fundir(List)}) regrava os
+ * blocos de um veículo como blocos cheios, contíguos e sem sobreposição, de
+ * forma que uma consulta ao histórico do veículo custe poucas leituras
+ * sequenciais, e descarta os blocos antigos. Um segmento sem blocos vivos é
+ * removido; os blocos de um segmento com mais da metade dos bytes descartados
+ * são movidos pela fusão seguinte dos seus veículos.
+ *
+ * Como o {@link ArquivoDeUsos}, o diretório é uma área de trabalho, criada
+ * vazia a cada abertura; a durabilidade dos usos continua a cargo da
+ * persistência. Só o acréscimo dos blocos ao segmento e o descarte são feitos
+ * sob o monitor do arquivo; a compressão e, na fusão, a leitura e a
+ * intercalação dos blocos são feitas fora dele, e os blocos são lidos sem
+ * bloqueio. Cada bloco só é lido e descartado sob o monitor do veículo dono.
+ */
+public class ArquivoFrio implements Closeable {
+
+    public static final int USOS_POR_BLOCO = 512;
+    public static final long BYTES_POR_SEGMENTO = 64L << 20;
+
+    private static final int BYTES_POR_USO = 3 * 8 + 4 + 1;
+    private static final TipoServico[] SERVICOS = TipoServico.values();
+
+    /**
+     * Arquivo do log, com a contagem dos bytes ainda referenciados por blocos.
+     */
+    private static final class Segmento {
+        private final Path caminho;
+        private final FileChannel canal;
+        private long tamanho;
+        private long vivos;
+
+        private Segmento(Path caminho, FileChannel canal) {
+            this.caminho = caminho;
+            this.canal = canal;
+        }
+    }
+
+    /**
+     * Descrição de um bloco gravado: a entrada do índice esparso do veículo.
+     */
+    static final class Bloco {
+        private final Segmento segmento;
+        private final long posicao;
+        private final int tamanho;
+        private final int quantidade;
+        private final long primeiraEntrada;
+        private final long ultimaEntrada;
+        private final long centavos;
+
+        private Bloco(Segmento segmento, long posicao, int tamanho, int quantidade, long primeiraEntrada,
+                long ultimaEntrada, long centavos) {
+            this.segmento = segmento;
+            this.posicao = posicao;
+            this.tamanho = tamanho;
+            this.quantidade = quantidade;
+            this.primeiraEntrada = primeiraEntrada;
+            this.ultimaEntrada = ultimaEntrada;
+            this.centavos = centavos;
+        }
+
+        int quantidade() {
+            return quantidade;
+        }
+
+        /**
+         * @return entrada do primeiro uso, em milissegundos desde a época (UTC)
+         */
+        long primeiraEntrada() {
+            return primeiraEntrada;
+        }
+
+        /**
+         * @return entrada do último uso, em milissegundos desde a época (UTC)
+         */
+        long ultimaEntrada() {
+            return ultimaEntrada;
+        }
+
+        /**
+         * @return soma dos valores pagos pelos usos do bloco, em centavos
+         */
+        long centavos() {
+            return centavos;
+        }
+
+        /**
+         * @return true se o bloco começa no byte seguinte ao fim deste
+         */
+        private boolean seguidoPor(Bloco bloco) {
+            return bloco.segmento == segmento && bloco.posicao == posicao + tamanho;
+        }
+    }
+
+    /**
+     * Bloco comprimido fora do monitor do arquivo, ainda sem posição no log.
+     */
+    private static final class Comprimido {
+        private final byte[] dados;
+        private final int quantidade;
+        private final long primeiraEntrada;
+        private final long ultimaEntrada;
+        private final long centavos;
+
+        private Comprimido(byte[] dados, int quantidade, long primeiraEntrada, long ultimaEntrada, long centavos) {
+            this.dados = dados;
+            this.quantidade = quantidade;
+            this.primeiraEntrada = primeiraEntrada;
+            this.ultimaEntrada = ultimaEntrada;
+            this.centavos = centavos;
+        }
+    }
+
+    /**
+     * Usos de um bloco descomprimido, em ordem de entrada.
+     */
+    static final class Usos {
+        final long[] entradas;
+        final long[] saidas;
+        final long[] centavos;
+        final int[] vagas;
+        final byte[] servicos;
+
+        private Usos(int quantidade) {
+            entradas = new long[quantidade];
+            saidas = new long[quantidade];
+            centavos = new long[quantidade];
+            vagas = new int[quantidade];
+            servicos = new byte[quantidade];
+        }
+
+        int quantidade() {
+            return entradas.length;
+        }
+
+        TipoServico servico(int uso) {
+            return servicos[uso] == 0 ? null : SERVICOS[servicos[uso] - 1];
+        }
+    }
+
+    private final Path diretorio;
+    private final long bytesPorSegmento;
+    private final List<Segmento> segmentos = new ArrayList<>();
+    private Segmento ativo;
+    private int proximoSegmento;
+    private long usos;
+
+    private final List<Vaga> vagas = new ArrayList<>();
+    private final Map<Vaga, Integer> idsDasVagas = new IdentityHashMap<>();
+
+    private ArquivoFrio(Path diretorio, long bytesPorSegmento) {
+        this.diretorio = diretorio;
+        this.bytesPorSegmento = bytesPorSegmento;
+    }
+
+    /**
+     * Cria um armazenamento vazio em um diretório, removendo os segmentos de
+     * uma abertura anterior.
+     *
+     * @param diretorio diretório dos segmentos
+     * @return armazenamento vazio
+     * @throws IOException caso o diretório não possa ser criado
+     */
+    public static ArquivoFrio criar(Path diretorio) throws IOException {
+        return criar(diretorio, BYTES_POR_SEGMENTO);
+    }
+
+    /**
+     * Cria um armazenamento vazio em um diretório, removendo os segmentos de
+     * uma abertura anterior.
+     *
+     * @param diretorio        diretório dos segmentos
+     * @param bytesPorSegmento tamanho a partir do qual um novo segmento é aberto
+     * @return armazenamento vazio
+     * @throws IOException caso o diretório não possa ser criado
+     */
+    public static ArquivoFrio criar(Path diretorio, long bytesPorSegmento) throws IOException {
+        if (bytesPorSegmento <= 0) {
+            throw new IllegalArgumentException("O tamanho do segmento deve ser positivo");
+        }
+        Files.createDirectories(diretorio);
+        removerSegmentos(diretorio);
+        return new ArquivoFrio(diretorio, bytesPorSegmento);
+    }
+
+    /**
+     * Cria um armazenamento vazio em um diretório temporário, removido quando o
+     * armazenamento é fechado.
+     *
+     * @return armazenamento vazio
+     * @throws IOException caso o diretório não possa ser criado
+     */
+    public static ArquivoFrio criarTemporario() throws IOException {
+        return criar(Files.createTempDirectory("usos-frio"));
+    }
+
+    public Path getDiretorio() {
+        return diretorio;
+    }
+
+    /**
+     * @return bytes ocupados pelos segmentos, inclusive pelos blocos descartados
+     */
+    public synchronized long tamanho() {
+        long tamanho = 0;
+        for (Segmento segmento : segmentos) {
+            tamanho += segmento.tamanho;
+        }
+        return tamanho;
+    }
+
+    /**
+     * @return quantidade de segmentos no diretório
+     */
+    public synchronized int segmentos() {
+        return segmentos.size();
+    }
+
+    /**
+     * @return quantidade de usos nos blocos vivos
+     */
+    public synchronized long quantidade() {
+        return usos;
+    }
+
+    synchronized Vaga getVaga(int id) {
+        return vagas.get(id);
+    }
+
+    /**
+     * Comprime e grava um bloco de usos de um veículo.
+     *
+     * @param usos usos encerrados em ordem de entrada, no máximo
+     *             {@value #USOS_POR_BLOCO}
+     * @return descrição do bloco gravado
+     * @throws IOException caso a gravação falhe
+     */
+    Bloco gravar(List<UsoDeVaga> usos) throws IOException {
+        Usos colunas = new Usos(usos.size());
+        for (int i = 0; i < usos.size(); i++) {
+            UsoDeVaga uso = usos.get(i);
+            colunas.entradas[i] = ArquivoDeUsos.paraEpoca(uso.getEntrada());
+            colunas.saidas[i] = ArquivoDeUsos.paraEpoca(uso.getSaida());
+            colunas.centavos[i] = uso.getCentavosPagos();
+            colunas.servicos[i] = (byte) (uso.getTipoServico() != null ? uso.getTipoServico().ordinal() + 1 : 0);
+        }
+        synchronized (this) {
+            for (int i = 0; i < usos.size(); i++) {
+                colunas.vagas[i] = idDaVaga(usos.get(i).getVaga());
+            }
+        }
+        Comprimido comprimido = comprimir(colunas, 0, usos.size());
+        synchronized (this) {
+            return acrescentar(comprimido);
+        }
+    }
+
+    /**
+     * Funde os blocos de um veículo: intercala os usos em ordem de entrada,
+     * grava-os em blocos cheios e contíguos e descarta os blocos originais. A
+     * leitura, a intercalação e a compressão são feitas fora do monitor do
+     * arquivo, que só é mantido para acrescentar os blocos novos e descartar
+     * os originais; os blocos do veículo não mudam enquanto o chamador mantém
+     * o monitor do veículo.
+     *
+     * @param blocos blocos vivos de um único veículo
+     * @return blocos gravados, em ordem de entrada e sem sobreposição
+     * @throws IOException caso a leitura ou a gravação falhe; os blocos
+     *                     originais continuam válidos
+     */
+    List<Bloco> fundir(List<Bloco> blocos) throws IOException {
+        Usos ordenados = intercalar(ler(blocos));
+        int total = ordenados.quantidade();
+        List<Comprimido> comprimidos = new ArrayList<>();
+        for (int i = 0; i < total; i += USOS_POR_BLOCO) {
+            comprimidos.add(comprimir(ordenados, i, Math.min(i + USOS_POR_BLOCO, total)));
+        }
+
+        synchronized (this) {
+            // o bloco novo pode abrir um segmento, mas nunca é gravado no meio de outro
+            List<Bloco> fundidos = new ArrayList<>(comprimidos.size());
+            for (Comprimido comprimido : comprimidos) {
+                fundidos.add(acrescentar(comprimido));
+            }
+            for (Bloco bloco : blocos) {
+                descartar(bloco);
+            }
+            return fundidos;
+        }
+    }
+
+    /**
+     * Indica se a fusão deve mover o bloco: o seu segmento não é o ativo e teve
+     * mais da metade dos bytes descartados.
+     */
+    synchronized boolean fragmentado(Bloco bloco) {
+        Segmento segmento = bloco.segmento;
+        return segmento != ativo && segmento.vivos * 2 < segmento.tamanho;
+    }
+
+    /**
+     * Descarta um bloco que deixou de ser referenciado, removendo o seu segmento
+     * caso não reste nenhum bloco vivo nele.
+     */
+    synchronized void descartar(Bloco bloco) throws IOException {
+        Segmento segmento = bloco.segmento;
+        segmento.vivos -= bloco.tamanho;
+        usos -= bloco.quantidade;
+        if (segmento.vivos == 0 && segmento != ativo) {
+            segmentos.remove(segmento);
+            segmento.canal.close();
+            Files.deleteIfExists(segmento.caminho);
+        }
+    }
+
+    /**
+     * Lê e descomprime blocos, lendo com uma única leitura cada sequência de
+     * blocos contíguos no mesmo segmento.
+     *
+     * @param blocos blocos gravados por este arquivo
+     * @return usos de cada bloco, na ordem dos blocos
+     * @throws IOException caso a leitura falhe ou algum bloco esteja corrompido
+     */
+    List<Usos> ler(List<Bloco> blocos) throws IOException {
+        List<Usos> lidos = new ArrayList<>(blocos.size());
+        int inicio = 0;
+        while (inicio < blocos.size()) {
+            Bloco primeiro = blocos.get(inicio);
+            int fim = inicio + 1;
+            long bytes = primeiro.tamanho;
+            while (fim < blocos.size() && blocos.get(fim - 1).seguidoPor(blocos.get(fim))
+                    && bytes + blocos.get(fim).tamanho <= Integer.MAX_VALUE) {
+                bytes += blocos.get(fim).tamanho;
+                fim++;
+            }
+            ByteBuffer comprimido = ByteBuffer.allocate((int) bytes);
+            while (comprimido.hasRemaining()) {
+                if (primeiro.segmento.canal.read(comprimido, primeiro.posicao + comprimido.position()) < 0) {
+                    throw new IOException("Bloco frio incompleto na posição " + primeiro.posicao);
+                }
+            }
+            int deslocamento = 0;
+            for (int i = inicio; i < fim; i++) {
+                Bloco bloco = blocos.get(i);
+                lidos.add(descomprimir(bloco, comprimido.array(), deslocamento));
+                deslocamento += bloco.tamanho;
+            }
+            inicio = fim;
+        }
+        return lidos;
+    }
+
+    private static Comprimido comprimir(Usos colunas, int de, int ate) {
+        int quantidade = ate - de;
+        ByteBuffer dados = ByteBuffer.allocate(4 + quantidade * BYTES_POR_USO);
+        dados.putInt(quantidade);
+        long anterior = 0;
+        long centavos = 0;
+        for (int i = de; i < ate; i++) {
+            dados.putLong(colunas.entradas[i] - anterior);
+            anterior = colunas.entradas[i];
+        }
+        for (int i = de; i < ate; i++) {
+            dados.putLong(colunas.saidas[i] - colunas.entradas[i]);
+        }
+        for (int i = de; i < ate; i++) {
+            dados.putLong(colunas.centavos[i]);
+            centavos += colunas.centavos[i];
+        }
+        for (int i = de; i < ate; i++) {
+            dados.putInt(colunas.vagas[i]);
+        }
+        dados.put(colunas.servicos, de, quantidade);
+
+        return new Comprimido(comprimir(dados.array()), quantidade, colunas.entradas[de], colunas.entradas[ate - 1],
+                centavos);
+    }
+
+    /**
+     * Acrescenta um bloco comprimido ao segmento ativo. Chamado sob o monitor
+     * do arquivo.
+     */
+    private Bloco acrescentar(Comprimido comprimido) throws IOException {
+        int tamanho = comprimido.dados.length;
+        if (ativo == null || (ativo.tamanho > 0 && ativo.tamanho + tamanho > bytesPorSegmento)) {
+            abrirSegmento();
+        }
+        Segmento segmento = ativo;
+        ByteBuffer origem = ByteBuffer.wrap(comprimido.dados);
+        long posicao = segmento.tamanho;
+        while (origem.hasRemaining()) {
+            segmento.canal.write(origem, posicao + origem.position());
+        }
+        segmento.tamanho += tamanho;
+        segmento.vivos += tamanho;
+        usos += comprimido.quantidade;
+        return new Bloco(segmento, posicao, tamanho, comprimido.quantidade, comprimido.primeiraEntrada,
+                comprimido.ultimaEntrada, comprimido.centavos);
+    }
+
+    private void abrirSegmento() throws IOException {
+        Segmento anterior = ativo;
+        Path caminho = diretorio.resolve(String.format("segmento-%06d.frio", ++proximoSegmento));
+        FileChannel canal = FileChannel.open(caminho, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ativo = new Segmento(caminho, canal);
+        segmentos.add(ativo);
+        // o segmento que deixa de ser o ativo pode já estar vazio
+        if (anterior != null && anterior.vivos == 0) {
+            segmentos.remove(anterior);
+            anterior.canal.close();
+            Files.deleteIfExists(anterior.caminho);
+        }
+    }
+
+    /**
+     * Intercala os usos de blocos já ordenados por entrada, com um heap dos
+     * blocos pela entrada do próximo uso. Os usos com a mesma entrada mantêm a
+     * ordem dos blocos.
+     */
+    private static Usos intercalar(List<Usos> lidos) {
+        int total = 0;
+        for (Usos usosDoBloco : lidos) {
+            total += usosDoBloco.quantidade();
+        }
+        Usos intercalados = new Usos(total);
+        int[] proximos = new int[lidos.size()];
+        int[] heap = new int[lidos.size()];
+        int tamanho = 0;
+        for (int bloco = 0; bloco < lidos.size(); bloco++) {
+            if (lidos.get(bloco).quantidade() > 0) {
+                heap[tamanho] = bloco;
+                subir(heap, tamanho++, lidos, proximos);
+            }
+        }
+        for (int destino = 0; destino < total; destino++) {
+            int bloco = heap[0];
+            Usos origem = lidos.get(bloco);
+            int uso = proximos[bloco]++;
+            intercalados.entradas[destino] = origem.entradas[uso];
+            intercalados.saidas[destino] = origem.saidas[uso];
+            intercalados.centavos[destino] = origem.centavos[uso];
+            intercalados.vagas[destino] = origem.vagas[uso];
+            intercalados.servicos[destino] = origem.servicos[uso];
+            if (proximos[bloco] == origem.quantidade()) {
+                heap[0] = heap[--tamanho];
+            }
+            descer(heap, tamanho, lidos, proximos);
+        }
+        return intercalados;
+    }
+
+    private static boolean antes(int bloco, int outro, List<Usos> lidos, int[] proximos) {
+        long entrada = lidos.get(bloco).entradas[proximos[bloco]];
+        long outraEntrada = lidos.get(outro).entradas[proximos[outro]];
+        return entrada < outraEntrada || (entrada == outraEntrada && bloco < outro);
+    }
+
+    private static void subir(int[] heap, int posicao, List<Usos> lidos, int[] proximos) {
+        while (posicao > 0) {
+            int pai = (posicao - 1) / 2;
+            if (!antes(heap[posicao], heap[pai], lidos, proximos)) {
+                return;
+            }
+            int troca = heap[posicao];
+            heap[posicao] = heap[pai];
+            heap[pai] = troca;
+            posicao = pai;
+        }
+    }
+
+    private static void descer(int[] heap, int tamanho, List<Usos> lidos, int[] proximos) {
+        int posicao = 0;
+        while (true) {
+            int menor = posicao;
+            int esquerdo = 2 * posicao + 1;
+            int direito = esquerdo + 1;
+            if (esquerdo < tamanho && antes(heap[esquerdo], heap[menor], lidos, proximos)) {
+                menor = esquerdo;
+            }
+            if (direito < tamanho && antes(heap[direito], heap[menor], lidos, proximos)) {
+                menor = direito;
+            }
+            if (menor == posicao) {
+                return;
+            }
+            int troca = heap[posicao];
+            heap[posicao] = heap[menor];
+            heap[menor] = troca;
+            posicao = menor;
+        }
+    }
+
+    private Usos descomprimir(Bloco bloco, byte[] comprimido, int deslocamento) throws IOException {
+        ByteBuffer dados = ByteBuffer.wrap(descomprimir(comprimido, deslocamento, bloco.tamanho,
+                4 + bloco.quantidade * BYTES_POR_USO));
+        int quantidade = dados.getInt();
+        if (quantidade != bloco.quantidade) {
+            throw new IOException("Bloco frio corrompido na posição " + bloco.posicao);
+        }
+        Usos usos = new Usos(quantidade);
+        long anterior = 0;
+        for (int i = 0; i < quantidade; i++) {
+            anterior += dados.getLong();
+            usos.entradas[i] = anterior;
+        }
+        for (int i = 0; i < quantidade; i++) {
+            usos.saidas[i] = usos.entradas[i] + dados.getLong();
+        }
+        for (int i = 0; i < quantidade; i++) {
+            usos.centavos[i] = dados.getLong();
+        }
+        for (int i = 0; i < quantidade; i++) {
+            usos.vagas[i] = dados.getInt();
+        }
+        dados.get(usos.servicos);
+        return usos;
+    }
+
+    private int idDaVaga(Vaga vaga) {
+        Integer id = idsDasVagas.get(vaga);
+        if (id == null) {
+            id = vagas.size();
+            vagas.add(vaga);
+            idsDasVagas.put(vaga, id);
+        }
+        return id;
+    }
+
+    private static byte[] comprimir(byte[] dados) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(dados);
+            deflater.finish();
+            byte[] destino = new byte[Math.max(64, dados.length / 2)];
+            int tamanho = 0;
+            while (!deflater.finished()) {
+                if (tamanho == destino.length) {
+                    destino = Arrays.copyOf(destino, destino.length * 2);
+                }
+                tamanho += deflater.deflate(destino, tamanho, destino.length - tamanho);
+            }
+            return Arrays.copyOf(destino, tamanho);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] descomprimir(byte[] comprimido, int deslocamento, int bytes, int tamanho)
+            throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(comprimido, deslocamento, bytes);
+            byte[] destino = new byte[tamanho];
+            int lidos = 0;
+            while (lidos < tamanho && !inflater.finished()) {
+                int n = inflater.inflate(destino, lidos, tamanho - lidos);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                lidos += n;
+            }
+            if (lidos != tamanho || !inflater.finished()) {
+                throw new IOException("Bloco frio com tamanho inesperado");
+            }
+            return destino;
+        } catch (DataFormatException e) {
+            throw new IOException("Bloco frio corrompido", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void removerSegmentos(Path diretorio) throws IOException {
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, "segmento-*.frio")) {
+            for (Path arquivo : arquivos) {
+                Files.delete(arquivo);
+            }
+        }
+    }
+
+    /**
+     * Fecha e remove os segmentos e o diretório, caso fique vazio.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOException falha = null;
+        for (Segmento segmento : segmentos) {
+            try {
+                segmento.canal.close();
+                Files.deleteIfExists(segmento.caminho);
+            } catch (IOException e) {
+                if (falha == null) {
+                    falha = e;
+                } else {
+                    falha.addSuppressed(e);
+                }
+            }
+        }
+        segmentos.clear();
+        ativo = null;
+        if (falha != null) {
+            throw falha;
+        }
+        if (!Files.isDirectory(diretorio)) {
+            return;
+        }
+        try (DirectoryStream<Path> restantes = Files.newDirectoryStream(diretorio)) {
+            if (!restantes.iterator().hasNext()) {
+                Files.delete(diretorio);
+            }
+        }
+    }
+}
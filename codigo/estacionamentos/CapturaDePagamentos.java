@@ -0,0 +1,105 @@
+package estacionamentos;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import estacionamentos.Enums.TipoUso;
+
+/**
+ * Pagamentos lançados no livro-caixa de um estacionamento enquanto um
+ * livro-caixa novo é reconstruído a partir do histórico dos veículos. A
+ * reconstrução lê cada veículo em um momento diferente, sem interromper as
+ * cancelas; a captura guarda, por veículo, os pagamentos lançados no
+ * livro-caixa atual e quantos deles já estavam no histórico lido, de forma que
+ * somente os posteriores à leitura sejam reproduzidos no livro-caixa novo.
+ *
+ * Os lançamentos e a leitura do histórico de um veículo são feitos sob o
+ * monitor do veículo, que também protege os pagamentos capturados dele.
+ *
+ * @see Estacionamento#capturarPagamentos()
+ * @see Estacionamento#substituirLivroCaixa(LivroCaixa, CapturaDePagamentos)
+ */
+public final class CapturaDePagamentos {
+
+    private static final class Pagamento {
+        private final LocalDateTime entrada;
+        private final TipoUso tipoUso;
+        private final String idCliente;
+        private final long centavos;
+
+        private Pagamento(LocalDateTime entrada, TipoUso tipoUso, String idCliente, long centavos) {
+            this.entrada = entrada;
+            this.tipoUso = tipoUso;
+            this.idCliente = idCliente;
+            this.centavos = centavos;
+        }
+    }
+
+    /**
+     * Pagamentos capturados de um veículo; os primeiros {@code incluidos} já
+     * estão no livro-caixa novo, pela leitura do histórico ou por reprodução.
+     */
+    private static final class DoVeiculo {
+        private final List<Pagamento> pagamentos = new ArrayList<>();
+        private int incluidos;
+    }
+
+    private final LivroCaixa livroCaixa;
+    private final Map<Veiculo, DoVeiculo> veiculos = new ConcurrentHashMap<>();
+
+    CapturaDePagamentos(LivroCaixa livroCaixa) {
+        this.livroCaixa = livroCaixa;
+    }
+
+    /**
+     * @return livro-caixa cujos lançamentos são capturados
+     */
+    LivroCaixa getLivroCaixa() {
+        return livroCaixa;
+    }
+
+    /**
+     * Captura um pagamento lançado no livro-caixa. Deve ser chamado sob o
+     * monitor do veículo, junto com o lançamento.
+     */
+    void registrar(Veiculo veiculo, LocalDateTime entrada, TipoUso tipoUso, String idCliente, long centavos) {
+        veiculos.computeIfAbsent(veiculo, v -> new DoVeiculo()).pagamentos
+                .add(new Pagamento(entrada, tipoUso, idCliente, centavos));
+    }
+
+    /**
+     * Marca os pagamentos capturados de um veículo como incluídos no
+     * livro-caixa novo. Deve ser chamado sob o monitor do veículo, junto com a
+     * leitura do histórico que os inclui.
+     *
+     * @param veiculo veículo cujo histórico está sendo lido
+     */
+    public void marcarLeitura(Veiculo veiculo) {
+        DoVeiculo doVeiculo = veiculos.get(veiculo);
+        if (doVeiculo != null) {
+            doVeiculo.incluidos = doVeiculo.pagamentos.size();
+        }
+    }
+
+    /**
+     * Lança no livro-caixa novo os pagamentos capturados ainda não incluídos.
+     *
+     * @param destino livro-caixa novo
+     */
+    void reproduzirEm(LivroCaixa destino) {
+        for (Map.Entry<Veiculo, DoVeiculo> entrada : veiculos.entrySet()) {
+            DoVeiculo doVeiculo = entrada.getValue();
+            synchronized (entrada.getKey()) {
+                for (int i = doVeiculo.incluidos; i < doVeiculo.pagamentos.size(); i++) {
+                    Pagamento pagamento = doVeiculo.pagamentos.get(i);
+                    destino.registrarPagamentoEmCentavos(pagamento.entrada, pagamento.tipoUso,
+                            pagamento.idCliente, pagamento.centavos);
+                }
+                doVeiculo.incluidos = doVeiculo.pagamentos.size();
+            }
+        }
+    }
+}
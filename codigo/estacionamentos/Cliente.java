@@ -1,17 +1,25 @@
 package estacionamentos;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.ObserverVeiculos;
+import excecoes.ExcecaoVeiculoJaCadastrado;
 
 public class Cliente {
 
 	private String nome;
 	private String id;
-	private LinkedList<Veiculo> veiculos;
+	private List<Veiculo> veiculos;
+	private CopyOnWriteArrayList<ObserverVeiculos> observers;
 	private TipoUso tipoUso;
+	private volatile boolean alterado = true;
 
 	/**
 	 * Construtor para a criação de um Cliente.
@@ -23,7 +31,8 @@ public class Cliente {
 		setNome(nome);
 		setId(id);
 		setTipoUso(null);
-		veiculos = new LinkedList<>();
+		veiculos = new CopyOnWriteArrayList<>();
+		observers = new CopyOnWriteArrayList<>();
 	}
 
 	public Cliente() {
@@ -40,7 +49,8 @@ public class Cliente {
 		setNome(nome);
 		setId(id);
 		setTipoUso(tipoUso);
-		veiculos = new LinkedList<>();
+		veiculos = new CopyOnWriteArrayList<>();
+		observers = new CopyOnWriteArrayList<>();
 	}
 
 	public TipoUso getTipoUso() {
@@ -49,6 +59,7 @@ public class Cliente {
 
 	public void setTipoUso(TipoUso tipoUso) {
 		this.tipoUso = tipoUso;
+		alterado = true;
 		notifyTipoUsoVeiculo();
 	}
 
@@ -70,35 +81,128 @@ public class Cliente {
 
 	/**
 	 * Método para adicionar um novo veículo à lista de veículos de um Cliente
-	 * específico.
+	 * específico. Os observadores registrados (estacionamentos) são notificados
+	 * para manterem seus índices de placas atualizados. As notificações são
+	 * feitas fora do monitor do cliente, depois que o veículo foi incluído na
+	 * lista, para que os estacionamentos possam obter os seus monitores sem
+	 * inverter a ordem de quem adiciona o veículo por um deles; caso algum
+	 * observador recuse o veículo, ele é retirado do cliente e os observadores
+	 * desfazem a adição.
 	 * 
 	 * @param veiculo do tipo Veiculo
+	 * @throws ExcecaoVeiculoJaCadastrado caso o cliente já possua um veículo com a
+	 *                                    mesma placa ou algum observador recuse a
+	 *                                    placa
 	 */
-	public void addVeiculo(Veiculo veiculo) {
-		this.veiculos.add(veiculo);
+	public void addVeiculo(Veiculo veiculo) throws ExcecaoVeiculoJaCadastrado {
+		synchronized (this) {
+			if (possuiVeiculo(veiculo.getPlaca()) != null) {
+				throw new ExcecaoVeiculoJaCadastrado("Veículo já cadastrado para este cliente");
+			}
+			this.veiculos.add(veiculo);
+			alterado = true;
+		}
+		List<ObserverVeiculos> notificados = new ArrayList<>(observers.size());
+		try {
+			for (ObserverVeiculos observer : observers) {
+				observer.veiculoAdicionado(this, veiculo);
+				notificados.add(observer);
+			}
+		} catch (RuntimeException e) {
+			this.veiculos.remove(veiculo);
+			alterado = true;
+			// inclui os observadores registrados durante a notificação, que podem
+			// ter indexado o veículo a partir da lista do cliente
+			for (ObserverVeiculos observer : observers) {
+				observer.veiculoCancelado(this, veiculo);
+			}
+			throw e;
+		}
+		for (ObserverVeiculos observer : notificados) {
+			observer.veiculoConfirmado(this, veiculo);
+		}
+	}
+
+	/**
+	 * Indica se o tipo de uso, os veículos ou os estacionamentos em que o cliente
+	 * está cadastrado foram alterados desde a sua criação ou desde a última
+	 * chamada a {@link #limparAlteracao()}. Os snapshots incrementais regravam
+	 * apenas os clientes alterados.
+	 *
+	 * @return true se o cliente foi alterado
+	 */
+	public boolean isAlterado() {
+		return alterado;
+	}
+
+	/**
+	 * Marca o cliente como alterado.
+	 */
+	void marcarAlteracao() {
+		alterado = true;
+	}
+
+	/**
+	 * Marca o estado atual do cliente como já gravado.
+	 */
+	public void limparAlteracao() {
+		alterado = false;
+	}
+
+	/**
+	 * Registra um observador que será notificado a cada veículo adicionado ao
+	 * cliente.
+	 *
+	 * @param observer observador a ser registrado
+	 */
+	public void addObserver(ObserverVeiculos observer) {
+		if (observers != null) {
+			observers.addIfAbsent(observer);
+		}
+	}
+
+	/**
+	 * Remove um observador previamente registrado.
+	 *
+	 * @param observer observador a ser removido
+	 */
+	public void removeObserver(ObserverVeiculos observer) {
+		if (observers != null) {
+			observers.remove(observer);
+		}
 	}
 
 	/**
-	 * Método para obter a lista de todos os veículos do Cliente.
+	 * Método para obter a lista de todos os veículos do Cliente. A lista é uma
+	 * vista somente de leitura, sem cópia; percorrê-la não é afetado por veículos
+	 * adicionados durante o percurso.
 	 *
-	 * @return uma lista de objetos Veiculo
+	 * @return uma lista imutável de objetos Veiculo
 	 */
 	public List<Veiculo> getVeiculos() {
-		return this.veiculos;
+		if (veiculos == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(this.veiculos);
 	}
 
 	/**
 	 * Método que verifica se o Cliente possui um determinado carro a partir da
-	 * verificação da placa na lista de veículos do mesmo.
+	 * placa. Um cliente tem poucos veículos, de forma que a lista é percorrida
+	 * sem um índice próprio; as buscas pela placa em todo o cadastro usam o
+	 * índice do estacionamento.
 	 * 
 	 * @param placa do tipo String
 	 * @return veiculo do tipo Veiculo caso a placa for encontrada ou nulo caso não
 	 *         exista na lista de veículos a placa informada.
 	 */
 	public Veiculo possuiVeiculo(String placa) {
-		for (int i = 0; i < veiculos.size(); i++) {
-			if ((veiculos.get(i).getPlaca()).equals(placa)) {
-				return veiculos.get(i);
+		if (veiculos == null) {
+			return null;
+		}
+		for (Veiculo veiculo : veiculos) {
+			if (veiculo.getPlaca().equals(placa)) {
+				return veiculo;
 			}
 		}
 		return null;
@@ -140,33 +244,47 @@ public class Cliente {
 	 * Método que realiza a soma do total arrecadado de todos os veículos de um
 	 * Cliente
 	 * 
-	 * @return double com o total arrecadado dos veículos do Cliente
+	 * @return total arrecadado dos veículos do Cliente, em centavos
 	 */
-	public double arrecadadoTotal() {
-		double soma = 0;
+	public long arrecadadoTotalEmCentavos() {
+		long soma = 0;
 		for (int i = 0; i < veiculos.size(); i++) {
-			soma += veiculos.get(i).totalArrecadado();
+			soma += veiculos.get(i).totalArrecadadoEmCentavos();
 		}
 		return soma;
 	}
 
+	/**
+	 * @see #arrecadadoTotalEmCentavos()
+	 * @return double com o total arrecadado dos veículos do Cliente, em reais
+	 */
+	public double arrecadadoTotal() {
+		return arrecadadoTotalEmCentavos() / 100.0;
+	}
+
 	/**
 	 * Método que realiza a soma do valor arrecadado com os veículos de um Cliente
 	 * em um determinado mês
 	 * 
 	 * @param mes do tipo int
-	 * @return soma do tipo double com o resultado das somas
+	 * @return soma dos valores do mês, em centavos
 	 */
-	public double arrecadadoNoMes(int mes, int ano) {
-		double soma = 0;
+	public long arrecadadoNoMesEmCentavos(int mes, int ano) {
+		long soma = 0;
 		for (int i = 0; i < veiculos.size(); i++) {
-			if ((veiculos.get(i).arrecadadoNoMes(mes, ano)) != 0) {
-				soma += this.veiculos.get(i).arrecadadoNoMes(mes, ano);
-			}
+			soma += veiculos.get(i).arrecadadoNoMesEmCentavos(mes, ano);
 		}
 		return soma;
 	}
 
+	/**
+	 * @see #arrecadadoNoMesEmCentavos(int, int)
+	 * @return soma do tipo double com o resultado das somas, em reais
+	 */
+	public double arrecadadoNoMes(int mes, int ano) {
+		return arrecadadoNoMesEmCentavos(mes, ano) / 100.0;
+	}
+
 	@Override
 	public String toString() {
 		return "Nome: " + nome + "\nVeículos: " + veiculos;
@@ -184,12 +302,30 @@ public class Cliente {
 	 *         formatado de maneira legível.
 	 */
 	public String historico(LocalDateTime dataInicio, LocalDateTime dataFim) {
-		String historico = "**********************\n" + this.nome + "\n\n";
+		StringBuilder historico = new StringBuilder();
+		try {
+			historico(dataInicio, dataFim, historico);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return historico.toString();
+	}
+
+	/**
+	 * Escreve em uma saída o histórico consolidado dos usos de vaga dos veículos
+	 * do cliente no intervalo de datas especificado, veículo a veículo.
+	 *
+	 * @param dataInicio Data de início do período desejado.
+	 * @param dataFim    Data de fim do período desejado.
+	 * @param saida      Destino do histórico.
+	 * @throws IOException caso a escrita na saída falhe
+	 */
+	public void historico(LocalDateTime dataInicio, LocalDateTime dataFim, Appendable saida) throws IOException {
+		saida.append("**********************\n").append(this.nome).append("\n\n");
 		for (Veiculo veiculo : veiculos) {
-			historico += veiculo.historico(dataInicio, dataFim);
+			veiculo.historico(dataInicio, dataFim, saida);
 		}
-		historico += "**********************\n";
-		return historico;
+		saida.append("**********************\n");
 	}
 
 	public void notifyTipoUsoVeiculo() {
@@ -245,19 +381,11 @@ public class Cliente {
 	 * @return valor arrecadado com usos fora do turno no mês e ano especificados.
 	 */
 	public double arrecadadoNoMesForaDoTurno(int mes, int ano) {
-		double soma = 0;
+		long soma = 0;
 		for (Veiculo veiculo : veiculos) {
-			for (UsoDeVaga uso : veiculo.getListUsoDeVaga()) {
-				if (uso.getEntrada().getMonthValue() == mes && uso.getEntrada().getYear() == ano) {
-					if (tipoUso == TipoUso.TURNO) {
-						soma += uso.getValorPago();
-					} else if (tipoUso != TipoUso.TURNO) {
-						soma += uso.getValorPago();
-					}
-				}
-			}
+			soma += veiculo.arrecadadoNoMesEmCentavos(mes, ano);
 		}
-		return soma;
+		return soma / 100.0;
 	}
 	
 
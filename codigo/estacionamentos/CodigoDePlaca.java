@@ -0,0 +1,86 @@
+package estacionamentos;
+
+/**
+ * Codificação de placas em um {@code long}, usada como chave dos índices de
+ * placas no lugar da {@link String}. Placas de até 7 caracteres entre dígitos e
+ * letras maiúsculas, o que inclui o formato antigo (ABC1234) e o Mercosul
+ * (ABC1D23), são lidas como números na base 37: os dígitos valem de 1 a 10 e
+ * as letras de 11 a 36, de forma que o zero só aparece à esquerda e placas de
+ * tamanhos diferentes não colidem. O maior código, 37^7 - 1, cabe em 37 bits.
+ *
+ * As demais placas não têm código; os índices as guardam à parte, pela
+ * {@link String}.
+ */
+public final class CodigoDePlaca {
+
+    /**
+     * Código das placas que não podem ser codificadas.
+     */
+    public static final long SEM_CODIGO = -1;
+
+    /**
+     * Quantidade máxima de caracteres de uma placa codificada.
+     */
+    public static final int TAMANHO_MAXIMO = 7;
+
+    private static final int BASE = 37;
+
+    private CodigoDePlaca() {
+    }
+
+    /**
+     * @param placa placa do veículo
+     * @return código da placa, ou {@link #SEM_CODIGO} caso a placa seja vazia,
+     *         tenha mais de 7 caracteres ou algum caractere que não seja dígito
+     *         ou letra maiúscula
+     */
+    public static long codificar(String placa) {
+        if (placa == null || placa.isEmpty() || placa.length() > TAMANHO_MAXIMO) {
+            return SEM_CODIGO;
+        }
+        long codigo = 0;
+        for (int i = 0; i < placa.length(); i++) {
+            int valor = valor(placa.charAt(i));
+            if (valor == 0) {
+                return SEM_CODIGO;
+            }
+            codigo = codigo * BASE + valor;
+        }
+        return codigo;
+    }
+
+    /**
+     * @param codigo código obtido por {@link #codificar(String)}
+     * @return placa codificada
+     * @throws IllegalArgumentException caso o código não corresponda a uma placa
+     */
+    public static String decodificar(long codigo) {
+        if (codigo <= 0) {
+            throw new IllegalArgumentException("Código de placa inválido: " + codigo);
+        }
+        char[] caracteres = new char[TAMANHO_MAXIMO];
+        int inicio = TAMANHO_MAXIMO;
+        while (codigo > 0) {
+            if (inicio == 0) {
+                throw new IllegalArgumentException("Código de placa inválido: " + codigo);
+            }
+            int valor = (int) (codigo % BASE);
+            if (valor == 0) {
+                throw new IllegalArgumentException("Código de placa inválido: " + codigo);
+            }
+            caracteres[--inicio] = valor <= 10 ? (char) ('0' + valor - 1) : (char) ('A' + valor - 11);
+            codigo /= BASE;
+        }
+        return new String(caracteres, inicio, TAMANHO_MAXIMO - inicio);
+    }
+
+    private static int valor(char caractere) {
+        if (caractere >= '0' && caractere <= '9') {
+            return caractere - '0' + 1;
+        }
+        if (caractere >= 'A' && caractere <= 'Z') {
+            return caractere - 'A' + 11;
+        }
+        return 0;
+    }
+}
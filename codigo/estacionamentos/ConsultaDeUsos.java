@@ -0,0 +1,92 @@
+package estacionamentos;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Usos de uma consulta ao histórico de um veículo copiados sob o monitor do
+ * veículo, para serem escritos fora dele sem recriar os usos encerrados como
+ * objetos. Os usos encerrados ficam em colunas ({@link UsosCompactos}); os usos
+ * em objetos, como o uso em aberto, são guardados por referência. As posições
+ * seguem a ordem de entrada até {@link #ordenarPorValorDecrescente()}.
+ */
+final class ConsultaDeUsos {
+
+    private final UsosCompactos encerrados;
+    private final List<UsoDeVaga> emObjetos;
+    /** posição nas colunas, ou -(posição em objetos) - 1 */
+    private int[] ordem;
+
+    /**
+     * @param encerrados usos encerrados em ordem de entrada
+     * @param emObjetos  usos em objetos em ordem de entrada, em uma lista que
+     *                   não acompanha o histórico
+     */
+    ConsultaDeUsos(UsosCompactos encerrados, List<UsoDeVaga> emObjetos) {
+        this.encerrados = encerrados;
+        this.emObjetos = emObjetos;
+        this.ordem = new int[encerrados.quantidade() + emObjetos.size()];
+        // intercala como HistoricoDeUsos: com entradas iguais, o uso encerrado vem antes
+        int i = 0;
+        int j = 0;
+        for (int posicao = 0; posicao < ordem.length; posicao++) {
+            if (j == emObjetos.size() || (i < encerrados.quantidade()
+                    && ArquivoDeUsos.paraEpoca(emObjetos.get(j).getEntrada()) >= encerrados.entrada(i))) {
+                ordem[posicao] = i++;
+            } else {
+                ordem[posicao] = -(j++) - 1;
+            }
+        }
+    }
+
+    int quantidade() {
+        return ordem.length;
+    }
+
+    /**
+     * @return valor pago pelo uso da posição, em centavos
+     */
+    long centavos(int posicao) {
+        int uso = ordem[posicao];
+        return uso >= 0 ? encerrados.centavos(uso) : emObjetos.get(-uso - 1).getCentavosPagos();
+    }
+
+    /**
+     * Escreve o uso da posição no formato de {@link UsoDeVaga#toString()}.
+     */
+    void escrever(int posicao, Appendable saida) throws IOException {
+        int uso = ordem[posicao];
+        if (uso < 0) {
+            saida.append(emObjetos.get(-uso - 1).toString());
+            return;
+        }
+        saida.append(UsoDeVaga.descrever(encerrados.vaga(uso), ArquivoDeUsos.deEpoca(encerrados.entrada(uso)),
+                ArquivoDeUsos.deEpoca(encerrados.saida(uso)), encerrados.centavos(uso), encerrados.servico(uso)));
+    }
+
+    /**
+     * Ordena as posições por valor pago decrescente, mantendo a ordem de
+     * entrada entre usos de mesmo valor.
+     */
+    void ordenarPorValorDecrescente() {
+        int[] auxiliar = new int[ordem.length];
+        for (int largura = 1; largura < ordem.length; largura <<= 1) {
+            for (int de = 0; de < ordem.length; de += largura << 1) {
+                int meio = Math.min(de + largura, ordem.length);
+                int ate = Math.min(de + (largura << 1), ordem.length);
+                int i = de;
+                int j = meio;
+                for (int k = de; k < ate; k++) {
+                    if (j == ate || (i < meio && centavos(i) >= centavos(j))) {
+                        auxiliar[k] = ordem[i++];
+                    } else {
+                        auxiliar[k] = ordem[j++];
+                    }
+                }
+            }
+            int[] troca = ordem;
+            ordem = auxiliar;
+            auxiliar = troca;
+        }
+    }
+}
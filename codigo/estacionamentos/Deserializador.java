@@ -1,5 +1,6 @@
 package estacionamentos;
 
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.ObjectInputStream;
 
@@ -22,10 +23,8 @@ public class Deserializador {
      * @throws Exception
      */
     public Object deserializar(String path) throws Exception{
-        FileInputStream inFile = new FileInputStream(path);
-        ObjectInputStream by = new ObjectInputStream(inFile);
-        Object object = by.readObject();
-        by.close();
-        return object;
+        try (ObjectInputStream by = new ObjectInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            return by.readObject();
+        }
     }    
 }
@@ -1,19 +1,29 @@
 package estacionamentos.Enums;
 public enum TipoServico {
 	
-	MANOBRISTA(5.0, 0),
-	LAVAGEM(20.0, 1),
-	POLIMENTO(45.0, 2);
+	MANOBRISTA(500, 0),
+	LAVAGEM(2000, 1),
+	POLIMENTO(4500, 2);
 	
-	private double valor;
+	private long centavos;
 	private double tempoMinimo;
 
-	TipoServico(double valor, double tempoMinimo) {
-		this.valor = valor;
+	TipoServico(long centavos, double tempoMinimo) {
+		this.centavos = centavos;
 	}
 
+	/**
+	 * @return valor do serviço em centavos
+	 */
+	public long getCentavos() {
+		return centavos;
+	}
+
+	/**
+	 * @return valor do serviço em reais, para exibição
+	 */
 	public double getValor() {
-		return valor;
+		return centavos / 100.0;
 	}
 
 	public double getTempo() {
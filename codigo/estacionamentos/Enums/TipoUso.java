@@ -1,11 +1,11 @@
 package estacionamentos.Enums;
 
 public enum TipoUso {
-    HORISTA(4.00),
-    TURNO(200.00),
-    MENSALISTA(500.00);
+    HORISTA(400),
+    TURNO(20000),
+    MENSALISTA(50000);
 
-    private double valor;
+    private long centavos;
 
     TipoUso(){
 
@@ -14,18 +14,31 @@ public enum TipoUso {
     /**
      * Construtor para Enum TipoUso
      * 
-     * @param valor Valor associado ao tipo de uso.
+     * @param centavos Valor associado ao tipo de uso, em centavos.
      */
-    TipoUso(double valor) {
-        setValor(valor);
+    TipoUso(long centavos) {
+        this.centavos = centavos;
     }   
 
+    /**
+     * @return valor associado ao tipo de uso, em centavos
+     */
+    public long getCentavos() {
+        return centavos;
+    }
+
+    /**
+     * @return valor associado ao tipo de uso, em reais, para exibição
+     */
     public double getValor() {
-        return valor;
+        return centavos / 100.0;
     }
 
+    /**
+     * @param valor valor em reais, arredondado para centavos
+     */
     public void setValor(double valor){
-        this.valor = valor;
+        this.centavos = Math.round(valor * 100);
     }
 
     /*public double calcularValor(LocalTime inicio, LocalTime fim) {
@@ -1,41 +1,84 @@
 package estacionamentos;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.util.Scanner;
 
 import estacionamentos.Enums.TipoServico;
 import estacionamentos.Enums.TipoTurno;
 import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.ObserverEstacionamento;
+import estacionamentos.interfaces.ObserverVeiculos;
 import estacionamentos.interfaces.UsoDeVagaFactory;
+import estacionamentos.interfaces.VisitanteDeUsos;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 import excecoes.ExcecaoClienteJaCadastrado;
+import excecoes.ExcecaoHistoricoIndisponivel;
 import excecoes.ExcecaoNaoPossuiVagasDisponiveis;
 import excecoes.ExcecaoNenhumClienteCadastrado;
 import excecoes.ExcecaoOpicaoInvalida;
+import excecoes.ExcecaoServicoJaContratado;
 import excecoes.ExcecaoVeiculoJaCadastrado;
 import excecoes.ExcecaoVeiculoJaEstacionado;
 import excecoes.ExcecaoVeiculoNaoCadastrado;
+import excecoes.ExcecaoVeiculoNaoEstacionado;
 import excecoes.ExcecaoClienteNaoCadastrado;
 
-public class Estacionamento {
-
-	Comparator<UsoDeVaga> compData = Comparator.comparing(UsoDeVaga::getEntrada);
-    Comparator<UsoDeVaga> compValor = (u1, u2) -> Double.compare(u2.getValorPago(), u1.getValorPago());
-
-
+/**
+ * Estacionamento com suporte a várias cancelas de entrada e saída operando em
+ * paralelo. Os índices de placas e as sessões ativas são mapas concorrentes, as
+ * vagas livres ficam em uma fila sem bloqueio e cada vaga é ocupada por
+ * compare-and-set. Um estacionamento de uma {@link RedeDeEstacionamentos} não
+ * mantém índice de placas próprio: as buscas usam o índice da rede, restrito
+ * aos clientes associados ao estacionamento. Entradas e saídas da mesma placa são serializadas pelo
+ * monitor do veículo; alterações de cadastro são serializadas pelo monitor do
+ * estacionamento, que nunca é mantido enquanto o estacionamento chama um
+ * cliente: os clientes notificam os estacionamentos sem o próprio monitor.
+ *
+ * As operações de cadastro, entrada, saída e contratação de serviço são
+ * notificadas aos {@link ObserverEstacionamento} registrados, como o diário de
+ * eventos da persistência. Os usos encerrados podem ser arquivados fora do
+ * heap em um {@link ArquivoDeUsos} e os antigos, comprimidos em um
+ * {@link ArquivoFrio}. Quando o histórico é carregado em segundo
+ * plano, as consultas ao livro-caixa aguardam a carga.
+ */
+public class Estacionamento implements ObserverVeiculos {
 
 	static Scanner teclado = new Scanner(System.in);
 	// private int contClientes = 1;
 	private String nome;
 	public Map<String, Cliente> id;
-	private LinkedList<Vaga> vagas;
+	private final IndiceDePlacas placas;
+	private final Map<String, Cliente> placasReservadas = new ConcurrentHashMap<>();
+	private volatile List<Vaga> vagas;
+	private volatile Deque<Vaga> vagasLivres;
+	private final Map<Integer, Vaga> vagasDescartadas = new ConcurrentHashMap<>();
+	private Map<String, UsoDeVaga> sessoesAtivas;
+	private volatile LivroCaixa livroCaixa;
+	private volatile CapturaDePagamentos captura;
+	private final List<ObserverEstacionamento> observadores = new CopyOnWriteArrayList<>();
+	private volatile ArquivoDeUsos arquivoDeUsos;
+	private volatile CompletableFuture<?> cargaDoHistorico;
+	private volatile boolean alterado = true;
+	private volatile RedeDeEstacionamentos rede;
 
 	/**
 	 * Construtor de Estacionamento
@@ -46,255 +89,1004 @@ public class Estacionamento {
 	 */
 	public Estacionamento(String nome) {
 		this.nome = nome;
-		this.id = new HashMap<>();
-		this.vagas = new LinkedList<>();
+		this.id = new ConcurrentHashMap<>();
+		this.placas = new IndiceDePlacas();
+		this.vagas = Collections.emptyList();
+		this.vagasLivres = new ConcurrentLinkedDeque<>();
+		this.sessoesAtivas = new ConcurrentHashMap<>();
+		this.livroCaixa = new LivroCaixa();
 	}
 
 	public Map<String, Cliente> getId() {
 		return id;
 	}
 
-	public void setId(Map<String, Cliente> id) {
-		this.id = id;
+	/**
+	 * Retorna o livro-caixa com a arrecadação mensal do estacionamento.
+	 * 
+	 * @return livro-caixa do estacionamento
+	 */
+	public LivroCaixa getLivroCaixa() {
+		aguardarHistorico();
+		return livroCaixa;
+	}
+
+	/**
+	 * Passa a capturar os pagamentos lançados no livro-caixa, para que sejam
+	 * levados ao livro-caixa que será reconstruído a partir dos usos
+	 * registrados. Deve ser chamado antes da leitura do histórico dos veículos;
+	 * uma captura anterior ainda não encerrada é descartada.
+	 * 
+	 * @return captura dos pagamentos lançados a partir de agora
+	 * @see #substituirLivroCaixa(LivroCaixa, CapturaDePagamentos)
+	 */
+	public synchronized CapturaDePagamentos capturarPagamentos() {
+		aguardarHistorico();
+		captura = new CapturaDePagamentos(livroCaixa);
+		return captura;
+	}
+
+	/**
+	 * Encerra uma captura de pagamentos sem substituir o livro-caixa, como
+	 * quando a reconstrução é descartada.
+	 * 
+	 * @param captura captura obtida em {@link #capturarPagamentos()}
+	 */
+	public synchronized void encerrarCaptura(CapturaDePagamentos captura) {
+		if (this.captura == captura) {
+			this.captura = null;
+		}
+	}
+
+	/**
+	 * Substitui o livro-caixa do estacionamento por um reconstruído a partir dos
+	 * usos registrados, sem interromper as cancelas. Os pagamentos lançados
+	 * depois da leitura do histórico de cada veículo, tanto antes quanto durante
+	 * a substituição, são reproduzidos no livro-caixa novo a partir da captura.
+	 * 
+	 * @param livroCaixa livro-caixa reconstruído
+	 * @param captura    captura iniciada antes da leitura do histórico
+	 * @throws IllegalStateException caso a captura tenha sido encerrada ou
+	 *                               substituída por outra
+	 */
+	public void substituirLivroCaixa(LivroCaixa livroCaixa, CapturaDePagamentos captura) {
+		aguardarHistorico();
+		if (this.captura != captura) {
+			throw new IllegalStateException("A captura de pagamentos do estacionamento " + nome + " não está ativa");
+		}
+		captura.reproduzirEm(livroCaixa);
+		this.livroCaixa = livroCaixa;
+		// os lançamentos são feitos sob o monitor do veículo: depois de passar por
+		// todos, nenhum lançamento no livro-caixa antigo está em andamento
+		for (Cliente cliente : id.values()) {
+			for (Veiculo veiculo : cliente.getVeiculos()) {
+				synchronized (veiculo) {
+					// aguarda o lançamento em andamento
+				}
+			}
+		}
+		captura.reproduzirEm(livroCaixa);
+		encerrarCaptura(captura);
+	}
+
+	/**
+	 * Lança um pagamento no livro-caixa, capturando-o caso um livro-caixa novo
+	 * esteja sendo reconstruído. Chamado sob o monitor do veículo.
+	 */
+	private void lancarPagamento(Veiculo veiculo, LocalDateTime entrada, TipoUso tipoUso, String idCliente, long centavos) {
+		LivroCaixa livro = livroCaixa;
+		livro.registrarPagamentoEmCentavos(entrada, tipoUso, idCliente, centavos);
+		CapturaDePagamentos captura = this.captura;
+		if (captura != null && captura.getLivroCaixa() == livro) {
+			captura.registrar(veiculo, entrada, tipoUso, idCliente, centavos);
+		}
+	}
+
+	/**
+	 * Informa que o histórico de usos encerrados está sendo carregado em segundo
+	 * plano. Até a conclusão da carga, as consultas ao livro-caixa aguardam;
+	 * entradas e saídas não são afetadas.
+	 * 
+	 * @param carga carga do histórico em andamento
+	 */
+	public void setCargaDoHistorico(CompletableFuture<?> carga) {
+		this.cargaDoHistorico = carga;
+	}
+
+	/**
+	 * Aguarda a conclusão da carga do histórico, caso haja uma em andamento.
+	 * 
+	 * @throws ExcecaoHistoricoIndisponivel caso a carga tenha falhado ou a espera
+	 *                                      seja interrompida
+	 */
+	public void aguardarHistorico() throws ExcecaoHistoricoIndisponivel {
+		CompletableFuture<?> carga = cargaDoHistorico;
+		if (carga == null) {
+			return;
+		}
+		try {
+			carga.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExcecaoHistoricoIndisponivel("A espera pelo histórico do estacionamento " + nome + " foi interrompida", e);
+		} catch (ExecutionException e) {
+			throw new ExcecaoHistoricoIndisponivel("Não foi possível carregar o histórico do estacionamento " + nome, e.getCause());
+		}
+		cargaDoHistorico = null;
+	}
+
+	/**
+	 * Indica se as vagas ou as sessões ativas do estacionamento foram alteradas
+	 * desde a sua criação ou desde a última chamada a {@link #limparAlteracao()}.
+	 * Os snapshots incrementais gravam um delta apenas para os estacionamentos
+	 * alterados.
+	 * 
+	 * @return true se o estacionamento foi alterado
+	 */
+	public boolean isAlterado() {
+		return alterado;
+	}
+
+	/**
+	 * Marca o estado atual do estacionamento como já gravado.
+	 */
+	public void limparAlteracao() {
+		alterado = false;
+	}
+
+	/**
+	 * Registra um observador que será notificado das operações do estacionamento.
+	 * 
+	 * @param observador observador a ser registrado
+	 */
+	public void addObserver(ObserverEstacionamento observador) {
+		if (!observadores.contains(observador)) {
+			observadores.add(observador);
+		}
+	}
+
+	/**
+	 * Remove um observador previamente registrado.
+	 * 
+	 * @param observador observador a ser removido
+	 */
+	public void removeObserver(ObserverEstacionamento observador) {
+		observadores.remove(observador);
+	}
+
+	/**
+	 * Passa a arquivar os usos encerrados dos veículos do estacionamento, inclusive
+	 * dos cadastrados depois, em um arquivo de usos. Estacionamentos que
+	 * compartilham clientes devem usar o mesmo arquivo.
+	 * 
+	 * @param arquivo arquivo de usos
+	 * @throws IllegalStateException caso algum veículo já arquive seus usos em
+	 *                               outro arquivo
+	 */
+	public synchronized void arquivarUsosEm(ArquivoDeUsos arquivo) {
+		arquivoDeUsos = arquivo;
+		for (Cliente cliente : id.values()) {
+			for (Veiculo veiculo : cliente.getVeiculos()) {
+				veiculo.arquivarUsosEm(arquivo);
+			}
+		}
+	}
+
+	/**
+	 * Move para a camada fria os usos encerrados dos veículos do estacionamento
+	 * com entrada anterior ao limite. Estacionamentos que compartilham clientes
+	 * devem usar a mesma camada fria.
+	 * 
+	 * @param frio   camada fria
+	 * @param limite entrada a partir da qual os usos continuam na camada quente
+	 * @return quantidade de usos movidos
+	 * @throws IllegalStateException caso algum veículo já use outra camada fria
+	 */
+	public int esfriarHistorico(ArquivoFrio frio, LocalDateTime limite) {
+		aguardarHistorico();
+		int movidos = 0;
+		for (Cliente cliente : id.values()) {
+			for (Veiculo veiculo : cliente.getVeiculos()) {
+				movidos += veiculo.esfriarHistorico(frio, limite);
+			}
+		}
+		return movidos;
+	}
+
+	/**
+	 * Funde os blocos frios do histórico dos veículos do estacionamento.
+	 * 
+	 * @return quantidade de blocos substituídos
+	 */
+	public int fundirHistoricoFrio() {
+		aguardarHistorico();
+		int substituidos = 0;
+		for (Cliente cliente : id.values()) {
+			for (Veiculo veiculo : cliente.getVeiculos()) {
+				substituidos += veiculo.fundirHistoricoFrio();
+			}
+		}
+		return substituidos;
+	}
+
+	/**
+	 * @return arquivo em que os usos encerrados são arquivados, ou null caso
+	 *         permaneçam em memória
+	 */
+	public ArquivoDeUsos getArquivoDeUsos() {
+		return arquivoDeUsos;
+	}
+
+	/**
+	 * Substitui o mapa de clientes do estacionamento, reconstruindo o índice de
+	 * placas a partir dos veículos de cada cliente. Em uma rede, os clientes
+	 * são cadastrados na rede.
+	 * 
+	 * @param id mapa de clientes indexado pelo identificador
+	 */
+	public synchronized void setId(Map<String, Cliente> id) {
+		for (Cliente cliente : this.id.values()) {
+			cliente.removeObserver(this);
+		}
+		this.id = new ConcurrentHashMap<>(id);
+		placas.limpar();
+		for (Cliente cliente : id.values()) {
+			if (rede != null) {
+				rede.cadastrarCliente(cliente);
+			}
+			indexarVeiculos(cliente);
+			cliente.addObserver(this);
+		}
+	}
+
+	/**
+	 * Reserva espaço no cadastro e no índice de placas para novos clientes e
+	 * placas, além dos já cadastrados, evitando o redimensionamento dos mapas
+	 * durante uma importação em massa. O cadastro é copiado e o índice de placas
+	 * redimensionado uma única vez; as consultas concorrentes continuam
+	 * atendidas.
+	 * 
+	 * @param novosClientes quantidade de clientes que ainda serão cadastrados
+	 * @param novasPlacas   quantidade de placas que ainda serão cadastradas
+	 */
+	public synchronized void reservarCapacidade(int novosClientes, int novasPlacas) {
+		if (novosClientes > 0) {
+			Map<String, Cliente> novoId = new ConcurrentHashMap<>(id.size() + novosClientes);
+			novoId.putAll(id);
+			id = novoId;
+		}
+		if (novasPlacas > 0 && rede == null) {
+			placas.reservar(novasPlacas);
+		}
+	}
+
+	/**
+	 * Adiciona ao índice de placas todos os veículos de um cliente. Em uma rede,
+	 * os veículos já foram indexados e verificados pela rede.
+	 * 
+	 * @param cliente cliente cujos veículos serão indexados
+	 * @throws ExcecaoVeiculoJaCadastrado caso alguma placa já pertença a outro
+	 *                                    cliente do estacionamento
+	 */
+	private void indexarVeiculos(Cliente cliente) throws ExcecaoVeiculoJaCadastrado {
+		boolean indexar = rede == null;
+		if (indexar) {
+			for (Veiculo veiculo : cliente.getVeiculos()) {
+				verificarPlaca(cliente, veiculo.getPlaca());
+			}
+		}
+		for (Veiculo veiculo : cliente.getVeiculos()) {
+			if (indexar) {
+				placas.adicionar(veiculo, cliente);
+			}
+			if (arquivoDeUsos != null) {
+				veiculo.arquivarUsosEm(arquivoDeUsos);
+			}
+		}
+	}
+
+	/**
+	 * Restaura de uma vez o cadastro de clientes, indexando as placas de todos
+	 * os veículos em uma única passagem. Usado para carregar o estacionamento a
+	 * partir de um arquivo; os observadores não são notificados.
+	 * 
+	 * @param clientes clientes a serem cadastrados, com seus veículos
+	 * @throws ExcecaoClienteJaCadastrado caso algum cliente já esteja cadastrado
+	 * @throws ExcecaoVeiculoJaCadastrado caso alguma placa pertença a mais de um
+	 *                                    cliente
+	 */
+	public synchronized void restaurarClientes(Collection<Cliente> clientes) throws ExcecaoClienteJaCadastrado, ExcecaoVeiculoJaCadastrado {
+		for (Cliente cliente : clientes) {
+			if (id.putIfAbsent(cliente.getId(), cliente) != null) {
+				throw new ExcecaoClienteJaCadastrado("Cliente já cadastrado no sistema!");
+			}
+			if (rede != null) {
+				rede.cadastrarCliente(cliente);
+			}
+			// registrado antes de indexar, para que um veículo adicionado durante a
+			// indexação seja notificado
+			cliente.addObserver(this);
+			indexarVeiculos(cliente);
+		}
+	}
+
+	/**
+	 * Reserva a placa de um veículo adicionado diretamente a um cliente deste
+	 * estacionamento. O veículo só é indexado quando a adição é confirmada.
+	 * 
+	 * @param cliente cliente dono do veículo
+	 * @param veiculo veículo adicionado
+	 * @throws ExcecaoVeiculoJaCadastrado caso a placa já pertença a outro cliente
+	 */
+	@Override
+	public synchronized void veiculoAdicionado(Cliente cliente, Veiculo veiculo) throws ExcecaoVeiculoJaCadastrado {
+		verificarPlaca(cliente, veiculo.getPlaca());
+		placasReservadas.put(veiculo.getPlaca(), cliente);
+	}
+
+	/**
+	 * Indexa um veículo cuja adição foi aceita por todos os observadores do
+	 * cliente, notificando os observadores do estacionamento antes que a placa
+	 * possa ser usada nas cancelas. Em uma rede, a placa já está no índice da
+	 * rede e só deixa de ser ocultada quando a reserva é liberada.
+	 */
+	@Override
+	public synchronized void veiculoConfirmado(Cliente cliente, Veiculo veiculo) {
+		for (ObserverEstacionamento observador : observadores) {
+			observador.veiculoAdicionado(this, cliente, veiculo);
+		}
+		if (rede == null) {
+			placas.adicionar(veiculo, cliente);
+		}
+		placasReservadas.remove(veiculo.getPlaca(), cliente);
+		if (arquivoDeUsos != null) {
+			veiculo.arquivarUsosEm(arquivoDeUsos);
+		}
+	}
+
+	/**
+	 * Libera a placa reservada para um veículo recusado, retirando-o do índice
+	 * caso já tenha sido indexado com o cadastro do cliente.
+	 */
+	@Override
+	public synchronized void veiculoCancelado(Cliente cliente, Veiculo veiculo) {
+		placasReservadas.remove(veiculo.getPlaca(), cliente);
+		placas.remover(veiculo);
+	}
+
+	private void verificarPlaca(Cliente cliente, String placa) throws ExcecaoVeiculoJaCadastrado {
+		Cliente dono = placas.dono(placa);
+		if (dono == null) {
+			dono = placasReservadas.get(placa);
+		}
+		if (dono != null && dono != cliente) {
+			throw new ExcecaoVeiculoJaCadastrado("A placa " + placa + " já pertence a outro cliente");
+		}
+	}
+
+	/**
+	 * Busca um veículo do estacionamento pela placa.
+	 * 
+	 * @param placa placa do veículo
+	 * @return o veículo encontrado ou null caso a placa não esteja cadastrada
+	 */
+	public Veiculo buscarVeiculo(String placa) {
+		RedeDeEstacionamentos rede = this.rede;
+		if (rede == null) {
+			Veiculo veiculo = placas.veiculo(placa);
+			// o índice é esvaziado depois que o estacionamento entra na rede
+			if (veiculo != null || (rede = this.rede) == null) {
+				return veiculo;
+			}
+		}
+		return buscarDonoNaRede(rede, placa) != null ? rede.buscarVeiculo(placa) : null;
+	}
+
+	/**
+	 * Busca o cliente dono de um veículo a partir da placa.
+	 * 
+	 * @param placa placa do veículo
+	 * @return o cliente dono do veículo ou null caso a placa não esteja cadastrada
+	 */
+	public Cliente buscarDono(String placa) {
+		RedeDeEstacionamentos rede = this.rede;
+		if (rede == null) {
+			Cliente dono = placas.dono(placa);
+			if (dono != null || (rede = this.rede) == null) {
+				return dono;
+			}
+		}
+		return buscarDonoNaRede(rede, placa);
+	}
+
+	/**
+	 * Busca no índice da rede o dono de uma placa, caso seja um cliente
+	 * associado a este estacionamento e a adição do veículo já tenha sido
+	 * notificada aos observadores do estacionamento.
+	 */
+	private Cliente buscarDonoNaRede(RedeDeEstacionamentos rede, String placa) {
+		Cliente dono = rede.buscarDono(placa);
+		if (dono == null || id.get(dono.getId()) != dono || placasReservadas.containsKey(placa)) {
+			return null;
+		}
+		return dono;
 	}
 
 	/**
 	 * Método responsável por gerar uma quantidade determinada de novas vagas ao estacionamento
 	 * @param numeroVagas um inteiro que representa a quantidade de vagas que serão criadas e adicionadas a este estacionamento
 	 */
-	public void gerarVagas(int numeroVagas) {
-		vagas.clear();
+	public synchronized void gerarVagas(int numeroVagas) {
+		List<Vaga> novasVagas = new ArrayList<>(numeroVagas);
+		Deque<Vaga> novasVagasLivres = new ConcurrentLinkedDeque<>();
 
 		for (int i = 1; i <= numeroVagas; i++) {
-			vagas.add(new Vaga('i', i));
+			Vaga vaga = new Vaga('i', i, this);
+			novasVagas.add(vaga);
+			novasVagasLivres.addLast(vaga);
+		}
+
+		vagas = Collections.unmodifiableList(novasVagas);
+		vagasLivres = novasVagasLivres;
+		alterado = true;
+		for (ObserverEstacionamento observador : observadores) {
+			observador.vagasGeradas(this);
+		}
+	}
+
+	/**
+	 * Devolve uma vaga à lista de vagas livres. Vagas que não pertencem mais ao
+	 * estacionamento (descartadas por uma nova chamada a gerarVagas) são ignoradas.
+	 * 
+	 * @param vaga vaga liberada
+	 */
+	private void liberarVaga(Vaga vaga) {
+		List<Vaga> vagasAtuais = vagas;
+		int indice = vaga.getNumero() - 1;
+		if (indice >= 0 && indice < vagasAtuais.size() && vagasAtuais.get(indice) == vaga) {
+			vagasLivres.addFirst(vaga);
 		}
 	}
 
+	/**
+	 * @return lista imutável com as vagas do estacionamento, em ordem de número
+	 */
+	public List<Vaga> getVagas() {
+		return vagas;
+	}
+
+	/**
+	 * Busca uma vaga do estacionamento pelo número.
+	 * 
+	 * @param numero número da vaga, a partir de 1
+	 * @return a vaga ou null caso o número não pertença ao estacionamento
+	 */
+	public Vaga getVaga(int numero) {
+		List<Vaga> vagasAtuais = vagas;
+		if (numero < 1 || numero > vagasAtuais.size()) {
+			return null;
+		}
+		return vagasAtuais.get(numero - 1);
+	}
+
+	/**
+	 * Busca a vaga de um uso do histórico pelo número. Números acima da
+	 * quantidade atual de vagas pertencem a vagas descartadas por gerarVagas;
+	 * para eles é devolvida uma vaga deste estacionamento que nunca fica livre.
+	 * 
+	 * @param numero número da vaga, a partir de 1
+	 * @return a vaga ou null caso o número seja menor que 1
+	 */
+	public Vaga getVagaDoHistorico(int numero) {
+		Vaga vaga = getVaga(numero);
+		if (vaga != null || numero < 1) {
+			return vaga;
+		}
+		return vagasDescartadas.computeIfAbsent(numero, n -> new Vaga('i', n, this));
+	}
+
+	/**
+	 * Verifica se uma vaga é deste estacionamento. O histórico dos clientes de
+	 * uma rede inclui os usos nas vagas dos outros estacionamentos da rede, e o
+	 * de cada cliente inclui os usos nas vagas descartadas por gerarVagas.
+	 * 
+	 * @param vaga vaga de um uso
+	 * @return true caso a vaga tenha sido criada por este estacionamento
+	 */
+	public boolean possuiVaga(Vaga vaga) {
+		return vaga.getEstacionamento() == this;
+	}
+
+	/**
+	 * Retorna a quantidade de vagas livres no estacionamento.
+	 * 
+	 * @return quantidade de vagas livres
+	 */
+	public int vagasDisponiveis() {
+		return vagasLivres.size();
+	}
+
+	/**
+	 * Passa a registrar as sessões deste estacionamento em uma rede. Os clientes
+	 * do estacionamento são cadastrados na rede, que passa a indexar as suas
+	 * placas; o índice de placas do estacionamento é esvaziado.
+	 * 
+	 * @param rede rede do estacionamento
+	 * @return false caso o estacionamento já pertença à rede
+	 * @throws IllegalStateException      caso o estacionamento pertença a outra
+	 *                                    rede
+	 * @throws ExcecaoClienteJaCadastrado caso algum cliente tenha o
+	 *                                    identificador de outro cliente da rede
+	 * @throws ExcecaoVeiculoJaCadastrado caso alguma placa pertença a outro
+	 *                                    cliente da rede
+	 */
+	synchronized boolean entrarNaRede(RedeDeEstacionamentos rede) {
+		if (this.rede == rede) {
+			return false;
+		}
+		if (this.rede != null) {
+			throw new IllegalStateException("O estacionamento " + nome + " já pertence a outra rede");
+		}
+		for (Cliente cliente : id.values()) {
+			rede.cadastrarCliente(cliente);
+		}
+		// as buscas passam para a rede antes que o índice seja esvaziado
+		this.rede = rede;
+		placas.limpar();
+		return true;
+	}
+
+	/**
+	 * @return rede a que o estacionamento pertence, ou null
+	 */
+	public RedeDeEstacionamentos getRede() {
+		return rede;
+	}
+
+	/**
+	 * @return placas dos veículos estacionados neste estacionamento
+	 */
+	Set<String> placasEstacionadas() {
+		return Collections.unmodifiableSet(sessoesAtivas.keySet());
+	}
+
+	private void encerrarSessaoNaRede(String placa) {
+		RedeDeEstacionamentos rede = this.rede;
+		if (rede != null) {
+			rede.encerrarSessao(placa, this);
+		}
+	}
+
+	/**
+	 * Retorna o uso de vaga em aberto de um veículo neste estacionamento.
+	 * 
+	 * @param placa placa do veículo
+	 * @return o uso de vaga em aberto ou null caso o veículo não esteja estacionado
+	 *         aqui
+	 */
+	public UsoDeVaga sessaoAtiva(String placa) {
+		return sessoesAtivas.get(placa);
+	}
+
 	/**
 	 * Função para adicionar veiculo ao cliente
 	 * 
 	 * @param placa
 	 * @param idCli
 	 * @throws ExcecaoVeiculoJaCadastrado
+	 * @throws ExcecaoClienteNaoCadastrado caso o cliente não esteja cadastrado
 	 */
-	public void addVeiculo(String placa, String idCli, TipoUso tipoUso, UsoDeVagaFactory usoDeVagaFactory, TipoTurno tipoTurno) throws ExcecaoVeiculoJaCadastrado {
+	public void addVeiculo(String placa, String idCli, TipoUso tipoUso, UsoDeVagaFactory usoDeVagaFactory, TipoTurno tipoTurno) throws ExcecaoVeiculoJaCadastrado, ExcecaoClienteNaoCadastrado {
+        // sem o monitor do estacionamento: o cliente notifica os estacionamentos
+        // em que está cadastrado, que obtêm os próprios monitores
         Cliente clienteEncontrado = id.get(idCli);
 
-        if (clienteEncontrado != null && clienteEncontrado.possuiVeiculo(placa) != null) {
+        if (clienteEncontrado == null) {
+            throw new ExcecaoClienteNaoCadastrado("Nao ha clientes cadastrados com o id informado");
+        } else if (clienteEncontrado.possuiVeiculo(placa) != null) {
             throw new ExcecaoVeiculoJaCadastrado("Veículo já cadastrado para este cliente");
+        } else if (placaCadastrada(placa)) {
+            throw new ExcecaoVeiculoJaCadastrado("A placa " + placa + " já pertence a outro cliente");
         } else {
+            // o índice de placas é atualizado pela notificação do cliente
             clienteEncontrado.addVeiculo(new Veiculo(placa, tipoUso, usoDeVagaFactory));
         }
     }
 
+	private boolean placaCadastrada(String placa) {
+		RedeDeEstacionamentos rede = this.rede;
+		return rede != null ? rede.buscarVeiculo(placa) != null : placas.veiculo(placa) != null;
+	}
+
 	/**
 	 * Função para adicionar cliente
 	 * 
 	 * @param cliente
 	 * @throws ExcecaoClienteJaCadastrado
 	 */
-	public void addCliente(Cliente cliente) throws ExcecaoClienteJaCadastrado {
+	public synchronized void addCliente(Cliente cliente) throws ExcecaoClienteJaCadastrado {
 		if (id.containsKey(cliente.getId())) {
 			throw new ExcecaoClienteJaCadastrado("Cliente já cadastrado no sistema!");
 		} else {
+			if (rede != null) {
+				rede.cadastrarCliente(cliente);
+			}
+			// registrado antes de indexar, para que um veículo adicionado durante a
+			// indexação seja notificado
+			cliente.addObserver(this);
+			try {
+				indexarVeiculos(cliente);
+			} catch (RuntimeException e) {
+				cliente.removeObserver(this);
+				throw e;
+			}
 			id.put(cliente.getId(), cliente);
+			cliente.marcarAlteracao();
+			for (ObserverEstacionamento observador : observadores) {
+				observador.clienteAdicionado(this, cliente);
+			}
 		}
 	}
 
 	/**
-	 * Função que calcula o valor medio total do estacionamento
+	 * Função que calcula o valor medio total do estacionamento. Considera apenas
+	 * os usos feitos nas vagas deste estacionamento, lidos sem recriar os usos
+	 * encerrados.
 	 * 
 	 * @return retorna um valor do tipo do double com a divisao entre o arrecadado
-	 *         total sobre o total de usos no sistema
+	 *         total sobre o total de usos no estacionamento
 	 */
 	public double valorMedioPorUso() {
-		double resposta = 0.0;
-		int totalUsos = 0;
-
-		for (Map.Entry<String, Cliente> c : id.entrySet()) {
-			if (c != null) {
-				resposta += c.getValue().arrecadadoTotal();
-				totalUsos += c.getValue().totalDeUsos();
+		UsosLocais locais = new UsosLocais();
+		for (Cliente cliente : id.values()) {
+			for (Veiculo veiculo : cliente.getVeiculos()) {
+				veiculo.percorrerUsos(locais);
 			}
 		}
 
-		if (totalUsos > 0) {
-			resposta /= totalUsos;
+		double resposta = locais.centavos / 100.0;
+		if (locais.usos > 0) {
+			resposta /= locais.usos;
 		}
 
 		return resposta;
 	}
 
 	/**
-	 * Função para calcular o top de 5 clientes do estacionamento.
+	 * Função para calcular o top de 5 clientes do estacionamento no ano corrente.
 	 * 
 	 * @param mes insere o mês para calcular o top5
 	 * @return o retorno é uma string com o nome dos 5 clientes que mais gastaram no mês
 	 */
 	public String top5Clientes(int mes) {
-		Cliente[] topClientes = new Cliente[5];
-		int ano = LocalDateTime.now().getYear();
-
-		for (Map.Entry<String, Cliente> c : id.entrySet()) {
-			if (c != null) {
-				double valorDoCliente = c.getValue().arrecadadoNoMes(mes, ano);
-
-				for (int i = 0; i < 5; i++) {
-					if (topClientes[i] == null || valorDoCliente > topClientes[i].arrecadadoNoMes(mes, ano)) {
-						for (int j = 4; j > i; j--) {
-							topClientes[j] = topClientes[j - 1];
-						}
-						topClientes[i] = c.getValue();
-						break;
-					}
-				}
-			}
-		}
+		List<Cliente> topClientes = topClientes(mes, LocalDateTime.now().getYear(), 5);
 
+		String[] nomesTopClientes = new String[5];
 		for (int i = 0; i < 5; i++) {
-			if (topClientes[i] == null)
-				topClientes[i] = new SemCliente();
+			Cliente cliente = i < topClientes.size() ? topClientes.get(i) : new SemCliente();
+			nomesTopClientes[i] = cliente.getNome();
 		}
+		return Arrays.toString(nomesTopClientes);
+	}
 
-		// Agora topClientes contém os 5 principais clientes
-		String[] nomesTopClientes = new String[5];
-		for (int i = 0; i < 5; i++) {
-			if (topClientes[i] != null) {
-				nomesTopClientes[i] = topClientes[i].getNome();
+	/**
+	 * Retorna os clientes que mais gastaram no estacionamento em um mês, a partir
+	 * dos totais por cliente mantidos no livro-caixa.
+	 * 
+	 * @param mes mês entre 1 e 12
+	 * @param ano ano
+	 * @param n   quantidade máxima de clientes
+	 * @return até n clientes com usos pagos no mês, do maior para o menor valor
+	 */
+	public List<Cliente> topClientes(int mes, int ano, int n) {
+		aguardarHistorico();
+		List<Cliente> topClientes = new ArrayList<>();
+		for (String idCliente : livroCaixa.maioresClientes(mes, ano, n)) {
+			Cliente cliente = id.get(idCliente);
+			if (cliente != null) {
+				topClientes.add(cliente);
 			}
 		}
-		return Arrays.toString(nomesTopClientes);
+		return topClientes;
 	}
 
 	/**
 	 * Função para estacionar o veículo no estacionamento
 	 * 
-	 * @param placa placa do veículo do cliente
+	 * @param placa       placa do veículo do cliente
+	 * @param tipoServico serviço contratado na entrada, ou null
 	 */
 	public void estacionar(String placa, TipoServico tipoServico) throws ExcecaoVeiculoNaoCadastrado, ExcecaoNaoPossuiVagasDisponiveis, ExcecaoVeiculoJaEstacionado {
-		Veiculo veiculo = null;
-		boolean vagaDisponivel = false;
-
-		for (Map.Entry<String, Cliente> cliente : id.entrySet()) {
-			veiculo = cliente.getValue().possuiVeiculo(placa);
-			if (veiculo != null) {
-				break;
-			}
+		Veiculo veiculo = buscarVeiculo(placa);
 
+		if (veiculo == null) {
+			throw new ExcecaoVeiculoNaoCadastrado("O veiculo com a placa: " + placa + " não esta cadastrado no sistema");
 		}
 
-		if (veiculo != null) {
-
-			List<UsoDeVaga> usoDeVagas = veiculo.getListUsoDeVaga();
-
-			for (Vaga vaga : vagas) {
+		synchronized (veiculo) {
+			if (sessoesAtivas.containsKey(placa) || veiculo.estaEstacionado()) {
+				throw new ExcecaoVeiculoJaEstacionado();
+			}
 
-				for(UsoDeVaga usoDeVaga : usoDeVagas){
-					if(usoDeVaga.getVaga().equals(vaga) && !vaga.disponivel()){
-						throw new ExcecaoVeiculoJaEstacionado();
-					}
-				}
+			Deque<Vaga> livres = vagasLivres;
+			Vaga vaga = livres.pollFirst();
+			if (vaga == null) {
+				throw new ExcecaoNaoPossuiVagasDisponiveis("O estacionamento não possui vagas disponiveis");
+			}
+			RedeDeEstacionamentos rede = this.rede;
+			if (rede != null && !rede.abrirSessao(placa, this)) {
+				livres.addFirst(vaga);
+				throw new ExcecaoVeiculoJaEstacionado("O veículo " + placa + " está em outro estacionamento da rede");
+			}
 
-				if (vaga.disponivel()) {
-					veiculo.estacionar(vaga);
-					vagaDisponivel = true;
-					break;
+			UsoDeVaga uso;
+			try {
+				uso = veiculo.estacionar(vaga);
+			} catch (RuntimeException e) {
+				livres.addFirst(vaga);
+				if (rede != null) {
+					rede.encerrarSessao(placa, this);
 				}
+				throw e;
+			}
+			uso.setTipoServico(tipoServico);
+			sessoesAtivas.put(placa, uso);
+			alterado = true;
+			for (ObserverEstacionamento observador : observadores) {
+				observador.veiculoEstacionado(this, veiculo, uso);
 			}
-		}else{
-			throw new ExcecaoVeiculoNaoCadastrado("O veiculo com a placa: " + placa + " não esta cadastrado no sistema");
-		}
-
-		if(!vagaDisponivel){
-			throw new ExcecaoNaoPossuiVagasDisponiveis("O estacionamento não possui vagas disponiveis");
 		}
 	}
 
 	/**
-	 * Método para sair do estacionamento
+	 * Método para sair do estacionamento. O pagamento é lançado no livro-caixa do
+	 * estacionamento.
 	 * 
 	 * @param placa placa do cliente em específico
-	 * @return retorna o valor pago pelo cliente
+	 * @return retorna o valor pago pelo cliente, em reais
 	 */
 	public double sair(String placa) {
+		Veiculo veiculo = buscarVeiculo(placa);
 
-		for (Map.Entry<String, Cliente> cliente : id.entrySet()) {
-			Veiculo v = cliente.getValue().possuiVeiculo(placa);
+		if (veiculo == null) {
+			return 0.0; // Retorna 0.0 se o veículo não for encontrado
+		}
 
-			if (v != null) {
-				return v.sair();
+		UsoDeVaga sessao;
+		long centavos;
+		synchronized (veiculo) {
+			sessao = sessoesAtivas.get(placa);
+			if (sessao == null) {
+				return 0.0; // Retorna 0.0 se o veículo não estiver estacionado aqui
+			}
+			centavos = veiculo.sair();
+			sessoesAtivas.remove(placa);
+			encerrarSessaoNaRede(placa);
+			alterado = true;
+			Cliente dono = buscarDono(placa);
+			lancarPagamento(veiculo, sessao.getEntrada(), veiculo.getTipoUso(),
+					dono != null ? dono.getId() : null, centavos);
+			for (ObserverEstacionamento observador : observadores) {
+				observador.veiculoSaiu(this, veiculo, sessao);
 			}
 		}
-
-		return 0.0; // Retorna 0.0 se o veículo não for encontrado
+		liberarVaga(sessao.getVaga());
+		return centavos / 100.0;
 	}
 
 	/**
-	 * Função para calcular o total arrecadado por todos os clientes do
-	 * estacionamento
-	 * * @return retorna o valor em double gasto em todo o estacionamento
+	 * Contrata um serviço para o uso de vaga em aberto de um veículo neste
+	 * estacionamento.
+	 * 
+	 * @param placa   placa do veículo
+	 * @param servico serviço contratado
+	 * @return valor do serviço
+	 * @throws ExcecaoVeiculoNaoCadastrado  caso a placa não esteja cadastrada
+	 * @throws ExcecaoVeiculoNaoEstacionado caso o veículo não esteja estacionado
+	 *                                      aqui
+	 * @throws ExcecaoServicoJaContratado   caso o uso já possua um serviço
 	 */
-	public double totalArrecadado() {
-		double total = 0.0;
-		int ano = LocalDateTime.now().getYear();
+	public double contratarServico(String placa, TipoServico servico) throws ExcecaoVeiculoNaoCadastrado, ExcecaoVeiculoNaoEstacionado, ExcecaoServicoJaContratado {
+		Veiculo veiculo = buscarVeiculo(placa);
+
+		if (veiculo == null) {
+			throw new ExcecaoVeiculoNaoCadastrado("O veiculo com a placa: " + placa + " não esta cadastrado no sistema");
+		}
 
-		for (int i = 2000; i <= ano; i++) {
-			for (int j = 1; j <= 12;  j++) {
-				total += arrecadacaoNoMes(j, i);
+		synchronized (veiculo) {
+			UsoDeVaga sessao = sessoesAtivas.get(placa);
+			if (sessao == null) {
+				throw new ExcecaoVeiculoNaoEstacionado();
+			}
+			if (sessao.getTipoServico() != null) {
+				throw new ExcecaoServicoJaContratado();
+			}
+			sessao.setTipoServico(servico);
+			alterado = true;
+			for (ObserverEstacionamento observador : observadores) {
+				observador.servicoContratado(this, veiculo, sessao);
 			}
 		}
+		return servico.getValor();
+	}
 
-		// for (Map.Entry<String, Cliente> cliente : id.entrySet()) {
-		// 	if (cliente.getValue().getTipoUso() != TipoUso.MENSALISTA) {
-		// 		total = total + cliente.getValue().arrecadadoTotal();
-		// 	} else {
-				
-		// 	}
-		// }
-		return total;
+	/**
+	 * Importa para o histórico de um veículo um uso de vaga já encerrado em uma
+	 * vaga deste estacionamento, lançando o pagamento no livro-caixa. A vaga não
+	 * é ocupada e os observadores são notificados, de forma que a importação é
+	 * persistida como as demais operações.
+	 * 
+	 * @param placa placa do veículo
+	 * @param uso   uso de vaga encerrado, com a saída e o valor pago
+	 * @throws ExcecaoVeiculoNaoCadastrado      caso a placa não esteja cadastrada
+	 * @throws ExcecaoNaoPossuiVagasDisponiveis caso a vaga do uso não pertença ao
+	 *                                          estacionamento
+	 * @throws IllegalArgumentException         caso o uso não esteja encerrado
+	 */
+	public void importarUso(String placa, UsoDeVaga uso) throws ExcecaoVeiculoNaoCadastrado, ExcecaoNaoPossuiVagasDisponiveis {
+		Veiculo veiculo = buscarVeiculo(placa);
+
+		if (veiculo == null) {
+			throw new ExcecaoVeiculoNaoCadastrado("O veiculo com a placa: " + placa + " não esta cadastrado no sistema");
+		}
+		if (uso.getSaida() == null) {
+			throw new IllegalArgumentException("Somente usos encerrados podem ser importados");
+		}
+		Vaga vaga = uso.getVaga();
+		if (!possuiVaga(vaga)) {
+			throw new ExcecaoNaoPossuiVagasDisponiveis("A vaga " + vaga.getId() + " não pertence ao estacionamento " + nome);
+		}
+
+		synchronized (veiculo) {
+			veiculo.registrarUsoDeVaga(uso);
+			alterado = true;
+			Cliente dono = buscarDono(placa);
+			lancarPagamento(veiculo, uso.getEntrada(), veiculo.getTipoUso(),
+					dono != null ? dono.getId() : null, uso.getCentavosPagos());
+			for (ObserverEstacionamento observador : observadores) {
+				observador.usoImportado(this, veiculo, uso);
+			}
+		}
 	}
 
 	/**
-	 * Função para calcular o total arrecadado no mês
+	 * Restaura um uso de vaga já registrado no histórico do veículo. Um uso
+	 * encerrado é lançado no livro-caixa; um uso em aberto volta a ocupar a sua
+	 * vaga como sessão ativa.
 	 * 
-	 * @param mes parâmetro do mês em específico
-	 * @return retorna um valor double total arrecadado no mês
+	 * @param placa placa do veículo
+	 * @param uso   uso de vaga restaurado
+	 * @throws ExcecaoVeiculoNaoCadastrado      caso a placa não esteja cadastrada
+	 * @throws ExcecaoVeiculoJaEstacionado      caso o veículo já possua sessão
+	 *                                          ativa no estacionamento
+	 * @throws ExcecaoNaoPossuiVagasDisponiveis caso a vaga do uso não pertença ao
+	 *                                          estacionamento ou esteja ocupada
 	 */
-	public double arrecadacaoNoMes(int mes, int ano) {
-		double total = 0.0;
-		int mensalistas = 0;
-		int turnistas = 0;
+	public void restaurarUso(String placa, UsoDeVaga uso) throws ExcecaoVeiculoNaoCadastrado, ExcecaoVeiculoJaEstacionado, ExcecaoNaoPossuiVagasDisponiveis {
+		restaurarUso(placa, uso, null);
+	}
 
-		// Horista e Turno
-		for (Map.Entry<String, Cliente> cliente : id.entrySet()) {
+	/**
+	 * Restaura um uso de vaga já registrado no histórico do veículo, lançando um
+	 * uso encerrado no livro-caixa com o tipo de uso informado. Usado quando o
+	 * histórico é carregado depois que o tipo de uso do veículo pode ter sido
+	 * alterado.
+	 * 
+	 * @param placa   placa do veículo
+	 * @param uso     uso de vaga restaurado
+	 * @param tipoUso tipo de uso do lançamento, ou null para o tipo atual do
+	 *                veículo
+	 * @see #restaurarUso(String, UsoDeVaga)
+	 */
+	public void restaurarUso(String placa, UsoDeVaga uso, TipoUso tipoUso) throws ExcecaoVeiculoNaoCadastrado, ExcecaoVeiculoJaEstacionado, ExcecaoNaoPossuiVagasDisponiveis {
+		Veiculo veiculo = buscarVeiculo(placa);
 
-			TipoUso tipoUso = cliente.getValue().getTipoUso();
+		if (veiculo == null) {
+			throw new ExcecaoVeiculoNaoCadastrado("O veiculo com a placa: " + placa + " não esta cadastrado no sistema");
+		}
 
-			switch (tipoUso) {
-				case HORISTA:
-					total = total + cliente.getValue().arrecadadoNoMes(mes, ano);	
-					break;
-				case MENSALISTA:
-					if(cliente.getValue().arrecadadoNoMes(mes, ano) != 0)
-						mensalistas++;
-					break;
-				case TURNO:
-					if(cliente.getValue().arrecadadoNoMes(mes, ano) != 0)
-						turnistas++;
-					total = total + ((Cliente) cliente).arrecadadoNoMesForaDoTurno(mes, ano);
-					break;
+		if (uso.getSaida() != null) {
+			Cliente dono = buscarDono(placa);
+			synchronized (veiculo) {
+				lancarPagamento(veiculo, uso.getEntrada(), tipoUso != null ? tipoUso : veiculo.getTipoUso(),
+						dono != null ? dono.getId() : null, uso.getCentavosPagos());
 			}
+			return;
+		}
 
+		synchronized (veiculo) {
+			if (sessoesAtivas.containsKey(placa)) {
+				throw new ExcecaoVeiculoJaEstacionado();
+			}
+			RedeDeEstacionamentos rede = this.rede;
+			if (rede != null && !rede.abrirSessao(placa, this)) {
+				throw new ExcecaoVeiculoJaEstacionado("O veículo " + placa + " está em outro estacionamento da rede");
+			}
+			Vaga vaga = uso.getVaga();
+			if (getVaga(vaga.getNumero()) != vaga || !vaga.estacionar()) {
+				encerrarSessaoNaRede(placa);
+				throw new ExcecaoNaoPossuiVagasDisponiveis("A vaga " + vaga.getId() + " não está disponível");
+			}
+			vagasLivres.remove(vaga);
+			sessoesAtivas.put(placa, uso);
+			alterado = true;
 		}
-		while ( mensalistas > 0) {
-			total = total + 500;
+	}
+
+	/**
+	 * Encerra a sessão ativa de um veículo com a data de saída e o valor já
+	 * conhecidos, lançando o pagamento no livro-caixa. Usado para reproduzir uma
+	 * saída registrada anteriormente; os observadores não são notificados.
+	 * 
+	 * @param placa    placa do veículo
+	 * @param saida    data e hora da saída
+	 * @param centavos valor pago pelo uso, em centavos
+	 * @throws ExcecaoVeiculoNaoCadastrado  caso a placa não esteja cadastrada
+	 * @throws ExcecaoVeiculoNaoEstacionado caso o veículo não esteja estacionado
+	 *                                      aqui
+	 */
+	public void restaurarSaida(String placa, LocalDateTime saida, long centavos) throws ExcecaoVeiculoNaoCadastrado, ExcecaoVeiculoNaoEstacionado {
+		Veiculo veiculo = buscarVeiculo(placa);
+
+		if (veiculo == null) {
+			throw new ExcecaoVeiculoNaoCadastrado("O veiculo com a placa: " + placa + " não esta cadastrado no sistema");
 		}
 
-		while ( turnistas > 0) {
-			total = total + 200;
+		UsoDeVaga sessao;
+		synchronized (veiculo) {
+			sessao = sessoesAtivas.get(placa);
+			if (sessao == null) {
+				throw new ExcecaoVeiculoNaoEstacionado();
+			}
+			veiculo.sair(saida, centavos);
+			sessoesAtivas.remove(placa);
+			encerrarSessaoNaRede(placa);
+			alterado = true;
+			Cliente dono = buscarDono(placa);
+			lancarPagamento(veiculo, sessao.getEntrada(), veiculo.getTipoUso(),
+					dono != null ? dono.getId() : null, centavos);
 		}
+		liberarVaga(sessao.getVaga());
+	}
+
+	/**
+	 * Função para calcular o total arrecadado por todos os clientes do
+	 * estacionamento, somando os meses registrados no livro-caixa
+	 * * @return retorna o valor em centavos gasto em todo o estacionamento
+	 */
+	public long totalArrecadadoEmCentavos() {
+		aguardarHistorico();
+		return livroCaixa.totalArrecadadoEmCentavos();
+	}
 
-		return total;
+	/**
+	 * @see #totalArrecadadoEmCentavos()
+	 * @return retorna o valor em reais gasto em todo o estacionamento
+	 */
+	public double totalArrecadado() {
+		return totalArrecadadoEmCentavos() / 100.0;
+	}
+
+	/**
+	 * Função para calcular o total arrecadado no mês: pagamentos dos horistas,
+	 * pagamentos de turno mais a taxa de cada turnista que usou o estacionamento e
+	 * a mensalidade de cada mensalista que usou o estacionamento no mês.
+	 * 
+	 * @param mes parâmetro do mês em específico
+	 * @param ano parâmetro do ano em específico
+	 * @return retorna o total arrecadado no mês, em centavos
+	 */
+	public long arrecadacaoNoMesEmCentavos(int mes, int ano) {
+		aguardarHistorico();
+		return livroCaixa.arrecadacaoNoMesEmCentavos(mes, ano);
+	}
+
+	/**
+	 * @see #arrecadacaoNoMesEmCentavos(int, int)
+	 * @return retorna um valor double total arrecadado no mês, em reais
+	 */
+	public double arrecadacaoNoMes(int mes, int ano) {
+		return arrecadacaoNoMesEmCentavos(mes, ano) / 100.0;
 	}
 
 	public String getNome() {
@@ -305,8 +1097,8 @@ public class Estacionamento {
 	 * Mostrar disponibilidades de vagas
 	 */
 	public void mostrarVagas() {
-		for (Vaga v : vagas) {
-			System.out.println("Vaga " + vagas.indexOf(v) + " - status: " + v.disponivel());
+		for (int i = 0; i < vagas.size(); i++) {
+			System.out.println("Vaga " + i + " - status: " + vagas.get(i).disponivel());
 		}
 	}
 
@@ -341,18 +1133,18 @@ public class Estacionamento {
 	 */
 	public double arrecadacaoClientesHoristas() throws ExcecaoNenhumClienteCadastrado {
 		Map<String, Cliente> clientes = this.getId();
-		double totalArrecadado = 0.0;
+		long totalArrecadado = 0;
 
 		totalArrecadado = clientes.values().stream()
 				.filter(c -> c.getTipoUso().equals(TipoUso.HORISTA))
-				.mapToDouble(Cliente::arrecadadoTotal)
+				.mapToLong(Cliente::arrecadadoTotalEmCentavos)
 				.sum();
 
 		if (clientes.size() < 1) {
 			throw new ExcecaoNenhumClienteCadastrado();
 		}
 
-		return totalArrecadado / clientes.size();
+		return totalArrecadado / 100.0 / clientes.size();
 	}
 
 	/**
@@ -361,39 +1153,38 @@ public class Estacionamento {
 	 * @param veiculo veículo a ser pesquisado seu relatório
 	 * @return relatório do veiculo inserido
 	 */
-
-	//! IMPLEMENTAR ORDENACAO
 	public  String relatorioVeiculo(String placa, int metodoOrdenar) throws ExcecaoOpicaoInvalida{
+		StringBuilder relatorio = new StringBuilder();
+		try {
+			relatorioVeiculo(placa, metodoOrdenar, relatorio);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return relatorio.toString();
+	}
 
-        
-
-		//!IMPLEMENTAR ORDENACAO
-		//! 1 - Ordernar por Data crescente;
-		//! 2 - Ordernar por Valor decrescente;
-
-        Veiculo veiculo = null;
-
-        for (Cliente cliente : id.values()) {
-            veiculo = cliente.possuiVeiculo(placa);
-            if (veiculo != null) {
-                break;
-            }
-        }
+	/**
+	 * Escreve o relatório de um veículo em uma saída, uso a uso.
+	 * 
+	 * @param placa         placa do veículo
+	 * @param metodoOrdenar 1 para ordem crescente de data, 2 para ordem
+	 *                      decrescente de valor
+	 * @param saida         destino do relatório
+	 * @throws ExcecaoOpicaoInvalida caso o método de ordenação seja inválido
+	 * @throws IOException           caso a escrita na saída falhe
+	 */
+	public void relatorioVeiculo(String placa, int metodoOrdenar, Appendable saida) throws ExcecaoOpicaoInvalida, IOException {
+        Veiculo veiculo = buscarVeiculo(placa);
 
         if (veiculo == null) {
             throw new ExcecaoVeiculoNaoCadastrado("A placa informada não pertence a nenhum veículo em nosso sistema.");
         }
 
-        Comparator<UsoDeVaga> comparator;
-        if (metodoOrdenar == 1) {
-            comparator = compData; // Ordenação por data crescente
-        } else if (metodoOrdenar == 2) {
-            comparator = compValor; // Ordenação por valor decrescente
-        } else {
+        if (metodoOrdenar != 1 && metodoOrdenar != 2) {
             throw new ExcecaoOpicaoInvalida("A opção digitada é inválida.");
         }
 
-        return veiculo.relatorio(comparator);
+        veiculo.relatorio(metodoOrdenar == 2, saida); // data crescente ou valor decrescente
     }
 	
 	/**
@@ -405,14 +1196,34 @@ public class Estacionamento {
  	* uma mensagem é exibida indicando que o estacionamento está vazio.
  	*/
 	 public void gerarRelatoriosDeTodosVeiculos() throws ExcecaoOpicaoInvalida {
+		PrintWriter saida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		try {
+			gerarRelatoriosDeTodosVeiculos(saida);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			saida.flush();
+		}
+    }
+
+	/**
+	 * Escreve em uma saída os relatórios de todos os veículos do estacionamento,
+	 * um veículo por vez, sem montar o relatório completo em memória. Para gravar
+	 * em arquivo, use uma saída com buffer, como um {@link BufferedWriter}.
+	 * 
+	 * @param saida destino dos relatórios
+	 * @throws IOException caso a escrita na saída falhe
+	 */
+	public void gerarRelatoriosDeTodosVeiculos(Appendable saida) throws IOException {
         if (id.isEmpty()) {
-            System.out.println("Não há clientes ou veículos no estacionamento.");
+            saida.append("Não há clientes ou veículos no estacionamento.").append(System.lineSeparator());
             return;
-        }   
+        }
 
         for (Cliente cliente : id.values()) {
             for (Veiculo veiculo : cliente.getVeiculos()) {
-                System.out.println(veiculo.relatorio(compData)); // Uso do comparador compData
+                veiculo.relatorio(false, saida); // ordem de entrada
+                saida.append(System.lineSeparator());
             }
         }
     }
@@ -439,6 +1250,27 @@ public class Estacionamento {
 			throw new ExcecaoClienteNaoCadastrado("Nao ha clientes cadastrados com o id informado");
 	}
 
+	/**
+	 * Escreve em uma saída o histórico de um cliente no intervalo de datas
+	 * fornecido, veículo a veículo.
+	 *
+	 * @param idCliente  Identificador único do cliente.
+	 * @param dataInicio Data de início do período para o histórico.
+	 * @param dataFim    Data de fim do período para o histórico.
+	 * @param saida      Destino do histórico.
+	 * @throws ExcecaoClienteNaoCadastrado Se não houver clientes cadastrados com o
+	 *                                     ID informado.
+	 * @throws IOException                 caso a escrita na saída falhe
+	 */
+	public void historicoCliente(String idCliente, LocalDateTime dataInicio, LocalDateTime dataFim, Appendable saida)
+			throws ExcecaoClienteNaoCadastrado, IOException {
+		Cliente cliente = id.get(idCliente);
+		if (cliente == null) {
+			throw new ExcecaoClienteNaoCadastrado("Nao ha clientes cadastrados com o id informado");
+		}
+		cliente.historico(dataInicio, dataFim, saida);
+	}
+
 
 	/**
  	* Altera o tipo de uso de um cliente no estacionamento.
@@ -448,10 +1280,17 @@ public class Estacionamento {
  	*
  	* @param tipoUso O novo tipo de uso a ser atribuído ao cliente.
  	* @param idCliente O identificador único do cliente.
+ 	* @throws ExcecaoClienteNaoCadastrado Se não houver clientes cadastrados com o ID informado.
  	*/
-	public void alteraTipoUsoCliente(TipoUso tipoUso, String idCliente){
+	public synchronized void alteraTipoUsoCliente(TipoUso tipoUso, String idCliente) throws ExcecaoClienteNaoCadastrado {
 		Cliente cliente = id.get(idCliente);
+		if (cliente == null) {
+			throw new ExcecaoClienteNaoCadastrado("Nao ha clientes cadastrados com o id informado");
+		}
 		cliente.setTipoUso(tipoUso);
+		for (ObserverEstacionamento observador : observadores) {
+			observador.tipoUsoAlterado(this, cliente);
+		}
 	};
 
 	/**
@@ -491,20 +1330,37 @@ public class Estacionamento {
 
 
 	/**
-	 * Total de usos de todos os clientes
+	 * Total de usos de todos os clientes nas vagas deste estacionamento; os
+	 * usos dos clientes de uma rede nos outros estacionamentos não são contados.
 	 * @param mes valor do mes que foi usado.
 	 * @param ano valor do ano que foi usado.
 	 * @return quantidade de usos
 	 * */
 	public int totalDeUsoNoMesAnoEstacionamento(int mes, int ano){
-
-		int total = 0;
-
+		UsosLocais locais = new UsosLocais();
 		for (Cliente cliente : id.values()) {
-			total += cliente.totalDeUsoNoMesAnoCliente(mes, ano);
+			for (Veiculo veiculo : cliente.getVeiculos()) {
+				veiculo.percorrerUsosNoMes(mes, ano, locais);
+			}
 		}
 
-		return total;
+		return (int) locais.usos;
+	}
+
+	/**
+	 * Soma os usos visitados que foram feitos nas vagas deste estacionamento.
+	 */
+	private final class UsosLocais implements VisitanteDeUsos<RuntimeException> {
+		private long usos;
+		private long centavos;
+
+		@Override
+		public void visitar(long entrada, long saida, long centavos, Vaga vaga, TipoServico servico) {
+			if (possuiVaga(vaga)) {
+				usos++;
+				this.centavos += centavos;
+			}
+		}
 	}
 
 }
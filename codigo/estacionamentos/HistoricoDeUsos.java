@@ -0,0 +1,801 @@
+package estacionamentos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import estacionamentos.interfaces.VisitanteDeUsos;
+
+/**
+ * Histórico de usos de vaga de um veículo mantido em ordem de entrada. As
+ * consultas por intervalo de datas e por mês localizam os limites por busca
+ * binária e custam O(log n + k), onde k é a quantidade de usos retornados.
+ *
+ * Apenas o uso em aberto é mantido como objeto. Os usos encerrados ficam em
+ * colunas de tipos primitivos ({@link UsosCompactos}), com menos de um quinto
+ * da memória de um {@link UsoDeVaga} com as suas datas, e são recriados pela
+ * fábrica do histórico a cada consulta que retorna usos; as somas e contagens
+ * por mês leem as colunas diretamente. Os relatórios não recriam os usos: as
+ * consultas {@link #consultarTodos()} e {@link #consultarEntre} copiam os
+ * usos encerrados do intervalo para colunas próprias, e {@link #percorrer}
+ * visita os usos campo a campo.
+ *
+ * Quando o histórico é arquivado em um {@link ArquivoDeUsos}, os usos
+ * encerrados saem do heap e passam a ser lidos das colunas do arquivo; o
+ * histórico guarda apenas a posição de cada uso no arquivo, em ordem de
+ * entrada, e apenas o uso em aberto continua em memória. As somas e contagens
+ * por mês localizam os limites do mês por busca binária nas posições e leem só
+ * os usos do mês, sem criar objetos. As consultas que retornam usos recriam os
+ * usos arquivados a cada chamada.
+ *
+ * Os usos encerrados antigos podem ainda ser movidos para a camada fria, um
+ * {@link ArquivoFrio} com blocos comprimidos, por {@link #esfriar}. O histórico
+ * guarda apenas a descrição de cada bloco frio; as consultas leem as camadas
+ * quente e fria e devolvem os usos intercalados em ordem de entrada, e as somas
+ * e contagens por mês só descomprimem os blocos que cruzam o limite do mês.
+ * Depois da fusão ({@link #fundirFrios()}), os blocos frios estão em ordem,
+ * cheios e contíguos, e uma consulta lê os blocos do intervalo com uma leitura
+ * sequencial por segmento.
+ *
+ * Não é thread-safe: o acesso é protegido pelo monitor do veículo dono do
+ * histórico.
+ */
+public class HistoricoDeUsos {
+
+    private final List<UsoDeVaga> usos = new ArrayList<>();
+    private final UsosCompactos compactos = new UsosCompactos();
+    private ArquivoDeUsos arquivo;
+    private UsoDeVagaFactory fabrica;
+    private int placa;
+    private int[] posicoes = new int[0];
+    private int arquivados;
+    private ArquivoFrio frio;
+    private final List<ArquivoFrio.Bloco> blocosFrios = new ArrayList<>();
+    private int frios;
+    private boolean friosForaDeOrdem;
+
+    /**
+     * Cria um histórico cujos usos encerrados são recriados como usos de
+     * horista; o valor pago de cada uso é preservado.
+     */
+    public HistoricoDeUsos() {
+        this(UsoDeVagaFactory.criarHoristaFactory());
+    }
+
+    /**
+     * @param fabrica fábrica usada para recriar os usos encerrados
+     */
+    public HistoricoDeUsos(UsoDeVagaFactory fabrica) {
+        this.fabrica = fabrica;
+    }
+
+    /**
+     * Adiciona um uso ao histórico, mantendo a ordem de entrada. Usos com a mesma
+     * entrada ficam na ordem em que foram adicionados. Um uso encerrado é
+     * gravado diretamente nas colunas compactas ou no arquivo, quando houver.
+     *
+     * @param uso uso de vaga a ser adicionado
+     */
+    public void adicionar(UsoDeVaga uso) {
+        if (uso.getSaida() != null) {
+            guardarEncerrado(uso);
+            return;
+        }
+        int tamanho = usos.size();
+        if (tamanho == 0 || !uso.getEntrada().isBefore(usos.get(tamanho - 1).getEntrada())) {
+            usos.add(uso);
+        } else {
+            usos.add(primeiroApos(uso.getEntrada()), uso);
+        }
+    }
+
+    /**
+     * Move para as colunas compactas ou para o arquivo, quando houver, um uso do
+     * histórico que acabou de ser encerrado.
+     *
+     * @param uso uso encerrado
+     */
+    public void encerrar(UsoDeVaga uso) {
+        for (int i = usos.size() - 1; i >= 0; i--) {
+            if (usos.get(i) == uso) {
+                usos.remove(i);
+                guardarEncerrado(uso);
+                return;
+            }
+        }
+    }
+
+    private void guardarEncerrado(UsoDeVaga uso) {
+        if (arquivo != null) {
+            arquivar(uso);
+        } else {
+            compactos.adicionar(uso);
+        }
+    }
+
+    /**
+     * Passa a arquivar os usos encerrados, movendo para o arquivo os que já
+     * estão no histórico.
+     *
+     * @param arquivo arquivo de usos
+     * @param placa   placa do veículo dono do histórico
+     * @param fabrica fábrica usada para recriar os usos arquivados
+     * @throws IllegalStateException caso o histórico já seja arquivado em outro
+     *                               arquivo
+     */
+    public void arquivarEm(ArquivoDeUsos arquivo, String placa, UsoDeVagaFactory fabrica) {
+        if (this.arquivo == arquivo) {
+            return;
+        }
+        if (this.arquivo != null) {
+            throw new IllegalStateException("O histórico da placa " + placa + " já é arquivado em outro arquivo");
+        }
+        List<UsoDeVaga> emMemoria = compactos.recriar(0, compactos.quantidade(), this.fabrica);
+        emMemoria.addAll(usos);
+        this.arquivo = arquivo;
+        this.placa = arquivo.idDaPlaca(placa);
+        this.fabrica = fabrica;
+        compactos.removerPrimeiros(compactos.quantidade());
+        usos.clear();
+        for (UsoDeVaga uso : emMemoria) {
+            adicionar(uso);
+        }
+    }
+
+    private void arquivar(UsoDeVaga uso) {
+        long entrada = ArquivoDeUsos.paraEpoca(uso.getEntrada());
+        int novo;
+        try {
+            novo = arquivo.arquivar(placa, uso.getVaga(), entrada, ArquivoDeUsos.paraEpoca(uso.getSaida()),
+                    uso.getCentavosPagos(), uso.getTipoServico());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // um uso mais antigo que o último arquivado entra depois dos de mesma entrada
+        int posicao = arquivados == 0 || entrada >= arquivo.entrada(posicoes[arquivados - 1])
+                ? arquivados
+                : primeiroArquivadoApos(entrada);
+        if (arquivados == posicoes.length) {
+            posicoes = Arrays.copyOf(posicoes, Math.max(8, arquivados + (arquivados >> 1)));
+        }
+        System.arraycopy(posicoes, posicao, posicoes, posicao + 1, arquivados - posicao);
+        posicoes[posicao] = novo;
+        arquivados++;
+    }
+
+    /**
+     * Move para a camada fria os usos encerrados com entrada anterior ao limite,
+     * em memória, nas colunas compactas ou no arquivo de usos, gravando-os em
+     * blocos comprimidos.
+     *
+     * @param frio    camada fria
+     * @param limite  entrada a partir da qual os usos continuam na camada quente
+     * @param fabrica fábrica usada para recriar os usos frios
+     * @return quantidade de usos movidos
+     * @throws IllegalStateException caso o histórico já use outra camada fria
+     * @throws UncheckedIOException  caso a gravação falhe; os usos continuam na
+     *                               camada quente
+     */
+    public int esfriar(ArquivoFrio frio, LocalDateTime limite, UsoDeVagaFactory fabrica) {
+        if (this.frio != null && this.frio != frio) {
+            throw new IllegalStateException("O histórico já usa outra camada fria");
+        }
+        List<UsoDeVaga> antigos = new ArrayList<>();
+        for (UsoDeVaga uso : usos) {
+            if (uso.getSaida() != null && uso.getEntrada().isBefore(limite)) {
+                antigos.add(uso);
+            }
+        }
+        int movidosDaMemoria = antigos.size();
+
+        // nas colunas, os usos antigos são os primeiros
+        long limiteEmMilissegundos = ArquivoDeUsos.paraEpoca(limite);
+        int movidosDasColunas = compactos.primeiroAPartirDe(limiteEmMilissegundos);
+        antigos.addAll(compactos.recriar(0, movidosDasColunas, this.fabrica));
+
+        // no arquivo, os usos antigos são as primeiras posições
+        int movidosDoArquivo = primeiroArquivadoAPartirDe(limiteEmMilissegundos);
+        antigos.addAll(usosArquivados(0, movidosDoArquivo));
+        if (antigos.isEmpty()) {
+            return 0;
+        }
+
+        antigos.sort(Comparator.comparing(UsoDeVaga::getEntrada));
+        List<ArquivoFrio.Bloco> gravados = new ArrayList<>();
+        try {
+            for (int i = 0; i < antigos.size(); i += ArquivoFrio.USOS_POR_BLOCO) {
+                gravados.add(frio.gravar(antigos.subList(i, Math.min(i + ArquivoFrio.USOS_POR_BLOCO, antigos.size()))));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // as camadas quentes só são alteradas depois da gravação dos blocos
+        this.frio = frio;
+        if (this.fabrica == null) {
+            this.fabrica = fabrica;
+        }
+        if (!blocosFrios.isEmpty()
+                && gravados.get(0).primeiraEntrada() < blocosFrios.get(blocosFrios.size() - 1).ultimaEntrada()) {
+            friosForaDeOrdem = true;
+        }
+        blocosFrios.addAll(gravados);
+        frios += antigos.size();
+        if (movidosDaMemoria > 0) {
+            usos.removeIf(uso -> uso.getSaida() != null && uso.getEntrada().isBefore(limite));
+        }
+        if (movidosDasColunas > 0) {
+            compactos.removerPrimeiros(movidosDasColunas);
+        }
+        if (movidosDoArquivo > 0) {
+            System.arraycopy(posicoes, movidosDoArquivo, posicoes, 0, arquivados - movidosDoArquivo);
+            arquivados -= movidosDoArquivo;
+        }
+        return antigos.size();
+    }
+
+    /**
+     * Funde os blocos frios quando estão fora de ordem ou sobrepostos, quando há
+     * mais de um bloco incompleto ou quando algum está em um segmento
+     * fragmentado, regravando-os como blocos cheios, contíguos e em ordem de
+     * entrada.
+     *
+     * @return quantidade de blocos substituídos, ou 0 caso a fusão não seja
+     *         necessária
+     * @throws UncheckedIOException caso a leitura ou a gravação falhe; os blocos
+     *                              anteriores continuam válidos
+     */
+    public int fundirFrios() {
+        if (blocosFrios.isEmpty() || !precisaFundir()) {
+            return 0;
+        }
+        List<ArquivoFrio.Bloco> fundidos;
+        try {
+            fundidos = frio.fundir(blocosFrios);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int substituidos = blocosFrios.size();
+        blocosFrios.clear();
+        blocosFrios.addAll(fundidos);
+        friosForaDeOrdem = false;
+        return substituidos;
+    }
+
+    private boolean precisaFundir() {
+        if (friosForaDeOrdem) {
+            return true;
+        }
+        int incompletos = 0;
+        for (ArquivoFrio.Bloco bloco : blocosFrios) {
+            if (bloco.quantidade() < ArquivoFrio.USOS_POR_BLOCO && ++incompletos > 1) {
+                return true;
+            }
+            if (frio.fragmentado(bloco)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int tamanho() {
+        return usos.size() + compactos.quantidade() + arquivados + frios;
+    }
+
+    /**
+     * @return quantidade de usos na camada fria
+     */
+    public int frios() {
+        return frios;
+    }
+
+    public boolean vazio() {
+        return tamanho() == 0;
+    }
+
+    /**
+     * @return se todos os usos estão em objetos, sem usos compactados,
+     *         arquivados ou frios
+     */
+    private boolean apenasObjetos() {
+        return compactos.quantidade() == 0 && arquivados == 0 && frios == 0;
+    }
+
+    /**
+     * @return todos os usos em ordem de entrada, sem permitir alterações; sem
+     *         cópia quando não há usos encerrados
+     */
+    public List<UsoDeVaga> todos() {
+        if (apenasObjetos()) {
+            return Collections.unmodifiableList(usos);
+        }
+        return juntar(recriarEncerrados(Long.MIN_VALUE, Long.MAX_VALUE), usos);
+    }
+
+    /**
+     * Retorna uma consulta deste histórico como uma lista que não acompanha as
+     * alterações seguintes, para ser lida fora do monitor do veículo. Apenas as
+     * vistas dos usos em objetos são copiadas; os usos recriados já estão em uma
+     * lista própria da consulta.
+     *
+     * @param consulta lista retornada por {@link #todos()}, {@link #entre} ou
+     *                 {@link #noMes}, sem alterações no histórico desde então
+     * @return lista imutável com os usos da consulta
+     */
+    public List<UsoDeVaga> independente(List<UsoDeVaga> consulta) {
+        return apenasObjetos() ? List.copyOf(consulta) : consulta;
+    }
+
+    /**
+     * Percorre todos os usos sem recriá-los: os usos encerrados são lidos
+     * diretamente das colunas compactas, do arquivo e dos blocos frios. Os usos
+     * frios são visitados primeiro, na ordem dos blocos, que é a ordem de
+     * entrada depois da fusão; em seguida, os demais usos em ordem de entrada.
+     *
+     * @param visitante visitante dos usos
+     * @throws E exceção lançada pelo visitante; a visita é interrompida
+     */
+    public <E extends Exception> void percorrer(VisitanteDeUsos<E> visitante) throws E {
+        if (frios > 0) {
+            for (ArquivoFrio.Usos usosDoBloco : lerBlocos(blocosFrios)) {
+                for (int i = 0; i < usosDoBloco.quantidade(); i++) {
+                    visitante.visitar(usosDoBloco.entradas[i], usosDoBloco.saidas[i], usosDoBloco.centavos[i],
+                            frio.getVaga(usosDoBloco.vagas[i]), usosDoBloco.servico(i));
+                }
+            }
+        }
+        int quentes = arquivados > 0 ? arquivados : compactos.quantidade();
+        int i = 0;
+        for (UsoDeVaga emObjeto : usos) {
+            long entrada = ArquivoDeUsos.paraEpoca(emObjeto.getEntrada());
+            for (; i < quentes && entradaQuente(i) <= entrada; i++) {
+                visitarQuente(i, visitante);
+            }
+            visitarObjeto(emObjeto, visitante);
+        }
+        for (; i < quentes; i++) {
+            visitarQuente(i, visitante);
+        }
+    }
+
+    /**
+     * Percorre, sem recriá-los, os usos com entrada em um determinado mês. Os
+     * usos são visitados camada a camada, sem ordem definida entre eles, e só
+     * os blocos frios do mês são descomprimidos; serve às somas e contagens que
+     * filtram os usos por outros campos, como a vaga.
+     *
+     * @param mes       mês entre 1 e 12
+     * @param ano       ano
+     * @param visitante visitante dos usos
+     * @throws E exceção lançada pelo visitante; a visita é interrompida
+     */
+    public <E extends Exception> void percorrerNoMes(int mes, int ano, VisitanteDeUsos<E> visitante) throws E {
+        LocalDateTime inicioDoMes = LocalDateTime.of(ano, mes, 1, 0, 0);
+        LocalDateTime inicioDoProximoMes = inicioDoMes.plusMonths(1);
+        long inicio = ArquivoDeUsos.paraEpoca(inicioDoMes);
+        long fim = ArquivoDeUsos.paraEpoca(inicioDoProximoMes);
+        for (int i = primeiroAPartirDe(inicioDoMes), ate = primeiroAPartirDe(inicioDoProximoMes); i < ate; i++) {
+            visitarObjeto(usos.get(i), visitante);
+        }
+        for (int i = compactos.primeiroAPartirDe(inicio), ate = compactos.primeiroAPartirDe(fim); i < ate; i++) {
+            visitante.visitar(compactos.entrada(i), compactos.saida(i), compactos.centavos(i), compactos.vaga(i),
+                    compactos.servico(i));
+        }
+        for (int i = primeiroArquivadoAPartirDe(inicio), ate = primeiroArquivadoAPartirDe(fim); i < ate; i++) {
+            visitarArquivado(posicoes[i], visitante);
+        }
+        if (frios > 0) {
+            List<ArquivoFrio.Bloco> noMes = new ArrayList<>();
+            for (ArquivoFrio.Bloco bloco : blocosFrios) {
+                if (bloco.ultimaEntrada() >= inicio && bloco.primeiraEntrada() < fim) {
+                    noMes.add(bloco);
+                }
+            }
+            for (ArquivoFrio.Usos usosDoBloco : lerBlocos(noMes)) {
+                for (int i = 0; i < usosDoBloco.quantidade(); i++) {
+                    if (usosDoBloco.entradas[i] >= inicio && usosDoBloco.entradas[i] < fim) {
+                        visitante.visitar(usosDoBloco.entradas[i], usosDoBloco.saidas[i], usosDoBloco.centavos[i],
+                                frio.getVaga(usosDoBloco.vagas[i]), usosDoBloco.servico(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private static <E extends Exception> void visitarObjeto(UsoDeVaga uso, VisitanteDeUsos<E> visitante) throws E {
+        visitante.visitar(ArquivoDeUsos.paraEpoca(uso.getEntrada()),
+                uso.getSaida() != null ? ArquivoDeUsos.paraEpoca(uso.getSaida()) : VisitanteDeUsos.SEM_SAIDA,
+                uso.getCentavosPagos(), uso.getVaga(), uso.getTipoServico());
+    }
+
+    private <E extends Exception> void visitarArquivado(int uso, VisitanteDeUsos<E> visitante) throws E {
+        visitante.visitar(arquivo.entrada(uso), arquivo.saida(uso), arquivo.centavos(uso),
+                arquivo.getVaga(arquivo.vaga(uso)), arquivo.servico(uso));
+    }
+
+    private long entradaQuente(int i) {
+        return arquivados > 0 ? arquivo.entrada(posicoes[i]) : compactos.entrada(i);
+    }
+
+    private <E extends Exception> void visitarQuente(int i, VisitanteDeUsos<E> visitante) throws E {
+        if (arquivados > 0) {
+            visitarArquivado(posicoes[i], visitante);
+        } else {
+            visitante.visitar(compactos.entrada(i), compactos.saida(i), compactos.centavos(i), compactos.vaga(i),
+                    compactos.servico(i));
+        }
+    }
+
+    /**
+     * Retorna os usos com entrada estritamente entre duas datas, o mesmo critério
+     * de {@link UsoDeVaga#ocorrenciaEntreDatas(LocalDateTime, LocalDateTime)}.
+     *
+     * @param dataInicio início do intervalo (exclusive)
+     * @param dataFim    fim do intervalo (exclusive)
+     * @return usos do intervalo em ordem de entrada, sem permitir alterações; sem
+     *         cópia quando não há usos encerrados
+     */
+    public List<UsoDeVaga> entre(LocalDateTime dataInicio, LocalDateTime dataFim) {
+        List<UsoDeVaga> emMemoria = emMemoriaEntre(dataInicio, dataFim);
+        if (apenasObjetos() || !dataInicio.isBefore(dataFim)) {
+            return Collections.unmodifiableList(emMemoria);
+        }
+        return juntar(recriarEncerrados(limiteInferior(dataInicio), limiteSuperior(dataFim)), emMemoria);
+    }
+
+    /**
+     * Copia os usos com entrada estritamente entre duas datas para uma consulta
+     * que pode ser lida fora do monitor do veículo, sem recriar os usos
+     * encerrados como objetos.
+     *
+     * @param dataInicio início do intervalo (exclusive)
+     * @param dataFim    fim do intervalo (exclusive)
+     * @return usos do intervalo em ordem de entrada
+     * @see #entre(LocalDateTime, LocalDateTime)
+     */
+    ConsultaDeUsos consultarEntre(LocalDateTime dataInicio, LocalDateTime dataFim) {
+        List<UsoDeVaga> emMemoria = List.copyOf(emMemoriaEntre(dataInicio, dataFim));
+        if (apenasObjetos() || !dataInicio.isBefore(dataFim)) {
+            return new ConsultaDeUsos(new UsosCompactos(), emMemoria);
+        }
+        return new ConsultaDeUsos(copiarEncerrados(limiteInferior(dataInicio), limiteSuperior(dataFim)), emMemoria);
+    }
+
+    /**
+     * Copia todos os usos para uma consulta que pode ser lida fora do monitor do
+     * veículo, sem recriar os usos encerrados como objetos.
+     *
+     * @return usos em ordem de entrada
+     * @see #todos()
+     */
+    ConsultaDeUsos consultarTodos() {
+        return new ConsultaDeUsos(copiarEncerrados(Long.MIN_VALUE, Long.MAX_VALUE), List.copyOf(usos));
+    }
+
+    private List<UsoDeVaga> emMemoriaEntre(LocalDateTime dataInicio, LocalDateTime dataFim) {
+        int inicio = primeiroApos(dataInicio);
+        int fim = primeiroAPartirDe(dataFim);
+        return inicio >= fim ? Collections.emptyList() : usos.subList(inicio, fim);
+    }
+
+    /**
+     * A entrada compactada tem precisão de milissegundos: o limite inferior
+     * exclusivo passa a ser o primeiro milissegundo posterior ao início.
+     */
+    private static long limiteInferior(LocalDateTime dataInicio) {
+        return ArquivoDeUsos.paraEpoca(dataInicio) + 1;
+    }
+
+    private static long limiteSuperior(LocalDateTime dataFim) {
+        long limite = ArquivoDeUsos.paraEpoca(dataFim);
+        return dataFim.getNano() % 1_000_000 != 0 ? limite + 1 : limite;
+    }
+
+    /**
+     * Retorna os usos com entrada em um determinado mês.
+     *
+     * @param mes mês entre 1 e 12
+     * @param ano ano
+     * @return usos do mês em ordem de entrada, sem permitir alterações; sem cópia
+     *         quando não há usos encerrados
+     */
+    public List<UsoDeVaga> noMes(int mes, int ano) {
+        LocalDateTime inicioDoMes = LocalDateTime.of(ano, mes, 1, 0, 0);
+        LocalDateTime inicioDoProximoMes = inicioDoMes.plusMonths(1);
+        int inicio = primeiroAPartirDe(inicioDoMes);
+        int fim = primeiroAPartirDe(inicioDoProximoMes);
+        List<UsoDeVaga> emMemoria = usos.subList(inicio, fim);
+        if (apenasObjetos()) {
+            return Collections.unmodifiableList(emMemoria);
+        }
+        return juntar(recriarEncerrados(ArquivoDeUsos.paraEpoca(inicioDoMes), ArquivoDeUsos.paraEpoca(inicioDoProximoMes)),
+                emMemoria);
+    }
+
+    /**
+     * @return quantidade de usos com entrada no mês, sem criar objetos
+     */
+    public int quantidadeNoMes(int mes, int ano) {
+        LocalDateTime inicioDoMes = LocalDateTime.of(ano, mes, 1, 0, 0);
+        LocalDateTime inicioDoProximoMes = inicioDoMes.plusMonths(1);
+        int quantidade = primeiroAPartirDe(inicioDoProximoMes) - primeiroAPartirDe(inicioDoMes);
+        if (compactos.quantidade() > 0) {
+            quantidade += compactos.primeiroAPartirDe(ArquivoDeUsos.paraEpoca(inicioDoProximoMes))
+                    - compactos.primeiroAPartirDe(ArquivoDeUsos.paraEpoca(inicioDoMes));
+        }
+        if (arquivados > 0) {
+            quantidade += primeiroArquivadoAPartirDe(ArquivoDeUsos.paraEpoca(inicioDoProximoMes))
+                    - primeiroArquivadoAPartirDe(ArquivoDeUsos.paraEpoca(inicioDoMes));
+        }
+        if (frios > 0) {
+            quantidade += somarFrios(ArquivoDeUsos.paraEpoca(inicioDoMes),
+                    ArquivoDeUsos.paraEpoca(inicioDoProximoMes), false);
+        }
+        return quantidade;
+    }
+
+    /**
+     * @return soma dos valores pagos pelos usos com entrada no mês, em
+     *         centavos, sem criar objetos
+     */
+    public long centavosNoMes(int mes, int ano) {
+        LocalDateTime inicioDoMes = LocalDateTime.of(ano, mes, 1, 0, 0);
+        LocalDateTime inicioDoProximoMes = inicioDoMes.plusMonths(1);
+        long inicio = ArquivoDeUsos.paraEpoca(inicioDoMes);
+        long fim = ArquivoDeUsos.paraEpoca(inicioDoProximoMes);
+        long total = 0;
+        for (int i = primeiroAPartirDe(inicioDoMes), ate = primeiroAPartirDe(inicioDoProximoMes); i < ate; i++) {
+            total += usos.get(i).getCentavosPagos();
+        }
+        for (int i = compactos.primeiroAPartirDe(inicio), ate = compactos.primeiroAPartirDe(fim); i < ate; i++) {
+            total += compactos.centavos(i);
+        }
+        for (int i = primeiroArquivadoAPartirDe(inicio), ate = primeiroArquivadoAPartirDe(fim); i < ate; i++) {
+            total += arquivo.centavos(posicoes[i]);
+        }
+        if (frios > 0) {
+            total += somarFrios(inicio, fim, true);
+        }
+        return total;
+    }
+
+    /**
+     * @return soma dos valores pagos por todos os usos, em centavos, sem criar
+     *         objetos
+     */
+    public long centavosTotal() {
+        long total = 0;
+        for (UsoDeVaga uso : usos) {
+            total += uso.getCentavosPagos();
+        }
+        for (int i = 0; i < compactos.quantidade(); i++) {
+            total += compactos.centavos(i);
+        }
+        for (int i = 0; i < arquivados; i++) {
+            total += arquivo.centavos(posicoes[i]);
+        }
+        for (ArquivoFrio.Bloco bloco : blocosFrios) {
+            total += bloco.centavos();
+        }
+        return total;
+    }
+
+    /**
+     * @return primeira posição de uso arquivado com entrada igual ou posterior
+     *         ao limite, em milissegundos
+     */
+    private int primeiroArquivadoAPartirDe(long limite) {
+        int baixo = 0;
+        int alto = arquivados;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (arquivo.entrada(posicoes[meio]) < limite) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    /**
+     * @return primeira posição de uso arquivado com entrada estritamente
+     *         posterior ao limite, em milissegundos
+     */
+    private int primeiroArquivadoApos(long limite) {
+        int baixo = 0;
+        int alto = arquivados;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (arquivo.entrada(posicoes[meio]) > limite) {
+                alto = meio;
+            } else {
+                baixo = meio + 1;
+            }
+        }
+        return baixo;
+    }
+
+    /**
+     * Recria, em ordem de entrada, os usos arquivados entre duas posições.
+     */
+    private List<UsoDeVaga> usosArquivados(int de, int ate) {
+        List<UsoDeVaga> recriados = new ArrayList<>(ate - de);
+        for (int i = de; i < ate; i++) {
+            recriados.add(recriar(posicoes[i]));
+        }
+        return recriados;
+    }
+
+    /**
+     * Recria, em ordem de entrada, os usos encerrados guardados fora de objetos
+     * (nas colunas compactas, no arquivo e na camada fria) com entrada no
+     * intervalo, em milissegundos.
+     *
+     * @param inicio início do intervalo (inclusive)
+     * @param fim    fim do intervalo (exclusive)
+     */
+    private List<UsoDeVaga> recriarEncerrados(long inicio, long fim) {
+        UsosCompactos copia = copiarEncerrados(inicio, fim);
+        return copia.recriar(0, copia.quantidade(), fabrica);
+    }
+
+    /**
+     * Copia para colunas próprias, em ordem de entrada e sem criar objetos, os
+     * usos encerrados guardados fora de objetos com entrada no intervalo, em
+     * milissegundos.
+     *
+     * @param inicio início do intervalo (inclusive)
+     * @param fim    fim do intervalo (exclusive)
+     */
+    private UsosCompactos copiarEncerrados(long inicio, long fim) {
+        // as colunas compactas são esvaziadas no arquivamento: no máximo uma das
+        // duas camadas quentes tem usos
+        if (arquivados == 0 && frios == 0) {
+            return compactos.copiar(compactos.primeiroAPartirDe(inicio), compactos.primeiroAPartirDe(fim));
+        }
+        UsosCompactos copia = new UsosCompactos();
+        if (frios > 0) {
+            // os usos frios são copiados primeiro e ficam antes dos quentes de mesma
+            // entrada; a cópia intercala os blocos de rodadas diferentes, que podem
+            // se sobrepor até a próxima fusão
+            List<ArquivoFrio.Bloco> noIntervalo = new ArrayList<>();
+            for (ArquivoFrio.Bloco bloco : blocosFrios) {
+                if (bloco.ultimaEntrada() >= inicio && bloco.primeiraEntrada() < fim) {
+                    noIntervalo.add(bloco);
+                }
+            }
+            for (ArquivoFrio.Usos usosDoBloco : lerBlocos(noIntervalo)) {
+                for (int i = 0; i < usosDoBloco.quantidade(); i++) {
+                    if (usosDoBloco.entradas[i] >= inicio && usosDoBloco.entradas[i] < fim) {
+                        copia.adicionar(usosDoBloco.entradas[i], usosDoBloco.saidas[i], usosDoBloco.centavos[i],
+                                frio.getVaga(usosDoBloco.vagas[i]), usosDoBloco.servico(i));
+                    }
+                }
+            }
+        }
+        if (arquivados > 0) {
+            for (int i = primeiroArquivadoAPartirDe(inicio), ate = primeiroArquivadoAPartirDe(fim); i < ate; i++) {
+                int uso = posicoes[i];
+                copia.adicionar(arquivo.entrada(uso), arquivo.saida(uso), arquivo.centavos(uso),
+                        arquivo.getVaga(arquivo.vaga(uso)), arquivo.servico(uso));
+            }
+        } else {
+            for (int i = compactos.primeiroAPartirDe(inicio), ate = compactos.primeiroAPartirDe(fim); i < ate; i++) {
+                copia.adicionar(compactos.entrada(i), compactos.saida(i), compactos.centavos(i), compactos.vaga(i),
+                        compactos.servico(i));
+            }
+        }
+        return copia;
+    }
+
+    /**
+     * Soma a quantidade ou o valor, em centavos, dos usos frios com entrada no
+     * intervalo, descomprimindo apenas os blocos que cruzam os seus limites.
+     */
+    private long somarFrios(long inicio, long fim, boolean centavos) {
+        long soma = 0;
+        List<ArquivoFrio.Bloco> nosLimites = new ArrayList<>();
+        for (ArquivoFrio.Bloco bloco : blocosFrios) {
+            if (bloco.ultimaEntrada() < inicio || bloco.primeiraEntrada() >= fim) {
+                continue;
+            }
+            if (bloco.primeiraEntrada() >= inicio && bloco.ultimaEntrada() < fim) {
+                soma += centavos ? bloco.centavos() : bloco.quantidade();
+            } else {
+                nosLimites.add(bloco);
+            }
+        }
+        for (ArquivoFrio.Usos usosDoBloco : lerBlocos(nosLimites)) {
+            for (int i = 0; i < usosDoBloco.quantidade(); i++) {
+                if (usosDoBloco.entradas[i] >= inicio && usosDoBloco.entradas[i] < fim) {
+                    soma += centavos ? usosDoBloco.centavos[i] : 1;
+                }
+            }
+        }
+        return soma;
+    }
+
+    private List<ArquivoFrio.Usos> lerBlocos(List<ArquivoFrio.Bloco> blocos) {
+        if (blocos.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return frio.ler(blocos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private UsoDeVaga recriar(int indice) {
+        UsoDeVaga uso = fabrica.criarUsoDeVaga(arquivo.getVaga(arquivo.vaga(indice)),
+                ArquivoDeUsos.deEpoca(arquivo.entrada(indice)));
+        uso.setSaida(ArquivoDeUsos.deEpoca(arquivo.saida(indice)));
+        uso.setCentavosPagos(arquivo.centavos(indice));
+        uso.setTipoServico(arquivo.servico(indice));
+        return uso;
+    }
+
+    /**
+     * Intercala os usos encerrados recriados com os usos em objetos, ambos em
+     * ordem de entrada.
+     */
+    private static List<UsoDeVaga> juntar(List<UsoDeVaga> arquivados, List<UsoDeVaga> emMemoria) {
+        if (emMemoria.isEmpty()) {
+            return Collections.unmodifiableList(arquivados);
+        }
+        List<UsoDeVaga> todos = new ArrayList<>(arquivados.size() + emMemoria.size());
+        int i = 0;
+        int j = 0;
+        while (i < arquivados.size() || j < emMemoria.size()) {
+            if (j == emMemoria.size() || (i < arquivados.size()
+                    && !emMemoria.get(j).getEntrada().isBefore(arquivados.get(i).getEntrada()))) {
+                todos.add(arquivados.get(i++));
+            } else {
+                todos.add(emMemoria.get(j++));
+            }
+        }
+        return Collections.unmodifiableList(todos);
+    }
+
+    /**
+     * @return índice do primeiro uso com entrada igual ou posterior ao instante
+     */
+    private int primeiroAPartirDe(LocalDateTime instante) {
+        int baixo = 0;
+        int alto = usos.size();
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (usos.get(meio).getEntrada().isBefore(instante)) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    /**
+     * @return índice do primeiro uso com entrada estritamente posterior ao
+     *         instante
+     */
+    private int primeiroApos(LocalDateTime instante) {
+        int baixo = 0;
+        int alto = usos.size();
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (usos.get(meio).getEntrada().isAfter(instante)) {
+                alto = meio;
+            } else {
+                baixo = meio + 1;
+            }
+        }
+        return baixo;
+    }
+}
@@ -0,0 +1,232 @@
+package estacionamentos;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+
+/**
+ * Índice de veículos e dos seus donos pela placa. As placas codificáveis por
+ * {@link CodigoDePlaca} são procuradas pelo código em um {@link MapaLongInt},
+ * sem calcular o hash nem comparar a {@link String}; as demais ficam em um
+ * mapa à parte. O mapa guarda a posição do veículo e do dono em dois vetores,
+ * na ordem de inserção.
+ *
+ * As escritas são exclusivas; as buscas por código são leituras otimistas de
+ * um {@link StampedLock}, repetidas com a trava de leitura caso uma escrita
+ * aconteça durante a busca. Um veículo removido dá lugar ao último dos
+ * vetores, de forma que as posições continuam contíguas.
+ */
+final class IndiceDePlacas {
+
+    private static final int CAPACIDADE_INICIAL = 4;
+
+    private final StampedLock trava = new StampedLock();
+    private final MapaLongInt posicoes;
+    private final Map<String, Integer> semCodigo = new HashMap<>();
+    private Veiculo[] veiculos;
+    private Cliente[] donos;
+    private int quantidade;
+
+    private final IntFunction<Veiculo> veiculoEm = posicao -> {
+        Veiculo[] veiculos = this.veiculos;
+        return posicao >= 0 && posicao < veiculos.length ? veiculos[posicao] : null;
+    };
+    private final IntFunction<Cliente> donoEm = posicao -> {
+        Cliente[] donos = this.donos;
+        return posicao >= 0 && posicao < donos.length ? donos[posicao] : null;
+    };
+
+    IndiceDePlacas() {
+        this(0);
+    }
+
+    /**
+     * @param esperadas quantidade de placas que o índice deve guardar sem crescer
+     */
+    IndiceDePlacas(int esperadas) {
+        posicoes = new MapaLongInt(esperadas);
+        int capacidade = Math.max(CAPACIDADE_INICIAL, esperadas);
+        veiculos = new Veiculo[capacidade];
+        donos = new Cliente[capacidade];
+    }
+
+    /**
+     * @param placa placa do veículo
+     * @return veículo com a placa, ou null caso a placa não esteja indexada
+     */
+    Veiculo veiculo(String placa) {
+        return buscar(placa, veiculoEm);
+    }
+
+    /**
+     * @param placa placa do veículo
+     * @return dono do veículo com a placa, ou null caso a placa não esteja
+     *         indexada
+     */
+    Cliente dono(String placa) {
+        return buscar(placa, donoEm);
+    }
+
+    private <T> T buscar(String placa, IntFunction<T> leitura) {
+        long codigo = CodigoDePlaca.codificar(placa);
+        if (codigo != CodigoDePlaca.SEM_CODIGO) {
+            long carimbo = trava.tryOptimisticRead();
+            if (carimbo != 0) {
+                T encontrado = leitura.apply(posicoes.get(codigo));
+                if (trava.validate(carimbo)) {
+                    return encontrado;
+                }
+            }
+        }
+        long carimbo = trava.readLock();
+        try {
+            return leitura.apply(posicao(placa, codigo));
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    private int posicao(String placa, long codigo) {
+        if (codigo != CodigoDePlaca.SEM_CODIGO) {
+            return posicoes.get(codigo);
+        }
+        Integer posicao = semCodigo.get(placa);
+        return posicao != null ? posicao : MapaLongInt.AUSENTE;
+    }
+
+    /**
+     * Indexa um veículo, substituindo o veículo e o dono anteriores da placa.
+     *
+     * @param veiculo veículo a indexar
+     * @param dono    dono do veículo
+     */
+    void adicionar(Veiculo veiculo, Cliente dono) {
+        String placa = veiculo.getPlaca();
+        long codigo = CodigoDePlaca.codificar(placa);
+        long carimbo = trava.writeLock();
+        try {
+            int posicao = posicao(placa, codigo);
+            if (posicao == MapaLongInt.AUSENTE) {
+                posicao = quantidade;
+                if (posicao == veiculos.length) {
+                    crescer(posicao + (posicao >> 1));
+                }
+                quantidade++;
+            }
+            veiculos[posicao] = veiculo;
+            donos[posicao] = dono;
+            if (codigo != CodigoDePlaca.SEM_CODIGO) {
+                posicoes.put(codigo, posicao);
+            } else {
+                semCodigo.put(placa, posicao);
+            }
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    /**
+     * Remove um veículo do índice, caso seja o veículo indexado pela sua placa.
+     *
+     * @param veiculo veículo a remover
+     * @return true caso o veículo tenha sido removido
+     */
+    boolean remover(Veiculo veiculo) {
+        String placa = veiculo.getPlaca();
+        long codigo = CodigoDePlaca.codificar(placa);
+        long carimbo = trava.writeLock();
+        try {
+            int posicao = posicao(placa, codigo);
+            if (posicao == MapaLongInt.AUSENTE || veiculos[posicao] != veiculo) {
+                return false;
+            }
+            int ultima = quantidade - 1;
+            if (posicao != ultima) {
+                Veiculo movido = veiculos[ultima];
+                veiculos[posicao] = movido;
+                donos[posicao] = donos[ultima];
+                long codigoMovido = CodigoDePlaca.codificar(movido.getPlaca());
+                if (codigoMovido != CodigoDePlaca.SEM_CODIGO) {
+                    posicoes.put(codigoMovido, posicao);
+                } else {
+                    semCodigo.put(movido.getPlaca(), posicao);
+                }
+            }
+            veiculos[ultima] = null;
+            donos[ultima] = null;
+            quantidade--;
+            if (codigo != CodigoDePlaca.SEM_CODIGO) {
+                posicoes.remover(codigo);
+            } else {
+                semCodigo.remove(placa);
+            }
+            return true;
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    /**
+     * Reserva espaço para novas placas, evitando redimensionamentos durante uma
+     * importação em massa.
+     *
+     * @param novas quantidade de placas que ainda serão indexadas
+     */
+    void reservar(int novas) {
+        long carimbo = trava.writeLock();
+        try {
+            posicoes.reservar(novas);
+            if (quantidade + novas > veiculos.length) {
+                crescer(quantidade + novas);
+            }
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    private void crescer(int capacidade) {
+        veiculos = Arrays.copyOf(veiculos, capacidade);
+        donos = Arrays.copyOf(donos, capacidade);
+    }
+
+    /**
+     * Descarta todas as placas indexadas.
+     */
+    void limpar() {
+        long carimbo = trava.writeLock();
+        try {
+            posicoes.limpar();
+            semCodigo.clear();
+            veiculos = new Veiculo[CAPACIDADE_INICIAL];
+            donos = new Cliente[CAPACIDADE_INICIAL];
+            quantidade = 0;
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    int quantidade() {
+        long carimbo = trava.readLock();
+        try {
+            return quantidade;
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    /**
+     * @return cópia dos veículos indexados, na ordem de inserção
+     */
+    List<Veiculo> veiculos() {
+        long carimbo = trava.readLock();
+        try {
+            return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(veiculos, quantidade)));
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+}
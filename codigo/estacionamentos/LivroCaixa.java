@@ -0,0 +1,412 @@
+package estacionamentos;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import estacionamentos.Enums.TipoUso;
+
+/**
+ * Livro-caixa de um estacionamento: acumula os pagamentos por ano, mês e tipo de
+ * uso à medida que as saídas são registradas, de forma que a arrecadação de um
+ * mês é consultada sem percorrer o histórico de usos.
+ *
+ * A arrecadação de um mês é composta por:
+ * <ul>
+ * <li>os pagamentos de usos horistas;</li>
+ * <li>os pagamentos de usos de turno, mais a taxa do turno
+ * ({@link TipoUso#TURNO}) uma vez por cliente que utilizou o estacionamento no
+ * mês;</li>
+ * <li>a mensalidade ({@link TipoUso#MENSALISTA}) uma vez por cliente
+ * mensalista que utilizou o estacionamento no mês.</li>
+ * </ul>
+ * Os pagamentos são atribuídos ao mês da entrada do veículo. Os registros podem
+ * ser feitos por várias cancelas em paralelo. A arrecadação de vários
+ * livros-caixa, como os dos estacionamentos de uma rede, é somada com as taxas
+ * de turno e as mensalidades cobradas uma vez por cliente no conjunto.
+ *
+ * Para cada mês também é mantido o total pago por cliente, de forma que os
+ * maiores clientes do mês são consultados sem percorrer o cadastro. Os totais
+ * ficam em um mapa concorrente, sem bloquear as cancelas, e só são ordenados
+ * quando os maiores clientes são consultados.
+ *
+ * Os valores são acumulados em centavos, de forma que as somas são exatas e não
+ * dependem da ordem dos registros, e livros-caixa montados em paralelo são
+ * somados sem diferenças de arredondamento. As consultas que retornam
+ * {@code double} apenas convertem o total em centavos para reais.
+ */
+public class LivroCaixa {
+
+    /**
+     * Pagamentos de um tipo de uso em um mês.
+     */
+    private static class Lancamentos {
+        private final LongAdder centavos = new LongAdder();
+        private final LongAdder usos = new LongAdder();
+        private final Set<String> clientes = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Total pago por um cliente em um mês, lido para a ordenação.
+     */
+    private static final class TotalCliente {
+        private final String idCliente;
+        private final long centavos;
+
+        private TotalCliente(String idCliente, long centavos) {
+            this.idCliente = idCliente;
+            this.centavos = centavos;
+        }
+    }
+
+    private static final Comparator<TotalCliente> MAIOR_VALOR = Comparator
+            .comparingLong((TotalCliente total) -> total.centavos).reversed()
+            .thenComparing(total -> total.idCliente);
+
+    /**
+     * Totais por cliente de um mês. Cada pagamento soma ao acumulador do
+     * cliente, sem trava e sem alocar; a ordem por valor é montada apenas na
+     * consulta, com um heap limitado à quantidade pedida.
+     */
+    private static class RankingMensal {
+        private final Map<String, LongAdder> porCliente = new ConcurrentHashMap<>();
+
+        void somar(String idCliente, long centavos) {
+            LongAdder total = porCliente.get(idCliente);
+            if (total == null) {
+                total = porCliente.computeIfAbsent(idCliente, k -> new LongAdder());
+            }
+            total.add(centavos);
+        }
+
+        long centavosDoCliente(String idCliente) {
+            LongAdder total = porCliente.get(idCliente);
+            return total != null ? total.sum() : 0;
+        }
+
+        List<TotalCliente> totais() {
+            List<TotalCliente> totais = new ArrayList<>(porCliente.size());
+            for (Map.Entry<String, LongAdder> total : porCliente.entrySet()) {
+                totais.add(new TotalCliente(total.getKey(), total.getValue().sum()));
+            }
+            return totais;
+        }
+
+        List<String> primeiros(int n) {
+            // o pior dos n primeiros fica no topo do heap e é o primeiro a sair
+            PriorityQueue<TotalCliente> melhores = new PriorityQueue<>(MAIOR_VALOR.reversed());
+            for (Map.Entry<String, LongAdder> total : porCliente.entrySet()) {
+                TotalCliente candidato = new TotalCliente(total.getKey(), total.getValue().sum());
+                if (melhores.size() < n) {
+                    melhores.add(candidato);
+                } else if (MAIOR_VALOR.compare(candidato, melhores.peek()) < 0) {
+                    melhores.poll();
+                    melhores.add(candidato);
+                }
+            }
+            List<TotalCliente> ordenados = new ArrayList<>(melhores);
+            ordenados.sort(MAIOR_VALOR);
+            List<String> ids = new ArrayList<>(ordenados.size());
+            for (TotalCliente total : ordenados) {
+                ids.add(total.idCliente);
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Lançamentos de um mês.
+     */
+    private static class Mes {
+        private final Map<TipoUso, Lancamentos> porTipo = new EnumMap<>(TipoUso.class);
+        private final RankingMensal ranking = new RankingMensal();
+
+        Mes() {
+            for (TipoUso tipoUso : TipoUso.values()) {
+                porTipo.put(tipoUso, new Lancamentos());
+            }
+        }
+    }
+
+    private final Map<Integer, Mes> meses = new ConcurrentHashMap<>();
+
+    private static int chave(int mes, int ano) {
+        return ano * 12 + (mes - 1);
+    }
+
+    /**
+     * Registra o pagamento de um uso de vaga.
+     *
+     * @param entrada   data e hora de entrada do uso, que define o mês do
+     *                  lançamento
+     * @param tipoUso   tipo de uso do veículo no momento da saída; usos sem tipo
+     *                  definido são lançados como horistas
+     * @param idCliente identificador do cliente dono do veículo
+     * @param centavos  valor pago pelo uso, em centavos
+     */
+    public void registrarPagamentoEmCentavos(LocalDateTime entrada, TipoUso tipoUso, String idCliente,
+            long centavos) {
+        Mes mes = meses.computeIfAbsent(chave(entrada.getMonthValue(), entrada.getYear()), k -> new Mes());
+        Lancamentos lancamentos = mes.porTipo.get(tipoUso != null ? tipoUso : TipoUso.HORISTA);
+        lancamentos.centavos.add(centavos);
+        lancamentos.usos.increment();
+        if (idCliente != null) {
+            if (centavos != 0) {
+                lancamentos.clientes.add(idCliente);
+            }
+            mes.ranking.somar(idCliente, centavos);
+        }
+    }
+
+    /**
+     * Registra o pagamento de um uso de vaga com o valor em reais, arredondado
+     * para centavos.
+     *
+     * @see #registrarPagamentoEmCentavos(LocalDateTime, TipoUso, String, long)
+     */
+    public void registrarPagamento(LocalDateTime entrada, TipoUso tipoUso, String idCliente, double valor) {
+        registrarPagamentoEmCentavos(entrada, tipoUso, idCliente, Math.round(valor * 100));
+    }
+
+    /**
+     * Soma a este livro-caixa os lançamentos de outro, como se os pagamentos
+     * registrados no outro tivessem sido registrados neste. Usado para juntar os
+     * livros-caixa montados em paralelo a partir de partes disjuntas dos usos.
+     *
+     * @param outro livro-caixa cujos lançamentos são somados; não é alterado
+     */
+    public void incorporar(LivroCaixa outro) {
+        for (Map.Entry<Integer, Mes> mesDoOutro : outro.meses.entrySet()) {
+            Mes mes = meses.computeIfAbsent(mesDoOutro.getKey(), k -> new Mes());
+            for (Map.Entry<TipoUso, Lancamentos> lancamentos : mesDoOutro.getValue().porTipo.entrySet()) {
+                Lancamentos destino = mes.porTipo.get(lancamentos.getKey());
+                destino.centavos.add(lancamentos.getValue().centavos.sum());
+                destino.usos.add(lancamentos.getValue().usos.sum());
+                destino.clientes.addAll(lancamentos.getValue().clientes);
+            }
+            for (TotalCliente total : mesDoOutro.getValue().ranking.totais()) {
+                mes.ranking.somar(total.idCliente, total.centavos);
+            }
+        }
+    }
+
+    /**
+     * Retorna a arrecadação de um tipo de uso em um mês, incluindo as taxas de
+     * turno e mensalidades.
+     *
+     * @param mes     mês entre 1 e 12
+     * @param ano     ano
+     * @param tipoUso tipo de uso
+     * @return valor arrecadado, em centavos
+     */
+    public long arrecadacaoNoMesEmCentavos(int mes, int ano, TipoUso tipoUso) {
+        Mes lancamentos = meses.get(chave(mes, ano));
+        if (lancamentos == null) {
+            return 0;
+        }
+        return arrecadacao(tipoUso, lancamentos.porTipo.get(tipoUso));
+    }
+
+    /**
+     * @see #arrecadacaoNoMesEmCentavos(int, int, TipoUso)
+     * @return valor arrecadado, em reais
+     */
+    public double arrecadacaoNoMes(int mes, int ano, TipoUso tipoUso) {
+        return arrecadacaoNoMesEmCentavos(mes, ano, tipoUso) / 100.0;
+    }
+
+    /**
+     * Retorna a arrecadação total de um mês.
+     *
+     * @param mes mês entre 1 e 12
+     * @param ano ano
+     * @return valor arrecadado, em centavos
+     */
+    public long arrecadacaoNoMesEmCentavos(int mes, int ano) {
+        Mes lancamentos = meses.get(chave(mes, ano));
+        if (lancamentos == null) {
+            return 0;
+        }
+        return arrecadacao(lancamentos.porTipo);
+    }
+
+    /**
+     * @see #arrecadacaoNoMesEmCentavos(int, int)
+     * @return valor arrecadado, em reais
+     */
+    public double arrecadacaoNoMes(int mes, int ano) {
+        return arrecadacaoNoMesEmCentavos(mes, ano) / 100.0;
+    }
+
+    /**
+     * Retorna a arrecadação de todos os meses registrados.
+     *
+     * @return valor arrecadado, em centavos
+     */
+    public long totalArrecadadoEmCentavos() {
+        long total = 0;
+        for (Mes mes : meses.values()) {
+            total += arrecadacao(mes.porTipo);
+        }
+        return total;
+    }
+
+    /**
+     * @see #totalArrecadadoEmCentavos()
+     * @return valor arrecadado, em reais
+     */
+    public double totalArrecadado() {
+        return totalArrecadadoEmCentavos() / 100.0;
+    }
+
+    /**
+     * Retorna a arrecadação de um mês somada em vários livros-caixa, com a taxa
+     * de turno e a mensalidade de cada cliente cobradas uma única vez, ainda
+     * que ele tenha usado mais de um dos estacionamentos no mês.
+     *
+     * @param livros livros-caixa somados
+     * @param mes    mês entre 1 e 12
+     * @param ano    ano
+     * @return valor arrecadado, em centavos
+     */
+    static long arrecadacaoNoMesEmCentavos(Collection<LivroCaixa> livros, int mes, int ano) {
+        List<Mes> doMes = new ArrayList<>(livros.size());
+        for (LivroCaixa livro : livros) {
+            Mes lancamentos = livro.meses.get(chave(mes, ano));
+            if (lancamentos != null) {
+                doMes.add(lancamentos);
+            }
+        }
+        return arrecadacao(doMes);
+    }
+
+    /**
+     * Retorna a arrecadação de todos os meses somada em vários livros-caixa.
+     *
+     * @see #arrecadacaoNoMesEmCentavos(Collection, int, int)
+     * @param livros livros-caixa somados
+     * @return valor arrecadado, em centavos
+     */
+    static long totalArrecadadoEmCentavos(Collection<LivroCaixa> livros) {
+        Map<Integer, List<Mes>> porMes = new HashMap<>();
+        for (LivroCaixa livro : livros) {
+            for (Map.Entry<Integer, Mes> mes : livro.meses.entrySet()) {
+                porMes.computeIfAbsent(mes.getKey(), k -> new ArrayList<>()).add(mes.getValue());
+            }
+        }
+        long total = 0;
+        for (List<Mes> doMes : porMes.values()) {
+            total += arrecadacao(doMes);
+        }
+        return total;
+    }
+
+    /**
+     * Retorna a quantidade de usos pagos de um tipo de uso em um mês.
+     *
+     * @param mes     mês entre 1 e 12
+     * @param ano     ano
+     * @param tipoUso tipo de uso
+     * @return quantidade de usos
+     */
+    public long usosNoMes(int mes, int ano, TipoUso tipoUso) {
+        Mes lancamentos = meses.get(chave(mes, ano));
+        if (lancamentos == null) {
+            return 0;
+        }
+        return lancamentos.porTipo.get(tipoUso).usos.sum();
+    }
+
+    /**
+     * Retorna o total pago por um cliente em um mês.
+     *
+     * @param mes       mês entre 1 e 12
+     * @param ano       ano
+     * @param idCliente identificador do cliente
+     * @return soma dos pagamentos do cliente no mês, em centavos
+     */
+    public long arrecadadoDoClienteNoMesEmCentavos(int mes, int ano, String idCliente) {
+        Mes lancamentos = meses.get(chave(mes, ano));
+        if (lancamentos == null) {
+            return 0;
+        }
+        return lancamentos.ranking.centavosDoCliente(idCliente);
+    }
+
+    /**
+     * @see #arrecadadoDoClienteNoMesEmCentavos(int, int, String)
+     * @return soma dos pagamentos do cliente no mês, em reais
+     */
+    public double arrecadadoDoClienteNoMes(int mes, int ano, String idCliente) {
+        return arrecadadoDoClienteNoMesEmCentavos(mes, ano, idCliente) / 100.0;
+    }
+
+    /**
+     * Retorna os clientes que mais pagaram em um mês, do maior para o menor
+     * valor. Clientes com o mesmo valor são ordenados pelo identificador.
+     *
+     * @param mes mês entre 1 e 12
+     * @param ano ano
+     * @param n   quantidade máxima de clientes
+     * @return identificadores de até n clientes com pagamentos no mês
+     */
+    public List<String> maioresClientes(int mes, int ano, int n) {
+        Mes lancamentos = meses.get(chave(mes, ano));
+        if (lancamentos == null || n <= 0) {
+            return new ArrayList<>();
+        }
+        return lancamentos.ranking.primeiros(n);
+    }
+
+    private static long arrecadacao(Map<TipoUso, Lancamentos> porTipo) {
+        long total = 0;
+        for (Map.Entry<TipoUso, Lancamentos> lancamentos : porTipo.entrySet()) {
+            total += arrecadacao(lancamentos.getKey(), lancamentos.getValue());
+        }
+        return total;
+    }
+
+    /**
+     * Arrecadação de um mesmo mês em vários livros-caixa: os pagamentos são
+     * somados e os clientes de cada tipo de uso, unidos.
+     */
+    private static long arrecadacao(List<Mes> meses) {
+        long total = 0;
+        for (TipoUso tipoUso : TipoUso.values()) {
+            long centavos = 0;
+            Set<String> clientes = new HashSet<>();
+            for (Mes mes : meses) {
+                Lancamentos lancamentos = mes.porTipo.get(tipoUso);
+                centavos += lancamentos.centavos.sum();
+                clientes.addAll(lancamentos.clientes);
+            }
+            total += arrecadacao(tipoUso, centavos, clientes.size());
+        }
+        return total;
+    }
+
+    private static long arrecadacao(TipoUso tipoUso, Lancamentos lancamentos) {
+        return arrecadacao(tipoUso, lancamentos.centavos.sum(), lancamentos.clientes.size());
+    }
+
+    private static long arrecadacao(TipoUso tipoUso, long centavos, int clientes) {
+        switch (tipoUso) {
+            case TURNO:
+                return centavos + clientes * TipoUso.TURNO.getCentavos();
+            case MENSALISTA:
+                return clientes * TipoUso.MENSALISTA.getCentavos();
+            default:
+                return centavos;
+        }
+    }
+}
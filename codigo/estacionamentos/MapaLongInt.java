@@ -0,0 +1,182 @@
+package estacionamentos;
+
+/**
+ * Mapa de códigos de placa para inteiros com endereçamento aberto e sondagem
+ * linear, sem objetos por entrada: as chaves e os valores ficam em dois
+ * vetores paralelos. As chaves devem ser positivas, como os códigos de
+ * {@link CodigoDePlaca}; a posição vazia é marcada por zero. Uma remoção
+ * desloca para trás as chaves seguintes do mesmo agrupamento, sem marcas de
+ * removido, e a tabela dobra de tamanho quando passa da metade da ocupação.
+ *
+ * Não é thread-safe. Uma leitura concorrente com uma escrita sempre termina,
+ * pois a tabela nunca fica cheia e a tabela substituída em um redimensionamento
+ * não é alterada, mas o resultado só é válido se a leitura for confirmada pelo
+ * dono do mapa.
+ */
+final class MapaLongInt {
+
+    /**
+     * Valor devolvido para as chaves ausentes.
+     */
+    static final int AUSENTE = -1;
+
+    private static final long VAZIA = 0;
+    private static final int CAPACIDADE_MINIMA = 8;
+
+    private long[] chaves;
+    private int[] valores;
+    private int quantidade;
+
+    MapaLongInt() {
+        this(0);
+    }
+
+    /**
+     * @param esperadas quantidade de chaves que o mapa deve guardar sem crescer
+     */
+    MapaLongInt(int esperadas) {
+        alocar(capacidadePara(esperadas));
+    }
+
+    int quantidade() {
+        return quantidade;
+    }
+
+    /**
+     * @param chave código positivo
+     * @return valor da chave, ou {@link #AUSENTE}
+     */
+    int get(long chave) {
+        long[] chaves = this.chaves;
+        int[] valores = this.valores;
+        if (valores.length != chaves.length) {
+            // leitura concorrente com um redimensionamento
+            return AUSENTE;
+        }
+        int mascara = chaves.length - 1;
+        for (int i = posicao(chave, mascara);; i = (i + 1) & mascara) {
+            long atual = chaves[i];
+            if (atual == chave) {
+                return valores[i];
+            }
+            if (atual == VAZIA) {
+                return AUSENTE;
+            }
+        }
+    }
+
+    /**
+     * @param chave código positivo
+     * @param valor valor associado à chave
+     * @return valor anterior da chave, ou {@link #AUSENTE}
+     */
+    int put(long chave, int valor) {
+        if (chave <= 0) {
+            throw new IllegalArgumentException("Chave inválida: " + chave);
+        }
+        if ((quantidade + 1) * 2 > chaves.length) {
+            redimensionar(chaves.length * 2);
+        }
+        int mascara = chaves.length - 1;
+        for (int i = posicao(chave, mascara);; i = (i + 1) & mascara) {
+            long atual = chaves[i];
+            if (atual == chave) {
+                int anterior = valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+            if (atual == VAZIA) {
+                valores[i] = valor;
+                chaves[i] = chave;
+                quantidade++;
+                return AUSENTE;
+            }
+        }
+    }
+
+    /**
+     * @param chave código positivo
+     * @return valor removido da chave, ou {@link #AUSENTE}
+     */
+    int remover(long chave) {
+        int mascara = chaves.length - 1;
+        int i = posicao(chave, mascara);
+        while (chaves[i] != chave) {
+            if (chaves[i] == VAZIA) {
+                return AUSENTE;
+            }
+            i = (i + 1) & mascara;
+        }
+        int removido = valores[i];
+        int vazia = i;
+        for (int j = (i + 1) & mascara; chaves[j] != VAZIA; j = (j + 1) & mascara) {
+            // a chave em j continua alcançável se a sua posição ideal estiver
+            // entre a posição vazia (exclusive) e j
+            int distancia = (j - posicao(chaves[j], mascara)) & mascara;
+            if (distancia >= ((j - vazia) & mascara)) {
+                valores[vazia] = valores[j];
+                chaves[vazia] = chaves[j];
+                vazia = j;
+            }
+        }
+        chaves[vazia] = VAZIA;
+        valores[vazia] = 0;
+        quantidade--;
+        return removido;
+    }
+
+    /**
+     * Aumenta a tabela, se necessário, para guardar mais chaves sem crescer.
+     *
+     * @param novas quantidade de chaves que ainda serão inseridas
+     */
+    void reservar(int novas) {
+        int capacidade = capacidadePara(quantidade + novas);
+        if (capacidade > chaves.length) {
+            redimensionar(capacidade);
+        }
+    }
+
+    void limpar() {
+        alocar(CAPACIDADE_MINIMA);
+    }
+
+    private void redimensionar(int capacidade) {
+        long[] antigas = chaves;
+        int[] antigos = valores;
+        long[] novas = new long[capacidade];
+        int[] novos = new int[capacidade];
+        int mascara = capacidade - 1;
+        for (int j = 0; j < antigas.length; j++) {
+            if (antigas[j] != VAZIA) {
+                int i = posicao(antigas[j], mascara);
+                while (novas[i] != VAZIA) {
+                    i = (i + 1) & mascara;
+                }
+                novas[i] = antigas[j];
+                novos[i] = antigos[j];
+            }
+        }
+        valores = novos;
+        chaves = novas;
+    }
+
+    private void alocar(int capacidade) {
+        valores = new int[capacidade];
+        chaves = new long[capacidade];
+        quantidade = 0;
+    }
+
+    private static int capacidadePara(int esperadas) {
+        long minima = Math.max(CAPACIDADE_MINIMA, 2L * esperadas);
+        if (minima > 1 << 30) {
+            throw new IllegalArgumentException("Quantidade de chaves excessiva: " + esperadas);
+        }
+        return Integer.highestOneBit((int) minima - 1) << 1;
+    }
+
+    private static int posicao(long chave, int mascara) {
+        long misturada = chave * 0x9E3779B97F4A7C15L;
+        return (int) (misturada ^ (misturada >>> 32)) & mascara;
+    }
+}
@@ -0,0 +1,302 @@
+package estacionamentos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import estacionamentos.interfaces.ObserverVeiculos;
+import excecoes.ExcecaoClienteJaCadastrado;
+import excecoes.ExcecaoClienteNaoCadastrado;
+import excecoes.ExcecaoVeiculoJaCadastrado;
+import excecoes.ExcecaoVeiculoJaEstacionado;
+
+/**
+ * Rede de estacionamentos que compartilham o cadastro de clientes. Cada cliente
+ * e cada veículo é guardado uma única vez na rede, com o único índice de placas
+ * da rede; cada estacionamento mantém apenas a sua vista dos clientes
+ * associados a ele, com referências aos mesmos objetos, e busca as placas no
+ * índice da rede.
+ *
+ * A rede também mantém as sessões ativas de todos os estacionamentos, pela
+ * placa: um veículo estacionado em um estacionamento da rede não pode entrar
+ * em outro até sair. As sessões são abertas e encerradas pelos próprios
+ * estacionamentos, sob o monitor do veículo.
+ *
+ * Os totais da rede que dependem do histórico dos veículos percorrem o
+ * cadastro da rede uma única vez, sem contar de novo os clientes associados a
+ * mais de um estacionamento. A arrecadação soma os pagamentos dos livros-caixa,
+ * em que cada pagamento é lançado apenas no estacionamento da saída, e cobra a
+ * taxa de turno e a mensalidade uma única vez por cliente da rede no mês, ainda
+ * que ele tenha saído de mais de um estacionamento.
+ */
+public class RedeDeEstacionamentos implements ObserverVeiculos {
+
+    private final List<Estacionamento> estacionamentos = new CopyOnWriteArrayList<>();
+    private final Map<String, Cliente> clientes = new ConcurrentHashMap<>();
+    private final IndiceDePlacas placas = new IndiceDePlacas();
+    private final Map<String, Cliente> placasReservadas = new HashMap<>();
+    private final Map<String, Estacionamento> sessoes = new ConcurrentHashMap<>();
+
+    /**
+     * Adiciona um estacionamento à rede, cadastrando na rede os clientes já
+     * associados a ele e as suas sessões ativas. A partir de então as placas do
+     * estacionamento são buscadas no índice da rede.
+     *
+     * @param estacionamento estacionamento a adicionar
+     * @throws IllegalStateException      caso o estacionamento já pertença a
+     *                                    outra rede
+     * @throws ExcecaoClienteJaCadastrado caso algum cliente do estacionamento
+     *                                    tenha o identificador de outro cliente
+     *                                    da rede
+     * @throws ExcecaoVeiculoJaCadastrado caso alguma placa do estacionamento
+     *                                    pertença a outro cliente da rede
+     * @throws ExcecaoVeiculoJaEstacionado caso algum veículo estacionado no
+     *                                     estacionamento já esteja em outro
+     *                                     estacionamento da rede
+     */
+    public void adicionarEstacionamento(Estacionamento estacionamento) {
+        if (!estacionamento.entrarNaRede(this)) {
+            return;
+        }
+        estacionamentos.add(estacionamento);
+        for (String placa : estacionamento.placasEstacionadas()) {
+            if (!abrirSessao(placa, estacionamento)) {
+                throw new ExcecaoVeiculoJaEstacionado(
+                        "O veículo " + placa + " está em mais de um estacionamento da rede");
+            }
+        }
+    }
+
+    /**
+     * @return estacionamentos da rede, na ordem em que foram adicionados
+     */
+    public List<Estacionamento> getEstacionamentos() {
+        return Collections.unmodifiableList(estacionamentos);
+    }
+
+    /**
+     * Cadastra um cliente na rede, com os seus veículos. Cadastrar de novo o
+     * mesmo cliente não tem efeito.
+     *
+     * @param cliente cliente a cadastrar
+     * @throws ExcecaoClienteJaCadastrado caso outro cliente da rede tenha o mesmo
+     *                                    identificador
+     * @throws ExcecaoVeiculoJaCadastrado caso alguma placa do cliente pertença a
+     *                                    outro cliente da rede
+     */
+    public void cadastrarCliente(Cliente cliente) {
+        if (clientes.get(cliente.getId()) == cliente) {
+            return;
+        }
+        // registrado antes de indexar, para que um veículo adicionado durante o
+        // cadastro seja notificado
+        cliente.addObserver(this);
+        try {
+            synchronized (this) {
+                Cliente cadastrado = clientes.get(cliente.getId());
+                if (cadastrado == cliente) {
+                    return;
+                }
+                if (cadastrado != null) {
+                    throw new ExcecaoClienteJaCadastrado(
+                            "Já existe outro cliente com o id " + cliente.getId() + " na rede");
+                }
+                for (Veiculo veiculo : cliente.getVeiculos()) {
+                    verificarPlaca(cliente, veiculo);
+                }
+                for (Veiculo veiculo : cliente.getVeiculos()) {
+                    placas.adicionar(veiculo, cliente);
+                }
+                clientes.put(cliente.getId(), cliente);
+            }
+        } catch (RuntimeException e) {
+            if (clientes.get(cliente.getId()) != cliente) {
+                cliente.removeObserver(this);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Associa um cliente da rede a um estacionamento da rede.
+     *
+     * @param idCliente      identificador do cliente
+     * @param estacionamento estacionamento da rede
+     * @throws ExcecaoClienteNaoCadastrado caso o cliente não esteja cadastrado
+     *                                     na rede
+     * @throws ExcecaoClienteJaCadastrado  caso o cliente já esteja associado ao
+     *                                     estacionamento
+     * @throws IllegalArgumentException    caso o estacionamento não pertença à
+     *                                     rede
+     */
+    public void associar(String idCliente, Estacionamento estacionamento) throws ExcecaoClienteNaoCadastrado {
+        if (estacionamento.getRede() != this) {
+            throw new IllegalArgumentException("O estacionamento " + estacionamento.getNome() + " não pertence à rede");
+        }
+        Cliente cliente = clientes.get(idCliente);
+        if (cliente == null) {
+            throw new ExcecaoClienteNaoCadastrado("O cliente " + idCliente + " não está cadastrado na rede");
+        }
+        estacionamento.addCliente(cliente);
+    }
+
+    /**
+     * Reserva na rede a placa de um veículo adicionado a um cliente da rede. O
+     * veículo só é indexado quando a adição é confirmada.
+     *
+     * @throws ExcecaoVeiculoJaCadastrado caso a placa já pertença a outro
+     *                                    cliente da rede
+     */
+    @Override
+    public synchronized void veiculoAdicionado(Cliente cliente, Veiculo veiculo) {
+        verificarPlaca(cliente, veiculo);
+        placasReservadas.put(veiculo.getPlaca(), cliente);
+    }
+
+    @Override
+    public synchronized void veiculoConfirmado(Cliente cliente, Veiculo veiculo) {
+        placasReservadas.remove(veiculo.getPlaca(), cliente);
+        if (clientes.get(cliente.getId()) == cliente) {
+            placas.adicionar(veiculo, cliente);
+        }
+    }
+
+    @Override
+    public synchronized void veiculoCancelado(Cliente cliente, Veiculo veiculo) {
+        placasReservadas.remove(veiculo.getPlaca(), cliente);
+        placas.remover(veiculo);
+    }
+
+    private void verificarPlaca(Cliente cliente, Veiculo veiculo) {
+        Cliente dono = placas.dono(veiculo.getPlaca());
+        if (dono == null) {
+            dono = placasReservadas.get(veiculo.getPlaca());
+        }
+        if (dono != null && dono != cliente) {
+            throw new ExcecaoVeiculoJaCadastrado("A placa " + veiculo.getPlaca() + " já pertence a outro cliente da rede");
+        }
+    }
+
+    /**
+     * @param id identificador do cliente
+     * @return cliente da rede, ou null
+     */
+    public Cliente getCliente(String id) {
+        return clientes.get(id);
+    }
+
+    /**
+     * @return vista somente de leitura dos clientes da rede
+     */
+    public Collection<Cliente> getClientes() {
+        return Collections.unmodifiableCollection(clientes.values());
+    }
+
+    /**
+     * @param placa placa do veículo
+     * @return veículo da rede com a placa, ou null
+     */
+    public Veiculo buscarVeiculo(String placa) {
+        return placas.veiculo(placa);
+    }
+
+    /**
+     * @param placa placa do veículo
+     * @return dono do veículo da rede com a placa, ou null
+     */
+    public Cliente buscarDono(String placa) {
+        return placas.dono(placa);
+    }
+
+    /**
+     * Registra a sessão de um veículo que está entrando em um estacionamento.
+     *
+     * @param placa          placa do veículo
+     * @param estacionamento estacionamento da entrada
+     * @return false caso o veículo já esteja em outro estacionamento da rede
+     */
+    boolean abrirSessao(String placa, Estacionamento estacionamento) {
+        Estacionamento atual = sessoes.putIfAbsent(placa, estacionamento);
+        return atual == null || atual == estacionamento;
+    }
+
+    /**
+     * Encerra a sessão de um veículo no estacionamento, caso exista.
+     */
+    void encerrarSessao(String placa, Estacionamento estacionamento) {
+        sessoes.remove(placa, estacionamento);
+    }
+
+    /**
+     * @param placa placa do veículo
+     * @return estacionamento da rede em que o veículo está, ou null
+     */
+    public Estacionamento estacionamentoDe(String placa) {
+        return sessoes.get(placa);
+    }
+
+    /**
+     * @return quantidade de veículos estacionados em toda a rede
+     */
+    public int sessoesAtivas() {
+        return sessoes.size();
+    }
+
+    /**
+     * @return total arrecadado pela rede, em centavos
+     */
+    public long totalArrecadadoEmCentavos() {
+        return LivroCaixa.totalArrecadadoEmCentavos(livrosCaixa());
+    }
+
+    /**
+     * @see Estacionamento#arrecadacaoNoMesEmCentavos(int, int)
+     * @return arrecadação da rede no mês, em centavos
+     */
+    public long arrecadacaoNoMesEmCentavos(int mes, int ano) {
+        return LivroCaixa.arrecadacaoNoMesEmCentavos(livrosCaixa(), mes, ano);
+    }
+
+    private List<LivroCaixa> livrosCaixa() {
+        List<LivroCaixa> livros = new ArrayList<>(estacionamentos.size());
+        for (Estacionamento estacionamento : estacionamentos) {
+            livros.add(estacionamento.getLivroCaixa());
+        }
+        return livros;
+    }
+
+    /**
+     * @return quantidade de usos no mês dos veículos da rede, contando cada
+     *         veículo uma única vez
+     */
+    public int totalDeUsoNoMesAno(int mes, int ano) {
+        int total = 0;
+        for (Cliente cliente : clientes.values()) {
+            total += cliente.totalDeUsoNoMesAnoCliente(mes, ano);
+        }
+        return total;
+    }
+
+    /**
+     * @return valor médio pago por uso pelos veículos da rede, em reais, em uma
+     *         única passagem pelo cadastro
+     */
+    public double valorMedioPorUso() {
+        long centavos = 0;
+        long usos = 0;
+        for (Cliente cliente : clientes.values()) {
+            for (Veiculo veiculo : cliente.getVeiculos()) {
+                synchronized (veiculo) {
+                    centavos += veiculo.totalArrecadadoEmCentavos();
+                    usos += veiculo.totalDeUsos();
+                }
+            }
+        }
+        return usos > 0 ? centavos / 100.0 / usos : centavos / 100.0;
+    }
+}
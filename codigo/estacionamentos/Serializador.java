@@ -1,5 +1,6 @@
 package estacionamentos;
 
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectOutputStream;
 
@@ -15,10 +16,10 @@ public class Serializador {
      * @throws Exception 
      */
     public void serializar(String path, Object object) throws Exception{
-        FileOutputStream outFile = new FileOutputStream(path);
-        ObjectOutputStream serializar = new ObjectOutputStream(outFile);
-        serializar.writeObject(object);
-        serializar.close();    
+        try (ObjectOutputStream serializar = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(path)))) {
+            serializar.writeObject(object);
+        }
         System.out.println("Objeto serializado!");    
     }
     
@@ -12,16 +12,13 @@ import excecoes.ExcecaoTempoMinimoNaoAtingido;
 
 public class UsoDeVaga {
 
-    public final double FRACAO_USO = 0.25;
-    public final double VALOR_FRACAO = 4.0;
-    public final double VALOR_MAXIMO = 50.0;
-    public final double MENSALIDADE = 500.0;
+    public static final double FRACAO_USO = 0.25;
 
     private final CalcularUsoDeVaga calcularUsoDeVaga;
     private Vaga vaga;
     private LocalDateTime entrada;
     private LocalDateTime saida;
-    private double valorPago;
+    private long centavosPagos;
     private TipoServico servico;
 
     /**
@@ -34,10 +31,23 @@ public class UsoDeVaga {
         this.vaga = vaga;
         this.entrada = LocalDateTime.now();
         this.saida = null;
-        this.valorPago = 0.0;
+        this.centavosPagos = 0;
         this.calcularUsoDeVaga = calcularUsoDeVaga;
     }
 
+    /**
+     * Construtor da classe UsoDeVaga com a data de entrada informada, usado para
+     * registrar usos com entrada conhecida.
+     * 
+     * @param vaga              Vaga que será utilizada.
+     * @param calcularUsoDeVaga Estratégia de cálculo do valor.
+     * @param entrada           Data e hora da entrada do veículo na vaga.
+     */
+    public UsoDeVaga(Vaga vaga, CalcularUsoDeVaga calcularUsoDeVaga, LocalDateTime entrada) {
+        this(vaga, calcularUsoDeVaga);
+        this.entrada = entrada;
+    }
+
     public Vaga getVaga() {
         return vaga;
     }
@@ -50,8 +60,18 @@ public class UsoDeVaga {
         return saida;
     }
 
+    /**
+     * @return valor pago pelo uso, em centavos
+     */
+    public long getCentavosPagos() {
+        return centavosPagos;
+    }
+
+    /**
+     * @return valor pago pelo uso, em reais, para exibição
+     */
     public double getValorPago() {
-        return valorPago;
+        return centavosPagos / 100.0;
     }
 
     public TipoServico getTipoServico() {
@@ -67,9 +87,9 @@ public class UsoDeVaga {
      * dependento do tipo de serviço
      * 
      * @param servico o serviço pode ser MANOBRISTA, LAVAGEM, POLIMENTO
-     * @return retorna o valor do serviço.
+     * @return retorna o valor do serviço, em centavos.
      */
-    public Double contratarServico(TipoServico servico) {
+    public long contratarServico(TipoServico servico) {
 
         if (this.servico != null) {
             throw new ExcecaoServicoJaContratado();
@@ -79,7 +99,7 @@ public class UsoDeVaga {
 
         if (duration.toHours() >= servico.getTempo()) {
             this.servico = servico;
-            return servico.getValor();
+            return servico.getCentavos();
         }
 
         throw new ExcecaoTempoMinimoNaoAtingido();
@@ -87,11 +107,20 @@ public class UsoDeVaga {
 
     @Override
     public String toString() {
+        return descrever(vaga, entrada, saida, centavosPagos, servico);
+    }
+
+    /**
+     * Descreve um uso de vaga a partir dos seus campos, no formato de
+     * {@link #toString()}, para usos lidos das colunas sem serem recriados.
+     */
+    static String descrever(Vaga vaga, LocalDateTime entrada, LocalDateTime saida, long centavosPagos,
+            TipoServico servico) {
         return "UsoDeVaga \n" +
                 "Vaga:" + vaga + ",\n"+
                 "Entrada: " + entrada +",\n"+
                 "Saida: " + saida +",\n"+
-                "ValorPago: " + valorPago +",\n"+
+                "ValorPago: " + centavosPagos / 100.0 +",\n"+
                 "Servico: " + servico + ",\n";
     }
 
@@ -99,18 +128,49 @@ public class UsoDeVaga {
         return this.saida = saida;
     }
 
+    public void setCentavosPagos(long centavosPagos) {
+        this.centavosPagos = centavosPagos;
+    }
+
+    /**
+     * @param valorPago valor em reais, arredondado para centavos
+     */
+    public void setValorPago(double valorPago) {
+        this.centavosPagos = Math.round(valorPago * 100);
+    }
+
     /**
      * sair da vaga
-     * @return valor pago pelo uso da vaga
+     * @return valor pago pelo uso da vaga, em centavos
      */
-    public double sair(TipoUso tipoUso) {
+    public long sair(TipoUso tipoUso) {
         if (getSaida() != null) {
             throw new ExcecaoSaidaJaFinalizada();
         }
 
         if (getVaga().sair()) {
             setSaida(LocalDateTime.now());
-            return this.valorPago = valorPago(tipoUso);
+            return this.centavosPagos = valorEmCentavos(tipoUso);
+        } else {
+            throw new ExcecaoNaoEhPossivelSairDaVaga();
+        }
+    }
+
+    /**
+     * Sai da vaga com a data de saída e o valor já conhecidos, usado para
+     * reproduzir uma saída registrada anteriormente.
+     * @param saida Data e hora da saída.
+     * @param centavosPagos Valor pago pelo uso, em centavos.
+     * @return valor pago pelo uso da vaga, em centavos
+     */
+    public long sair(LocalDateTime saida, long centavosPagos) {
+        if (getSaida() != null) {
+            throw new ExcecaoSaidaJaFinalizada();
+        }
+
+        if (getVaga().sair()) {
+            setSaida(saida);
+            return this.centavosPagos = centavosPagos;
         } else {
             throw new ExcecaoNaoEhPossivelSairDaVaga();
         }
@@ -118,11 +178,11 @@ public class UsoDeVaga {
 
     /**
      * Calcula o valor a ser pago pelo uso da vaga.
-     * @return Valor a ser pago pelo uso da vaga.
+     * @return Valor a ser pago pelo uso da vaga, em centavos.
      */
-    public double valorPago(TipoUso tipoUso){
+    public long valorEmCentavos(TipoUso tipoUso){
 
-        return calcularUsoDeVaga.valorPago(entrada, saida);
+        return calcularUsoDeVaga.valorEmCentavos(entrada, saida);
       
     }
 
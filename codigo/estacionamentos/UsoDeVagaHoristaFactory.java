@@ -1,5 +1,7 @@
 package estacionamentos;
 
+import java.time.LocalDateTime;
+
 import estacionamentos.interfaces.UsoDeVagaFactory;
 
 public class UsoDeVagaHoristaFactory implements UsoDeVagaFactory {
@@ -11,5 +13,10 @@ public class UsoDeVagaHoristaFactory implements UsoDeVagaFactory {
     public UsoDeVaga criarUsoDeVaga(Vaga vaga) {
         return new UsoDeVaga(vaga, new UsoDeVagaHorista());
     }
+
+    @Override
+    public UsoDeVaga criarUsoDeVaga(Vaga vaga, LocalDateTime entrada) {
+        return new UsoDeVaga(vaga, new UsoDeVagaHorista(), entrada);
+    }
     
 }
\ No newline at end of file
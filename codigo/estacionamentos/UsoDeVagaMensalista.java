@@ -6,17 +6,17 @@ import estacionamentos.interfaces.CalcularUsoDeVaga;
 
 public class UsoDeVagaMensalista implements CalcularUsoDeVaga {
 
-    public final double MENSALIDADE = 500.0;
+    public static final long CENTAVOS_MENSALIDADE = 50000;
 
     /**
      * Retorna o valor Mensal do uso da vaga.
      * @param getEntrada Hora de entrada do veículo na vaga.
      * @param getSaida Hora de saída do veículo da vaga.
-     * @return O valor a ser pago pelo uso da vaga.
+     * @return O valor a ser pago pelo uso da vaga, em centavos.
      * */
     @Override
-    public double valorPago(LocalDateTime getEntrada, LocalDateTime getSaida) {
-        return MENSALIDADE;
+    public long valorEmCentavos(LocalDateTime getEntrada, LocalDateTime getSaida) {
+        return CENTAVOS_MENSALIDADE;
     }
 
 }
@@ -1,5 +1,7 @@
 package estacionamentos;
 
+import java.time.LocalDateTime;
+
 import estacionamentos.interfaces.UsoDeVagaFactory;
 
 public class UsoDeVagaMensalistaFactory implements UsoDeVagaFactory {
@@ -12,5 +14,10 @@ public class UsoDeVagaMensalistaFactory implements UsoDeVagaFactory {
     public UsoDeVaga criarUsoDeVaga(Vaga vaga) {
         return new UsoDeVaga(vaga, new UsoDeVagaMensalista());
     }
+
+    @Override
+    public UsoDeVaga criarUsoDeVaga(Vaga vaga, LocalDateTime entrada) {
+        return new UsoDeVaga(vaga, new UsoDeVagaMensalista(), entrada);
+    }
     
 }
\ No newline at end of file
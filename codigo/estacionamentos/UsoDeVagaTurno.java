@@ -8,10 +8,21 @@ import estacionamentos.interfaces.CalcularUsoDeVaga;
 
 public class UsoDeVagaTurno implements CalcularUsoDeVaga {
 
-    private final double VALOR_FRACAO = 4.0;
-    private final double VALOR_TURNO = 200.0;
+    private static final long CENTAVOS_FRACAO = 400;
+    private static final long CENTAVOS_TURNO = 20000;
     private TipoTurno tipoTurno;
 
+    public UsoDeVagaTurno() {
+    }
+
+    /**
+     * Construtor com o turno contratado pelo cliente.
+     * @param tipoTurno Turno contratado.
+     */
+    public UsoDeVagaTurno(TipoTurno tipoTurno) {
+        this.tipoTurno = tipoTurno;
+    }
+
 
     /**
      * Calcula o valor a ser pago pelo uso da vaga com base no período de estacionamento.
@@ -21,23 +32,24 @@ public class UsoDeVagaTurno implements CalcularUsoDeVaga {
      *
      * @param getEntrada Hora de entrada do veículo na vaga.
      * @param getSaida   Hora de saída do veículo da vaga.
-     * @return O valor a ser pago pelo uso da vaga.
+     * @return O valor a ser pago pelo uso da vaga, em centavos.
      */
     @Override
-    public double valorPago(LocalDateTime getEntrada, LocalDateTime getSaida) {
+    public long valorEmCentavos(LocalDateTime getEntrada, LocalDateTime getSaida) {
 
         LocalTime tempoEntrada = getEntrada.toLocalTime();
 
         // Verifica se o veículo está estacionado durante um turno específico
-        if (tipoTurno.estaNoTurno(tempoEntrada)) {
-            return VALOR_TURNO;
+        if (tipoTurno != null && tipoTurno.estaNoTurno(tempoEntrada)) {
+            return CENTAVOS_TURNO;
         } else {
             // Calcula o valor com base no tempo estacionado fora do turno
             long minutosEstacionados = getEntrada.until(getSaida, java.time.temporal.ChronoUnit.MINUTES);
             if(minutosEstacionados < 15){
-                return VALOR_FRACAO;
+                return CENTAVOS_FRACAO;
             }
-            return minutosEstacionados / 15.0 * VALOR_FRACAO;
+            // proporcional aos minutos, arredondado para o centavo mais próximo
+            return (minutosEstacionados * CENTAVOS_FRACAO * 2 + 15) / 30;
         }
     }
     
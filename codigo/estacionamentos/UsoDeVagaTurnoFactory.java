@@ -1,16 +1,37 @@
 package estacionamentos;
 
+import java.time.LocalDateTime;
+
+import estacionamentos.Enums.TipoTurno;
 import estacionamentos.interfaces.UsoDeVagaFactory;
 
 public class UsoDeVagaTurnoFactory implements UsoDeVagaFactory {
 
+    private TipoTurno tipoTurno;
+
+    public UsoDeVagaTurnoFactory() {
+    }
+
+    public UsoDeVagaTurnoFactory(TipoTurno tipoTurno) {
+        this.tipoTurno = tipoTurno;
+    }
+
+    public TipoTurno getTipoTurno() {
+        return tipoTurno;
+    }
+
     @Override
     /**
      * Cria um uso de vaga para a vaga passada como parâmetro.
      * Nesse caso, é uma vaga de Turno
      */
     public UsoDeVaga criarUsoDeVaga(Vaga vaga) {
-        return new UsoDeVaga(vaga, new UsoDeVagaTurno());
+        return new UsoDeVaga(vaga, new UsoDeVagaTurno(tipoTurno));
+    }
+
+    @Override
+    public UsoDeVaga criarUsoDeVaga(Vaga vaga, LocalDateTime entrada) {
+        return new UsoDeVaga(vaga, new UsoDeVagaTurno(tipoTurno), entrada);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+package estacionamentos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+
+/**
+ * Usos encerrados de um veículo guardados em colunas de tipos primitivos, em
+ * ordem de entrada, no lugar de um {@link UsoDeVaga} com duas
+ * {@link java.time.LocalDateTime} por uso. Cada uso ocupa 29 bytes: entrada e
+ * saída em milissegundos desde a época, como no {@link ArquivoDeUsos}, o valor
+ * em centavos, a referência à vaga e o serviço como ordinal + 1. As colunas
+ * crescem pela metade da capacidade quando cheias.
+ *
+ * Não é thread-safe: o acesso é protegido pelo monitor do veículo dono do
+ * histórico.
+ */
+final class UsosCompactos {
+
+    private static final int CAPACIDADE_INICIAL = 4;
+    private static final TipoServico[] SERVICOS = TipoServico.values();
+
+    private long[] entradas = new long[0];
+    private long[] saidas = new long[0];
+    private long[] centavos = new long[0];
+    private Vaga[] vagas = new Vaga[0];
+    private byte[] servicos = new byte[0];
+    private int quantidade;
+
+    int quantidade() {
+        return quantidade;
+    }
+
+    long entrada(int uso) {
+        return entradas[uso];
+    }
+
+    long saida(int uso) {
+        return saidas[uso];
+    }
+
+    long centavos(int uso) {
+        return centavos[uso];
+    }
+
+    Vaga vaga(int uso) {
+        return vagas[uso];
+    }
+
+    TipoServico servico(int uso) {
+        return servicos[uso] == 0 ? null : SERVICOS[servicos[uso] - 1];
+    }
+
+    /**
+     * Guarda um uso encerrado depois dos usos com entrada igual ou anterior.
+     *
+     * @param uso uso encerrado
+     */
+    void adicionar(UsoDeVaga uso) {
+        adicionar(ArquivoDeUsos.paraEpoca(uso.getEntrada()), ArquivoDeUsos.paraEpoca(uso.getSaida()),
+                uso.getCentavosPagos(), uso.getVaga(), uso.getTipoServico());
+    }
+
+    /**
+     * Guarda um uso encerrado, campo a campo, depois dos usos com entrada igual
+     * ou anterior.
+     *
+     * @param entrada  entrada, em milissegundos desde a época
+     * @param saida    saída, em milissegundos desde a época
+     * @param centavos valor pago, em centavos
+     * @param vaga     vaga usada
+     * @param servico  serviço contratado, ou null
+     */
+    void adicionar(long entrada, long saida, long centavos, Vaga vaga, TipoServico servico) {
+        if (quantidade == entradas.length) {
+            crescer();
+        }
+        int posicao = quantidade == 0 || entrada >= entradas[quantidade - 1] ? quantidade : primeiroApos(entrada);
+        if (posicao < quantidade) {
+            int deslocados = quantidade - posicao;
+            System.arraycopy(entradas, posicao, entradas, posicao + 1, deslocados);
+            System.arraycopy(saidas, posicao, saidas, posicao + 1, deslocados);
+            System.arraycopy(this.centavos, posicao, this.centavos, posicao + 1, deslocados);
+            System.arraycopy(vagas, posicao, vagas, posicao + 1, deslocados);
+            System.arraycopy(servicos, posicao, servicos, posicao + 1, deslocados);
+        }
+        entradas[posicao] = entrada;
+        saidas[posicao] = saida;
+        this.centavos[posicao] = centavos;
+        vagas[posicao] = vaga;
+        servicos[posicao] = (byte) (servico != null ? servico.ordinal() + 1 : 0);
+        quantidade++;
+    }
+
+    private void crescer() {
+        int capacidade = Math.max(CAPACIDADE_INICIAL, entradas.length + (entradas.length >> 1));
+        entradas = Arrays.copyOf(entradas, capacidade);
+        saidas = Arrays.copyOf(saidas, capacidade);
+        centavos = Arrays.copyOf(centavos, capacidade);
+        vagas = Arrays.copyOf(vagas, capacidade);
+        servicos = Arrays.copyOf(servicos, capacidade);
+    }
+
+    /**
+     * Descarta os primeiros usos, liberando as colunas quando não resta nenhum.
+     *
+     * @param removidos quantidade de usos descartados
+     */
+    void removerPrimeiros(int removidos) {
+        int restantes = quantidade - removidos;
+        if (restantes == 0) {
+            entradas = new long[0];
+            saidas = new long[0];
+            centavos = new long[0];
+            vagas = new Vaga[0];
+            servicos = new byte[0];
+        } else {
+            System.arraycopy(entradas, removidos, entradas, 0, restantes);
+            System.arraycopy(saidas, removidos, saidas, 0, restantes);
+            System.arraycopy(centavos, removidos, centavos, 0, restantes);
+            System.arraycopy(vagas, removidos, vagas, 0, restantes);
+            System.arraycopy(servicos, removidos, servicos, 0, restantes);
+            Arrays.fill(vagas, restantes, quantidade, null);
+        }
+        quantidade = restantes;
+    }
+
+    /**
+     * Copia os usos de um intervalo de posições para colunas próprias.
+     *
+     * @param de  primeira posição (inclusive)
+     * @param ate última posição (exclusive)
+     * @return cópia dos usos do intervalo
+     */
+    UsosCompactos copiar(int de, int ate) {
+        UsosCompactos copia = new UsosCompactos();
+        if (ate > de) {
+            copia.entradas = Arrays.copyOfRange(entradas, de, ate);
+            copia.saidas = Arrays.copyOfRange(saidas, de, ate);
+            copia.centavos = Arrays.copyOfRange(centavos, de, ate);
+            copia.vagas = Arrays.copyOfRange(vagas, de, ate);
+            copia.servicos = Arrays.copyOfRange(servicos, de, ate);
+            copia.quantidade = ate - de;
+        }
+        return copia;
+    }
+
+    /**
+     * Recria, em ordem de entrada, os usos de um intervalo de posições.
+     *
+     * @param de      primeira posição (inclusive)
+     * @param ate     última posição (exclusive)
+     * @param fabrica fábrica usada para recriar os usos
+     */
+    List<UsoDeVaga> recriar(int de, int ate, UsoDeVagaFactory fabrica) {
+        List<UsoDeVaga> recriados = new ArrayList<>(Math.max(0, ate - de));
+        for (int i = de; i < ate; i++) {
+            UsoDeVaga uso = fabrica.criarUsoDeVaga(vagas[i], ArquivoDeUsos.deEpoca(entradas[i]));
+            uso.setSaida(ArquivoDeUsos.deEpoca(saidas[i]));
+            uso.setCentavosPagos(centavos[i]);
+            uso.setTipoServico(servico(i));
+            recriados.add(uso);
+        }
+        return recriados;
+    }
+
+    /**
+     * @return posição do primeiro uso com entrada igual ou posterior ao
+     *         instante, em milissegundos
+     */
+    int primeiroAPartirDe(long instante) {
+        int baixo = 0;
+        int alto = quantidade;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (entradas[meio] < instante) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    private int primeiroApos(long instante) {
+        return instante == Long.MAX_VALUE ? quantidade : primeiroAPartirDe(instante + 1);
+    }
+}
@@ -1,14 +1,47 @@
 package estacionamentos;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Vaga de estacionamento. A disponibilidade é alterada por compare-and-set, de
+ * forma que duas cancelas concorrentes nunca ocupam a mesma vaga. A vaga guarda
+ * o estacionamento que a criou, e é por ele que cada uso do histórico é
+ * atribuído a um estacionamento, mesmo depois que gerarVagas substitui as vagas.
+ */
 public class Vaga {
 
 	private String id;
-	private boolean disponivel;
+	private int numero;
+	private final AtomicBoolean disponivel;
+	private final Estacionamento estacionamento;
 
+    /**
+     * Cria uma vaga avulsa, que não pertence a nenhum estacionamento.
+     */
     public Vaga(char fila, int numero) {
+        this(fila, numero, null);
+    }
+
+    Vaga(char fila, int numero, Estacionamento estacionamento) {
         this.id = Character.toString(fila).toUpperCase() + numero;
-        this.disponivel = true;
+        this.numero = numero;
+        this.disponivel = new AtomicBoolean(true);
+        this.estacionamento = estacionamento;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getNumero() {
+        return numero;
+    }
+
+    /**
+     * @return o estacionamento que criou a vaga, ou null para uma vaga avulsa
+     */
+    public Estacionamento getEstacionamento() {
+        return estacionamento;
     }
 
     /**
@@ -16,11 +49,7 @@ public class Vaga {
      * @return true se o carro foi estacionado, false caso contrário.
      */
     public boolean estacionar() {
-        if (disponivel) {
-            disponivel = false;
-            return true;
-        }
-        return false;
+        return disponivel.compareAndSet(true, false);
     }
 
     /**
@@ -28,12 +57,7 @@ public class Vaga {
      * @return true se o carro saiu da vaga, false caso contrário.
      */
     public boolean sair() {
-        // true
-        if (disponivel) { // false
-            disponivel = true;
-            return true;
-        }
-        return false;
+        return disponivel.compareAndSet(false, true);
     }
 
     /**
@@ -41,12 +65,12 @@ public class Vaga {
      * @return true se a vaga está disponível, false caso contrário.
      */
     public boolean disponivel() {
-        return disponivel;
+        return disponivel.get();
     }
 
     @Override
 	public String toString() {
-        String disponibilidade = disponivel ? "disponível" : "ocupada";
+        String disponibilidade = disponivel() ? "disponível" : "ocupada";
         return "Vaga " + id + ", disponibilidade: " + disponibilidade;
     }
     
@@ -1,21 +1,44 @@
 package estacionamentos;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
+
 import estacionamentos.Enums.TipoUso;
 import estacionamentos.interfaces.Observer;
 import estacionamentos.interfaces.UsoDeVagaFactory;
+import estacionamentos.interfaces.VisitanteDeUsos;
+import excecoes.ExcecaoHistoricoIndisponivel;
+import excecoes.ExcecaoNaoPossuiVagasDisponiveis;
 import excecoes.ExcecaoOpicaoInvalida;
 import excecoes.ExcecaoRelatorioVazio;
-
+import excecoes.ExcecaoVeiculoJaEstacionado;
+
+/**
+ * Veículo de um cliente. O histórico de usos é protegido pelo monitor do próprio
+ * veículo, de forma que cancelas diferentes processam placas diferentes em
+ * paralelo, e é mantido em ordem de entrada para que as consultas por mês e por
+ * intervalo de datas não percorram o histórico inteiro. Os usos encerrados
+ * podem ser arquivados fora do heap em um {@link ArquivoDeUsos}.
+ *
+ * O histórico pode ser carregado em segundo plano depois que o veículo já está
+ * operando: enquanto a carga não termina, as consultas ao histórico aguardam,
+ * mas entradas e saídas seguem normalmente.
+ */
 public class Veiculo implements Observer{
 	private int count;
 	private String placa;
-	private LinkedList<UsoDeVaga> usoDeVagas;
+	private HistoricoDeUsos usoDeVagas;
+	private volatile UsoDeVaga usoAtivo;
 	private UsoDeVagaFactory usoDeVagaFactory;
-	private TipoUso tipoUso;
+	private volatile TipoUso tipoUso;
+	private boolean historicoPendente;
+	private Throwable falhaNaCarga;
+	private volatile boolean alterado = true;
 
 	public TipoUso getTipoUso() {
 		return tipoUso;
@@ -23,6 +46,7 @@ public class Veiculo implements Observer{
 
 	public void setTipoUso(TipoUso tipoUso) {
 		this.tipoUso = tipoUso;
+		alterado = true;
 	}
 
 	public String getPlaca() {
@@ -38,38 +62,243 @@ public class Veiculo implements Observer{
 	 * @param vaga Vaga a ser pesquisada. 
 	 * @return Uso de vaga do veículo para a vaga pesquisada.
 	 */
-	public UsoDeVaga getUsoDeVaga(Vaga vaga) {
-		for (int i = 0; i < usoDeVagas.size(); i++) {
-			if ((usoDeVagas.get(i)).getVaga().equals(vaga)) {
-				return usoDeVagas.get(i);
+	public synchronized UsoDeVaga getUsoDeVaga(Vaga vaga) {
+		aguardarHistorico();
+		for (UsoDeVaga uso : usoDeVagas.todos()) {
+			if (uso.getVaga().equals(vaga)) {
+				return uso;
 			}
 		}
 		return null;
 	}
 
 	/**
-	 * Retorna uma lista imutável de usos de vaga do veículo.
+	 * Retorna uma lista imutável de usos de vaga do veículo. Os usos encerrados
+	 * são recriados como objetos a cada chamada; para apenas ler o histórico,
+	 * prefira {@link #percorrerUsos}, que não os recria.
 	 * @return Lista imutável de usos de vaga do veículo.
 	 */
-	public List<UsoDeVaga> getListUsoDeVaga() {
-		return List.copyOf(this.usoDeVagas);
+	public synchronized List<UsoDeVaga> getListUsoDeVaga() {
+		aguardarHistorico();
+		return usoDeVagas.independente(usoDeVagas.todos());
+	}
+
+	/**
+	 * Executa uma ação para cada uso de vaga do veículo, em ordem de entrada, sob
+	 * o monitor do veículo. Os usos encerrados são recriados como objetos; para
+	 * lê-los campo a campo, use {@link #percorrerUsos}.
+	 * @param acao Ação executada para cada uso.
+	 */
+	public synchronized void paraCadaUso(Consumer<? super UsoDeVaga> acao) {
+		aguardarHistorico();
+		for (UsoDeVaga uso : usoDeVagas.todos()) {
+			acao.accept(uso);
+		}
+	}
+
+	/**
+	 * Percorre os usos de vaga do veículo campo a campo, sob o monitor do
+	 * veículo, sem recriar os usos encerrados como objetos.
+	 * @param visitante Visitante dos usos.
+	 * @throws E Exceção lançada pelo visitante.
+	 * @see HistoricoDeUsos#percorrer(VisitanteDeUsos)
+	 */
+	public synchronized <E extends Exception> void percorrerUsos(VisitanteDeUsos<E> visitante) throws E {
+		aguardarHistorico();
+		usoDeVagas.percorrer(visitante);
+	}
+
+	/**
+	 * Percorre campo a campo os usos de vaga do veículo com entrada em um
+	 * determinado mês, sob o monitor do veículo, sem ordem definida entre eles.
+	 * @param mes Mês entre 1 e 12.
+	 * @param ano Ano.
+	 * @param visitante Visitante dos usos.
+	 * @throws E Exceção lançada pelo visitante.
+	 * @see HistoricoDeUsos#percorrerNoMes(int, int, VisitanteDeUsos)
+	 */
+	public synchronized <E extends Exception> void percorrerUsosNoMes(int mes, int ano, VisitanteDeUsos<E> visitante)
+			throws E {
+		aguardarHistorico();
+		usoDeVagas.percorrerNoMes(mes, ano, visitante);
+	}
+
+	/**
+	 * Retorna os usos de vaga do veículo com entrada em um determinado mês,
+	 * recriando os usos encerrados como objetos.
+	 * @param mes mês entre 1 e 12.
+	 * @param ano ano.
+	 * @return Lista imutável com os usos do mês em ordem de entrada.
+	 */
+	public synchronized List<UsoDeVaga> getUsosNoMes(int mes, int ano) {
+		aguardarHistorico();
+		return usoDeVagas.independente(usoDeVagas.noMes(mes, ano));
 	}
 
 	public Veiculo(String placa, TipoUso tipoUso, UsoDeVagaFactory usoDeVagaFactory) {
 		this.placa = placa;
 		this.tipoUso = tipoUso;
-		this.usoDeVagas = new LinkedList<>();
+		this.usoDeVagas = new HistoricoDeUsos(usoDeVagaFactory);
 		this.usoDeVagaFactory = usoDeVagaFactory;
 	}
 
 	/**
-	 * Estacionar veiculo e adiciona na lista de uso de vagas
+	 * Retorna o uso de vaga em aberto do veículo.
+	 * 
+	 * @return o uso de vaga sem saída registrada ou null caso o veículo não esteja
+	 *         estacionado
+	 */
+	public UsoDeVaga getUsoAtivo() {
+		return usoAtivo;
+	}
+
+	/**
+	 * Verifica se o veículo está estacionado em alguma vaga.
+	 * 
+	 * @return true se houver um uso de vaga em aberto
+	 */
+	public boolean estaEstacionado() {
+		return usoAtivo != null;
+	}
+
+	/**
+	 * Estacionar veiculo, ocupando a vaga, e adiciona na lista de uso de vagas
 	 * 
 	 * @param vaga Classe vaga que contem a disponibilidade de estacionamento
+	 * @return o uso de vaga aberto
+	 * @throws ExcecaoVeiculoJaEstacionado      caso o veículo já esteja em uma vaga
+	 * @throws ExcecaoNaoPossuiVagasDisponiveis caso a vaga já esteja ocupada
 	 */
-	public void estacionar(Vaga vaga) {
+	public synchronized UsoDeVaga estacionar(Vaga vaga) throws ExcecaoVeiculoJaEstacionado, ExcecaoNaoPossuiVagasDisponiveis {
+		if (usoAtivo != null) {
+			throw new ExcecaoVeiculoJaEstacionado();
+		}
+		if (!vaga.estacionar()) {
+			throw new ExcecaoNaoPossuiVagasDisponiveis("A vaga " + vaga.getId() + " já está ocupada");
+		}
 		UsoDeVaga usoDeVaga = criarUsoDeVaga(vaga);
-		usoDeVagas.add(usoDeVaga);
+		usoDeVagas.adicionar(usoDeVaga);
+		usoAtivo = usoDeVaga;
+		alterado = true;
+		return usoDeVaga;
+	}
+
+	/**
+	 * Registra no histórico um uso de vaga já existente, sem ocupar a vaga. Usado
+	 * para restaurar o histórico a partir de um arquivo; um uso sem saída passa a
+	 * ser o uso em aberto do veículo.
+	 * 
+	 * @param usoDeVaga uso de vaga a ser registrado
+	 * @throws ExcecaoVeiculoJaEstacionado caso o uso esteja em aberto e o veículo
+	 *                                     já possua outro uso em aberto
+	 */
+	public synchronized void registrarUsoDeVaga(UsoDeVaga usoDeVaga) throws ExcecaoVeiculoJaEstacionado {
+		if (usoDeVaga.getSaida() == null) {
+			if (usoAtivo != null) {
+				throw new ExcecaoVeiculoJaEstacionado();
+			}
+			usoAtivo = usoDeVaga;
+		}
+		usoDeVagas.adicionar(usoDeVaga);
+		alterado = true;
+	}
+
+	/**
+	 * Passa a arquivar os usos encerrados do veículo em um arquivo de usos,
+	 * movendo para ele os usos encerrados que estão em memória.
+	 * 
+	 * @param arquivo arquivo de usos
+	 * @throws IllegalStateException caso o veículo já arquive seus usos em outro
+	 *                               arquivo
+	 */
+	public synchronized void arquivarUsosEm(ArquivoDeUsos arquivo) {
+		usoDeVagas.arquivarEm(arquivo, placa, usoDeVagaFactory);
+	}
+
+	/**
+	 * Move para a camada fria os usos encerrados com entrada anterior ao limite.
+	 * As consultas ao histórico continuam a incluir os usos movidos.
+	 * 
+	 * @param frio   camada fria
+	 * @param limite entrada a partir da qual os usos continuam na camada quente
+	 * @return quantidade de usos movidos
+	 */
+	public synchronized int esfriarHistorico(ArquivoFrio frio, LocalDateTime limite) {
+		aguardarHistorico();
+		return usoDeVagas.esfriar(frio, limite, usoDeVagaFactory);
+	}
+
+	/**
+	 * Funde os blocos frios do histórico que estão fora de ordem, incompletos ou
+	 * em segmentos fragmentados.
+	 * 
+	 * @return quantidade de blocos substituídos
+	 */
+	public synchronized int fundirHistoricoFrio() {
+		aguardarHistorico();
+		return usoDeVagas.fundirFrios();
+	}
+
+	/**
+	 * Marca o histórico de usos encerrados como em carga. Até a conclusão da
+	 * carga, as consultas ao histórico aguardam; entradas e saídas não são
+	 * afetadas.
+	 */
+	public synchronized void marcarHistoricoPendente() {
+		historicoPendente = true;
+	}
+
+	/**
+	 * Conclui a carga do histórico, liberando as consultas que aguardam.
+	 * 
+	 * @param falha causa da falha da carga, ou null caso tenha sido concluída;
+	 *              com falha, as consultas ao histórico lançam
+	 *              {@link ExcecaoHistoricoIndisponivel}
+	 */
+	public synchronized void concluirCargaDoHistorico(Throwable falha) {
+		historicoPendente = false;
+		falhaNaCarga = falha;
+		notifyAll();
+	}
+
+	/**
+	 * Aguarda a carga do histórico, liberando o monitor do veículo enquanto
+	 * aguarda para que a carga possa registrar os usos.
+	 */
+	private synchronized void aguardarHistorico() {
+		while (historicoPendente) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExcecaoHistoricoIndisponivel("A espera pelo histórico da placa " + placa + " foi interrompida", e);
+			}
+		}
+		if (falhaNaCarga != null) {
+			throw new ExcecaoHistoricoIndisponivel("Não foi possível carregar o histórico da placa " + placa, falhaNaCarga);
+		}
+	}
+
+	/**
+	 * Indica se o histórico de usos ou o tipo de uso do veículo foi alterado
+	 * desde a sua criação ou desde a última chamada a {@link #limparAlteracao()}.
+	 * Os snapshots incrementais gravam apenas os usos dos veículos alterados.
+	 * 
+	 * @return true se o veículo foi alterado
+	 */
+	public boolean isAlterado() {
+		return alterado;
+	}
+
+	/**
+	 * Marca o estado atual do veículo como já gravado.
+	 */
+	public void limparAlteracao() {
+		alterado = false;
+	}
+
+	public UsoDeVagaFactory getUsoDeVagaFactory() {
+		return usoDeVagaFactory;
 	}
 
 	/**
@@ -85,51 +314,75 @@ public class Veiculo implements Observer{
 	/**
 	 * Sair veiculo da vaga de estacionamento
 	 * 
-	 * @return retorna o valor do veiculo
+	 * @return retorna o valor do veiculo, em centavos
 	 */
-	public double sair() {
+	public synchronized long sair() {
+		if (usoAtivo == null) {
+			return 0;
+		}
+		UsoDeVaga uso = usoAtivo;
+		long valor = uso.sair(this.tipoUso);
+		usoAtivo = null;
+		usoDeVagas.encerrar(uso);
+		alterado = true;
+		return valor;
+	}
 
-		for (UsoDeVaga usoDeVaga : usoDeVagas) {
-			if (usoDeVaga.getSaida() == null) {
-				return usoDeVaga.sair(this.tipoUso);
-			}
+	/**
+	 * Sair veiculo da vaga com a data de saída e o valor já conhecidos, usado para
+	 * reproduzir uma saída registrada anteriormente
+	 * 
+	 * @param saida    data e hora da saída
+	 * @param centavos valor pago pelo uso, em centavos
+	 * @return retorna o valor do veiculo, em centavos
+	 */
+	public synchronized long sair(LocalDateTime saida, long centavos) {
+		if (usoAtivo == null) {
+			return 0;
 		}
-		return 0.0;
+		UsoDeVaga uso = usoAtivo;
+		uso.sair(saida, centavos);
+		usoAtivo = null;
+		usoDeVagas.encerrar(uso);
+		alterado = true;
+		return centavos;
 	}
 
 	/**
 	 * Valor total de todo o historico do veiculo
 	 * 
-	 * @return retorna o valor
+	 * @return retorna o valor, em centavos
 	 */
-	public double totalArrecadado() {
-
-		double total = 0;
-
-		for (UsoDeVaga uso : usoDeVagas) {
-			total += uso.getValorPago();
-		}
+	public synchronized long totalArrecadadoEmCentavos() {
+		aguardarHistorico();
+		return usoDeVagas.centavosTotal();
+	}
 
-		return total;
+	/**
+	 * @see #totalArrecadadoEmCentavos()
+	 * @return retorna o valor, em reais
+	 */
+	public double totalArrecadado() {
+		return totalArrecadadoEmCentavos() / 100.0;
 	}
 
 	/**
 	 * Retorna o valor total arrecado em um determinado mes
 	 * 
 	 * @param mes recebe o mês como parametro entre 1 e 12.
-	 * @return
+	 * @return valor arrecadado no mês, em centavos
 	 */
-	public double arrecadadoNoMes(int mes, int ano) {
-
-		double total = 0;
-
-		for (UsoDeVaga uso : usoDeVagas) {
-			if (uso.getEntrada().getMonthValue() == mes && uso.getEntrada().getYear() == ano) {
-				total += uso.getValorPago();
-			}
-		}
+	public synchronized long arrecadadoNoMesEmCentavos(int mes, int ano) {
+		aguardarHistorico();
+		return usoDeVagas.centavosNoMes(mes, ano);
+	}
 
-		return total;
+	/**
+	 * @see #arrecadadoNoMesEmCentavos(int, int)
+	 * @return valor arrecadado no mês, em reais
+	 */
+	public double arrecadadoNoMes(int mes, int ano) {
+		return arrecadadoNoMesEmCentavos(mes, ano) / 100.0;
 	}
 
 
@@ -139,8 +392,9 @@ public class Veiculo implements Observer{
 	 * 
 	 * @return retorna o valor como int, sendo o total de uso
 	 */
-	public int totalDeUsos() {
-		count = usoDeVagas.size();
+	public synchronized int totalDeUsos() {
+		aguardarHistorico();
+		count = usoDeVagas.tamanho();
 		return count;
 	}
 
@@ -150,42 +404,95 @@ public class Veiculo implements Observer{
 	 * @param ano valor do ano que foi usado.
 	 * @return quantidade do uso de vaga
 	 * */
-	public int totalDeUsoNoMesAno(int mes, int ano){
+	public synchronized int totalDeUsoNoMesAno(int mes, int ano){
+		aguardarHistorico();
 
-		int cont = 0;
+		return usoDeVagas.quantidadeNoMes(mes, ano);
+	}
 
-		for( UsoDeVaga usoDeVaga : usoDeVagas ) {
-			if (usoDeVaga.getEntrada().getMonthValue() == mes && usoDeVaga.getEntrada().getYear() == ano) {
-				cont++;
+	/**
+	 * Método para gerar um relatório detalhado de todos os usos de vaga do veículo.
+	 * A ordenação é feita sobre uma cópia, preservando a ordem de entrada do
+	 * histórico.
+	 * 
+	 * @return String contendo o relatório.
+	 */
+	public String relatorio(Comparator<UsoDeVaga> comp) throws ExcecaoOpicaoInvalida {
+		StringBuilder relatorio = new StringBuilder();
+		try {
+			relatorio(comp, relatorio);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return relatorio.toString();
+	}
+
+	/**
+	 * Escreve o relatório detalhado de todos os usos de vaga do veículo em uma
+	 * saída, uso a uso. O monitor do veículo é mantido apenas para copiar as
+	 * referências do histórico, de forma que uma saída lenta não bloqueia as
+	 * cancelas. Os usos encerrados são recriados para a ordenação; para a ordem
+	 * de entrada e a de valor, {@link #relatorio(boolean, Appendable)} não os
+	 * recria.
+	 * 
+	 * @param comp  ordenação dos usos no relatório
+	 * @param saida destino do relatório
+	 * @throws IOException caso a escrita na saída falhe
+	 */
+	public void relatorio(Comparator<UsoDeVaga> comp, Appendable saida) throws IOException {
+		List<UsoDeVaga> ordenados;
+		synchronized (this) {
+			aguardarHistorico();
+			if (usoDeVagas.vazio()) {
+				throw new ExcecaoRelatorioVazio();
 			}
+			ordenados = new ArrayList<>(usoDeVagas.todos());
 		}
+		ordenados.sort(comp);
 
-		return cont;
+		saida.append("Relatório do Veículo - Placa: ").append(placa).append("\n");
+		long totalCusto = 0;
+		for (UsoDeVaga uso : ordenados) {
+			saida.append(uso.toString()).append("\n");
+			totalCusto += uso.getCentavosPagos();
+		}
+		saida.append("Total Estacionado: ").append(String.valueOf(ordenados.size())).append(" vezes\n");
+		saida.append("Custo Total: ").append(String.valueOf(totalCusto / 100.0)).append("\n");
 	}
 
 	/**
-	 * Método para gerar um relatório detalhado de todos os usos de vaga do veículo.
+	 * Escreve o relatório detalhado de todos os usos de vaga do veículo em uma
+	 * saída, em ordem de entrada ou em ordem decrescente de valor, sem recriar
+	 * os usos encerrados como objetos. O monitor do veículo é mantido apenas para
+	 * copiar o histórico para colunas.
 	 * 
-	 * @return String contendo o relatório.
+	 * @param porValor se os usos são ordenados por valor decrescente, e não por
+	 *                 entrada; usos de mesmo valor ficam em ordem de entrada
+	 * @param saida    destino do relatório
+	 * @throws IOException caso a escrita na saída falhe
 	 */
+	public void relatorio(boolean porValor, Appendable saida) throws IOException {
+		ConsultaDeUsos usos;
+		synchronized (this) {
+			aguardarHistorico();
+			if (usoDeVagas.vazio()) {
+				throw new ExcecaoRelatorioVazio();
+			}
+			usos = usoDeVagas.consultarTodos();
+		}
+		if (porValor) {
+			usos.ordenarPorValorDecrescente();
+		}
 
-	 public String relatorio(Comparator<UsoDeVaga> comp) throws ExcecaoOpicaoInvalida {
-		if (usoDeVagas.isEmpty()) {
-			throw new ExcecaoRelatorioVazio();
+		saida.append("Relatório do Veículo - Placa: ").append(placa).append("\n");
+		long totalCusto = 0;
+		for (int i = 0; i < usos.quantidade(); i++) {
+			usos.escrever(i, saida);
+			saida.append("\n");
+			totalCusto += usos.centavos(i);
 		}
-	
-		usoDeVagas.sort(comp);
-	
-		StringBuilder relatorio = new StringBuilder();
-		relatorio.append("Relatório do Veículo - Placa: ").append(placa).append("\n");
-		double totalCusto = 0.0;
-		for (UsoDeVaga uso : usoDeVagas) {
-			relatorio.append(uso.toString()).append("\n");
-			totalCusto += uso.getValorPago();
-		}
-		relatorio.append("Total Estacionado: ").append(usoDeVagas.size()).append(" vezes\n");
-		relatorio.append("Custo Total: ").append(totalCusto).append("\n");
-		return relatorio.toString();
+		saida.append("Total Estacionado: ").append(String.valueOf(usos.quantidade())).append(" vezes\n");
+		saida.append("Custo Total: ").append(String.valueOf(totalCusto / 100.0)).append("\n");
 	}
 
 
@@ -202,14 +509,35 @@ public class Veiculo implements Observer{
 	 * @return String contendo o histórico detalhado dos usos de vaga do veículo no intervalo de datas.
 	 */
 	public String historico(LocalDateTime dataInicio, LocalDateTime dataFim){
-		String historico = "-------------------\n VEICULO\nPLACA: " + this.placa + "\n\n";
-		for(UsoDeVaga uso : usoDeVagas){
-			if(uso.ocorrenciaEntreDatas(dataInicio, dataFim)){
-				historico += uso.toString();
-			}
+		StringBuilder historico = new StringBuilder();
+		try {
+			historico(dataInicio, dataFim, historico);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return historico.toString();
+	}
+
+	/**
+	 * Escreve em uma saída o histórico dos usos de vaga do veículo no intervalo de
+	 * datas especificado, uso a uso.
+	 *
+	 * @param dataInicio Data de início do intervalo.
+	 * @param dataFim    Data de fim do intervalo.
+	 * @param saida      Destino do histórico.
+	 * @throws IOException caso a escrita na saída falhe
+	 */
+	public void historico(LocalDateTime dataInicio, LocalDateTime dataFim, Appendable saida) throws IOException {
+		ConsultaDeUsos usos;
+		synchronized (this) {
+			aguardarHistorico();
+			usos = usoDeVagas.consultarEntre(dataInicio, dataFim);
+		}
+		saida.append("-------------------\n VEICULO\nPLACA: ").append(this.placa).append("\n\n");
+		for (int i = 0; i < usos.quantidade(); i++) {
+			usos.escrever(i, saida);
 		}
-		historico += "-------------------\n\n";
-		return historico;
+		saida.append("-------------------\n\n");
 	}
 
 	/**
@@ -228,15 +556,15 @@ public class Veiculo implements Observer{
 	/**
 	 * Obtém a quantidade total de usos mensais realizados pelo veiculo no mês corrente.
 	 *
-	 * Este método utiliza o stream para filtrar os usos de vaga associados ao veiculo,
-	 * contando apenas aqueles que ocorreram no mês corrente. Retorna o total de usos mensais.
+	 * Este método consulta a faixa do histórico correspondente ao mês corrente,
+	 * localizada por busca binária. Retorna o total de usos mensais.
 	 *
 	 * @return A quantidade total de usos mensais do veiculo no mês corrente.
 	 */
-	public long usoMensalCorrente(){
-		if(usoDeVagas != null)
-			return usoDeVagas.stream().filter( uso -> uso.getEntrada().getMonthValue() == LocalDateTime.now().getMonthValue() && uso.getEntrada().getYear() == LocalDateTime.now().getYear()).count();
-		else return 0;
+	public synchronized long usoMensalCorrente(){
+		aguardarHistorico();
+		LocalDateTime agora = LocalDateTime.now();
+		return usoDeVagas.quantidadeNoMes(agora.getMonthValue(), agora.getYear());
 	}
 
 }
@@ -8,9 +8,9 @@ public interface CalcularUsoDeVaga {
     * Calcular o valor do uso da vaga
     * @param getEntrada Data e hora do uso da vaga de entrada.
     * @param getSaida Data e hora do uso da vaga de saida.
-    * @return Resultado valor do uso da vaga.
+    * @return Resultado valor do uso da vaga, em centavos.
     * */
 
-    double valorPago(LocalDateTime getEntrada, LocalDateTime getSaida);
+    long valorEmCentavos(LocalDateTime getEntrada, LocalDateTime getSaida);
 
 }
@@ -0,0 +1,78 @@
+package estacionamentos.interfaces;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Veiculo;
+
+/**
+ * Observador das operações de um estacionamento. As notificações são feitas
+ * depois que a operação foi aplicada e enquanto o estacionamento ainda mantém o
+ * monitor que a serializa (o do veículo para entradas, saídas e serviços, o do
+ * estacionamento para alterações de cadastro), de forma que as notificações de
+ * uma mesma placa chegam na ordem em que as operações aconteceram.
+ */
+public interface ObserverEstacionamento {
+
+    /**
+     * Notifica que as vagas do estacionamento foram geradas novamente.
+     * @param estacionamento Estacionamento com as novas vagas.
+     */
+    public void vagasGeradas(Estacionamento estacionamento);
+
+    /**
+     * Notifica que um cliente foi cadastrado no estacionamento.
+     * @param estacionamento Estacionamento em que o cliente foi cadastrado.
+     * @param cliente Cliente cadastrado.
+     */
+    public void clienteAdicionado(Estacionamento estacionamento, Cliente cliente);
+
+    /**
+     * Notifica que um veículo foi adicionado a um cliente do estacionamento.
+     * @param estacionamento Estacionamento do cliente.
+     * @param cliente Cliente dono do veículo.
+     * @param veiculo Veículo adicionado.
+     */
+    public void veiculoAdicionado(Estacionamento estacionamento, Cliente cliente, Veiculo veiculo);
+
+    /**
+     * Notifica a entrada de um veículo.
+     * @param estacionamento Estacionamento em que o veículo entrou.
+     * @param veiculo Veículo estacionado.
+     * @param uso Uso de vaga aberto.
+     */
+    public void veiculoEstacionado(Estacionamento estacionamento, Veiculo veiculo, UsoDeVaga uso);
+
+    /**
+     * Notifica a saída de um veículo.
+     * @param estacionamento Estacionamento de onde o veículo saiu.
+     * @param veiculo Veículo que saiu.
+     * @param uso Uso de vaga encerrado, com a saída e o valor pago.
+     */
+    public void veiculoSaiu(Estacionamento estacionamento, Veiculo veiculo, UsoDeVaga uso);
+
+    /**
+     * Notifica a contratação de um serviço para o uso de vaga em aberto.
+     * @param estacionamento Estacionamento em que o veículo está.
+     * @param veiculo Veículo estacionado.
+     * @param uso Uso de vaga com o serviço contratado.
+     */
+    public void servicoContratado(Estacionamento estacionamento, Veiculo veiculo, UsoDeVaga uso);
+
+    /**
+     * Notifica a alteração do tipo de uso de um cliente.
+     * @param estacionamento Estacionamento em que a alteração foi feita.
+     * @param cliente Cliente alterado.
+     */
+    public void tipoUsoAlterado(Estacionamento estacionamento, Cliente cliente);
+
+    /**
+     * Notifica a importação de um uso de vaga já encerrado para o histórico de
+     * um veículo.
+     * @param estacionamento Estacionamento em que o uso aconteceu.
+     * @param veiculo Veículo do uso.
+     * @param uso Uso de vaga encerrado, com a saída e o valor pago.
+     */
+    public void usoImportado(Estacionamento estacionamento, Veiculo veiculo, UsoDeVaga uso);
+
+}
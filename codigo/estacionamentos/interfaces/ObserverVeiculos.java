@@ -0,0 +1,42 @@
+package estacionamentos.interfaces;
+
+import estacionamentos.Cliente;
+import estacionamentos.Veiculo;
+
+/**
+ * Observador dos veículos adicionados a um cliente. As notificações são feitas
+ * sem o monitor do cliente, depois que o veículo foi incluído na lista do
+ * cliente, em duas fases: todos os observadores são notificados do veículo
+ * adicionado e podem recusá-lo; só então a adição é confirmada ou, caso algum
+ * observador a recuse, cancelada.
+ */
+public interface ObserverVeiculos {
+
+    /**
+     * Notifica que um novo veículo foi adicionado a um cliente. O observador
+     * pode recusar o veículo lançando uma exceção; nesse caso o veículo é
+     * retirado do cliente e a adição é cancelada.
+     * @param cliente Cliente dono do veículo.
+     * @param veiculo Veículo adicionado.
+     */
+    public void veiculoAdicionado(Cliente cliente, Veiculo veiculo);
+
+    /**
+     * Notifica que a adição de um veículo foi aceita por todos os observadores.
+     * @param cliente Cliente dono do veículo.
+     * @param veiculo Veículo adicionado.
+     */
+    public default void veiculoConfirmado(Cliente cliente, Veiculo veiculo) {
+    }
+
+    /**
+     * Notifica que a adição de um veículo foi recusada por algum observador e o
+     * veículo foi retirado do cliente. Pode ser recebida por observadores que
+     * não foram notificados da adição.
+     * @param cliente Cliente dono do veículo.
+     * @param veiculo Veículo retirado.
+     */
+    public default void veiculoCancelado(Cliente cliente, Veiculo veiculo) {
+    }
+
+}
@@ -1,5 +1,8 @@
 package estacionamentos.interfaces;
 
+import java.time.LocalDateTime;
+
+import estacionamentos.Enums.TipoTurno;
 import estacionamentos.UsoDeVaga;
 import estacionamentos.UsoDeVagaHoristaFactory;
 import estacionamentos.UsoDeVagaMensalistaFactory;
@@ -15,6 +18,15 @@ public interface UsoDeVagaFactory {
      */
     public UsoDeVaga criarUsoDeVaga(Vaga vaga);
 
+    /**
+     * Cria um uso de vaga com a data de entrada informada, usado para restaurar
+     * usos já registrados.
+     * @param vaga Vaga para a qual o uso de vaga será criado.
+     * @param entrada Data e hora da entrada do veículo na vaga.
+     * @return Uso de vaga criado.
+     */
+    public UsoDeVaga criarUsoDeVaga(Vaga vaga, LocalDateTime entrada);
+
     /**
      * Método estático para criar instâncias da fábrica de Vagas para mensalistas
      * @return uma instância da fabrica de uso de vaga para mensalista
@@ -38,5 +50,14 @@ public interface UsoDeVagaFactory {
     static UsoDeVagaFactory criarTurnoFactory() {
         return new UsoDeVagaTurnoFactory();
     }
+
+    /**
+     * Método estático para criar instâncias da fábrica de Vagas para Turnos
+     * @param tipoTurno turno contratado pelo cliente
+     * @return uma instância da fabrica de uso de vaga para o turno informado
+     */
+    static UsoDeVagaFactory criarTurnoFactory(TipoTurno tipoTurno) {
+        return new UsoDeVagaTurnoFactory(tipoTurno);
+    }
     
 }
@@ -0,0 +1,31 @@
+package estacionamentos.interfaces;
+
+import estacionamentos.Vaga;
+import estacionamentos.Enums.TipoServico;
+
+/**
+ * Recebe os usos de um histórico campo a campo, sem que os usos guardados em
+ * colunas, no arquivo ou na camada fria sejam recriados como objetos.
+ *
+ * @param <E> exceção lançada pelo visitante, como a de uma escrita
+ */
+@FunctionalInterface
+public interface VisitanteDeUsos<E extends Exception> {
+
+    /**
+     * Saída dos usos em aberto.
+     */
+    long SEM_SAIDA = Long.MIN_VALUE;
+
+    /**
+     * Visita um uso de vaga.
+     * @param entrada  Entrada, em milissegundos desde a época (UTC).
+     * @param saida    Saída, em milissegundos desde a época (UTC), ou
+     *                 {@link #SEM_SAIDA} para o uso em aberto.
+     * @param centavos Valor pago, em centavos.
+     * @param vaga     Vaga usada.
+     * @param servico  Serviço contratado, ou null.
+     */
+    void visitar(long entrada, long saida, long centavos, Vaga vaga, TipoServico servico) throws E;
+
+}
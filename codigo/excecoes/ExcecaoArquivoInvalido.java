@@ -0,0 +1,15 @@
+package excecoes;
+
+import java.io.IOException;
+
+public class ExcecaoArquivoInvalido extends IOException {
+
+    public ExcecaoArquivoInvalido(String msg) {
+        super(msg);
+    }
+
+    public ExcecaoArquivoInvalido(String msg, Throwable causa) {
+        super(msg, causa);
+    }
+
+}
@@ -0,0 +1,9 @@
+package excecoes;
+
+public class ExcecaoHistoricoIndisponivel extends RuntimeException {
+
+    public ExcecaoHistoricoIndisponivel(String msg, Throwable causa) {
+        super(msg, causa);
+    }
+
+}
@@ -0,0 +1,13 @@
+package excecoes;
+
+public class ExcecaoLinhaInvalida extends RuntimeException {
+
+    public ExcecaoLinhaInvalida(String msg) {
+        super(msg);
+    }
+
+    public ExcecaoLinhaInvalida(String msg, Throwable causa) {
+        super(msg, causa);
+    }
+
+}
@@ -4,4 +4,8 @@ public class ExcecaoVeiculoJaEstacionado extends RuntimeException{
     public ExcecaoVeiculoJaEstacionado(){
         super("Esse veículo já está estacionado");
     }
+
+    public ExcecaoVeiculoJaEstacionado(String msg){
+        super(msg);
+    }
 }
@@ -0,0 +1,7 @@
+package excecoes;
+
+public class ExcecaoVeiculoNaoEstacionado extends RuntimeException {
+    public ExcecaoVeiculoNaoEstacionado() {
+        super("Esse veículo não está estacionado");
+    }
+}
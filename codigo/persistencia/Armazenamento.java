@@ -0,0 +1,382 @@
+package persistencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import estacionamentos.ArquivoDeUsos;
+import estacionamentos.ArquivoFrio;
+import estacionamentos.Estacionamento;
+
+/**
+ * Persistência dos estacionamentos em um diretório, composta por um snapshot
+ * particionado por estacionamento ({@link SnapshotParticionado}) e pelo diário
+ * das operações posteriores a ele ({@link DiarioDeEventos}). Cada operação custa
+ * apenas a inserção do seu evento na fila do diário, gravada e sincronizada com
+ * o disco em segundo plano; a abertura carrega o snapshot e reproduz o diário.
+ *
+ * A compactação incorpora o diário ao snapshot sem interromper as cancelas: o
+ * snapshot anterior é carregado em objetos novos, os eventos do diário são
+ * reproduzidos sobre eles e o resultado é gravado como o novo snapshot, com o
+ * número do último evento incluído. Só então os eventos incorporados são
+ * removidos do diário, de forma que uma falha em qualquer etapa não perde nem
+ * duplica eventos. A compactação é incremental: os estacionamentos alterados
+ * pelos eventos são carregados sem o histórico e recebem um delta com as
+ * sessões ativas e os usos encerrados desde o snapshot, e o cadastro recebe
+ * um delta com os clientes alterados. Os arquivos que acumulam deltas demais
+ * e os estacionamentos com vagas geradas novamente são consolidados, isto é,
+ * carregados e regravados inteiros, na própria compactação periódica; a
+ * consolidação de todos os arquivos pode ser pedida por {@link #consolidar()}.
+ *
+ * Um snapshot de arquivo único ({@link SnapshotBinario}) gravado por versões
+ * anteriores é lido enquanto não há um snapshot particionado e removido após a
+ * primeira compactação.
+ *
+ * Os usos encerrados são mantidos fora do heap em um {@link ArquivoDeUsos},
+ * recriado a cada abertura enquanto o snapshot e o diário são carregados. A
+ * compactação usa um arquivo de usos temporário para os objetos novos.
+ *
+ * Os usos mais antigos que uma idade configurável podem ser movidos para a
+ * camada fria, um {@link ArquivoFrio} em log com blocos comprimidos, também
+ * recriado a cada abertura, sob demanda por {@link #esfriarHistorico(Duration)}
+ * ou junto da compactação periódica, que em seguida funde os blocos de cada
+ * veículo. Com a idade zero, o log passa a guardar todo o histórico encerrado
+ * e o heap e o arquivo de usos, apenas os usos desde a última compactação. O
+ * snapshot e o diário não são afetados.
+ */
+public class Armazenamento implements Closeable {
+
+    public static final String DIRETORIO_SNAPSHOT = "snapshot";
+    /**
+     * Snapshot de arquivo único das versões anteriores.
+     */
+    public static final String ARQUIVO_SNAPSHOT = "estacionamentos.dat";
+    public static final String ARQUIVO_DIARIO = "estacionamentos.diario";
+    public static final String ARQUIVO_USOS = "usos.arquivo";
+    public static final String DIRETORIO_FRIO = "frio";
+
+    private final Path snapshot;
+    private final Path snapshotLegado;
+    private final DiarioDeEventos diario;
+    private final ArquivoDeUsos arquivoDeUsos;
+    private final ArquivoFrio arquivoFrio;
+    private volatile Duration idadeDoHistoricoFrio;
+    private volatile long ultimoEventoDoSnapshot;
+    private ScheduledExecutorService agendador;
+    private volatile Exception falhaDaCompactacao;
+
+    private Armazenamento(Path snapshot, Path snapshotLegado, DiarioDeEventos diario, ArquivoDeUsos arquivoDeUsos,
+            ArquivoFrio arquivoFrio, long ultimoEventoDoSnapshot) {
+        this.snapshot = snapshot;
+        this.snapshotLegado = snapshotLegado;
+        this.diario = diario;
+        this.arquivoDeUsos = arquivoDeUsos;
+        this.arquivoFrio = arquivoFrio;
+        this.ultimoEventoDoSnapshot = ultimoEventoDoSnapshot;
+    }
+
+    /**
+     * Abre a persistência de um diretório, criando-o caso não exista, e recupera
+     * os estacionamentos a partir do snapshot e do diário.
+     *
+     * @param diretorio diretório dos arquivos
+     * @return persistência aberta, acompanhando os estacionamentos recuperados
+     * @throws IOException caso a leitura do snapshot ou do diário falhe
+     */
+    public static Armazenamento abrir(Path diretorio) throws IOException {
+        return abrir(diretorio, PoliticaDeSincronizacao.aCadaLote());
+    }
+
+    /**
+     * Abre a persistência de um diretório com uma política de sincronização do
+     * diário, criando-o caso não exista, e recupera os estacionamentos a partir
+     * do snapshot e do diário.
+     *
+     * @param diretorio diretório dos arquivos
+     * @param politica  quando os eventos do diário são sincronizados com o disco
+     * @return persistência aberta, acompanhando os estacionamentos recuperados
+     * @throws IOException caso a leitura do snapshot ou do diário falhe
+     */
+    public static Armazenamento abrir(Path diretorio, PoliticaDeSincronizacao politica) throws IOException {
+        Files.createDirectories(diretorio);
+        Path snapshot = diretorio.resolve(DIRETORIO_SNAPSHOT);
+        Path snapshotLegado = diretorio.resolve(ARQUIVO_SNAPSHOT);
+        ArquivoDeUsos arquivoDeUsos = ArquivoDeUsos.criar(diretorio.resolve(ARQUIVO_USOS));
+        ArquivoFrio arquivoFrio = null;
+        DiarioDeEventos diario = null;
+        try {
+            arquivoFrio = ArquivoFrio.criar(diretorio.resolve(DIRETORIO_FRIO));
+            List<Estacionamento> estacionamentos = new ArrayList<>();
+            long ultimoEvento = 0;
+            if (SnapshotParticionado.existe(snapshot)) {
+                ultimoEvento = SnapshotParticionado.ultimoEvento(snapshot);
+                estacionamentos.addAll(SnapshotParticionado.carregar(snapshot, arquivoDeUsos));
+            } else if (Files.exists(snapshotLegado)) {
+                ultimoEvento = SnapshotBinario.ultimoEvento(snapshotLegado);
+                estacionamentos.addAll(SnapshotBinario.carregar(snapshotLegado, arquivoDeUsos));
+            }
+
+            diario = DiarioDeEventos.abrir(diretorio.resolve(ARQUIVO_DIARIO), ultimoEvento, politica);
+            diario.reproduzir(estacionamentos, ultimoEvento);
+            for (Estacionamento estacionamento : estacionamentos) {
+                // estacionamentos criados pelo diário passam a arquivar agora
+                estacionamento.arquivarUsosEm(arquivoDeUsos);
+                diario.acompanhar(estacionamento);
+            }
+            return new Armazenamento(snapshot, snapshotLegado, diario, arquivoDeUsos, arquivoFrio,
+                    ultimoEvento);
+        } catch (IOException | RuntimeException e) {
+            if (diario != null) {
+                diario.close();
+            }
+            if (arquivoFrio != null) {
+                arquivoFrio.close();
+            }
+            arquivoDeUsos.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return estacionamentos recuperados e adicionados, na ordem em que são
+     *         gravados
+     */
+    public List<Estacionamento> getEstacionamentos() {
+        return diario.getEstacionamentos();
+    }
+
+    public DiarioDeEventos getDiario() {
+        return diario;
+    }
+
+    public ArquivoDeUsos getArquivoDeUsos() {
+        return arquivoDeUsos;
+    }
+
+    public ArquivoFrio getArquivoFrio() {
+        return arquivoFrio;
+    }
+
+    /**
+     * Move para a camada fria os usos encerrados com entrada mais antiga que a
+     * idade informada. As consultas ao histórico continuam a incluí-los.
+     *
+     * @param idade idade a partir da qual os usos são movidos
+     * @return quantidade de usos movidos
+     */
+    public long esfriarHistorico(Duration idade) {
+        LocalDateTime limite = LocalDateTime.now().minus(idade);
+        long movidos = 0;
+        for (Estacionamento estacionamento : getEstacionamentos()) {
+            movidos += estacionamento.esfriarHistorico(arquivoFrio, limite);
+        }
+        return movidos;
+    }
+
+    /**
+     * Funde os blocos frios do histórico de cada veículo, regravando os que estão
+     * fora de ordem, incompletos ou em segmentos fragmentados.
+     *
+     * @return quantidade de blocos substituídos
+     */
+    public long fundirHistoricoFrio() {
+        long substituidos = 0;
+        for (Estacionamento estacionamento : getEstacionamentos()) {
+            substituidos += estacionamento.fundirHistoricoFrio();
+        }
+        return substituidos;
+    }
+
+    /**
+     * Define a idade a partir da qual a compactação periódica move os usos para
+     * a camada fria.
+     *
+     * @param idade idade dos usos movidos, ou null para não movê-los; com
+     *              {@link Duration#ZERO}, todos os usos encerrados são movidos
+     */
+    public void setIdadeDoHistoricoFrio(Duration idade) {
+        this.idadeDoHistoricoFrio = idade;
+    }
+
+    /**
+     * Passa a persistir um novo estacionamento, arquivando os usos encerrados
+     * dos seus veículos. As vagas devem ter sido geradas e nenhum cliente pode
+     * ter sido cadastrado antes da adição.
+     *
+     * @param estacionamento estacionamento sem clientes
+     */
+    public void adicionarEstacionamento(Estacionamento estacionamento) {
+        diario.adicionarEstacionamento(estacionamento);
+        estacionamento.arquivarUsosEm(arquivoDeUsos);
+    }
+
+    /**
+     * Incorpora ao snapshot os eventos gravados no diário até o momento.
+     *
+     * @return tamanho do snapshot, em bytes
+     * @throws IOException caso a leitura ou a gravação falhe; o snapshot e o
+     *                     diário anteriores são preservados
+     */
+    public long compactar() throws IOException {
+        return compactar(false);
+    }
+
+    /**
+     * Incorpora ao snapshot os eventos gravados no diário até o momento e
+     * consolida todos os deltas, regravando o snapshot inteiro. A memória
+     * ocupada pelos estacionamentos é duplicada durante a consolidação.
+     *
+     * @return tamanho do snapshot, em bytes
+     * @throws IOException caso a leitura ou a gravação falhe; o snapshot e o
+     *                     diário anteriores são preservados
+     */
+    public long consolidar() throws IOException {
+        return compactar(true);
+    }
+
+    private synchronized long compactar(boolean consolidar) throws IOException {
+        long desde = ultimoEventoDoSnapshot;
+        // os eventos registrados até aqui precisam estar no arquivo para serem reproduzidos
+        long ate = diario.sincronizar();
+        boolean particionado = SnapshotParticionado.existe(snapshot);
+        if (ate == desde && particionado && !consolidar) {
+            return SnapshotParticionado.tamanho(snapshot);
+        }
+
+        long tamanho;
+        try (ArquivoDeUsos temporario = ArquivoDeUsos.criarTemporario()) {
+            List<Estacionamento> estacionamentos;
+            if (particionado) {
+                SnapshotParticionado.Plano plano = consolidar
+                        ? null
+                        : SnapshotParticionado.planejar(snapshot, diario.alteracoesEntre(desde, ate));
+                estacionamentos = SnapshotParticionado.carregar(snapshot, temporario, plano);
+                diario.reproduzir(estacionamentos, desde, ate);
+                tamanho = SnapshotParticionado.salvar(snapshot, estacionamentos, ate, plano);
+            } else {
+                estacionamentos = Files.exists(snapshotLegado)
+                        ? SnapshotBinario.carregar(snapshotLegado, temporario)
+                        : new ArrayList<>();
+                diario.reproduzir(estacionamentos, desde, ate);
+                tamanho = SnapshotParticionado.salvar(snapshot, estacionamentos, ate);
+            }
+            // o arquivo temporário só pode ser fechado depois da carga do histórico
+            for (Estacionamento estacionamento : estacionamentos) {
+                estacionamento.aguardarHistorico();
+            }
+        }
+        ultimoEventoDoSnapshot = ate;
+        Files.deleteIfExists(snapshotLegado);
+        diario.descartarAte(ate);
+        return tamanho;
+    }
+
+    /**
+     * Agenda a compactação periódica do diário em uma thread de fundo. A
+     * compactação só é feita quando há eventos posteriores ao snapshot; em
+     * seguida, os usos mais antigos que a idade definida por
+     * {@link #setIdadeDoHistoricoFrio(Duration)} são movidos para a camada fria
+     * e os blocos frios de cada veículo são fundidos.
+     *
+     * Uma falha em qualquer etapa não interrompe as execuções seguintes; ela
+     * fica disponível em {@link #getFalhaDaCompactacao()} até uma execução ser
+     * concluída sem falhas.
+     *
+     * @param intervalo intervalo entre as compactações
+     * @param unidade   unidade do intervalo
+     */
+    public synchronized void agendarCompactacao(long intervalo, TimeUnit unidade) {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "compactacao-diario");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // uma exceção que escapasse da tarefa cancelaria as execuções seguintes
+        agendador.scheduleWithFixedDelay(() -> {
+            Exception falha = null;
+            try {
+                if (diario.getUltimoEvento() > ultimoEventoDoSnapshot) {
+                    compactar();
+                }
+            } catch (IOException | RuntimeException e) {
+                falha = e;
+            }
+            Duration idade = idadeDoHistoricoFrio;
+            if (idade != null) {
+                try {
+                    esfriarHistorico(idade);
+                    fundirHistoricoFrio();
+                } catch (RuntimeException e) {
+                    if (falha != null) {
+                        falha.addSuppressed(e);
+                    } else {
+                        falha = e;
+                    }
+                }
+            }
+            falhaDaCompactacao = falha;
+        }, intervalo, intervalo, unidade);
+    }
+
+    /**
+     * @return falha da última execução da compactação periódica, ou null caso
+     *         ela tenha sido concluída sem falhas ou ainda não tenha sido
+     *         executada
+     */
+    public Exception getFalhaDaCompactacao() {
+        return falhaDaCompactacao;
+    }
+
+    /**
+     * Aguarda a gravação e a sincronização com o disco dos eventos registrados
+     * no diário até o momento. Para não bloquear, use
+     * {@link DiarioDeEventos#confirmar()}.
+     *
+     * @throws IOException caso a gravação falhe ou a espera seja interrompida
+     */
+    public void sincronizar() throws IOException {
+        diario.sincronizar();
+    }
+
+    /**
+     * Interrompe a compactação periódica e fecha o diário, o arquivo de usos e a
+     * camada fria.
+     * Os eventos permanecem no diário até a próxima compactação.
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService agendadorAtual;
+        synchronized (this) {
+            agendadorAtual = agendador;
+            agendador = null;
+        }
+        if (agendadorAtual != null) {
+            agendadorAtual.shutdown();
+            try {
+                agendadorAtual.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            diario.close();
+        } finally {
+            try {
+                arquivoDeUsos.close();
+            } finally {
+                arquivoFrio.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,1082 @@
+package persistencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Vaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.ObserverEstacionamento;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoArquivoInvalido;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+/**
+ * Diário (write-ahead log) das operações dos estacionamentos: cada cadastro de
+ * estacionamento, cliente e veículo, geração de vagas, entrada, saída,
+ * contratação de serviço, alteração de tipo de uso e importação de uso
+ * encerrado é acrescentado ao final de
+ * um arquivo mapeado em memória, com custo proporcional ao tamanho do evento e
+ * não ao tamanho dos dados.
+ *
+ * Formato do arquivo, pré-alocado e estendido em blocos:
+ * <pre>
+ * int MAGICO, short VERSAO, preenchimento até {@value #CABECALHO} bytes
+ * registros: int tamanho, int CRC32 do conteúdo, conteúdo
+ *            conteúdo: byte tipo, varlong número do evento, campos do evento
+ * int 0 ao final dos registros
+ * </pre>
+ * Os eventos são numerados em sequência. Na abertura, a leitura termina no
+ * primeiro registro incompleto, com CRC inválido ou fora de sequência (uma
+ * gravação interrompida) e o restante do arquivo é zerado. Os estacionamentos
+ * são referenciados pela ordem em que foram acompanhados e as datas são gravadas
+ * em milissegundos, como no {@link SnapshotBinario}.
+ *
+ * As cancelas não aguardam o disco: a thread da operação apenas codifica o
+ * evento, numera-o e o coloca em uma fila circular limitada
+ * ({@value #CAPACIDADE_DA_FILA} eventos), aguardando somente quando a fila está
+ * cheia. Uma thread de gravação retira os eventos em lotes, acrescenta-os ao
+ * mapeamento e sincroniza os lotes com o disco de acordo com a
+ * {@link PoliticaDeSincronizacao} (group commit). Um evento só sobrevive a uma
+ * falha do processo depois de gravado no mapeamento e a uma falha do sistema
+ * depois de sincronizado; quem precisa dessa garantia pede uma confirmação com
+ * {@link #confirmar()}.
+ */
+public class DiarioDeEventos implements ObserverEstacionamento, Closeable {
+
+    public static final int MAGICO = 0x45535444;
+    public static final int VERSAO = 1;
+
+    static final int CABECALHO = 16;
+    private static final int CABECALHO_REGISTRO = 8;
+    private static final int TAMANHO_INICIAL = 4 * 1024 * 1024;
+
+    /**
+     * Quantidade máxima de eventos aguardando a thread de gravação.
+     */
+    static final int CAPACIDADE_DA_FILA = 8192;
+
+    private static final int ESTACIONAMENTO = 1;
+    private static final int CLIENTE = 2;
+    private static final int VEICULO = 3;
+    private static final int ENTRADA = 4;
+    private static final int SAIDA = 5;
+    private static final int SERVICO = 6;
+    private static final int TIPO_USO = 7;
+    private static final int VAGAS = 8;
+    private static final int USO = 9;
+
+    /**
+     * Campos de um evento, escritos depois do tipo e do número.
+     */
+    @FunctionalInterface
+    private interface Campos {
+        void escrever(SaidaBinaria saida) throws IOException;
+    }
+
+    /**
+     * Evento na fila de gravação, já numerado e com os campos codificados, ou
+     * pedido de confirmação.
+     */
+    private static final class Registro {
+        private final int tipo;
+        private final long evento;
+        private final byte[] campos;
+        private final CompletableFuture<Long> confirmacao;
+
+        Registro(int tipo, long evento, byte[] campos, CompletableFuture<Long> confirmacao) {
+            this.tipo = tipo;
+            this.evento = evento;
+            this.campos = campos;
+            this.confirmacao = confirmacao;
+        }
+    }
+
+    /**
+     * Último registro da fila, colocado pelo fechamento.
+     */
+    private static final Registro FIM = new Registro(0, 0, null, null);
+
+    private final Path arquivo;
+    private final PoliticaDeSincronizacao politica;
+    private final List<Estacionamento> estacionamentos = new CopyOnWriteArrayList<>();
+    private final Map<Estacionamento, Integer> indices = new ConcurrentHashMap<>();
+    private final BlockingQueue<Registro> fila = new ArrayBlockingQueue<>(CAPACIDADE_DA_FILA);
+    // a numeração e a inserção na fila são atômicas, de forma que a fila fica em ordem de número
+    private final Object numeracao = new Object();
+    private volatile long ultimoEvento;
+    private volatile boolean fechado;
+    private volatile IOException falha;
+    private Thread gravador;
+    private FileChannel canal;
+    private MappedByteBuffer mapa;
+    private int posicao;
+
+    private DiarioDeEventos(Path arquivo, long ultimoEvento, PoliticaDeSincronizacao politica) {
+        this.arquivo = arquivo;
+        this.ultimoEvento = ultimoEvento;
+        this.politica = politica;
+    }
+
+    /**
+     * Abre o diário, criando o arquivo caso não exista. Os eventos já gravados
+     * não são aplicados; use {@link #reproduzir(List, long)}.
+     *
+     * @param arquivo                arquivo do diário
+     * @param ultimoEventoDoSnapshot número do último evento já incluído no
+     *                               snapshot; os próximos eventos são numerados a
+     *                               partir dele caso o diário não possua eventos
+     *                               posteriores
+     * @return diário aberto
+     * @throws ExcecaoArquivoInvalido caso o arquivo não seja um diário ou seja de
+     *                                uma versão não suportada
+     * @throws IOException            caso a abertura falhe
+     */
+    public static DiarioDeEventos abrir(Path arquivo, long ultimoEventoDoSnapshot) throws IOException {
+        return abrir(arquivo, ultimoEventoDoSnapshot, PoliticaDeSincronizacao.aCadaLote());
+    }
+
+    /**
+     * Abre o diário com uma política de sincronização, criando o arquivo caso
+     * não exista, e inicia a sua thread de gravação.
+     *
+     * @param arquivo                arquivo do diário
+     * @param ultimoEventoDoSnapshot número do último evento já incluído no
+     *                               snapshot
+     * @param politica               quando os eventos gravados são sincronizados
+     *                               com o disco
+     * @return diário aberto
+     * @throws ExcecaoArquivoInvalido caso o arquivo não seja um diário ou seja de
+     *                                uma versão não suportada
+     * @throws IOException            caso a abertura falhe
+     * @see #abrir(Path, long)
+     */
+    public static DiarioDeEventos abrir(Path arquivo, long ultimoEventoDoSnapshot, PoliticaDeSincronizacao politica)
+            throws IOException {
+        DiarioDeEventos diario = new DiarioDeEventos(arquivo, ultimoEventoDoSnapshot, politica);
+        diario.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            diario.carregarArquivo();
+        } catch (IOException | RuntimeException e) {
+            diario.canal.close();
+            throw e;
+        }
+        diario.gravador = new Thread(diario::gravarEmSegundoPlano, "gravacao-diario");
+        diario.gravador.setDaemon(true);
+        diario.gravador.start();
+        return diario;
+    }
+
+    private void carregarArquivo() throws IOException {
+        long tamanhoArquivo = canal.size();
+        if (tamanhoArquivo == 0) {
+            mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, TAMANHO_INICIAL);
+            escreverCabecalho(mapa);
+            posicao = CABECALHO;
+            return;
+        }
+        if (tamanhoArquivo < CABECALHO || tamanhoArquivo > Integer.MAX_VALUE) {
+            throw new ExcecaoArquivoInvalido("O arquivo " + arquivo + " não é um diário de eventos");
+        }
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoArquivo);
+        if (mapa.getInt(0) != MAGICO) {
+            throw new ExcecaoArquivoInvalido("O arquivo " + arquivo + " não é um diário de eventos");
+        }
+        int versao = mapa.getShort(4);
+        if (versao != VERSAO) {
+            throw new ExcecaoArquivoInvalido("Versão de diário não suportada: " + versao);
+        }
+
+        int atual = CABECALHO;
+        long anterior = 0;
+        while (true) {
+            long evento = eventoValido(atual);
+            if (evento <= 0 || (anterior != 0 && evento != anterior + 1)) {
+                break;
+            }
+            anterior = evento;
+            atual += CABECALHO_REGISTRO + mapa.getInt(atual);
+        }
+
+        if (anterior <= ultimoEvento) {
+            // todos os eventos do arquivo já estão no snapshot
+            atual = CABECALHO;
+        } else {
+            ultimoEvento = anterior;
+        }
+        posicao = atual;
+        for (int i = posicao; i < mapa.capacity(); i++) {
+            if (mapa.get(i) != 0) {
+                mapa.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private static void escreverCabecalho(ByteBuffer destino) {
+        destino.putInt(0, MAGICO);
+        destino.putShort(4, (short) VERSAO);
+    }
+
+    /**
+     * @return número do evento do registro na posição informada, ou -1 caso não
+     *         haja um registro completo e íntegro na posição
+     */
+    private long eventoValido(int inicio) throws IOException {
+        if (inicio + CABECALHO_REGISTRO > mapa.capacity()) {
+            return -1;
+        }
+        int tamanho = mapa.getInt(inicio);
+        if (tamanho <= 0 || tamanho > mapa.capacity() - inicio - CABECALHO_REGISTRO) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(conteudo(mapa, inicio, tamanho));
+        if ((int) crc.getValue() != mapa.getInt(inicio + 4)) {
+            return -1;
+        }
+        return eventoEm(mapa, inicio);
+    }
+
+    private static long eventoEm(ByteBuffer origem, int inicio) throws IOException {
+        EntradaBinaria entrada = new EntradaBinaria(conteudo(origem, inicio, origem.getInt(inicio)));
+        entrada.lerByte();
+        return entrada.lerVarLong();
+    }
+
+    private static ByteBuffer conteudo(ByteBuffer origem, int inicio, int tamanho) {
+        ByteBuffer conteudo = origem.duplicate();
+        conteudo.limit(inicio + CABECALHO_REGISTRO + tamanho);
+        conteudo.position(inicio + CABECALHO_REGISTRO);
+        return conteudo;
+    }
+
+    /**
+     * Aplica aos estacionamentos informados os eventos posteriores a um número,
+     * na ordem em que foram gravados. Os estacionamentos cadastrados no diário são
+     * acrescentados à lista. Os observadores dos estacionamentos continuam sendo
+     * notificados das operações reproduzidas, exceto entradas e saídas; por isso
+     * o diário só deve acompanhar os estacionamentos depois da reprodução.
+     *
+     * @param destino    estacionamentos no estado do snapshot
+     * @param aposEvento número do último evento já refletido nos estacionamentos
+     * @return número do último evento aplicado, ou aposEvento caso nenhum evento
+     *         tenha sido aplicado
+     * @throws ExcecaoArquivoInvalido caso um evento não possa ser aplicado
+     * @throws IOException            caso a leitura falhe
+     */
+    public long reproduzir(List<Estacionamento> destino, long aposEvento) throws IOException {
+        return reproduzir(destino, aposEvento, Long.MAX_VALUE);
+    }
+
+    /**
+     * Aplica aos estacionamentos informados os eventos de um intervalo, na ordem
+     * em que foram gravados, como em {@link #reproduzir(List, long)}.
+     *
+     * @param destino    estacionamentos no estado do snapshot
+     * @param aposEvento número do último evento já refletido nos estacionamentos
+     * @param ateEvento  número do último evento a ser aplicado
+     * @return número do último evento aplicado, ou aposEvento caso nenhum evento
+     *         tenha sido aplicado
+     * @throws ExcecaoArquivoInvalido caso um evento não possa ser aplicado
+     * @throws IOException            caso a leitura falhe
+     */
+    public long reproduzir(List<Estacionamento> destino, long aposEvento, long ateEvento) throws IOException {
+        ByteBuffer leitura;
+        int fim;
+        synchronized (this) {
+            leitura = mapa.duplicate();
+            fim = posicao;
+        }
+
+        long ultimo = aposEvento;
+        int atual = CABECALHO;
+        while (atual < fim) {
+            int tamanho = leitura.getInt(atual);
+            EntradaBinaria entrada = new EntradaBinaria(conteudo(leitura, atual, tamanho));
+            int tipo = entrada.lerByte();
+            long evento = entrada.lerVarLong();
+            if (evento > ateEvento) {
+                break;
+            }
+            if (evento > aposEvento) {
+                try {
+                    aplicar(tipo, entrada, destino);
+                } catch (RuntimeException e) {
+                    throw new ExcecaoArquivoInvalido(
+                            "O evento " + evento + " do diário não pôde ser reproduzido: " + e.getMessage(), e);
+                }
+                ultimo = evento;
+            }
+            atual += CABECALHO_REGISTRO + tamanho;
+        }
+        return ultimo;
+    }
+
+    /**
+     * Estacionamentos e cadastro alterados por um intervalo de eventos.
+     */
+    public static class Alteracoes {
+        private boolean cadastro;
+        private final Set<Integer> estacionamentos = new HashSet<>();
+        private final Set<Integer> vagasGeradas = new HashSet<>();
+
+        /**
+         * @return se algum estacionamento, cliente ou veículo foi cadastrado, se
+         *         algum tipo de uso foi alterado ou se vagas foram geradas
+         */
+        public boolean isCadastro() {
+            return cadastro;
+        }
+
+        /**
+         * @return índices dos estacionamentos criados, com vagas geradas ou com
+         *         entradas, saídas, serviços contratados ou usos importados
+         */
+        public Set<Integer> getEstacionamentos() {
+            return Collections.unmodifiableSet(estacionamentos);
+        }
+
+        /**
+         * @return índices dos estacionamentos já existentes cujas vagas foram
+         *         geradas novamente, deixando os usos anteriores fora deles
+         */
+        public Set<Integer> getVagasGeradas() {
+            return Collections.unmodifiableSet(vagasGeradas);
+        }
+    }
+
+    /**
+     * Levanta o que foi alterado pelos eventos de um intervalo, sem aplicá-los.
+     *
+     * @param aposEvento número do último evento já refletido no snapshot
+     * @param ateEvento  número do último evento considerado
+     * @return alterações feitas pelos eventos do intervalo
+     * @throws IOException caso a leitura falhe
+     */
+    public Alteracoes alteracoesEntre(long aposEvento, long ateEvento) throws IOException {
+        ByteBuffer leitura;
+        int fim;
+        synchronized (this) {
+            leitura = mapa.duplicate();
+            fim = posicao;
+        }
+
+        Alteracoes alteracoes = new Alteracoes();
+        int atual = CABECALHO;
+        while (atual < fim) {
+            int tamanho = leitura.getInt(atual);
+            EntradaBinaria entrada = new EntradaBinaria(conteudo(leitura, atual, tamanho));
+            int tipo = entrada.lerByte();
+            long evento = entrada.lerVarLong();
+            if (evento > ateEvento) {
+                break;
+            }
+            if (evento > aposEvento) {
+                // todos os eventos começam pelo índice do estacionamento
+                int indice = entrada.lerVarInt();
+                switch (tipo) {
+                    case VAGAS:
+                        // vagas regeneradas deixam os usos anteriores fora do estacionamento
+                        alteracoes.vagasGeradas.add(indice);
+                        alteracoes.cadastro = true;
+                        alteracoes.estacionamentos.add(indice);
+                        break;
+                    case ESTACIONAMENTO:
+                        alteracoes.cadastro = true;
+                        alteracoes.estacionamentos.add(indice);
+                        break;
+                    case CLIENTE:
+                    case VEICULO:
+                    case TIPO_USO:
+                        alteracoes.cadastro = true;
+                        break;
+                    default:
+                        alteracoes.estacionamentos.add(indice);
+                }
+            }
+            atual += CABECALHO_REGISTRO + tamanho;
+        }
+        return alteracoes;
+    }
+
+    private static void aplicar(int tipo, EntradaBinaria entrada, List<Estacionamento> destino) throws IOException {
+        switch (tipo) {
+            case ESTACIONAMENTO: {
+                int indice = entrada.lerVarInt();
+                if (indice != destino.size()) {
+                    throw new ExcecaoArquivoInvalido("Estacionamento fora de ordem no diário: " + indice);
+                }
+                Estacionamento estacionamento = new Estacionamento(entrada.lerString());
+                estacionamento.gerarVagas(entrada.lerVarInt());
+                destino.add(estacionamento);
+                break;
+            }
+            case CLIENTE: {
+                Estacionamento estacionamento = estacionamento(destino, entrada.lerVarInt());
+                String id = entrada.lerString();
+                String nome = entrada.lerString();
+                TipoUso tipoUso = SnapshotBinario.enumDoOrdinal(TipoUso.values(), entrada.lerByte());
+                Cliente cliente = buscarCliente(destino, id);
+                if (cliente == null) {
+                    cliente = new Cliente(nome, id, tipoUso);
+                }
+                int quantidadeVeiculos = entrada.lerVarInt();
+                for (int i = 0; i < quantidadeVeiculos; i++) {
+                    String placa = entrada.lerString();
+                    TipoUso tipoUsoVeiculo = SnapshotBinario.enumDoOrdinal(TipoUso.values(), entrada.lerByte());
+                    UsoDeVagaFactory fabrica = SnapshotBinario.lerFabrica(entrada);
+                    if (cliente.possuiVeiculo(placa) == null) {
+                        cliente.addVeiculo(new Veiculo(placa, tipoUsoVeiculo, fabrica));
+                    }
+                }
+                estacionamento.addCliente(cliente);
+                break;
+            }
+            case VEICULO: {
+                Estacionamento estacionamento = estacionamento(destino, entrada.lerVarInt());
+                String idCliente = entrada.lerString();
+                String placa = entrada.lerString();
+                TipoUso tipoUso = SnapshotBinario.enumDoOrdinal(TipoUso.values(), entrada.lerByte());
+                UsoDeVagaFactory fabrica = SnapshotBinario.lerFabrica(entrada);
+                Cliente cliente = estacionamento.possuiCliente(idCliente);
+                if (cliente == null) {
+                    throw new ExcecaoArquivoInvalido("Cliente inexistente no diário: " + idCliente);
+                }
+                cliente.addVeiculo(new Veiculo(placa, tipoUso, fabrica));
+                break;
+            }
+            case ENTRADA: {
+                Estacionamento estacionamento = estacionamento(destino, entrada.lerVarInt());
+                String placa = entrada.lerString();
+                int numeroVaga = entrada.lerVarInt();
+                long inicio = entrada.lerVarLong();
+                TipoServico servico = SnapshotBinario.enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+                Veiculo veiculo = veiculo(estacionamento, placa);
+                Vaga vaga = estacionamento.getVaga(numeroVaga);
+                if (vaga == null) {
+                    throw new ExcecaoArquivoInvalido("Vaga inexistente no diário: " + numeroVaga);
+                }
+                UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(vaga, SnapshotBinario.deEpoca(inicio));
+                uso.setTipoServico(servico);
+                veiculo.registrarUsoDeVaga(uso);
+                estacionamento.restaurarUso(placa, uso);
+                break;
+            }
+            case SAIDA: {
+                Estacionamento estacionamento = estacionamento(destino, entrada.lerVarInt());
+                String placa = entrada.lerString();
+                long fim = entrada.lerVarLong();
+                long centavos = SnapshotBinario.lerValor(entrada);
+                estacionamento.restaurarSaida(placa, SnapshotBinario.deEpoca(fim), centavos);
+                break;
+            }
+            case SERVICO: {
+                Estacionamento estacionamento = estacionamento(destino, entrada.lerVarInt());
+                String placa = entrada.lerString();
+                TipoServico servico = SnapshotBinario.enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+                estacionamento.contratarServico(placa, servico);
+                break;
+            }
+            case TIPO_USO: {
+                Estacionamento estacionamento = estacionamento(destino, entrada.lerVarInt());
+                String idCliente = entrada.lerString();
+                TipoUso tipoUso = SnapshotBinario.enumDoOrdinal(TipoUso.values(), entrada.lerByte());
+                try {
+                    estacionamento.alteraTipoUsoCliente(tipoUso, idCliente);
+                } catch (ExcecaoClienteNaoCadastrado e) {
+                    throw new ExcecaoArquivoInvalido("Cliente inexistente no diário: " + idCliente, e);
+                }
+                break;
+            }
+            case VAGAS: {
+                Estacionamento estacionamento = estacionamento(destino, entrada.lerVarInt());
+                estacionamento.gerarVagas(entrada.lerVarInt());
+                break;
+            }
+            case USO: {
+                Estacionamento estacionamento = estacionamento(destino, entrada.lerVarInt());
+                String placa = entrada.lerString();
+                int numeroVaga = entrada.lerVarInt();
+                long inicio = entrada.lerVarLong();
+                long fim = entrada.lerVarLong();
+                TipoServico servico = SnapshotBinario.enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+                long centavos = SnapshotBinario.lerValor(entrada);
+                Veiculo veiculo = veiculo(estacionamento, placa);
+                Vaga vaga = estacionamento.getVagaDoHistorico(numeroVaga);
+                if (vaga == null) {
+                    throw new ExcecaoArquivoInvalido("Vaga inexistente no diário: " + numeroVaga);
+                }
+                UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(vaga, SnapshotBinario.deEpoca(inicio));
+                uso.setSaida(SnapshotBinario.deEpoca(fim));
+                uso.setTipoServico(servico);
+                uso.setCentavosPagos(centavos);
+                estacionamento.importarUso(placa, uso);
+                break;
+            }
+            default:
+                throw new ExcecaoArquivoInvalido("Tipo de evento desconhecido no diário: " + tipo);
+        }
+    }
+
+    private static Estacionamento estacionamento(List<Estacionamento> estacionamentos, int indice)
+            throws ExcecaoArquivoInvalido {
+        if (indice < 0 || indice >= estacionamentos.size()) {
+            throw new ExcecaoArquivoInvalido("Estacionamento inexistente no diário: " + indice);
+        }
+        return estacionamentos.get(indice);
+    }
+
+    private static Veiculo veiculo(Estacionamento estacionamento, String placa) throws ExcecaoArquivoInvalido {
+        Veiculo veiculo = estacionamento.buscarVeiculo(placa);
+        if (veiculo == null) {
+            throw new ExcecaoArquivoInvalido("Veículo inexistente no diário: " + placa);
+        }
+        return veiculo;
+    }
+
+    /**
+     * Clientes compartilhados entre estacionamentos são o mesmo objeto, como no
+     * cadastro original.
+     */
+    private static Cliente buscarCliente(List<Estacionamento> estacionamentos, String id) {
+        for (Estacionamento estacionamento : estacionamentos) {
+            Cliente cliente = estacionamento.possuiCliente(id);
+            if (cliente != null) {
+                return cliente;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Passa a registrar as operações de um estacionamento já existente no
+     * snapshot ou reproduzido do diário, sem gravar um evento de cadastro.
+     *
+     * @param estacionamento estacionamento acompanhado
+     */
+    public void acompanhar(Estacionamento estacionamento) {
+        // não usa o monitor do diário, que a thread de gravação precisa para esvaziar a fila
+        synchronized (estacionamentos) {
+            if (indices.containsKey(estacionamento)) {
+                return;
+            }
+            indices.put(estacionamento, estacionamentos.size());
+            estacionamentos.add(estacionamento);
+            estacionamento.addObserver(this);
+        }
+    }
+
+    /**
+     * Registra o cadastro de um novo estacionamento, com o nome e a quantidade de
+     * vagas atuais, e passa a registrar as suas operações.
+     *
+     * @param estacionamento estacionamento sem clientes
+     * @throws IllegalArgumentException caso o estacionamento já possua clientes
+     */
+    public void adicionarEstacionamento(Estacionamento estacionamento) {
+        if (!estacionamento.getId().isEmpty()) {
+            throw new IllegalArgumentException("Somente estacionamentos sem clientes podem ser adicionados ao diário");
+        }
+        synchronized (estacionamentos) {
+            int indice = estacionamentos.size();
+            registrar(ESTACIONAMENTO, saida -> {
+                saida.escreverVarInt(indice);
+                saida.escreverString(estacionamento.getNome());
+                saida.escreverVarInt(estacionamento.getVagas().size());
+            });
+            acompanhar(estacionamento);
+        }
+    }
+
+    /**
+     * @return estacionamentos acompanhados, na ordem dos índices gravados
+     */
+    public List<Estacionamento> getEstacionamentos() {
+        return Collections.unmodifiableList(estacionamentos);
+    }
+
+    /**
+     * @return número do último evento registrado, ainda que aguarde a gravação
+     */
+    public long getUltimoEvento() {
+        return ultimoEvento;
+    }
+
+    public PoliticaDeSincronizacao getPolitica() {
+        return politica;
+    }
+
+    /**
+     * @return bytes ocupados pelo cabeçalho e pelos registros já gravados
+     */
+    public synchronized long getTamanho() {
+        return posicao;
+    }
+
+    @Override
+    public void vagasGeradas(Estacionamento estacionamento) {
+        int indice = indice(estacionamento);
+        int quantidade = estacionamento.getVagas().size();
+        registrar(VAGAS, saida -> {
+            saida.escreverVarInt(indice);
+            saida.escreverVarInt(quantidade);
+        });
+    }
+
+    @Override
+    public void clienteAdicionado(Estacionamento estacionamento, Cliente cliente) {
+        int indice = indice(estacionamento);
+        List<Veiculo> veiculos = List.copyOf(cliente.getVeiculos());
+        registrar(CLIENTE, saida -> {
+            saida.escreverVarInt(indice);
+            saida.escreverString(cliente.getId());
+            saida.escreverString(cliente.getNome());
+            saida.escreverByte(SnapshotBinario.ordinal(cliente.getTipoUso()));
+            saida.escreverVarInt(veiculos.size());
+            for (Veiculo veiculo : veiculos) {
+                saida.escreverString(veiculo.getPlaca());
+                saida.escreverByte(SnapshotBinario.ordinal(veiculo.getTipoUso()));
+                SnapshotBinario.escreverFabrica(saida, veiculo.getUsoDeVagaFactory());
+            }
+        });
+    }
+
+    /**
+     * Um veículo adicionado a um cliente é notificado por todos os
+     * estacionamentos em que o cliente está cadastrado; apenas o primeiro deles
+     * grava o evento, que na reprodução alcança os demais pelo cliente
+     * compartilhado.
+     */
+    @Override
+    public void veiculoAdicionado(Estacionamento estacionamento, Cliente cliente, Veiculo veiculo) {
+        if (primeiroEstacionamentoDoCliente(cliente) != estacionamento) {
+            return;
+        }
+        int indice = indice(estacionamento);
+        registrar(VEICULO, saida -> {
+            saida.escreverVarInt(indice);
+            saida.escreverString(cliente.getId());
+            saida.escreverString(veiculo.getPlaca());
+            saida.escreverByte(SnapshotBinario.ordinal(veiculo.getTipoUso()));
+            SnapshotBinario.escreverFabrica(saida, veiculo.getUsoDeVagaFactory());
+        });
+    }
+
+    private Estacionamento primeiroEstacionamentoDoCliente(Cliente cliente) {
+        for (Estacionamento estacionamento : estacionamentos) {
+            if (estacionamento.possuiCliente(cliente.getId()) == cliente) {
+                return estacionamento;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void veiculoEstacionado(Estacionamento estacionamento, Veiculo veiculo, UsoDeVaga uso) {
+        int indice = indice(estacionamento);
+        registrar(ENTRADA, saida -> {
+            saida.escreverVarInt(indice);
+            saida.escreverString(veiculo.getPlaca());
+            saida.escreverVarInt(uso.getVaga().getNumero());
+            saida.escreverVarLong(SnapshotBinario.paraEpoca(uso.getEntrada()));
+            saida.escreverByte(SnapshotBinario.ordinal(uso.getTipoServico()));
+        });
+    }
+
+    @Override
+    public void veiculoSaiu(Estacionamento estacionamento, Veiculo veiculo, UsoDeVaga uso) {
+        int indice = indice(estacionamento);
+        registrar(SAIDA, saida -> {
+            saida.escreverVarInt(indice);
+            saida.escreverString(veiculo.getPlaca());
+            saida.escreverVarLong(SnapshotBinario.paraEpoca(uso.getSaida()));
+            SnapshotBinario.escreverValor(saida, uso.getCentavosPagos());
+        });
+    }
+
+    @Override
+    public void servicoContratado(Estacionamento estacionamento, Veiculo veiculo, UsoDeVaga uso) {
+        int indice = indice(estacionamento);
+        registrar(SERVICO, saida -> {
+            saida.escreverVarInt(indice);
+            saida.escreverString(veiculo.getPlaca());
+            saida.escreverByte(SnapshotBinario.ordinal(uso.getTipoServico()));
+        });
+    }
+
+    @Override
+    public void tipoUsoAlterado(Estacionamento estacionamento, Cliente cliente) {
+        int indice = indice(estacionamento);
+        registrar(TIPO_USO, saida -> {
+            saida.escreverVarInt(indice);
+            saida.escreverString(cliente.getId());
+            saida.escreverByte(SnapshotBinario.ordinal(cliente.getTipoUso()));
+        });
+    }
+
+    @Override
+    public void usoImportado(Estacionamento estacionamento, Veiculo veiculo, UsoDeVaga uso) {
+        int indice = indice(estacionamento);
+        registrar(USO, saida -> {
+            saida.escreverVarInt(indice);
+            saida.escreverString(veiculo.getPlaca());
+            saida.escreverVarInt(uso.getVaga().getNumero());
+            saida.escreverVarLong(SnapshotBinario.paraEpoca(uso.getEntrada()));
+            saida.escreverVarLong(SnapshotBinario.paraEpoca(uso.getSaida()));
+            saida.escreverByte(SnapshotBinario.ordinal(uso.getTipoServico()));
+            SnapshotBinario.escreverValor(saida, uso.getCentavosPagos());
+        });
+    }
+
+    private int indice(Estacionamento estacionamento) {
+        Integer indice = indices.get(estacionamento);
+        if (indice == null) {
+            throw new IllegalStateException("Estacionamento não acompanhado pelo diário: " + estacionamento.getNome());
+        }
+        return indice;
+    }
+
+    /**
+     * Numera um evento e o coloca na fila de gravação. Os campos são codificados
+     * na thread da operação, enquanto os objetos ainda estão no estado
+     * notificado; a espera só ocorre quando a fila está cheia.
+     *
+     * A operação notificada já foi aplicada em memória, de forma que o registro
+     * nunca falha na thread da operação: depois de uma falha de gravação, ou
+     * caso o diário seja fechado durante a notificação, o evento é descartado e
+     * a falha é informada por {@link #confirmar()} e {@link #getFalha()}.
+     */
+    private void registrar(int tipo, Campos campos) {
+        byte[] conteudo = codificar(campos);
+        synchronized (numeracao) {
+            if (fechado) {
+                if (falha == null) {
+                    falha = new IOException("Evento notificado depois do fechamento do diário de eventos");
+                }
+                return;
+            }
+            if (falha != null) {
+                // o gravador descartaria o evento; a falha já é informada nas confirmações
+                return;
+            }
+            long evento = ultimoEvento + 1;
+            enfileirar(new Registro(tipo, evento, conteudo, null));
+            ultimoEvento = evento;
+        }
+    }
+
+    /**
+     * @return falha que impediu a gravação de algum evento, ou null caso todos
+     *         os eventos registrados tenham sido gravados ou estejam na fila
+     */
+    public IOException getFalha() {
+        return falha;
+    }
+
+    private static byte[] codificar(Campos campos) {
+        int capacidade = 64;
+        try {
+            while (true) {
+                ByteBuffer destino = ByteBuffer.allocate(capacidade);
+                SaidaBinaria saida = new SaidaBinaria(destino);
+                try {
+                    campos.escrever(saida);
+                } catch (BufferOverflowException e) {
+                    capacidade *= 2;
+                    continue;
+                }
+                return Arrays.copyOf(destino.array(), (int) saida.getBytesEscritos());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Coloca um registro na fila, aguardando espaço sem atender interrupções, de
+     * forma que um evento numerado nunca é perdido.
+     */
+    private void enfileirar(Registro registro) {
+        boolean interrompida = false;
+        while (true) {
+            try {
+                fila.put(registro);
+                break;
+            } catch (InterruptedException e) {
+                interrompida = true;
+            }
+        }
+        if (interrompida) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Pede a confirmação de que os eventos registrados até o momento foram
+     * gravados e sincronizados com o disco. O pedido entra na fila depois deles
+     * e sincroniza o lote em que é atendido, qualquer que seja a política.
+     *
+     * @return confirmação concluída com o número do último evento registrado
+     *         antes do pedido, ou com falha caso a gravação falhe
+     */
+    public CompletableFuture<Long> confirmar() {
+        CompletableFuture<Long> confirmacao = new CompletableFuture<>();
+        synchronized (numeracao) {
+            if (falha != null) {
+                confirmacao.completeExceptionally(falha);
+            } else if (fechado) {
+                // o fechamento grava e sincroniza todos os eventos
+                confirmacao.complete(ultimoEvento);
+            } else {
+                enfileirar(new Registro(0, ultimoEvento, null, confirmacao));
+            }
+        }
+        return confirmacao;
+    }
+
+    /**
+     * Laço da thread de gravação: retira os eventos da fila em lotes, acrescenta
+     * cada lote ao mapeamento e o sincroniza de acordo com a política. Após uma
+     * falha, a fila continua sendo esvaziada para não bloquear as cancelas, e as
+     * confirmações são concluídas com a falha.
+     */
+    private void gravarEmSegundoPlano() {
+        List<Registro> lote = new ArrayList<>();
+        List<Registro> confirmacoes = new ArrayList<>();
+        boolean pendente = false;
+        long prazo = 0;
+        boolean encerrar = false;
+        while (!encerrar) {
+            Registro primeiro;
+            try {
+                if (pendente && !politica.isAoFechar()) {
+                    primeiro = fila.poll(prazo - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } else {
+                    primeiro = fila.take();
+                }
+            } catch (InterruptedException e) {
+                // só o registro FIM encerra a thread
+                continue;
+            }
+            if (primeiro != null) {
+                lote.add(primeiro);
+                fila.drainTo(lote);
+            }
+
+            boolean gravou = false;
+            synchronized (this) {
+                for (Registro registro : lote) {
+                    if (registro == FIM) {
+                        encerrar = true;
+                    } else if (registro.confirmacao != null) {
+                        confirmacoes.add(registro);
+                    } else if (falha == null) {
+                        try {
+                            gravar(registro);
+                            gravou = true;
+                        } catch (IOException | RuntimeException e) {
+                            falha = e instanceof IOException ? (IOException) e : new IOException(e);
+                        }
+                    }
+                }
+            }
+            lote.clear();
+            if (gravou && !pendente) {
+                pendente = true;
+                prazo = System.nanoTime() + politica.getIntervaloEmNanos();
+            }
+
+            boolean sincronizar = encerrar || !confirmacoes.isEmpty()
+                    || (pendente && (politica.isACadaLote()
+                            || (!politica.isAoFechar() && System.nanoTime() - prazo >= 0)));
+            if (!sincronizar) {
+                continue;
+            }
+            if (pendente && falha == null) {
+                try {
+                    synchronized (this) {
+                        mapa.force();
+                    }
+                } catch (RuntimeException e) {
+                    falha = new IOException("Não foi possível sincronizar o diário de eventos", e);
+                }
+            }
+            pendente = false;
+            for (Registro registro : confirmacoes) {
+                if (falha != null) {
+                    registro.confirmacao.completeExceptionally(falha);
+                } else {
+                    registro.confirmacao.complete(registro.evento);
+                }
+            }
+            confirmacoes.clear();
+        }
+    }
+
+    /**
+     * Acrescenta um evento ao final do mapeamento. Caso não caiba, o arquivo é
+     * estendido e o evento é escrito novamente. O tamanho do registro é gravado
+     * por último, de forma que um registro interrompido termina a leitura na
+     * próxima abertura.
+     */
+    private void gravar(Registro registro) throws IOException {
+        while (true) {
+            ByteBuffer destino = mapa.duplicate();
+            destino.position(posicao + CABECALHO_REGISTRO);
+            SaidaBinaria saida = new SaidaBinaria(destino);
+            try {
+                saida.escreverByte(registro.tipo);
+                saida.escreverVarLong(registro.evento);
+                saida.escreverBytes(registro.campos, 0, registro.campos.length);
+            } catch (BufferOverflowException e) {
+                crescer();
+                continue;
+            }
+            int tamanho = (int) saida.getBytesEscritos();
+            CRC32 crc = new CRC32();
+            crc.update(conteudo(mapa, posicao, tamanho));
+            mapa.putInt(posicao + 4, (int) crc.getValue());
+            mapa.putInt(posicao, tamanho);
+            posicao += CABECALHO_REGISTRO + tamanho;
+            return;
+        }
+    }
+
+    private void crescer() throws IOException {
+        long novoTamanho = (long) mapa.capacity() * 2;
+        if (novoTamanho > Integer.MAX_VALUE) {
+            throw new IOException("O diário de eventos atingiu o tamanho máximo; compacte-o em um snapshot");
+        }
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, novoTamanho);
+    }
+
+    /**
+     * Remove do diário os eventos até o número informado, já incluídos em um
+     * snapshot. Os eventos posteriores são copiados para um novo arquivo, que
+     * substitui o atual ao final; uma falha durante a cópia preserva o diário
+     * anterior.
+     *
+     * @param evento número do último evento incluído no snapshot
+     * @throws IOException caso a gravação do novo arquivo falhe
+     */
+    public synchronized void descartarAte(long evento) throws IOException {
+        int inicio = CABECALHO;
+        while (inicio < posicao && eventoEm(mapa, inicio) <= evento) {
+            inicio += CABECALHO_REGISTRO + mapa.getInt(inicio);
+        }
+        if (inicio == CABECALHO) {
+            return;
+        }
+
+        int restante = posicao - inicio;
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        FileChannel novoCanal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            MappedByteBuffer novoMapa = novoCanal.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(TAMANHO_INICIAL, CABECALHO + 2L * restante));
+            escreverCabecalho(novoMapa);
+            ByteBuffer cauda = mapa.duplicate();
+            cauda.limit(posicao);
+            cauda.position(inicio);
+            novoMapa.position(CABECALHO);
+            novoMapa.put(cauda);
+            novoMapa.force();
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            canal.close();
+            canal = novoCanal;
+            mapa = novoMapa;
+            posicao = CABECALHO + restante;
+        } catch (IOException | RuntimeException e) {
+            novoCanal.close();
+            Files.deleteIfExists(temporario);
+            throw e;
+        }
+    }
+
+    /**
+     * Aguarda a gravação e a sincronização com o disco dos eventos registrados
+     * até o momento.
+     *
+     * @return número do último evento sincronizado
+     * @throws IOException caso a gravação falhe ou a espera seja interrompida
+     */
+    public long sincronizar() throws IOException {
+        try {
+            return confirmar().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("A espera pela gravação do diário de eventos foi interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Não foi possível gravar o diário de eventos", e.getCause());
+        }
+    }
+
+    /**
+     * Deixa de acompanhar os estacionamentos, aguarda a gravação e a
+     * sincronização dos eventos da fila e fecha o arquivo.
+     *
+     * @throws IOException caso a gravação de algum evento tenha falhado
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (numeracao) {
+            if (fechado) {
+                return;
+            }
+            for (Estacionamento estacionamento : estacionamentos) {
+                estacionamento.removeObserver(this);
+            }
+            fechado = true;
+            enfileirar(FIM);
+        }
+        boolean interrompida = false;
+        while (gravador.isAlive()) {
+            try {
+                gravador.join();
+            } catch (InterruptedException e) {
+                interrompida = true;
+            }
+        }
+        if (interrompida) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            mapa = null;
+            canal.close();
+        }
+        if (falha != null) {
+            throw falha;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package persistencia;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import excecoes.ExcecaoArquivoInvalido;
+
+/**
+ * Leitura binária com buffer sobre um canal ou diretamente de um
+ * {@link ByteBuffer}, no formato gravado por {@link SaidaBinaria}.
+ */
+public class EntradaBinaria {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final ReadableByteChannel canal;
+    private final ByteBuffer buffer;
+
+    public EntradaBinaria(ReadableByteChannel canal) {
+        this.canal = canal;
+        this.buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+        this.buffer.limit(0);
+    }
+
+    /**
+     * Cria uma entrada que lê o arquivo a partir de uma posição, sem alterar a
+     * posição do canal. Várias entradas podem ler o mesmo canal em paralelo.
+     *
+     * @param canal   canal do arquivo
+     * @param posicao posição inicial da leitura
+     */
+    public EntradaBinaria(FileChannel canal, long posicao) {
+        this(new ReadableByteChannel() {
+            private long proxima = posicao;
+
+            @Override
+            public int read(ByteBuffer destino) throws IOException {
+                int lidos = canal.read(destino, proxima);
+                if (lidos > 0) {
+                    proxima += lidos;
+                }
+                return lidos;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return canal.isOpen();
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    /**
+     * Cria uma entrada que lê diretamente do buffer informado, da sua posição
+     * atual até o seu limite.
+     *
+     * @param conteudo buffer a ser lido
+     */
+    public EntradaBinaria(ByteBuffer conteudo) {
+        this.canal = null;
+        this.buffer = conteudo;
+    }
+
+    private void garantir(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        if (canal == null) {
+            throw new EOFException("Fim inesperado do conteúdo");
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (canal.read(buffer) < 0) {
+                buffer.flip();
+                throw new EOFException("Fim inesperado do arquivo");
+            }
+        }
+        buffer.flip();
+    }
+
+    public int lerByte() throws IOException {
+        garantir(1);
+        return buffer.get() & 0xFF;
+    }
+
+    public int lerShort() throws IOException {
+        garantir(2);
+        return buffer.getShort();
+    }
+
+    public int lerInt() throws IOException {
+        garantir(4);
+        return buffer.getInt();
+    }
+
+    public long lerLong() throws IOException {
+        garantir(8);
+        return buffer.getLong();
+    }
+
+    public double lerDouble() throws IOException {
+        return Double.longBitsToDouble(lerLong());
+    }
+
+    public long lerVarLong() throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            int b = lerByte();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new ExcecaoArquivoInvalido("Inteiro varint inválido");
+    }
+
+    public int lerVarInt() throws IOException {
+        long valor = lerVarLong();
+        if (valor > 0xFFFFFFFFL) {
+            throw new ExcecaoArquivoInvalido("Inteiro varint fora do intervalo");
+        }
+        return (int) valor;
+    }
+
+    public long lerVarLongComSinal() throws IOException {
+        long valor = lerVarLong();
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    public String lerString() throws IOException {
+        int tamanho = lerVarInt();
+        if (tamanho < 0) {
+            throw new ExcecaoArquivoInvalido("Tamanho de string inválido");
+        }
+        byte[] bytes = new byte[tamanho];
+        lerBytes(bytes, 0, tamanho);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void lerBytes(byte[] bytes, int inicio, int tamanho) throws IOException {
+        while (tamanho > 0) {
+            if (!buffer.hasRemaining()) {
+                garantir(1);
+            }
+            int parte = Math.min(tamanho, buffer.remaining());
+            buffer.get(bytes, inicio, parte);
+            inicio += parte;
+            tamanho -= parte;
+        }
+    }
+}
@@ -0,0 +1,877 @@
+package persistencia;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Vaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoTurno;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoArquivoInvalido;
+import excecoes.ExcecaoClienteNaoCadastrado;
+import excecoes.ExcecaoEstacionamentoNaoCadastrado;
+import excecoes.ExcecaoLinhaInvalida;
+import excecoes.ExcecaoNaoPossuiVagasDisponiveis;
+import excecoes.ExcecaoVeiculoNaoCadastrado;
+
+/**
+ * Importação em massa de clientes, veículos e usos de vaga encerrados a partir
+ * de arquivos CSV, com cabeçalho, ou NDJSON, com um objeto JSON por linha.
+ *
+ * Colunas (CSV) ou chaves (NDJSON) de cada arquivo, em qualquer ordem; as
+ * marcadas com * são opcionais:
+ * <pre>
+ * clientes: estacionamento, id, nome, tipoUso
+ * veículos: cliente, placa, tipoUso*, turno*
+ * usos:     estacionamento, placa, vaga, entrada, saida, valor, servico*
+ * </pre>
+ * As datas seguem o formato ISO-8601 ({@code 2024-03-10T09:00}) e os tipos são
+ * os nomes das constantes ({@code HORISTA}, {@code MANHA}, {@code LAVAGEM}). Um
+ * cliente importado em mais de um estacionamento é o mesmo objeto em todos
+ * eles. Sem o tipo de uso, o veículo recebe o do cliente; veículos de turno
+ * exigem o turno.
+ *
+ * O arquivo é lido em fluxo, em blocos de {@value #LINHAS_POR_BLOCO} linhas. A
+ * conversão e a validação dos blocos são feitas em paralelo, e os blocos
+ * convertidos são aplicados na ordem do arquivo pela thread da importação,
+ * pelas mesmas operações do cadastro; um {@link DiarioDeEventos} que acompanhe
+ * os estacionamentos registra a importação como as demais operações. Apenas
+ * uma janela limitada de blocos fica em memória. Antes do primeiro bloco, os
+ * índices dos estacionamentos são dimensionados pela quantidade de linhas do
+ * arquivo e pela distribuição das linhas do bloco.
+ *
+ * Linhas inválidas, ou que a operação de cadastro recusa, são rejeitadas e
+ * contadas no {@link ResultadoImportacao} sem interromper a importação.
+ */
+public class Importador {
+
+    /**
+     * Formato dos arquivos importados.
+     */
+    public enum Formato {
+        CSV, NDJSON;
+
+        /**
+         * @param arquivo arquivo importado
+         * @return NDJSON para arquivos .ndjson e .jsonl, CSV para os demais
+         */
+        public static Formato doArquivo(Path arquivo) {
+            String nome = arquivo.getFileName().toString().toLowerCase(Locale.ROOT);
+            return nome.endsWith(".ndjson") || nome.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    public static final int LINHAS_POR_BLOCO = 4096;
+
+    private static final String[] COLUNAS_CLIENTES = { "estacionamento", "id", "nome", "tipoUso" };
+    private static final String[] COLUNAS_VEICULOS = { "cliente", "placa", "tipoUso", "turno" };
+    private static final String[] COLUNAS_USOS = { "estacionamento", "placa", "vaga", "entrada", "saida", "valor",
+            "servico" };
+
+    /**
+     * Converte os campos de uma linha, na ordem das colunas, em uma linha
+     * validada. Executada em paralelo.
+     */
+    @FunctionalInterface
+    private interface Conversao<L> {
+        L converter(String[] campos) throws Exception;
+    }
+
+    /**
+     * Dimensiona os índices a partir das linhas convertidas do primeiro bloco e
+     * da quantidade estimada de linhas do arquivo.
+     */
+    @FunctionalInterface
+    private interface Reserva<L> {
+        void reservar(List<L> amostra, long linhasEstimadas);
+    }
+
+    /**
+     * Aplica uma linha convertida aos estacionamentos, na ordem do arquivo.
+     */
+    @FunctionalInterface
+    private interface Aplicacao<L> {
+        void aplicar(L linha) throws Exception;
+    }
+
+    private static final class LinhaCliente {
+        private Estacionamento estacionamento;
+        private String id;
+        private String nome;
+        private TipoUso tipoUso;
+    }
+
+    private static final class LinhaVeiculo {
+        private String cliente;
+        private String placa;
+        private TipoUso tipoUso;
+        private TipoTurno turno;
+    }
+
+    private static final class LinhaUso {
+        private Estacionamento estacionamento;
+        private String placa;
+        private int vaga;
+        private LocalDateTime entrada;
+        private LocalDateTime saida;
+        private long centavos;
+        private TipoServico servico;
+    }
+
+    /**
+     * Bloco de linhas lidas; depois da conversão, cada posição guarda a linha
+     * convertida ou o erro que a rejeitou.
+     */
+    private static final class Bloco {
+        private final long[] numeros;
+        private String[] textos;
+        private Object[] convertidas;
+        private int quantidade;
+
+        private Bloco(int capacidade) {
+            numeros = new long[capacidade];
+            textos = new String[capacidade];
+        }
+
+        private boolean adicionar(long numero, String texto) {
+            numeros[quantidade] = numero;
+            textos[quantidade++] = texto;
+            return quantidade == textos.length;
+        }
+    }
+
+    private final List<Estacionamento> estacionamentos;
+    private final Map<String, Estacionamento> estacionamentosPorNome = new HashMap<>();
+    private final Map<String, Cliente> clientes = new HashMap<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int linhasPorBloco = LINHAS_POR_BLOCO;
+
+    /**
+     * @param estacionamentos estacionamentos de destino, referenciados pelo nome
+     *                        nos arquivos
+     */
+    public Importador(List<Estacionamento> estacionamentos) {
+        this.estacionamentos = List.copyOf(estacionamentos);
+        for (Estacionamento estacionamento : this.estacionamentos) {
+            estacionamentosPorNome.putIfAbsent(estacionamento.getNome(), estacionamento);
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads quantidade de threads da conversão
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Deve haver ao menos uma thread de conversão");
+        }
+        this.threads = threads;
+    }
+
+    public int getLinhasPorBloco() {
+        return linhasPorBloco;
+    }
+
+    public void setLinhasPorBloco(int linhasPorBloco) {
+        if (linhasPorBloco < 1) {
+            throw new IllegalArgumentException("Um bloco deve ter ao menos uma linha");
+        }
+        this.linhasPorBloco = linhasPorBloco;
+    }
+
+    /**
+     * Importa clientes de um arquivo, no formato indicado pela extensão.
+     *
+     * @param arquivo arquivo de clientes
+     * @return linhas importadas e rejeitadas
+     * @throws IOException caso a leitura falhe ou o cabeçalho não tenha as
+     *                     colunas obrigatórias
+     */
+    public ResultadoImportacao importarClientes(Path arquivo) throws IOException {
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            return importarClientes(leitor, Formato.doArquivo(arquivo), contarLinhas(arquivo));
+        }
+    }
+
+    /**
+     * Importa clientes de um fluxo de texto.
+     *
+     * @param leitor  fluxo de linhas
+     * @param formato formato das linhas
+     * @return linhas importadas e rejeitadas
+     * @throws IOException caso a leitura falhe ou o cabeçalho não tenha as
+     *                     colunas obrigatórias
+     */
+    public ResultadoImportacao importarClientes(Reader leitor, Formato formato) throws IOException {
+        return importarClientes(leitor, formato, -1);
+    }
+
+    private ResultadoImportacao importarClientes(Reader leitor, Formato formato, long linhasEstimadas)
+            throws IOException {
+        Conversao<LinhaCliente> conversao = campos -> {
+            LinhaCliente linha = new LinhaCliente();
+            linha.estacionamento = estacionamento(campos[0]);
+            linha.id = campos[1];
+            linha.nome = campos[2];
+            linha.tipoUso = constante(TipoUso.class, campos[3], "tipoUso");
+            return linha;
+        };
+        Reserva<LinhaCliente> reserva = (amostra, linhas) -> {
+            Map<Estacionamento, Integer> porEstacionamento = new IdentityHashMap<>();
+            for (LinhaCliente linha : amostra) {
+                porEstacionamento.merge(linha.estacionamento, 1, Integer::sum);
+            }
+            porEstacionamento.forEach((estacionamento, quantidade) -> estacionamento
+                    .reservarCapacidade(proporcao(linhas, quantidade, amostra.size()), 0));
+        };
+        Aplicacao<LinhaCliente> aplicacao = linha -> {
+            Cliente cliente = clientes.get(linha.id);
+            if (cliente == null) {
+                cliente = new Cliente(linha.nome, linha.id, linha.tipoUso);
+            }
+            linha.estacionamento.addCliente(cliente);
+            clientes.putIfAbsent(linha.id, cliente);
+        };
+        return new Importacao<>("Clientes", formato, COLUNAS_CLIENTES, 4, linhasEstimadas, conversao, reserva,
+                aplicacao).executar(leitor);
+    }
+
+    /**
+     * Importa veículos de um arquivo, no formato indicado pela extensão. Os
+     * clientes já devem estar cadastrados.
+     *
+     * @param arquivo arquivo de veículos
+     * @return linhas importadas e rejeitadas
+     * @throws IOException caso a leitura falhe ou o cabeçalho não tenha as
+     *                     colunas obrigatórias
+     */
+    public ResultadoImportacao importarVeiculos(Path arquivo) throws IOException {
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            return importarVeiculos(leitor, Formato.doArquivo(arquivo), contarLinhas(arquivo));
+        }
+    }
+
+    /**
+     * Importa veículos de um fluxo de texto. Os clientes já devem estar
+     * cadastrados.
+     *
+     * @param leitor  fluxo de linhas
+     * @param formato formato das linhas
+     * @return linhas importadas e rejeitadas
+     * @throws IOException caso a leitura falhe ou o cabeçalho não tenha as
+     *                     colunas obrigatórias
+     */
+    public ResultadoImportacao importarVeiculos(Reader leitor, Formato formato) throws IOException {
+        return importarVeiculos(leitor, formato, -1);
+    }
+
+    private ResultadoImportacao importarVeiculos(Reader leitor, Formato formato, long linhasEstimadas)
+            throws IOException {
+        Conversao<LinhaVeiculo> conversao = campos -> {
+            LinhaVeiculo linha = new LinhaVeiculo();
+            linha.cliente = campos[0];
+            linha.placa = campos[1];
+            linha.tipoUso = constante(TipoUso.class, campos[2], "tipoUso");
+            linha.turno = constante(TipoTurno.class, campos[3], "turno");
+            if (linha.tipoUso == TipoUso.TURNO && linha.turno == null) {
+                throw new ExcecaoLinhaInvalida("Veículos de turno exigem o turno");
+            }
+            return linha;
+        };
+        Reserva<LinhaVeiculo> reserva = (amostra, linhas) -> {
+            // a placa entra no índice de todos os estacionamentos do cliente
+            Map<Estacionamento, Integer> porEstacionamento = new IdentityHashMap<>();
+            for (LinhaVeiculo linha : amostra) {
+                Cliente cliente = clientes.get(linha.cliente);
+                for (Estacionamento estacionamento : estacionamentos) {
+                    if (cliente != null && estacionamento.possuiCliente(cliente.getId()) == cliente) {
+                        porEstacionamento.merge(estacionamento, 1, Integer::sum);
+                    }
+                }
+            }
+            porEstacionamento.forEach((estacionamento, quantidade) -> estacionamento
+                    .reservarCapacidade(0, proporcao(linhas, quantidade, amostra.size())));
+        };
+        Aplicacao<LinhaVeiculo> aplicacao = linha -> {
+            Cliente cliente = clientes.get(linha.cliente);
+            if (cliente == null) {
+                throw new ExcecaoClienteNaoCadastrado("Cliente não cadastrado: " + linha.cliente);
+            }
+            TipoUso tipoUso = linha.tipoUso != null ? linha.tipoUso : cliente.getTipoUso();
+            if (tipoUso == null) {
+                throw new ExcecaoLinhaInvalida("O cliente " + cliente.getId() + " não possui tipo de uso");
+            }
+            if (tipoUso == TipoUso.TURNO && linha.turno == null) {
+                throw new ExcecaoLinhaInvalida("Veículos de turno exigem o turno");
+            }
+            primeiroEstacionamento(cliente).addVeiculo(linha.placa, cliente.getId(), tipoUso,
+                    fabrica(tipoUso, linha.turno), linha.turno);
+        };
+        return new Importacao<>("Veículos", formato, COLUNAS_VEICULOS, 2, linhasEstimadas, conversao, reserva,
+                aplicacao).executar(leitor);
+    }
+
+    /**
+     * Importa usos de vaga encerrados de um arquivo, no formato indicado pela
+     * extensão. Os veículos já devem estar cadastrados nos estacionamentos dos
+     * usos.
+     *
+     * @param arquivo arquivo de usos
+     * @return linhas importadas e rejeitadas
+     * @throws IOException caso a leitura falhe ou o cabeçalho não tenha as
+     *                     colunas obrigatórias
+     */
+    public ResultadoImportacao importarUsos(Path arquivo) throws IOException {
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            return importarUsos(leitor, Formato.doArquivo(arquivo));
+        }
+    }
+
+    /**
+     * Importa usos de vaga encerrados de um fluxo de texto. Os veículos já
+     * devem estar cadastrados nos estacionamentos dos usos.
+     *
+     * @param leitor  fluxo de linhas
+     * @param formato formato das linhas
+     * @return linhas importadas e rejeitadas
+     * @throws IOException caso a leitura falhe ou o cabeçalho não tenha as
+     *                     colunas obrigatórias
+     */
+    public ResultadoImportacao importarUsos(Reader leitor, Formato formato) throws IOException {
+        Conversao<LinhaUso> conversao = campos -> {
+            LinhaUso linha = new LinhaUso();
+            linha.estacionamento = estacionamento(campos[0]);
+            linha.placa = campos[1];
+            linha.vaga = inteiro(campos[2], "vaga");
+            linha.entrada = data(campos[3], "entrada");
+            linha.saida = data(campos[4], "saida");
+            linha.centavos = centavos(campos[5]);
+            linha.servico = constante(TipoServico.class, campos[6], "servico");
+            if (linha.saida.isBefore(linha.entrada)) {
+                throw new ExcecaoLinhaInvalida("Saída anterior à entrada");
+            }
+            return linha;
+        };
+        // os usos encerrados não ocupam os índices do estacionamento
+        Reserva<LinhaUso> reserva = (amostra, linhas) -> {
+        };
+        Aplicacao<LinhaUso> aplicacao = linha -> {
+            Veiculo veiculo = linha.estacionamento.buscarVeiculo(linha.placa);
+            if (veiculo == null) {
+                throw new ExcecaoVeiculoNaoCadastrado("O veiculo com a placa: " + linha.placa
+                        + " não esta cadastrado no estacionamento " + linha.estacionamento.getNome());
+            }
+            Vaga vaga = linha.estacionamento.getVaga(linha.vaga);
+            if (vaga == null) {
+                throw new ExcecaoNaoPossuiVagasDisponiveis("A vaga " + linha.vaga + " não existe no estacionamento "
+                        + linha.estacionamento.getNome());
+            }
+            UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(vaga, linha.entrada);
+            uso.setSaida(linha.saida);
+            uso.setTipoServico(linha.servico);
+            uso.setCentavosPagos(linha.centavos);
+            linha.estacionamento.importarUso(linha.placa, uso);
+        };
+        return new Importacao<>("Usos", formato, COLUNAS_USOS, 6, -1, conversao, reserva, aplicacao)
+                .executar(leitor);
+    }
+
+    /**
+     * Importação de um arquivo: lê os blocos, converte-os em paralelo e aplica
+     * os convertidos na ordem do arquivo.
+     */
+    private final class Importacao<L> {
+        private final ResultadoImportacao resultado;
+        private final Formato formato;
+        private final String[] colunas;
+        private final int obrigatorias;
+        private final long linhasEstimadas;
+        private final Conversao<L> conversao;
+        private final Reserva<L> reserva;
+        private final Aplicacao<L> aplicacao;
+        private int[] posicoes;
+        private boolean reservado;
+
+        private Importacao(String nome, Formato formato, String[] colunas, int obrigatorias, long linhasEstimadas,
+                Conversao<L> conversao, Reserva<L> reserva, Aplicacao<L> aplicacao) {
+            this.resultado = new ResultadoImportacao(nome);
+            this.formato = formato;
+            this.colunas = colunas;
+            this.obrigatorias = obrigatorias;
+            this.linhasEstimadas = linhasEstimadas;
+            this.conversao = conversao;
+            this.reserva = reserva;
+            this.aplicacao = aplicacao;
+        }
+
+        private ResultadoImportacao executar(Reader origem) throws IOException {
+            long inicio = System.nanoTime();
+            indexarClientes();
+            BufferedReader leitor = origem instanceof BufferedReader ? (BufferedReader) origem
+                    : new BufferedReader(origem, 1 << 16);
+            ExecutorService conversores = Executors.newFixedThreadPool(threads, tarefa -> {
+                Thread thread = new Thread(tarefa, "importacao");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // blocos em conversão ou aguardando a aplicação
+            Deque<Future<Bloco>> pendentes = new ArrayDeque<>();
+            try {
+                Bloco bloco = new Bloco(linhasPorBloco);
+                long numero = 0;
+                String texto;
+                while ((texto = leitor.readLine()) != null) {
+                    numero++;
+                    if (texto.isBlank()) {
+                        continue;
+                    }
+                    if (formato == Formato.CSV && posicoes == null) {
+                        posicoes = lerCabecalho(texto);
+                        continue;
+                    }
+                    if (bloco.adicionar(numero, texto)) {
+                        Bloco cheio = bloco;
+                        pendentes.add(conversores.submit(() -> converter(cheio)));
+                        bloco = new Bloco(linhasPorBloco);
+                        if (pendentes.size() >= 2 * threads) {
+                            aplicar(pendentes.removeFirst());
+                        }
+                    }
+                }
+                if (bloco.quantidade > 0) {
+                    Bloco ultimo = bloco;
+                    pendentes.add(conversores.submit(() -> converter(ultimo)));
+                }
+                while (!pendentes.isEmpty()) {
+                    aplicar(pendentes.removeFirst());
+                }
+            } finally {
+                conversores.shutdownNow();
+            }
+            resultado.setDuracaoNanos(System.nanoTime() - inicio);
+            return resultado;
+        }
+
+        private int[] lerCabecalho(String texto) throws ExcecaoArquivoInvalido {
+            if (texto.charAt(0) == '\uFEFF') {
+                texto = texto.substring(1);
+            }
+            List<String> cabecalho = dividirCsv(texto);
+            int[] encontradas = new int[colunas.length];
+            for (int i = 0; i < colunas.length; i++) {
+                encontradas[i] = -1;
+                for (int j = 0; j < cabecalho.size(); j++) {
+                    if (cabecalho.get(j).equalsIgnoreCase(colunas[i])) {
+                        encontradas[i] = j;
+                    }
+                }
+                if (encontradas[i] < 0 && i < obrigatorias) {
+                    throw new ExcecaoArquivoInvalido("Coluna obrigatória ausente no cabeçalho: " + colunas[i]);
+                }
+            }
+            return encontradas;
+        }
+
+        private Bloco converter(Bloco bloco) {
+            Object[] convertidas = new Object[bloco.quantidade];
+            for (int i = 0; i < bloco.quantidade; i++) {
+                try {
+                    String[] campos = formato == Formato.CSV ? camposCsv(bloco.textos[i])
+                            : new LeitorJson(bloco.textos[i]).lerObjeto(colunas);
+                    for (int c = 0; c < campos.length; c++) {
+                        if (campos[c] != null && campos[c].isBlank()) {
+                            campos[c] = null;
+                        }
+                        if (campos[c] == null && c < obrigatorias) {
+                            throw new ExcecaoLinhaInvalida("Campo obrigatório ausente: " + colunas[c]);
+                        }
+                    }
+                    convertidas[i] = conversao.converter(campos);
+                } catch (Exception e) {
+                    convertidas[i] = e;
+                }
+            }
+            bloco.convertidas = convertidas;
+            bloco.textos = null;
+            return bloco;
+        }
+
+        private String[] camposCsv(String texto) {
+            List<String> valores = dividirCsv(texto);
+            String[] campos = new String[colunas.length];
+            for (int c = 0; c < colunas.length; c++) {
+                int posicao = posicoes[c];
+                if (posicao >= valores.size()) {
+                    throw new ExcecaoLinhaInvalida("A linha tem " + valores.size() + " colunas");
+                }
+                campos[c] = posicao >= 0 ? valores.get(posicao) : null;
+            }
+            return campos;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void aplicar(Future<Bloco> pendente) throws IOException {
+            Bloco bloco;
+            try {
+                bloco = pendente.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("A importação foi interrompida");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Falha na conversão das linhas", e.getCause());
+            }
+
+            if (!reservado) {
+                reservado = true;
+                if (linhasEstimadas > 0) {
+                    List<L> amostra = new ArrayList<>();
+                    for (Object convertida : bloco.convertidas) {
+                        if (!(convertida instanceof Exception)) {
+                            amostra.add((L) convertida);
+                        }
+                    }
+                    if (!amostra.isEmpty()) {
+                        reserva.reservar(amostra, linhasEstimadas);
+                    }
+                }
+            }
+
+            for (int i = 0; i < bloco.quantidade; i++) {
+                Object convertida = bloco.convertidas[i];
+                if (convertida instanceof Exception) {
+                    resultado.registrarRejeicao(bloco.numeros[i], (Exception) convertida);
+                    continue;
+                }
+                try {
+                    aplicacao.aplicar((L) convertida);
+                    resultado.registrarImportacao();
+                } catch (Exception e) {
+                    resultado.registrarRejeicao(bloco.numeros[i], e);
+                }
+            }
+        }
+    }
+
+    private void indexarClientes() {
+        clientes.clear();
+        for (Estacionamento estacionamento : estacionamentos) {
+            for (Cliente cliente : estacionamento.getId().values()) {
+                clientes.putIfAbsent(cliente.getId(), cliente);
+            }
+        }
+    }
+
+    private Estacionamento estacionamento(String nome) throws ExcecaoEstacionamentoNaoCadastrado {
+        Estacionamento estacionamento = estacionamentosPorNome.get(nome);
+        if (estacionamento == null) {
+            throw new ExcecaoEstacionamentoNaoCadastrado("Estacionamento não cadastrado: " + nome);
+        }
+        return estacionamento;
+    }
+
+    /**
+     * Os veículos são adicionados pelo primeiro estacionamento do cliente; os
+     * demais atualizam os seus índices pela notificação do cliente.
+     */
+    private Estacionamento primeiroEstacionamento(Cliente cliente) {
+        for (Estacionamento estacionamento : estacionamentos) {
+            if (estacionamento.possuiCliente(cliente.getId()) == cliente) {
+                return estacionamento;
+            }
+        }
+        throw new IllegalStateException("Cliente sem estacionamento: " + cliente.getId());
+    }
+
+    private static UsoDeVagaFactory fabrica(TipoUso tipoUso, TipoTurno turno) {
+        switch (tipoUso) {
+            case HORISTA:
+                return UsoDeVagaFactory.criarHoristaFactory();
+            case MENSALISTA:
+                return UsoDeVagaFactory.criarMensalistaFactory();
+            case TURNO:
+                return UsoDeVagaFactory.criarTurnoFactory(turno);
+            default:
+                throw new IllegalArgumentException("Tipo de uso desconhecido");
+        }
+    }
+
+    /**
+     * @return linhas esperadas para uma parte da amostra, extrapoladas para o
+     *         arquivo inteiro
+     */
+    private static int proporcao(long linhas, int quantidade, int amostra) {
+        return (int) Math.min(Integer.MAX_VALUE, linhas * quantidade / amostra);
+    }
+
+    private static <E extends Enum<E>> E constante(Class<E> tipo, String valor, String coluna) {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(tipo, valor.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ExcecaoLinhaInvalida("Valor inválido para " + coluna + ": " + valor);
+        }
+    }
+
+    private static int inteiro(String valor, String coluna) {
+        try {
+            int numero = Integer.parseInt(valor.trim());
+            if (numero < 1) {
+                throw new ExcecaoLinhaInvalida("Valor inválido para " + coluna + ": " + valor);
+            }
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new ExcecaoLinhaInvalida("Valor inválido para " + coluna + ": " + valor);
+        }
+    }
+
+    private static LocalDateTime data(String valor, String coluna) {
+        try {
+            return LocalDateTime.parse(valor.trim());
+        } catch (DateTimeParseException e) {
+            throw new ExcecaoLinhaInvalida("Data inválida para " + coluna + ": " + valor);
+        }
+    }
+
+    /**
+     * Converte o valor pago, em reais, para centavos sem passar por double;
+     * frações de centavo são arredondadas.
+     */
+    private static long centavos(String valor) {
+        try {
+            BigDecimal numero = new BigDecimal(valor.trim());
+            if (numero.signum() < 0) {
+                throw new ExcecaoLinhaInvalida("Valor pago inválido: " + valor);
+            }
+            return numero.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new ExcecaoLinhaInvalida("Valor pago inválido: " + valor);
+        }
+    }
+
+    /**
+     * Divide uma linha CSV nos seus campos. Campos entre aspas podem conter
+     * vírgulas e aspas duplicadas; os demais são aparados.
+     */
+    static List<String> dividirCsv(String linha) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreAspas = false;
+        boolean citado = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (entreAspas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreAspas = false;
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+                citado = true;
+            } else if (c == ',') {
+                campos.add(citado ? campo.toString() : campo.toString().trim());
+                campo.setLength(0);
+                citado = false;
+            } else if (!citado) {
+                campo.append(c);
+            }
+        }
+        if (entreAspas) {
+            throw new ExcecaoLinhaInvalida("Aspas não fechadas");
+        }
+        campos.add(citado ? campo.toString() : campo.toString().trim());
+        return campos;
+    }
+
+    /**
+     * Leitor de um objeto JSON plano em uma linha: strings, números, booleanos
+     * e null. Chaves desconhecidas são ignoradas.
+     */
+    private static final class LeitorJson {
+        private final String texto;
+        private int posicao;
+
+        private LeitorJson(String texto) {
+            this.texto = texto;
+        }
+
+        private String[] lerObjeto(String[] colunas) {
+            String[] campos = new String[colunas.length];
+            pularEspacos();
+            esperar('{');
+            pularEspacos();
+            if (!consumir('}')) {
+                do {
+                    pularEspacos();
+                    String chave = lerString();
+                    pularEspacos();
+                    esperar(':');
+                    pularEspacos();
+                    String valor = lerValor();
+                    for (int i = 0; i < colunas.length; i++) {
+                        if (colunas[i].equals(chave)) {
+                            campos[i] = valor;
+                        }
+                    }
+                    pularEspacos();
+                } while (consumir(','));
+                esperar('}');
+            }
+            pularEspacos();
+            if (posicao < texto.length()) {
+                throw new ExcecaoLinhaInvalida("Conteúdo após o objeto JSON na posição " + posicao);
+            }
+            return campos;
+        }
+
+        private String lerValor() {
+            if (posicao >= texto.length()) {
+                throw new ExcecaoLinhaInvalida("Valor ausente no objeto JSON");
+            }
+            char c = texto.charAt(posicao);
+            if (c == '"') {
+                return lerString();
+            }
+            if (c == '{' || c == '[') {
+                throw new ExcecaoLinhaInvalida("Valores aninhados não são suportados na posição " + posicao);
+            }
+            int inicio = posicao;
+            while (posicao < texto.length() && ",} \t".indexOf(texto.charAt(posicao)) < 0) {
+                posicao++;
+            }
+            String literal = texto.substring(inicio, posicao);
+            if (literal.isEmpty()) {
+                throw new ExcecaoLinhaInvalida("Valor ausente na posição " + inicio);
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String lerString() {
+            esperar('"');
+            StringBuilder valor = new StringBuilder();
+            while (posicao < texto.length()) {
+                char c = texto.charAt(posicao++);
+                if (c == '"') {
+                    return valor.toString();
+                }
+                if (c != '\\') {
+                    valor.append(c);
+                    continue;
+                }
+                if (posicao >= texto.length()) {
+                    break;
+                }
+                char escape = texto.charAt(posicao++);
+                switch (escape) {
+                    case 'b':
+                        valor.append('\b');
+                        break;
+                    case 'f':
+                        valor.append('\f');
+                        break;
+                    case 'n':
+                        valor.append('\n');
+                        break;
+                    case 'r':
+                        valor.append('\r');
+                        break;
+                    case 't':
+                        valor.append('\t');
+                        break;
+                    case 'u':
+                        if (posicao + 4 > texto.length()) {
+                            throw new ExcecaoLinhaInvalida("Escape unicode incompleto");
+                        }
+                        try {
+                            valor.append((char) Integer.parseInt(texto.substring(posicao, posicao + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new ExcecaoLinhaInvalida("Escape unicode inválido");
+                        }
+                        posicao += 4;
+                        break;
+                    default:
+                        valor.append(escape);
+                }
+            }
+            throw new ExcecaoLinhaInvalida("String não terminada no objeto JSON");
+        }
+
+        private void pularEspacos() {
+            while (posicao < texto.length() && Character.isWhitespace(texto.charAt(posicao))) {
+                posicao++;
+            }
+        }
+
+        private boolean consumir(char esperado) {
+            if (posicao < texto.length() && texto.charAt(posicao) == esperado) {
+                posicao++;
+                return true;
+            }
+            return false;
+        }
+
+        private void esperar(char esperado) {
+            if (!consumir(esperado)) {
+                throw new ExcecaoLinhaInvalida("Esperado '" + esperado + "' na posição " + posicao);
+            }
+        }
+    }
+
+    /**
+     * Conta as quebras de linha de um arquivo, para estimar a quantidade de
+     * linhas antes da leitura.
+     */
+    static long contarLinhas(Path arquivo) throws IOException {
+        long linhas = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            while (canal.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() == '\n') {
+                        linhas++;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        return linhas;
+    }
+}
@@ -0,0 +1,78 @@
+package persistencia;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Política de sincronização com o disco dos eventos gravados pelo
+ * {@link DiarioDeEventos}. Os eventos chegam ao arquivo mapeado em lotes, pela
+ * thread de gravação do diário; a política define quando os lotes gravados são
+ * sincronizados. Em qualquer política, uma confirmação pedida por
+ * {@link DiarioDeEventos#confirmar()} sincroniza o lote em que é atendida.
+ */
+public final class PoliticaDeSincronizacao {
+
+    private static final long A_CADA_LOTE = 0;
+    private static final long AO_FECHAR = -1;
+
+    private final long intervaloEmNanos;
+
+    private PoliticaDeSincronizacao(long intervaloEmNanos) {
+        this.intervaloEmNanos = intervaloEmNanos;
+    }
+
+    /**
+     * @return política que sincroniza cada lote gravado (group commit)
+     */
+    public static PoliticaDeSincronizacao aCadaLote() {
+        return new PoliticaDeSincronizacao(A_CADA_LOTE);
+    }
+
+    /**
+     * @param intervalo intervalo máximo entre a gravação de um evento e a sua
+     *                  sincronização
+     * @param unidade   unidade do intervalo
+     * @return política que sincroniza os lotes gravados no máximo uma vez por
+     *         intervalo
+     * @throws IllegalArgumentException caso o intervalo não seja positivo
+     */
+    public static PoliticaDeSincronizacao periodica(long intervalo, TimeUnit unidade) {
+        if (intervalo <= 0) {
+            throw new IllegalArgumentException("O intervalo de sincronização deve ser positivo");
+        }
+        return new PoliticaDeSincronizacao(unidade.toNanos(intervalo));
+    }
+
+    /**
+     * @return política que sincroniza apenas no fechamento do diário e nas
+     *         confirmações pedidas
+     */
+    public static PoliticaDeSincronizacao aoFechar() {
+        return new PoliticaDeSincronizacao(AO_FECHAR);
+    }
+
+    boolean isACadaLote() {
+        return intervaloEmNanos == A_CADA_LOTE;
+    }
+
+    boolean isAoFechar() {
+        return intervaloEmNanos == AO_FECHAR;
+    }
+
+    /**
+     * @return intervalo da política periódica, em nanossegundos
+     */
+    long getIntervaloEmNanos() {
+        return intervaloEmNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (isACadaLote()) {
+            return "a cada lote";
+        }
+        if (isAoFechar()) {
+            return "ao fechar";
+        }
+        return "a cada " + TimeUnit.NANOSECONDS.toMillis(intervaloEmNanos) + " ms";
+    }
+}
@@ -0,0 +1,172 @@
+package persistencia;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import estacionamentos.ArquivoDeUsos;
+import estacionamentos.CapturaDePagamentos;
+import estacionamentos.Estacionamento;
+import estacionamentos.LivroCaixa;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.VisitanteDeUsos;
+
+/**
+ * Agregados de um estacionamento reconstruídos a partir dos usos registrados:
+ * o livro-caixa, com a arrecadação por mês e os maiores clientes, a contagem
+ * de usos por mês dos veículos dos clientes e a ocupação atual. As consultas
+ * têm o mesmo significado das consultas correspondentes do
+ * {@link Estacionamento}.
+ *
+ * Cada partição da reconstrução monta a sua projeção sem compartilhá-la; as
+ * projeções das partições são então somadas por {@link #incorporar}.
+ */
+public class ProjecaoEstacionamento {
+
+    private final Estacionamento estacionamento;
+    private final LivroCaixa livroCaixa = new LivroCaixa();
+    private CapturaDePagamentos captura;
+    private final Map<Integer, Integer> usosPorMes = new HashMap<>();
+    private long ocupadas;
+    private long eventos;
+
+    ProjecaoEstacionamento(Estacionamento estacionamento) {
+        this.estacionamento = estacionamento;
+    }
+
+    /**
+     * @param captura captura dos pagamentos lançados no estacionamento durante a
+     *                reconstrução
+     */
+    void setCaptura(CapturaDePagamentos captura) {
+        this.captura = captura;
+    }
+
+    private static int chave(int mes, int ano) {
+        return ano * 12 + (mes - 1);
+    }
+
+    /**
+     * Reproduz um uso de vaga feito neste estacionamento.
+     *
+     * @param entrada   entrada do uso, em milissegundos desde a época (UTC)
+     * @param saida     saída do uso, ou {@link VisitanteDeUsos#SEM_SAIDA} para o
+     *                  uso em aberto
+     * @param centavos  valor pago, em centavos
+     * @param tipoUso   tipo de uso do veículo
+     * @param idCliente identificador do dono do veículo
+     */
+    void reproduzir(long entrada, long saida, long centavos, TipoUso tipoUso, String idCliente) {
+        eventos++;
+        LocalDateTime dataDeEntrada = ArquivoDeUsos.deEpoca(entrada);
+        usosPorMes.merge(chave(dataDeEntrada.getMonthValue(), dataDeEntrada.getYear()), 1, Integer::sum);
+        if (saida == VisitanteDeUsos.SEM_SAIDA) {
+            ocupadas++;
+        } else {
+            livroCaixa.registrarPagamentoEmCentavos(dataDeEntrada, tipoUso, idCliente, centavos);
+        }
+    }
+
+    /**
+     * Soma a esta projeção a projeção de outra partição do mesmo estacionamento.
+     *
+     * @param outra projeção de uma partição disjunta
+     */
+    void incorporar(ProjecaoEstacionamento outra) {
+        livroCaixa.incorporar(outra.livroCaixa);
+        for (Map.Entry<Integer, Integer> usos : outra.usosPorMes.entrySet()) {
+            usosPorMes.merge(usos.getKey(), usos.getValue(), Integer::sum);
+        }
+        ocupadas += outra.ocupadas;
+        eventos += outra.eventos;
+    }
+
+    public Estacionamento getEstacionamento() {
+        return estacionamento;
+    }
+
+    public LivroCaixa getLivroCaixa() {
+        return livroCaixa;
+    }
+
+    /**
+     * @see Estacionamento#arrecadacaoNoMes(int, int)
+     */
+    public double arrecadacaoNoMes(int mes, int ano) {
+        return livroCaixa.arrecadacaoNoMes(mes, ano);
+    }
+
+    /**
+     * @see Estacionamento#arrecadacaoNoMesEmCentavos(int, int)
+     */
+    public long arrecadacaoNoMesEmCentavos(int mes, int ano) {
+        return livroCaixa.arrecadacaoNoMesEmCentavos(mes, ano);
+    }
+
+    /**
+     * @see Estacionamento#totalArrecadado()
+     */
+    public double totalArrecadado() {
+        return livroCaixa.totalArrecadado();
+    }
+
+    /**
+     * @see Estacionamento#totalArrecadadoEmCentavos()
+     */
+    public long totalArrecadadoEmCentavos() {
+        return livroCaixa.totalArrecadadoEmCentavos();
+    }
+
+    /**
+     * @see Estacionamento#totalDeUsoNoMesAnoEstacionamento(int, int)
+     */
+    public int totalDeUsoNoMesAno(int mes, int ano) {
+        return usosPorMes.getOrDefault(chave(mes, ano), 0);
+    }
+
+    /**
+     * @see Estacionamento#topClientes(int, int, int)
+     * @return identificadores de até n clientes, do maior para o menor valor
+     */
+    public List<String> maioresClientes(int mes, int ano, int n) {
+        return livroCaixa.maioresClientes(mes, ano, n);
+    }
+
+    /**
+     * @return quantidade de vagas ocupadas por usos em aberto
+     */
+    public long getOcupadas() {
+        return ocupadas;
+    }
+
+    /**
+     * @return quantidade de usos reproduzidos
+     */
+    public long getEventos() {
+        return eventos;
+    }
+
+    /**
+     * Passa o livro-caixa reconstruído para o estacionamento, de forma que a
+     * arrecadação e os maiores clientes do estacionamento sejam consultados nele.
+     * Os pagamentos lançados no estacionamento depois da leitura de cada veículo
+     * são reproduzidos no livro-caixa reconstruído antes da substituição; as
+     * consultas desta projeção passam a incluí-los.
+     *
+     * @throws IllegalStateException caso a projeção já tenha sido aplicada ou
+     *                               descartada, ou o estacionamento tenha sido
+     *                               reconstruído novamente
+     * @see Estacionamento#substituirLivroCaixa(LivroCaixa, CapturaDePagamentos)
+     */
+    public void aplicar() {
+        estacionamento.substituirLivroCaixa(livroCaixa, captura);
+    }
+
+    /**
+     * Encerra a captura dos pagamentos do estacionamento sem aplicar a projeção.
+     */
+    public void descartar() {
+        estacionamento.encerrarCaptura(captura);
+    }
+}
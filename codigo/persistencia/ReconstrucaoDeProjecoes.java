@@ -0,0 +1,220 @@
+package persistencia;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import estacionamentos.CapturaDePagamentos;
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.Vaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.VisitanteDeUsos;
+
+/**
+ * Reconstrução paralela dos agregados derivados dos usos registrados, como
+ * depois de uma mudança na forma de calculá-los. Os veículos dos clientes dos
+ * estacionamentos, carregados do snapshot e do diário, são particionados uma
+ * única vez pela placa, mesmo quando o cliente é compartilhado por uma rede;
+ * cada partição é reproduzida em um {@link ForkJoinPool}, lendo o histórico de
+ * cada veículo uma vez e levando cada uso à {@link ProjecaoEstacionamento} do
+ * estacionamento que criou a sua vaga, e as projeções das partições são somadas
+ * à medida que as tarefas terminam.
+ *
+ * Os pagamentos são lançados com o tipo de uso atual do veículo, como nas
+ * saídas; os usos de um veículo cujo tipo de uso foi alterado passam a ser
+ * lançados com o tipo novo. A reconstrução lê o histórico sob o monitor de
+ * cada veículo e não interrompe as cancelas: as projeções só incluem as saídas
+ * anteriores à leitura de cada veículo, e as posteriores são capturadas pelo
+ * estacionamento e levadas ao livro-caixa reconstruído quando ele é aplicado.
+ * Os usos encerrados são lidos campo a campo, sem serem recriados como
+ * objetos.
+ */
+public class ReconstrucaoDeProjecoes {
+
+    /**
+     * Partições por thread do pool, para equilibrar partições com históricos de
+     * tamanhos diferentes.
+     */
+    public static final int PARTICOES_POR_THREAD = 4;
+
+    /**
+     * Veículos com placas na mesma partição, cada um com o seu dono.
+     */
+    private static final class Particao {
+        private final List<Cliente> donos = new ArrayList<>();
+        private final List<Veiculo> veiculos = new ArrayList<>();
+    }
+
+    /**
+     * Reproduz um intervalo de partições, dividindo-o ao meio até restar uma
+     * partição; o resultado tem uma posição por estacionamento.
+     */
+    private static final class Reproducao extends RecursiveTask<ProjecaoEstacionamento[]> {
+        private final List<Estacionamento> estacionamentos;
+        private final Map<Estacionamento, Integer> indices;
+        private final CapturaDePagamentos[] capturas;
+        private final List<Particao> particoes;
+        private final int de;
+        private final int ate;
+
+        private Reproducao(List<Estacionamento> estacionamentos, Map<Estacionamento, Integer> indices,
+                CapturaDePagamentos[] capturas, List<Particao> particoes, int de, int ate) {
+            this.estacionamentos = estacionamentos;
+            this.indices = indices;
+            this.capturas = capturas;
+            this.particoes = particoes;
+            this.de = de;
+            this.ate = ate;
+        }
+
+        @Override
+        protected ProjecaoEstacionamento[] compute() {
+            if (ate - de == 1) {
+                return reproduzir(particoes.get(de));
+            }
+            int meio = (de + ate) >>> 1;
+            Reproducao esquerda = new Reproducao(estacionamentos, indices, capturas, particoes, de, meio);
+            esquerda.fork();
+            ProjecaoEstacionamento[] direita = new Reproducao(estacionamentos, indices, capturas, particoes, meio,
+                    ate).compute();
+            return juntar(esquerda.join(), direita);
+        }
+
+        private ProjecaoEstacionamento[] reproduzir(Particao particao) {
+            ProjecaoEstacionamento[] resultado = new ProjecaoEstacionamento[estacionamentos.size()];
+            for (int i = 0; i < particao.veiculos.size(); i++) {
+                Veiculo veiculo = particao.veiculos.get(i);
+                String idCliente = particao.donos.get(i).getId();
+                synchronized (veiculo) {
+                    TipoUso tipoUso = veiculo.getTipoUso();
+                    for (CapturaDePagamentos captura : capturas) {
+                        captura.marcarLeitura(veiculo);
+                    }
+                    veiculo.percorrerUsos((entrada, saida, centavos, vaga, servico) -> {
+                        // usos em estacionamentos fora da reconstrução e usos em aberto em vagas descartadas
+                        Integer indice = indices.get(vaga.getEstacionamento());
+                        if (indice == null
+                                || (saida == VisitanteDeUsos.SEM_SAIDA && !vagaAtual(vaga))) {
+                            return;
+                        }
+                        if (resultado[indice] == null) {
+                            resultado[indice] = new ProjecaoEstacionamento(estacionamentos.get(indice));
+                        }
+                        resultado[indice].reproduzir(entrada, saida, centavos, tipoUso, idCliente);
+                    });
+                }
+            }
+            return resultado;
+        }
+
+        private static boolean vagaAtual(Vaga vaga) {
+            return vaga.getEstacionamento().getVaga(vaga.getNumero()) == vaga;
+        }
+
+        private static ProjecaoEstacionamento[] juntar(ProjecaoEstacionamento[] primeiro,
+                ProjecaoEstacionamento[] segundo) {
+            for (int i = 0; i < primeiro.length; i++) {
+                if (primeiro[i] == null) {
+                    primeiro[i] = segundo[i];
+                } else if (segundo[i] != null) {
+                    primeiro[i].incorporar(segundo[i]);
+                }
+            }
+            return primeiro;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private int particoes;
+
+    public ReconstrucaoDeProjecoes() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool pool em que as partições são reproduzidas
+     */
+    public ReconstrucaoDeProjecoes(ForkJoinPool pool) {
+        this.pool = pool;
+        this.particoes = pool.getParallelism() * PARTICOES_POR_THREAD;
+    }
+
+    /**
+     * @param particoes quantidade de partições de placas
+     */
+    public void setParticoes(int particoes) {
+        if (particoes <= 0) {
+            throw new IllegalArgumentException("A quantidade de partições deve ser positiva");
+        }
+        this.particoes = particoes;
+    }
+
+    /**
+     * Reconstrói as projeções dos estacionamentos a partir dos usos registrados
+     * no histórico dos veículos dos seus clientes. Os estacionamentos passam a
+     * capturar os pagamentos lançados, mas não são alterados; use
+     * {@link ResultadoReconstrucao#aplicar()} para passar os livros-caixa
+     * reconstruídos para eles, ou {@link ResultadoReconstrucao#descartar()}
+     * para encerrar a captura.
+     *
+     * @param estacionamentos estacionamentos a reconstruir
+     * @return projeções, na ordem dos estacionamentos, e a vazão da reprodução
+     * @throws excecoes.ExcecaoHistoricoIndisponivel caso o histórico de algum
+     *                                               estacionamento não possa
+     *                                               ser carregado
+     */
+    public ResultadoReconstrucao reconstruir(List<Estacionamento> estacionamentos) {
+        long inicio = System.nanoTime();
+        List<Estacionamento> lista = new ArrayList<>(estacionamentos);
+        Map<Estacionamento, Integer> indices = new IdentityHashMap<>();
+        List<Particao> todas = new ArrayList<>();
+        CapturaDePagamentos[] capturas = new CapturaDePagamentos[lista.size()];
+        ProjecaoEstacionamento[] projecoes;
+        try {
+            Particao[] porPlaca = new Particao[particoes];
+            Map<Veiculo, Boolean> particionados = new IdentityHashMap<>();
+            for (int i = 0; i < lista.size(); i++) {
+                Estacionamento estacionamento = lista.get(i);
+                indices.put(estacionamento, i);
+                capturas[i] = estacionamento.capturarPagamentos();
+                for (Cliente cliente : estacionamento.getId().values()) {
+                    for (Veiculo veiculo : cliente.getVeiculos()) {
+                        // o veículo de um cliente da rede aparece em cada estacionamento do cliente
+                        if (particionados.put(veiculo, Boolean.TRUE) != null) {
+                            continue;
+                        }
+                        int indice = Math.floorMod(veiculo.getPlaca().hashCode(), particoes);
+                        if (porPlaca[indice] == null) {
+                            porPlaca[indice] = new Particao();
+                            todas.add(porPlaca[indice]);
+                        }
+                        porPlaca[indice].donos.add(cliente);
+                        porPlaca[indice].veiculos.add(veiculo);
+                    }
+                }
+            }
+
+            projecoes = todas.isEmpty()
+                    ? new ProjecaoEstacionamento[lista.size()]
+                    : pool.invoke(new Reproducao(lista, indices, capturas, todas, 0, todas.size()));
+        } catch (RuntimeException e) {
+            for (int i = 0; i < lista.size() && capturas[i] != null; i++) {
+                lista.get(i).encerrarCaptura(capturas[i]);
+            }
+            throw e;
+        }
+        List<ProjecaoEstacionamento> resultado = new ArrayList<>(lista.size());
+        for (int i = 0; i < lista.size(); i++) {
+            ProjecaoEstacionamento projecao = projecoes[i] != null ? projecoes[i]
+                    : new ProjecaoEstacionamento(lista.get(i));
+            projecao.setCaptura(capturas[i]);
+            resultado.add(projecao);
+        }
+        return new ResultadoReconstrucao(resultado, todas.size(), System.nanoTime() - inicio);
+    }
+}
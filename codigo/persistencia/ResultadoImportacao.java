@@ -0,0 +1,106 @@
+package persistencia;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resultado da importação de um arquivo: linhas lidas, importadas e
+ * rejeitadas, com a quantidade de rejeições por motivo e exemplos das
+ * primeiras linhas rejeitadas.
+ */
+public class ResultadoImportacao {
+
+    static final int EXEMPLOS = 20;
+
+    private final String nome;
+    private final Map<String, Long> rejeicoes = new TreeMap<>();
+    private final List<String> exemplos = new ArrayList<>();
+    private long linhas;
+    private long importadas;
+    private long duracaoNanos;
+
+    public ResultadoImportacao(String nome) {
+        this.nome = nome;
+    }
+
+    void registrarImportacao() {
+        linhas++;
+        importadas++;
+    }
+
+    void registrarRejeicao(long numeroDaLinha, Throwable erro) {
+        linhas++;
+        rejeicoes.merge(erro.getClass().getSimpleName(), 1L, Long::sum);
+        if (exemplos.size() < EXEMPLOS) {
+            exemplos.add("linha " + numeroDaLinha + ": " + erro.getMessage());
+        }
+    }
+
+    void setDuracaoNanos(long duracaoNanos) {
+        this.duracaoNanos = duracaoNanos;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    /**
+     * @return linhas de dados lidas, sem o cabeçalho e as linhas em branco
+     */
+    public long getLinhas() {
+        return linhas;
+    }
+
+    public long getImportadas() {
+        return importadas;
+    }
+
+    public long getRejeitadas() {
+        return linhas - importadas;
+    }
+
+    /**
+     * @return quantidade de linhas rejeitadas por tipo de erro
+     */
+    public Map<String, Long> getRejeicoes() {
+        return Collections.unmodifiableMap(rejeicoes);
+    }
+
+    /**
+     * @return número e motivo das primeiras linhas rejeitadas
+     */
+    public List<String> getExemplos() {
+        return Collections.unmodifiableList(exemplos);
+    }
+
+    public long getDuracaoNanos() {
+        return duracaoNanos;
+    }
+
+    /**
+     * @return linhas processadas por segundo
+     */
+    public double getLinhasPorSegundo() {
+        if (duracaoNanos == 0) {
+            return 0;
+        }
+        return linhas / (duracaoNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder relatorio = new StringBuilder();
+        relatorio.append(String.format("%s: %d linhas em %.2f s | %.0f linhas/s | importadas: %d | rejeitadas: %d%n",
+                nome, linhas, duracaoNanos / 1e9, getLinhasPorSegundo(), importadas, getRejeitadas()));
+        for (Map.Entry<String, Long> rejeicao : rejeicoes.entrySet()) {
+            relatorio.append(String.format("    %-40s %10d%n", rejeicao.getKey(), rejeicao.getValue()));
+        }
+        for (String exemplo : exemplos) {
+            relatorio.append("    ").append(exemplo).append(System.lineSeparator());
+        }
+        return relatorio.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package persistencia;
+
+import java.util.Collections;
+import java.util.List;
+
+import estacionamentos.Estacionamento;
+
+/**
+ * Resultado da reconstrução paralela das projeções: a projeção de cada
+ * estacionamento, a quantidade de usos reproduzidos e a vazão da reprodução.
+ */
+public class ResultadoReconstrucao {
+
+    private final List<ProjecaoEstacionamento> projecoes;
+    private final int particoes;
+    private final long duracaoNanos;
+
+    ResultadoReconstrucao(List<ProjecaoEstacionamento> projecoes, int particoes, long duracaoNanos) {
+        this.projecoes = projecoes;
+        this.particoes = particoes;
+        this.duracaoNanos = duracaoNanos;
+    }
+
+    /**
+     * @return projeções na ordem dos estacionamentos reconstruídos
+     */
+    public List<ProjecaoEstacionamento> getProjecoes() {
+        return Collections.unmodifiableList(projecoes);
+    }
+
+    /**
+     * @param estacionamento estacionamento reconstruído
+     * @return projeção do estacionamento, ou null caso não tenha sido
+     *         reconstruído
+     */
+    public ProjecaoEstacionamento getProjecao(Estacionamento estacionamento) {
+        for (ProjecaoEstacionamento projecao : projecoes) {
+            if (projecao.getEstacionamento() == estacionamento) {
+                return projecao;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return quantidade de partições não vazias reproduzidas
+     */
+    public int getParticoes() {
+        return particoes;
+    }
+
+    /**
+     * @return quantidade de usos reproduzidos em todos os estacionamentos
+     */
+    public long getEventos() {
+        long eventos = 0;
+        for (ProjecaoEstacionamento projecao : projecoes) {
+            eventos += projecao.getEventos();
+        }
+        return eventos;
+    }
+
+    public long getDuracaoNanos() {
+        return duracaoNanos;
+    }
+
+    /**
+     * @return usos reproduzidos por segundo
+     */
+    public double getEventosPorSegundo() {
+        if (duracaoNanos == 0) {
+            return 0;
+        }
+        return getEventos() / (duracaoNanos / 1e9);
+    }
+
+    /**
+     * Passa os livros-caixa reconstruídos para os estacionamentos.
+     *
+     * @see ProjecaoEstacionamento#aplicar()
+     */
+    public void aplicar() {
+        for (ProjecaoEstacionamento projecao : projecoes) {
+            projecao.aplicar();
+        }
+    }
+
+    /**
+     * Encerra a captura dos pagamentos dos estacionamentos sem aplicar as
+     * projeções.
+     *
+     * @see ProjecaoEstacionamento#descartar()
+     */
+    public void descartar() {
+        for (ProjecaoEstacionamento projecao : projecoes) {
+            projecao.descartar();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder relatorio = new StringBuilder();
+        relatorio.append(String.format("%d usos em %d partições reproduzidos em %.2f s | %.0f usos/s%n",
+                getEventos(), particoes, duracaoNanos / 1e9, getEventosPorSegundo()));
+        for (ProjecaoEstacionamento projecao : projecoes) {
+            relatorio.append(String.format("    %-30s arrecadado: %12.2f | ocupadas: %d%n",
+                    projecao.getEstacionamento().getNome(), projecao.totalArrecadado(), projecao.getOcupadas()));
+        }
+        return relatorio.toString();
+    }
+}
@@ -0,0 +1,159 @@
+package persistencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escrita binária com buffer sobre um canal ou diretamente sobre um
+ * {@link ByteBuffer}. Inteiros sem sinal são gravados em formato varint (7 bits
+ * por byte) e inteiros com sinal em zigzag, de forma que valores pequenos ocupam
+ * um ou dois bytes.
+ */
+public class SaidaBinaria implements Closeable {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final WritableByteChannel canal;
+    private final ByteBuffer buffer;
+    private long bytesEscritos;
+
+    public SaidaBinaria(WritableByteChannel canal) {
+        this.canal = canal;
+        this.buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+    }
+
+    /**
+     * Cria uma saída que escreve diretamente no buffer informado, a partir da
+     * sua posição atual e até o seu limite.
+     *
+     * @param destino buffer de destino
+     */
+    public SaidaBinaria(ByteBuffer destino) {
+        this.canal = null;
+        this.buffer = destino;
+    }
+
+    /**
+     * @throws BufferOverflowException caso a saída escreva diretamente em um
+     *                                 buffer e não haja espaço suficiente
+     */
+    private void garantir(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            if (canal == null) {
+                throw new BufferOverflowException();
+            }
+            descarregar();
+        }
+    }
+
+    public void escreverByte(int valor) throws IOException {
+        garantir(1);
+        buffer.put((byte) valor);
+        bytesEscritos++;
+    }
+
+    public void escreverShort(int valor) throws IOException {
+        garantir(2);
+        buffer.putShort((short) valor);
+        bytesEscritos += 2;
+    }
+
+    public void escreverInt(int valor) throws IOException {
+        garantir(4);
+        buffer.putInt(valor);
+        bytesEscritos += 4;
+    }
+
+    public void escreverLong(long valor) throws IOException {
+        garantir(8);
+        buffer.putLong(valor);
+        bytesEscritos += 8;
+    }
+
+    public void escreverDouble(double valor) throws IOException {
+        escreverLong(Double.doubleToRawLongBits(valor));
+    }
+
+    /**
+     * Escreve um inteiro sem sinal em formato varint.
+     * @param valor valor a ser escrito, tratado como sem sinal
+     */
+    public void escreverVarLong(long valor) throws IOException {
+        garantir(10);
+        int inicio = buffer.position();
+        while ((valor & ~0x7FL) != 0) {
+            buffer.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        buffer.put((byte) valor);
+        bytesEscritos += buffer.position() - inicio;
+    }
+
+    public void escreverVarInt(int valor) throws IOException {
+        escreverVarLong(valor & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Escreve um inteiro com sinal em formato zigzag, em que valores negativos
+     * pequenos também ocupam poucos bytes.
+     * @param valor valor a ser escrito
+     */
+    public void escreverVarLongComSinal(long valor) throws IOException {
+        escreverVarLong((valor << 1) ^ (valor >> 63));
+    }
+
+    /**
+     * Escreve uma string em UTF-8 precedida do seu tamanho em bytes.
+     * @param valor string a ser escrita
+     */
+    public void escreverString(String valor) throws IOException {
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        escreverVarInt(bytes.length);
+        escreverBytes(bytes, 0, bytes.length);
+    }
+
+    public void escreverBytes(byte[] bytes, int inicio, int tamanho) throws IOException {
+        while (tamanho > 0) {
+            garantir(1);
+            int parte = Math.min(tamanho, buffer.remaining());
+            buffer.put(bytes, inicio, parte);
+            inicio += parte;
+            tamanho -= parte;
+            bytesEscritos += parte;
+        }
+    }
+
+    /**
+     * @return quantidade de bytes escritos desde a criação
+     */
+    public long getBytesEscritos() {
+        return bytesEscritos;
+    }
+
+    /**
+     * Grava no canal o conteúdo do buffer. Não tem efeito quando a saída escreve
+     * diretamente em um buffer.
+     */
+    public void descarregar() throws IOException {
+        if (canal == null) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Grava o conteúdo pendente do buffer. O canal não é fechado.
+     */
+    @Override
+    public void close() throws IOException {
+        descarregar();
+    }
+}
@@ -0,0 +1,841 @@
+package persistencia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import estacionamentos.ArquivoDeUsos;
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.UsoDeVagaHoristaFactory;
+import estacionamentos.UsoDeVagaMensalistaFactory;
+import estacionamentos.UsoDeVagaTurnoFactory;
+import estacionamentos.Vaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoTurno;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import estacionamentos.interfaces.VisitanteDeUsos;
+import excecoes.ExcecaoArquivoInvalido;
+
+/**
+ * Snapshot binário e versionado dos estacionamentos, clientes, veículos e usos
+ * de vaga, gravado e lido por {@link FileChannel} com buffer.
+ *
+ * Formato (versão 3), com inteiros em varint e datas em milissegundos desde a
+ * época (UTC):
+ * <pre>
+ * int     MAGICO, short VERSAO
+ * long    posição da tabela de fragmentos (ausente nas versões 1 e 2)
+ * varlong último evento do diário incluído no snapshot (ausente na versão 1)
+ * varint  quantidade de strings; strings (UTF-8 precedidas do tamanho)
+ * varint  quantidade de estacionamentos; para cada: nome, quantidade de vagas
+ * varint  quantidade de clientes; para cada:
+ *         id, nome, tipo de uso, estacionamentos em que está cadastrado
+ *         varint quantidade de veículos; para cada:
+ *                placa, tipo de uso, fábrica, turno
+ *                uso em aberto: byte 0 para nenhum, ou 1 seguido de
+ *                       estacionamento, vaga, entrada e serviço
+ * fragmentos do histórico, um por faixa de veículos na ordem do cadastro;
+ *         para cada veículo da faixa: varint quantidade de usos encerrados; para cada:
+ *                estacionamento, vaga, entrada (diferença para a entrada anterior),
+ *                duração, serviço, valor pago
+ * tabela: varint quantidade de fragmentos; para cada:
+ *         varlong posição, varint primeiro veículo, varint quantidade de veículos
+ * </pre>
+ * Nas versões 1 e 2, os usos de cada veículo, inclusive o uso em aberto, são
+ * gravados logo após o veículo, com duração 0 para o uso em aberto.
+ *
+ * Placas, nomes e identificadores são gravados uma única vez no dicionário de
+ * strings e referenciados pelo índice. Enums são gravados como ordinal + 1,
+ * com 0 para ausente. O valor pago é gravado em centavos quando é exato e como
+ * double caso contrário. Cada cliente é gravado uma única vez, mesmo que esteja
+ * cadastrado em vários estacionamentos.
+ *
+ * Na leitura, o cadastro e as sessões ativas são restaurados antes do retorno,
+ * com os índices de placas de cada estacionamento reconstruídos de uma vez; as
+ * cancelas já podem operar. Os fragmentos do histórico são lidos em paralelo, em
+ * segundo plano, e as consultas ao histórico e ao livro-caixa aguardam a sua
+ * conclusão (veja {@link Estacionamento#aguardarHistorico()}).
+ *
+ * O arquivo é gravado em um arquivo temporário e movido para o destino ao
+ * final, de forma que uma falha durante a gravação preserva o snapshot
+ * anterior.
+ *
+ * @see DiarioDeEventos
+ */
+public class SnapshotBinario {
+
+    public static final int MAGICO = 0x45535450;
+    public static final int VERSAO = 3;
+
+    /**
+     * Quantidade de veículos por fragmento do histórico.
+     */
+    static final int VEICULOS_POR_FRAGMENTO = 1024;
+
+    private static final long POSICAO_DA_TABELA = 6;
+
+    private static final int FABRICA_HORISTA = 0;
+    private static final int FABRICA_MENSALISTA = 1;
+    private static final int FABRICA_TURNO = 2;
+
+    private SnapshotBinario() {
+    }
+
+    /**
+     * Grava um snapshot dos estacionamentos informados, sem eventos do diário.
+     *
+     * @param arquivo         arquivo de destino
+     * @param estacionamentos estacionamentos a serem gravados
+     * @return tamanho do arquivo gravado, em bytes
+     * @throws IOException caso a gravação falhe
+     */
+    public static long salvar(Path arquivo, List<Estacionamento> estacionamentos) throws IOException {
+        return salvar(arquivo, estacionamentos, 0);
+    }
+
+    /**
+     * Grava um snapshot dos estacionamentos informados. O estado de cada veículo
+     * é lido sob o seu monitor; operações feitas durante a gravação podem ou não
+     * ser incluídas.
+     *
+     * @param arquivo         arquivo de destino
+     * @param estacionamentos estacionamentos a serem gravados
+     * @param ultimoEvento    número do último evento do diário já refletido nos
+     *                        estacionamentos
+     * @return tamanho do arquivo gravado, em bytes
+     * @throws IOException caso a gravação falhe
+     */
+    public static long salvar(Path arquivo, List<Estacionamento> estacionamentos, long ultimoEvento)
+            throws IOException {
+        Map<String, Cliente> clientes = new LinkedHashMap<>();
+        Map<String, List<Integer>> estacionamentosDoCliente = new HashMap<>();
+        Map<Estacionamento, Integer> indiceDoEstacionamento = new IdentityHashMap<>();
+        Map<Cliente, List<Veiculo>> veiculos = new IdentityHashMap<>();
+        Dicionario dicionario = new Dicionario();
+
+        for (int i = 0; i < estacionamentos.size(); i++) {
+            Estacionamento estacionamento = estacionamentos.get(i);
+            dicionario.adicionar(estacionamento.getNome());
+            indiceDoEstacionamento.put(estacionamento, i);
+            for (Cliente cliente : estacionamento.getId().values()) {
+                if (clientes.putIfAbsent(cliente.getId(), cliente) == null) {
+                    dicionario.adicionar(cliente.getId());
+                    dicionario.adicionar(cliente.getNome());
+                    List<Veiculo> veiculosDoCliente = List.copyOf(cliente.getVeiculos());
+                    veiculos.put(cliente, veiculosDoCliente);
+                    for (Veiculo veiculo : veiculosDoCliente) {
+                        dicionario.adicionar(veiculo.getPlaca());
+                    }
+                }
+                estacionamentosDoCliente.computeIfAbsent(cliente.getId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        long tamanho;
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SaidaBinaria saida = new SaidaBinaria(canal);
+            saida.escreverInt(MAGICO);
+            saida.escreverShort(VERSAO);
+            saida.escreverLong(0); // preenchida ao final
+            saida.escreverVarLong(ultimoEvento);
+            dicionario.escrever(saida);
+
+            saida.escreverVarInt(estacionamentos.size());
+            for (Estacionamento estacionamento : estacionamentos) {
+                saida.escreverVarInt(dicionario.indice(estacionamento.getNome()));
+                saida.escreverVarInt(estacionamento.getVagas().size());
+            }
+
+            List<Veiculo> ordemDoCadastro = new ArrayList<>();
+            Map<Veiculo, UsoDeVaga> usosEmAberto = new IdentityHashMap<>();
+            saida.escreverVarInt(clientes.size());
+            for (Cliente cliente : clientes.values()) {
+                saida.escreverVarInt(dicionario.indice(cliente.getId()));
+                saida.escreverVarInt(dicionario.indice(cliente.getNome()));
+                saida.escreverByte(ordinal(cliente.getTipoUso()));
+                List<Integer> indices = estacionamentosDoCliente.get(cliente.getId());
+                saida.escreverVarInt(indices.size());
+                for (int indice : indices) {
+                    saida.escreverVarInt(indice);
+                }
+
+                List<Veiculo> veiculosDoCliente = veiculos.get(cliente);
+                saida.escreverVarInt(veiculosDoCliente.size());
+                for (Veiculo veiculo : veiculosDoCliente) {
+                    UsoDeVaga emAberto = escreverVeiculo(saida, dicionario, indiceDoEstacionamento, veiculo);
+                    if (emAberto != null) {
+                        usosEmAberto.put(veiculo, emAberto);
+                    }
+                    ordemDoCadastro.add(veiculo);
+                }
+            }
+
+            List<long[]> fragmentos = new ArrayList<>();
+            for (int primeiro = 0; primeiro < ordemDoCadastro.size(); primeiro += VEICULOS_POR_FRAGMENTO) {
+                int fim = Math.min(primeiro + VEICULOS_POR_FRAGMENTO, ordemDoCadastro.size());
+                fragmentos.add(new long[] { saida.getBytesEscritos(), primeiro, fim - primeiro });
+                for (Veiculo veiculo : ordemDoCadastro.subList(primeiro, fim)) {
+                    escreverHistorico(saida, indiceDoEstacionamento, veiculo, usosEmAberto.get(veiculo));
+                }
+            }
+
+            long posicaoDaTabela = saida.getBytesEscritos();
+            saida.escreverVarInt(fragmentos.size());
+            for (long[] fragmento : fragmentos) {
+                saida.escreverVarLong(fragmento[0]);
+                saida.escreverVarInt((int) fragmento[1]);
+                saida.escreverVarInt((int) fragmento[2]);
+            }
+            saida.close();
+            tamanho = saida.getBytesEscritos();
+
+            ByteBuffer posicao = ByteBuffer.allocate(Long.BYTES).putLong(0, posicaoDaTabela);
+            while (posicao.hasRemaining()) {
+                canal.write(posicao, POSICAO_DA_TABELA + posicao.position());
+            }
+            canal.force(true);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return tamanho;
+    }
+
+    /**
+     * Grava o cadastro de um veículo e o seu uso em aberto.
+     *
+     * @return uso em aberto gravado, ou null
+     */
+    private static UsoDeVaga escreverVeiculo(SaidaBinaria saida, Dicionario dicionario,
+            Map<Estacionamento, Integer> indiceDoEstacionamento, Veiculo veiculo) throws IOException {
+        saida.escreverVarInt(dicionario.indice(veiculo.getPlaca()));
+        saida.escreverByte(ordinal(veiculo.getTipoUso()));
+        escreverFabrica(saida, veiculo.getUsoDeVagaFactory());
+
+        // os campos do uso são lidos sob o monitor do veículo, como nas saídas
+        synchronized (veiculo) {
+            UsoDeVaga uso = veiculo.getUsoAtivo();
+            if (uso == null) {
+                saida.escreverByte(0);
+                return null;
+            }
+            saida.escreverByte(1);
+            // o uso em aberto em uma vaga descartada por gerarVagas não é uma sessão ativa
+            Vaga vaga = uso.getVaga();
+            Estacionamento dono = vaga.getEstacionamento();
+            Integer estacionamento = dono != null && dono.getVaga(vaga.getNumero()) == vaga
+                    ? indiceDoEstacionamento.get(dono)
+                    : null;
+            saida.escreverVarInt(estacionamento != null ? estacionamento + 1 : 0);
+            saida.escreverVarInt(vaga.getNumero());
+            saida.escreverVarLong(paraEpoca(uso.getEntrada()));
+            saida.escreverByte(ordinal(uso.getTipoServico()));
+            return uso;
+        }
+    }
+
+    /**
+     * Grava os usos encerrados de um veículo, sem o uso em aberto já gravado no
+     * cadastro. O histórico é percorrido duas vezes sob o monitor do veículo,
+     * para contar e para gravar os usos, sem recriá-los como objetos.
+     */
+    private static void escreverHistorico(SaidaBinaria saida, Map<Estacionamento, Integer> indiceDoEstacionamento,
+            Veiculo veiculo, UsoDeVaga emAberto) throws IOException {
+        synchronized (veiculo) {
+            GravacaoDoHistorico contagem = new GravacaoDoHistorico(null, indiceDoEstacionamento, emAberto);
+            veiculo.percorrerUsos(contagem);
+            saida.escreverVarInt(contagem.encerrados);
+            veiculo.percorrerUsos(new GravacaoDoHistorico(saida, indiceDoEstacionamento, emAberto));
+        }
+    }
+
+    /**
+     * Conta ou grava os usos encerrados de um histórico. O uso gravado como em
+     * aberto pode ter sido encerrado depois da gravação do cadastro; ele é
+     * reconhecido pela entrada e pela vaga e não é gravado de novo. Cada uso é
+     * gravado com o estacionamento que criou a sua vaga, ainda que ela tenha
+     * sido descartada por gerarVagas.
+     */
+    private static final class GravacaoDoHistorico implements VisitanteDeUsos<IOException> {
+        private final SaidaBinaria saida;
+        private final Map<Estacionamento, Integer> indiceDoEstacionamento;
+        private final Vaga vagaEmAberto;
+        private final long entradaEmAberto;
+        private boolean emAbertoIgnorado;
+        private long entradaAnterior;
+        private int encerrados;
+
+        /**
+         * @param saida destino dos usos, ou null para apenas contá-los
+         */
+        private GravacaoDoHistorico(SaidaBinaria saida, Map<Estacionamento, Integer> indiceDoEstacionamento,
+                UsoDeVaga emAberto) {
+            this.saida = saida;
+            this.indiceDoEstacionamento = indiceDoEstacionamento;
+            this.vagaEmAberto = emAberto != null ? emAberto.getVaga() : null;
+            this.entradaEmAberto = emAberto != null ? paraEpoca(emAberto.getEntrada()) : 0;
+        }
+
+        @Override
+        public void visitar(long entrada, long saidaDoUso, long centavos, Vaga vaga, TipoServico servico)
+                throws IOException {
+            if (saidaDoUso == VisitanteDeUsos.SEM_SAIDA) {
+                return;
+            }
+            if (!emAbertoIgnorado && vaga == vagaEmAberto && entrada == entradaEmAberto) {
+                emAbertoIgnorado = true;
+                return;
+            }
+            encerrados++;
+            if (saida == null) {
+                return;
+            }
+            Integer estacionamento = indiceDoEstacionamento.get(vaga.getEstacionamento());
+            saida.escreverVarInt(estacionamento != null ? estacionamento + 1 : 0);
+            saida.escreverVarInt(vaga.getNumero());
+            saida.escreverVarLongComSinal(entrada - entradaAnterior);
+            entradaAnterior = entrada;
+            saida.escreverVarLong(saidaDoUso - entrada + 1);
+            saida.escreverByte(ordinal(servico));
+            escreverValor(saida, centavos);
+        }
+    }
+
+    /**
+     * Grava o tipo da fábrica de uso de vaga seguido do turno (0 quando não é
+     * uma fábrica de turno).
+     */
+    static void escreverFabrica(SaidaBinaria saida, UsoDeVagaFactory fabrica) throws IOException {
+        if (fabrica instanceof UsoDeVagaTurnoFactory) {
+            saida.escreverByte(FABRICA_TURNO);
+            saida.escreverByte(ordinal(((UsoDeVagaTurnoFactory) fabrica).getTipoTurno()));
+        } else if (fabrica instanceof UsoDeVagaMensalistaFactory) {
+            saida.escreverByte(FABRICA_MENSALISTA);
+            saida.escreverByte(0);
+        } else if (fabrica instanceof UsoDeVagaHoristaFactory) {
+            saida.escreverByte(FABRICA_HORISTA);
+            saida.escreverByte(0);
+        } else {
+            throw new IllegalArgumentException("Fábrica de uso de vaga não suportada no snapshot: " + fabrica);
+        }
+    }
+
+    static UsoDeVagaFactory lerFabrica(EntradaBinaria entrada) throws IOException {
+        int tipoFabrica = entrada.lerByte();
+        TipoTurno tipoTurno = enumDoOrdinal(TipoTurno.values(), entrada.lerByte());
+        switch (tipoFabrica) {
+            case FABRICA_HORISTA:
+                return UsoDeVagaFactory.criarHoristaFactory();
+            case FABRICA_MENSALISTA:
+                return UsoDeVagaFactory.criarMensalistaFactory();
+            case FABRICA_TURNO:
+                return UsoDeVagaFactory.criarTurnoFactory(tipoTurno);
+            default:
+                throw new ExcecaoArquivoInvalido("Fábrica de uso de vaga desconhecida: " + tipoFabrica);
+        }
+    }
+
+    /**
+     * Grava o valor em centavos deslocado um bit à esquerda. Arquivos gravados
+     * antes de os valores serem mantidos em centavos podem ter, no lugar, o
+     * marcador 1 seguido do valor em reais como double.
+     */
+    static void escreverValor(SaidaBinaria saida, long centavos) throws IOException {
+        if (centavos < 0) {
+            throw new IllegalArgumentException("Valor negativo: " + centavos);
+        }
+        saida.escreverVarLong(centavos << 1);
+    }
+
+    /**
+     * Lê um snapshot gravado por {@link #salvar(Path, List)}, recriando os
+     * estacionamentos com seus clientes, veículos, históricos, sessões ativas e
+     * livros-caixa. O histórico de usos encerrados continua a ser lido em
+     * segundo plano após o retorno.
+     *
+     * @param arquivo arquivo do snapshot
+     * @return estacionamentos na ordem em que foram gravados
+     * @throws ExcecaoArquivoInvalido caso o arquivo não seja um snapshot ou seja de
+     *                                uma versão não suportada
+     * @throws IOException            caso a leitura falhe
+     */
+    public static List<Estacionamento> carregar(Path arquivo) throws IOException {
+        return carregar(arquivo, null);
+    }
+
+    /**
+     * Lê um snapshot gravado por {@link #salvar(Path, List)}, arquivando os usos
+     * encerrados à medida que são lidos, de forma que o histórico não precisa
+     * caber no heap. O histórico de usos encerrados continua a ser lido em
+     * segundo plano após o retorno.
+     *
+     * @param arquivo       arquivo do snapshot
+     * @param arquivoDeUsos arquivo em que os usos encerrados são arquivados, ou
+     *                      null para mantê-los em memória
+     * @return estacionamentos na ordem em que foram gravados
+     * @throws ExcecaoArquivoInvalido caso o arquivo não seja um snapshot ou seja de
+     *                                uma versão não suportada
+     * @throws IOException            caso a leitura falhe
+     */
+    public static List<Estacionamento> carregar(Path arquivo, ArquivoDeUsos arquivoDeUsos) throws IOException {
+        FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ);
+        try {
+            EntradaBinaria entrada = new EntradaBinaria(canal);
+            Cabecalho cabecalho = lerCabecalho(entrada, arquivo);
+            String[] strings = Dicionario.ler(entrada);
+
+            int quantidadeEstacionamentos = entrada.lerVarInt();
+            List<Estacionamento> estacionamentos = new ArrayList<>(quantidadeEstacionamentos);
+            for (int i = 0; i < quantidadeEstacionamentos; i++) {
+                Estacionamento estacionamento = new Estacionamento(string(strings, entrada.lerVarInt()));
+                estacionamento.gerarVagas(entrada.lerVarInt());
+                if (arquivoDeUsos != null) {
+                    estacionamento.arquivarUsosEm(arquivoDeUsos);
+                }
+                estacionamentos.add(estacionamento);
+            }
+
+            if (cabecalho.versao < 3) {
+                lerClientesComHistorico(entrada, strings, estacionamentos);
+                canal.close();
+            } else {
+                Cadastro cadastro = lerCadastro(entrada, strings, estacionamentos);
+                List<Fragmento> fragmentos = lerTabela(new EntradaBinaria(canal, cabecalho.posicaoDaTabela),
+                        cadastro.veiculos.length);
+                carregarHistoricoEmSegundoPlano(canal, fragmentos, cadastro, estacionamentos);
+            }
+            return estacionamentos;
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Cadastro lido de um snapshot na versão 3.
+     */
+    private static class Cadastro {
+        private Veiculo[] veiculos;
+        private TipoUso[] tiposDeUso;
+    }
+
+    /**
+     * Faixa de veículos do histórico gravada a partir de uma posição do arquivo.
+     */
+    private static class Fragmento {
+        private final long posicao;
+        private final int primeiro;
+        private final int quantidade;
+
+        Fragmento(long posicao, int primeiro, int quantidade) {
+            this.posicao = posicao;
+            this.primeiro = primeiro;
+            this.quantidade = quantidade;
+        }
+    }
+
+    /**
+     * Lê os clientes e veículos e restaura os usos em aberto. Os clientes são
+     * cadastrados de uma vez em cada estacionamento e os veículos ficam com o
+     * histórico pendente até a leitura do seu fragmento.
+     */
+    private static Cadastro lerCadastro(EntradaBinaria entrada, String[] strings,
+            List<Estacionamento> estacionamentos) throws IOException {
+        List<List<Cliente>> clientesPorEstacionamento = new ArrayList<>();
+        for (int i = 0; i < estacionamentos.size(); i++) {
+            clientesPorEstacionamento.add(new ArrayList<>());
+        }
+        List<Veiculo> veiculos = new ArrayList<>();
+        List<UsoDeVaga> usosEmAberto = new ArrayList<>();
+        List<Veiculo> veiculosEmAberto = new ArrayList<>();
+        List<Estacionamento> estacionamentosEmAberto = new ArrayList<>();
+
+        int quantidadeClientes = entrada.lerVarInt();
+        for (int i = 0; i < quantidadeClientes; i++) {
+            String id = string(strings, entrada.lerVarInt());
+            String nome = string(strings, entrada.lerVarInt());
+            Cliente cliente = new Cliente(nome, id, enumDoOrdinal(TipoUso.values(), entrada.lerByte()));
+            int quantidadeCadastros = entrada.lerVarInt();
+            for (int j = 0; j < quantidadeCadastros; j++) {
+                int indice = entrada.lerVarInt();
+                estacionamentoDoIndice(estacionamentos, indice);
+                clientesPorEstacionamento.get(indice).add(cliente);
+            }
+
+            int quantidadeVeiculos = entrada.lerVarInt();
+            for (int j = 0; j < quantidadeVeiculos; j++) {
+                String placa = string(strings, entrada.lerVarInt());
+                TipoUso tipoUso = enumDoOrdinal(TipoUso.values(), entrada.lerByte());
+                UsoDeVagaFactory fabrica = lerFabrica(entrada);
+                Veiculo veiculo = new Veiculo(placa, tipoUso, fabrica);
+                cliente.addVeiculo(veiculo);
+                veiculo.marcarHistoricoPendente();
+                veiculos.add(veiculo);
+
+                if (entrada.lerByte() != 0) {
+                    int indiceEstacionamento = entrada.lerVarInt();
+                    int numeroVaga = entrada.lerVarInt();
+                    long inicio = entrada.lerVarLong();
+                    TipoServico servico = enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+                    Estacionamento estacionamento = indiceEstacionamento > 0
+                            ? estacionamentoDoIndice(estacionamentos, indiceEstacionamento - 1)
+                            : null;
+                    UsoDeVaga uso = fabrica.criarUsoDeVaga(vagaDoUso(estacionamento, numeroVaga), deEpoca(inicio));
+                    uso.setTipoServico(servico);
+                    usosEmAberto.add(uso);
+                    veiculosEmAberto.add(veiculo);
+                    estacionamentosEmAberto.add(estacionamento);
+                }
+            }
+        }
+
+        for (int i = 0; i < estacionamentos.size(); i++) {
+            estacionamentos.get(i).restaurarClientes(clientesPorEstacionamento.get(i));
+        }
+        for (int i = 0; i < usosEmAberto.size(); i++) {
+            Veiculo veiculo = veiculosEmAberto.get(i);
+            veiculo.registrarUsoDeVaga(usosEmAberto.get(i));
+            if (estacionamentosEmAberto.get(i) != null) {
+                estacionamentosEmAberto.get(i).restaurarUso(veiculo.getPlaca(), usosEmAberto.get(i));
+            }
+        }
+
+        Cadastro cadastro = new Cadastro();
+        cadastro.veiculos = veiculos.toArray(new Veiculo[0]);
+        cadastro.tiposDeUso = new TipoUso[cadastro.veiculos.length];
+        for (int i = 0; i < cadastro.veiculos.length; i++) {
+            cadastro.tiposDeUso[i] = cadastro.veiculos[i].getTipoUso();
+        }
+        return cadastro;
+    }
+
+    private static List<Fragmento> lerTabela(EntradaBinaria entrada, int quantidadeVeiculos) throws IOException {
+        int quantidade = entrada.lerVarInt();
+        List<Fragmento> fragmentos = new ArrayList<>(quantidade);
+        int esperado = 0;
+        for (int i = 0; i < quantidade; i++) {
+            Fragmento fragmento = new Fragmento(entrada.lerVarLong(), entrada.lerVarInt(), entrada.lerVarInt());
+            if (fragmento.primeiro != esperado || fragmento.quantidade < 0) {
+                throw new ExcecaoArquivoInvalido("Tabela de fragmentos inválida no snapshot");
+            }
+            esperado += fragmento.quantidade;
+            fragmentos.add(fragmento);
+        }
+        if (esperado != quantidadeVeiculos) {
+            throw new ExcecaoArquivoInvalido("A tabela de fragmentos não cobre todos os veículos do snapshot");
+        }
+        return fragmentos;
+    }
+
+    /**
+     * Lê os fragmentos do histórico em paralelo, liberando as consultas de cada
+     * veículo assim que o seu histórico é lido e as do livro-caixa ao final. O
+     * canal é fechado ao final da leitura.
+     */
+    private static void carregarHistoricoEmSegundoPlano(FileChannel canal, List<Fragmento> fragmentos,
+            Cadastro cadastro, List<Estacionamento> estacionamentos) {
+        int threads = Math.max(1, Math.min(fragmentos.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, tarefa -> {
+            Thread thread = new Thread(tarefa, "carga-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<?>[] cargas = new CompletableFuture<?>[fragmentos.size()];
+        for (int i = 0; i < cargas.length; i++) {
+            Fragmento fragmento = fragmentos.get(i);
+            cargas[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    lerFragmento(canal, fragmento, cadastro, estacionamentos);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+        }
+        executor.shutdown();
+
+        CompletableFuture<Void> carga = CompletableFuture.allOf(cargas);
+        for (Estacionamento estacionamento : estacionamentos) {
+            estacionamento.setCargaDoHistorico(carga);
+        }
+        carga.whenComplete((resultado, falha) -> {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // a leitura já terminou
+            }
+        });
+    }
+
+    private static void lerFragmento(FileChannel canal, Fragmento fragmento, Cadastro cadastro,
+            List<Estacionamento> estacionamentos) throws IOException {
+        int lidos = 0;
+        try {
+            EntradaBinaria entrada = new EntradaBinaria(canal, fragmento.posicao);
+            for (; lidos < fragmento.quantidade; lidos++) {
+                int indice = fragmento.primeiro + lidos;
+                lerHistorico(entrada, cadastro.veiculos[indice], cadastro.tiposDeUso[indice], estacionamentos);
+                cadastro.veiculos[indice].concluirCargaDoHistorico(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (int i = lidos; i < fragmento.quantidade; i++) {
+                cadastro.veiculos[fragmento.primeiro + i].concluirCargaDoHistorico(e);
+            }
+            throw e;
+        }
+    }
+
+    private static void lerHistorico(EntradaBinaria entrada, Veiculo veiculo, TipoUso tipoUso,
+            List<Estacionamento> estacionamentos) throws IOException {
+        int quantidadeUsos = entrada.lerVarInt();
+        long entradaAnterior = 0;
+        for (int i = 0; i < quantidadeUsos; i++) {
+            int indiceEstacionamento = entrada.lerVarInt();
+            int numeroVaga = entrada.lerVarInt();
+            long inicio = entradaAnterior + entrada.lerVarLongComSinal();
+            entradaAnterior = inicio;
+            long duracao = entrada.lerVarLong();
+            TipoServico servico = enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+            long centavos = lerValor(entrada);
+            if (duracao == 0) {
+                throw new ExcecaoArquivoInvalido("Uso em aberto no histórico da placa " + veiculo.getPlaca());
+            }
+
+            Estacionamento estacionamento = indiceEstacionamento > 0
+                    ? estacionamentoDoIndice(estacionamentos, indiceEstacionamento - 1)
+                    : null;
+            UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(vagaDoHistorico(estacionamento, numeroVaga),
+                    deEpoca(inicio));
+            uso.setSaida(deEpoca(inicio + duracao - 1));
+            uso.setCentavosPagos(centavos);
+            uso.setTipoServico(servico);
+            veiculo.registrarUsoDeVaga(uso);
+            if (estacionamento != null) {
+                estacionamento.restaurarUso(veiculo.getPlaca(), uso, tipoUso);
+            }
+        }
+    }
+
+    /**
+     * @return a vaga do estacionamento com o número informado, ou uma vaga
+     *         avulsa caso ela não exista mais
+     */
+    private static Vaga vagaDoUso(Estacionamento estacionamento, int numeroVaga) {
+        Vaga vaga = estacionamento != null ? estacionamento.getVaga(numeroVaga) : null;
+        return vaga != null ? vaga : new Vaga('i', numeroVaga);
+    }
+
+    /**
+     * @return a vaga do estacionamento com o número informado, inclusive uma
+     *         vaga já descartada por gerarVagas, ou uma vaga avulsa para os usos
+     *         fora dos estacionamentos
+     */
+    private static Vaga vagaDoHistorico(Estacionamento estacionamento, int numeroVaga) {
+        Vaga vaga = estacionamento != null ? estacionamento.getVagaDoHistorico(numeroVaga) : null;
+        return vaga != null ? vaga : new Vaga('i', numeroVaga);
+    }
+
+    /**
+     * Lê os clientes com os usos gravados junto a cada veículo, como nas versões
+     * 1 e 2.
+     */
+    private static void lerClientesComHistorico(EntradaBinaria entrada, String[] strings,
+            List<Estacionamento> estacionamentos) throws IOException {
+        int quantidadeClientes = entrada.lerVarInt();
+        for (int i = 0; i < quantidadeClientes; i++) {
+            String id = string(strings, entrada.lerVarInt());
+            String nome = string(strings, entrada.lerVarInt());
+            Cliente cliente = new Cliente(nome, id, enumDoOrdinal(TipoUso.values(), entrada.lerByte()));
+            int quantidadeCadastros = entrada.lerVarInt();
+            for (int j = 0; j < quantidadeCadastros; j++) {
+                estacionamentoDoIndice(estacionamentos, entrada.lerVarInt()).addCliente(cliente);
+            }
+
+            int quantidadeVeiculos = entrada.lerVarInt();
+            for (int j = 0; j < quantidadeVeiculos; j++) {
+                lerVeiculo(entrada, strings, estacionamentos, cliente);
+            }
+        }
+    }
+
+    /**
+     * Lê apenas o cabeçalho de um snapshot.
+     *
+     * @param arquivo arquivo do snapshot
+     * @return número do último evento do diário incluído no snapshot, ou 0 caso
+     *         o snapshot não inclua eventos
+     * @throws ExcecaoArquivoInvalido caso o arquivo não seja um snapshot ou seja de
+     *                                uma versão não suportada
+     * @throws IOException            caso a leitura falhe
+     */
+    public static long ultimoEvento(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            return lerCabecalho(new EntradaBinaria(canal), arquivo).ultimoEvento;
+        }
+    }
+
+    /**
+     * Cabeçalho de um snapshot.
+     */
+    private static class Cabecalho {
+        private int versao;
+        private long posicaoDaTabela;
+        private long ultimoEvento;
+    }
+
+    private static Cabecalho lerCabecalho(EntradaBinaria entrada, Path arquivo) throws IOException {
+        if (entrada.lerInt() != MAGICO) {
+            throw new ExcecaoArquivoInvalido("O arquivo " + arquivo + " não é um snapshot de estacionamentos");
+        }
+        Cabecalho cabecalho = new Cabecalho();
+        cabecalho.versao = entrada.lerShort();
+        if (cabecalho.versao < 1 || cabecalho.versao > VERSAO) {
+            throw new ExcecaoArquivoInvalido("Versão de snapshot não suportada: " + cabecalho.versao);
+        }
+        if (cabecalho.versao >= 3) {
+            cabecalho.posicaoDaTabela = entrada.lerLong();
+        }
+        if (cabecalho.versao >= 2) {
+            cabecalho.ultimoEvento = entrada.lerVarLong();
+        }
+        return cabecalho;
+    }
+
+    private static void lerVeiculo(EntradaBinaria entrada, String[] strings, List<Estacionamento> estacionamentos,
+            Cliente cliente) throws IOException {
+        String placa = string(strings, entrada.lerVarInt());
+        TipoUso tipoUso = enumDoOrdinal(TipoUso.values(), entrada.lerByte());
+        UsoDeVagaFactory fabrica = lerFabrica(entrada);
+        Veiculo veiculo = new Veiculo(placa, tipoUso, fabrica);
+        cliente.addVeiculo(veiculo);
+
+        int quantidadeUsos = entrada.lerVarInt();
+        long entradaAnterior = 0;
+        for (int i = 0; i < quantidadeUsos; i++) {
+            int indiceEstacionamento = entrada.lerVarInt();
+            int numeroVaga = entrada.lerVarInt();
+            long inicio = entradaAnterior + entrada.lerVarLongComSinal();
+            entradaAnterior = inicio;
+            long duracao = entrada.lerVarLong();
+            TipoServico servico = enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+            long centavos = lerValor(entrada);
+
+            Estacionamento estacionamento = indiceEstacionamento > 0
+                    ? estacionamentoDoIndice(estacionamentos, indiceEstacionamento - 1)
+                    : null;
+            UsoDeVaga uso = fabrica.criarUsoDeVaga(vagaDoUso(estacionamento, numeroVaga), deEpoca(inicio));
+            if (duracao > 0) {
+                uso.setSaida(deEpoca(inicio + duracao - 1));
+                uso.setCentavosPagos(centavos);
+            }
+            uso.setTipoServico(servico);
+            veiculo.registrarUsoDeVaga(uso);
+            if (estacionamento != null) {
+                estacionamento.restaurarUso(placa, uso);
+            }
+        }
+    }
+
+    /**
+     * @return valor em centavos; um double de um arquivo anterior é arredondado
+     *         para centavos
+     */
+    static long lerValor(EntradaBinaria entrada) throws IOException {
+        long codigo = entrada.lerVarLong();
+        if (codigo == 1) {
+            return Math.round(entrada.lerDouble() * 100);
+        }
+        return codigo >>> 1;
+    }
+
+    static Estacionamento estacionamentoDoIndice(List<Estacionamento> estacionamentos, int indice)
+            throws ExcecaoArquivoInvalido {
+        if (indice < 0 || indice >= estacionamentos.size()) {
+            throw new ExcecaoArquivoInvalido("Estacionamento inexistente no snapshot: " + indice);
+        }
+        return estacionamentos.get(indice);
+    }
+
+    static String string(String[] strings, int indice) throws ExcecaoArquivoInvalido {
+        if (indice < 0 || indice >= strings.length) {
+            throw new ExcecaoArquivoInvalido("String inexistente no dicionário do snapshot: " + indice);
+        }
+        return strings[indice];
+    }
+
+    static int ordinal(Enum<?> valor) {
+        return valor != null ? valor.ordinal() + 1 : 0;
+    }
+
+    static <E extends Enum<E>> E enumDoOrdinal(E[] valores, int codigo) throws ExcecaoArquivoInvalido {
+        if (codigo == 0) {
+            return null;
+        }
+        if (codigo > valores.length) {
+            throw new ExcecaoArquivoInvalido("Valor de enum inválido: " + codigo);
+        }
+        return valores[codigo - 1];
+    }
+
+    static long paraEpoca(LocalDateTime dataHora) {
+        return dataHora.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime deEpoca(long milissegundos) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(milissegundos), ZoneOffset.UTC);
+    }
+
+    /**
+     * Dicionário de strings do snapshot, na ordem de inserção.
+     */
+    static class Dicionario {
+        private final Map<String, Integer> indices = new LinkedHashMap<>();
+
+        void adicionar(String valor) {
+            indices.putIfAbsent(valor, indices.size());
+        }
+
+        int indice(String valor) {
+            Integer indice = indices.get(valor);
+            if (indice == null) {
+                throw new IllegalStateException("String ausente do dicionário: " + valor);
+            }
+            return indice;
+        }
+
+        void escrever(SaidaBinaria saida) throws IOException {
+            saida.escreverVarInt(indices.size());
+            for (String valor : indices.keySet()) {
+                saida.escreverString(valor);
+            }
+        }
+
+        static String[] ler(EntradaBinaria entrada) throws IOException {
+            String[] strings = new String[entrada.lerVarInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = entrada.lerString();
+            }
+            return strings;
+        }
+    }
+}
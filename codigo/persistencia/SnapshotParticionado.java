@@ -0,0 +1,1130 @@
+package persistencia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import estacionamentos.ArquivoDeUsos;
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Vaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoArquivoInvalido;
+
+/**
+ * Snapshot dos estacionamentos particionado em arquivos: um cadastro de
+ * clientes e veículos, compartilhado pelos estacionamentos, e um arquivo por
+ * estacionamento com as vagas, os usos em aberto e o histórico dos usos
+ * encerrados nele. Cada cliente é gravado uma única vez, mesmo que esteja
+ * cadastrado em vários estacionamentos. Os arquivos são gravados e
+ * sincronizados em paralelo e cada parte termina com o CRC32 do seu conteúdo.
+ *
+ * Formato (versão 2), com inteiros em varint e datas em milissegundos desde a
+ * época (UTC):
+ * <pre>
+ * índice ({@value #ARQUIVO_INDICE}):
+ *     int MAGICO_INDICE, short VERSAO, varlong último evento, varlong geração
+ *     varint quantidade de arquivos do cadastro; string de cada (base e deltas)
+ *     varint quantidade de estacionamentos; para cada:
+ *         varint quantidade de arquivos; string de cada (base e deltas)
+ *     int CRC32
+ * cadastro (clientes-geração.dat, ou .delta):
+ *     int MAGICO_CADASTRO, short VERSAO
+ *     varint quantidade de strings; strings
+ *     varint quantidade de estacionamentos; nome de cada
+ *     varint quantidade de clientes; para cada:
+ *         id, nome, tipo de uso, estacionamentos em que está cadastrado
+ *         varint quantidade de veículos; para cada:
+ *             placa, tipo de uso, fábrica, turno
+ *             varint quantidade de usos em vagas fora dos estacionamentos; para cada:
+ *                 vaga, entrada, duração (0 para o uso em aberto), serviço, valor pago
+ *     int CRC32
+ * estacionamento (estacionamento-índice-geração.dat, ou .delta):
+ *     int MAGICO_ESTACIONAMENTO, short VERSAO, varint quantidade de vagas
+ *     varint quantidade de usos em aberto; para cada: placa, vaga, entrada, serviço
+ *     int CRC32 da parte acima
+ *     varint quantidade de veículos; para cada:
+ *         placa, varint quantidade de usos encerrados; para cada:
+ *             vaga, entrada (diferença para a entrada anterior), duração, serviço, valor pago
+ *     int CRC32 do histórico
+ * </pre>
+ * Strings, enums, valores e fábricas seguem as convenções do
+ * {@link SnapshotBinario}. Na versão 1, o índice referencia um único arquivo
+ * para o cadastro e para cada estacionamento.
+ *
+ * Cada gravação cria uma nova geração de arquivos e termina com a troca
+ * atômica do índice, que é o ponto de confirmação: uma falha antes dela
+ * preserva o snapshot anterior. Os arquivos que não foram alterados desde a
+ * geração anterior são reaproveitados, de forma que um estacionamento
+ * movimentado pode ser gravado sem regravar os demais.
+ *
+ * Uma gravação incremental acrescenta deltas aos arquivos da geração anterior
+ * em vez de regravá-los: o delta do cadastro contém apenas os clientes
+ * alterados, com todos os seus veículos e sem os usos avulsos, e o delta de um
+ * estacionamento contém as vagas, todas as sessões ativas e apenas os usos
+ * encerrados dos veículos alterados ainda não gravados. As alterações são
+ * identificadas por {@link Cliente#isAlterado()}, {@link Veiculo#isAlterado()} e
+ * {@link Estacionamento#isAlterado()}, de forma que o custo da gravação é
+ * proporcional à movimentação e não ao tamanho do cadastro. Um arquivo com
+ * mais de {@value #DELTAS_POR_ARQUIVO} deltas é consolidado, isto é, regravado
+ * inteiro, na gravação seguinte.
+ *
+ * Na leitura, o cadastro, as vagas e as sessões ativas são restaurados antes
+ * do retorno, com os estacionamentos lidos em paralelo. Os deltas do cadastro
+ * são aplicados em ordem sobre o arquivo base; as vagas e as sessões ativas de
+ * um estacionamento vêm do seu último arquivo e o histórico é a concatenação
+ * dos históricos de todos eles. O histórico de cada
+ * estacionamento continua a ser lido em segundo plano; as consultas ao
+ * livro-caixa de um estacionamento aguardam o seu histórico e as consultas ao
+ * histórico de um veículo aguardam todos eles.
+ *
+ * @see Armazenamento
+ */
+public class SnapshotParticionado {
+
+    public static final String ARQUIVO_INDICE = "snapshot.idx";
+
+    public static final int MAGICO_INDICE = 0x45535449;
+    public static final int MAGICO_CADASTRO = 0x45535443;
+    public static final int MAGICO_ESTACIONAMENTO = 0x45535345;
+    public static final int VERSAO = 2;
+
+    /**
+     * Quantidade de deltas de um arquivo a partir da qual ele é consolidado.
+     */
+    public static final int DELTAS_POR_ARQUIVO = 8;
+
+    private static final String PREFIXO_CADASTRO = "clientes-";
+    private static final String PREFIXO_ESTACIONAMENTO = "estacionamento-";
+    private static final String EXTENSAO = ".dat";
+    private static final String EXTENSAO_DELTA = ".delta";
+
+    private SnapshotParticionado() {
+    }
+
+    /**
+     * @param diretorio diretório do snapshot
+     * @return se o diretório possui um snapshot particionado
+     */
+    public static boolean existe(Path diretorio) {
+        return Files.exists(diretorio.resolve(ARQUIVO_INDICE));
+    }
+
+    /**
+     * @param diretorio diretório do snapshot
+     * @return número do último evento do diário incluído no snapshot
+     * @throws ExcecaoArquivoInvalido caso o índice seja inválido
+     * @throws IOException            caso a leitura falhe
+     */
+    public static long ultimoEvento(Path diretorio) throws IOException {
+        return lerIndice(diretorio).ultimoEvento;
+    }
+
+    /**
+     * @param diretorio diretório do snapshot
+     * @return arquivos da geração atual: o cadastro seguido dos estacionamentos,
+     *         na ordem dos índices, cada um com o arquivo base seguido dos deltas
+     * @throws ExcecaoArquivoInvalido caso o índice seja inválido
+     * @throws IOException            caso a leitura falhe
+     */
+    public static List<Path> arquivos(Path diretorio) throws IOException {
+        Indice indice = lerIndice(diretorio);
+        List<Path> arquivos = new ArrayList<>();
+        for (String arquivo : indice.cadastro) {
+            arquivos.add(diretorio.resolve(arquivo));
+        }
+        for (List<String> arquivosDoEstacionamento : indice.estacionamentos) {
+            for (String arquivo : arquivosDoEstacionamento) {
+                arquivos.add(diretorio.resolve(arquivo));
+            }
+        }
+        return arquivos;
+    }
+
+    /**
+     * Grava um snapshot completo dos estacionamentos informados, consolidando os
+     * deltas do snapshot atual.
+     *
+     * @param diretorio       diretório do snapshot, criado caso não exista
+     * @param estacionamentos estacionamentos a serem gravados
+     * @param ultimoEvento    número do último evento do diário já refletido nos
+     *                        estacionamentos
+     * @return tamanho do snapshot, em bytes
+     * @throws IOException caso a gravação falhe; o snapshot anterior é preservado
+     */
+    public static long salvar(Path diretorio, List<Estacionamento> estacionamentos, long ultimoEvento)
+            throws IOException {
+        return salvar(diretorio, estacionamentos, ultimoEvento, null);
+    }
+
+    /**
+     * Grava um snapshot dos estacionamentos carregados de acordo com um plano,
+     * regravando inteiros os arquivos marcados como completos e acrescentando
+     * deltas com as alterações dos demais. O estado de cada veículo é lido sob o
+     * seu monitor; operações feitas durante a gravação podem ou não ser
+     * incluídas.
+     *
+     * @param diretorio       diretório do snapshot, criado caso não exista
+     * @param estacionamentos estacionamentos carregados por
+     *                        {@link #carregar(Path, ArquivoDeUsos, Plano)} com o
+     *                        mesmo plano, com as alterações posteriores
+     * @param ultimoEvento    número do último evento do diário já refletido nos
+     *                        estacionamentos
+     * @param plano           plano da gravação, ou null para gravar tudo inteiro;
+     *                        estacionamentos sem arquivo no snapshot atual são
+     *                        sempre gravados inteiros
+     * @return tamanho do snapshot, em bytes
+     * @throws IOException caso a gravação falhe; o snapshot anterior é preservado
+     */
+    static long salvar(Path diretorio, List<Estacionamento> estacionamentos, long ultimoEvento, Plano plano)
+            throws IOException {
+        Files.createDirectories(diretorio);
+        Indice anterior = existe(diretorio) ? lerIndice(diretorio) : null;
+        boolean incremental = anterior != null && plano != null;
+        Indice novo = new Indice();
+        novo.ultimoEvento = ultimoEvento;
+        novo.geracao = anterior != null ? anterior.geracao + 1 : 1;
+
+        List<Callable<Void>> gravacoes = new ArrayList<>();
+        List<Path> gravados = new ArrayList<>();
+        if (!incremental || plano.cadastroCompleto) {
+            String nome = PREFIXO_CADASTRO + novo.geracao + EXTENSAO;
+            novo.cadastro.add(nome);
+            Path arquivo = diretorio.resolve(nome);
+            gravados.add(arquivo);
+            gravacoes.add(() -> {
+                gravarCadastro(arquivo, estacionamentos, false);
+                return null;
+            });
+        } else {
+            novo.cadastro.addAll(anterior.cadastro);
+            if (estacionamentos.size() > anterior.estacionamentos.size() || clienteAlterado(estacionamentos)) {
+                String nome = PREFIXO_CADASTRO + novo.geracao + EXTENSAO_DELTA;
+                novo.cadastro.add(nome);
+                Path arquivo = diretorio.resolve(nome);
+                gravados.add(arquivo);
+                gravacoes.add(() -> {
+                    gravarCadastro(arquivo, estacionamentos, true);
+                    return null;
+                });
+            }
+        }
+        for (int i = 0; i < estacionamentos.size(); i++) {
+            Estacionamento estacionamento = estacionamentos.get(i);
+            List<String> arquivos = new ArrayList<>();
+            novo.estacionamentos.add(arquivos);
+            boolean delta;
+            if (!incremental || i >= anterior.estacionamentos.size() || plano.completos.contains(i)) {
+                delta = false;
+            } else {
+                arquivos.addAll(anterior.estacionamentos.get(i));
+                if (!plano.deltas.contains(i) || !estacionamento.isAlterado()) {
+                    continue;
+                }
+                delta = true;
+            }
+            String nome = PREFIXO_ESTACIONAMENTO + i + "-" + novo.geracao + (delta ? EXTENSAO_DELTA : EXTENSAO);
+            arquivos.add(nome);
+            Path arquivo = diretorio.resolve(nome);
+            gravados.add(arquivo);
+            gravacoes.add(() -> {
+                gravarEstacionamento(arquivo, estacionamento, delta);
+                return null;
+            });
+        }
+
+        try {
+            executarEmParalelo("gravacao-snapshot", gravacoes);
+            escreverIndice(diretorio, novo);
+        } catch (IOException | RuntimeException e) {
+            for (Path arquivo : gravados) {
+                Files.deleteIfExists(arquivo);
+            }
+            throw e;
+        }
+        removerNaoReferenciados(diretorio, novo);
+        return tamanho(diretorio);
+    }
+
+    private static boolean clienteAlterado(List<Estacionamento> estacionamentos) {
+        for (Estacionamento estacionamento : estacionamentos) {
+            for (Cliente cliente : estacionamento.getId().values()) {
+                if (cliente.isAlterado()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param diretorio diretório do snapshot
+     * @return tamanho do índice e dos arquivos da geração atual, em bytes
+     * @throws IOException caso a leitura falhe
+     */
+    public static long tamanho(Path diretorio) throws IOException {
+        long tamanho = Files.size(diretorio.resolve(ARQUIVO_INDICE));
+        for (Path arquivo : arquivos(diretorio)) {
+            tamanho += Files.size(arquivo);
+        }
+        return tamanho;
+    }
+
+    /**
+     * Executa as tarefas em paralelo e aguarda todas, lançando a primeira falha.
+     */
+    private static void executarEmParalelo(String nome, List<Callable<Void>> tarefas) throws IOException {
+        if (tarefas.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = novoExecutor(nome, tarefas.size());
+        try {
+            for (Future<Void> resultado : executor.invokeAll(tarefas)) {
+                resultado.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("A gravação do snapshot foi interrompida", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException) {
+                throw (IOException) causa;
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new IOException(causa);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService novoExecutor(String nome, int tarefas) {
+        int threads = Math.max(1, Math.min(tarefas, Runtime.getRuntime().availableProcessors()));
+        return Executors.newFixedThreadPool(threads, tarefa -> {
+            Thread thread = new Thread(tarefa, nome);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Conteúdo de um arquivo do snapshot.
+     */
+    @FunctionalInterface
+    private interface Conteudo {
+        void escrever(SaidaBinaria saida, CanalComCrc canal) throws IOException;
+    }
+
+    /**
+     * Canal que calcula o CRC32 dos bytes gravados.
+     */
+    private static class CanalComCrc implements WritableByteChannel {
+        private final FileChannel canal;
+        private final CRC32 crc = new CRC32();
+
+        CanalComCrc(FileChannel canal) {
+            this.canal = canal;
+        }
+
+        @Override
+        public int write(ByteBuffer origem) throws IOException {
+            int inicio = origem.position();
+            int escritos = canal.write(origem);
+            if (escritos > 0) {
+                ByteBuffer escrito = origem.duplicate();
+                escrito.position(inicio).limit(inicio + escritos);
+                crc.update(escrito);
+            }
+            return escritos;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    /**
+     * Grava o CRC32 dos bytes escritos desde o CRC anterior.
+     */
+    private static void escreverCrc(SaidaBinaria saida, CanalComCrc canal) throws IOException {
+        saida.descarregar();
+        saida.escreverInt((int) canal.crc.getValue());
+        saida.descarregar();
+        canal.crc.reset();
+    }
+
+    /**
+     * Grava um arquivo do snapshot, terminado pelo CRC32, e o sincroniza com o
+     * disco.
+     */
+    private static void gravar(Path arquivo, Conteudo conteudo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CanalComCrc canalComCrc = new CanalComCrc(canal);
+            SaidaBinaria saida = new SaidaBinaria(canalComCrc);
+            conteudo.escrever(saida, canalComCrc);
+            escreverCrc(saida, canalComCrc);
+            canal.force(true);
+        }
+    }
+
+    /**
+     * Grava o cadastro inteiro ou, como delta, apenas os clientes alterados.
+     */
+    private static void gravarCadastro(Path arquivo, List<Estacionamento> estacionamentos, boolean delta)
+            throws IOException {
+        Map<String, Cliente> clientes = new LinkedHashMap<>();
+        Map<String, List<Integer>> estacionamentosDoCliente = new HashMap<>();
+        Map<Cliente, List<Veiculo>> veiculos = new IdentityHashMap<>();
+        Set<Estacionamento> gravados = Collections.newSetFromMap(new IdentityHashMap<>());
+        SnapshotBinario.Dicionario dicionario = new SnapshotBinario.Dicionario();
+
+        for (int i = 0; i < estacionamentos.size(); i++) {
+            Estacionamento estacionamento = estacionamentos.get(i);
+            dicionario.adicionar(estacionamento.getNome());
+            gravados.add(estacionamento);
+            for (Cliente cliente : estacionamento.getId().values()) {
+                if (delta && !cliente.isAlterado()) {
+                    continue;
+                }
+                if (clientes.putIfAbsent(cliente.getId(), cliente) == null) {
+                    dicionario.adicionar(cliente.getId());
+                    dicionario.adicionar(cliente.getNome());
+                    List<Veiculo> veiculosDoCliente = List.copyOf(cliente.getVeiculos());
+                    veiculos.put(cliente, veiculosDoCliente);
+                    for (Veiculo veiculo : veiculosDoCliente) {
+                        dicionario.adicionar(veiculo.getPlaca());
+                    }
+                }
+                estacionamentosDoCliente.computeIfAbsent(cliente.getId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        gravar(arquivo, (saida, canal) -> {
+            saida.escreverInt(MAGICO_CADASTRO);
+            saida.escreverShort(VERSAO);
+            dicionario.escrever(saida);
+
+            saida.escreverVarInt(estacionamentos.size());
+            for (Estacionamento estacionamento : estacionamentos) {
+                saida.escreverVarInt(dicionario.indice(estacionamento.getNome()));
+            }
+
+            saida.escreverVarInt(clientes.size());
+            for (Cliente cliente : clientes.values()) {
+                saida.escreverVarInt(dicionario.indice(cliente.getId()));
+                saida.escreverVarInt(dicionario.indice(cliente.getNome()));
+                saida.escreverByte(SnapshotBinario.ordinal(cliente.getTipoUso()));
+                List<Integer> indices = estacionamentosDoCliente.get(cliente.getId());
+                saida.escreverVarInt(indices.size());
+                for (int indice : indices) {
+                    saida.escreverVarInt(indice);
+                }
+
+                List<Veiculo> veiculosDoCliente = veiculos.get(cliente);
+                saida.escreverVarInt(veiculosDoCliente.size());
+                for (Veiculo veiculo : veiculosDoCliente) {
+                    saida.escreverVarInt(dicionario.indice(veiculo.getPlaca()));
+                    saida.escreverByte(SnapshotBinario.ordinal(veiculo.getTipoUso()));
+                    SnapshotBinario.escreverFabrica(saida, veiculo.getUsoDeVagaFactory());
+                    if (delta) {
+                        // os usos avulsos só mudam com vagas geradas novamente, que consolidam o cadastro
+                        saida.escreverVarInt(0);
+                    } else {
+                        escreverUsosAvulsos(saida, veiculo, gravados);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Grava os usos do veículo em vagas que não pertencem a nenhum dos
+     * estacionamentos gravados. Os usos encerrados em vagas descartadas por
+     * gerarVagas continuam no arquivo do estacionamento que criou a vaga; só o
+     * uso em aberto em uma vaga descartada, que não é uma sessão ativa, é
+     * gravado como avulso.
+     */
+    private static void escreverUsosAvulsos(SaidaBinaria saida, Veiculo veiculo, Set<Estacionamento> estacionamentos)
+            throws IOException {
+        synchronized (veiculo) {
+            List<UsoDeVaga> avulsos = new ArrayList<>();
+            veiculo.paraCadaUso(uso -> {
+                Estacionamento dono = uso.getVaga().getEstacionamento();
+                if (!estacionamentos.contains(dono) || (uso.getSaida() == null && !vagaAtual(dono, uso.getVaga()))) {
+                    avulsos.add(uso);
+                }
+            });
+            saida.escreverVarInt(avulsos.size());
+            for (UsoDeVaga uso : avulsos) {
+                long entrada = SnapshotBinario.paraEpoca(uso.getEntrada());
+                saida.escreverVarInt(uso.getVaga().getNumero());
+                saida.escreverVarLong(entrada);
+                saida.escreverVarLong(uso.getSaida() != null ? SnapshotBinario.paraEpoca(uso.getSaida()) - entrada + 1 : 0);
+                saida.escreverByte(SnapshotBinario.ordinal(uso.getTipoServico()));
+                SnapshotBinario.escreverValor(saida, uso.getCentavosPagos());
+            }
+        }
+    }
+
+    /**
+     * Grava o estacionamento inteiro ou, como delta, apenas o histórico dos
+     * veículos alterados. Um delta é gravado a partir de um estacionamento
+     * carregado sem o histórico, de forma que os usos encerrados em memória são
+     * exatamente os que ainda não foram gravados.
+     */
+    private static void gravarEstacionamento(Path arquivo, Estacionamento estacionamento, boolean delta)
+            throws IOException {
+        List<Veiculo> veiculos = new ArrayList<>();
+        List<Veiculo> alterados = new ArrayList<>();
+        for (Cliente cliente : estacionamento.getId().values()) {
+            for (Veiculo veiculo : cliente.getVeiculos()) {
+                veiculos.add(veiculo);
+                if (!delta || veiculo.isAlterado()) {
+                    alterados.add(veiculo);
+                }
+            }
+        }
+
+        gravar(arquivo, (saida, canal) -> {
+            saida.escreverInt(MAGICO_ESTACIONAMENTO);
+            saida.escreverShort(VERSAO);
+            saida.escreverVarInt(estacionamento.getVagas().size());
+
+            List<Veiculo> estacionados = new ArrayList<>();
+            List<UsoDeVaga> emAberto = new ArrayList<>();
+            for (Veiculo veiculo : veiculos) {
+                UsoDeVaga uso = veiculo.getUsoAtivo();
+                if (uso != null && vagaAtual(estacionamento, uso.getVaga())) {
+                    estacionados.add(veiculo);
+                    emAberto.add(uso);
+                }
+            }
+            saida.escreverVarInt(emAberto.size());
+            for (int i = 0; i < emAberto.size(); i++) {
+                UsoDeVaga uso = emAberto.get(i);
+                // os campos do uso são lidos sob o monitor do veículo, como nas saídas
+                synchronized (estacionados.get(i)) {
+                    saida.escreverString(estacionados.get(i).getPlaca());
+                    saida.escreverVarInt(uso.getVaga().getNumero());
+                    saida.escreverVarLong(SnapshotBinario.paraEpoca(uso.getEntrada()));
+                    saida.escreverByte(SnapshotBinario.ordinal(uso.getTipoServico()));
+                }
+            }
+            escreverCrc(saida, canal);
+
+            Set<UsoDeVaga> gravados = Collections.newSetFromMap(new IdentityHashMap<>());
+            gravados.addAll(emAberto);
+            if (!delta) {
+                saida.escreverVarInt(veiculos.size());
+                for (Veiculo veiculo : veiculos) {
+                    saida.escreverString(veiculo.getPlaca());
+                    escreverHistorico(saida, usosEncerrados(estacionamento, veiculo, gravados));
+                }
+                return;
+            }
+
+            // veículos alterados apenas em outros estacionamentos ficam fora do delta
+            List<Veiculo> comUsosNovos = new ArrayList<>();
+            List<List<UsoDeVaga>> usosNovos = new ArrayList<>();
+            for (Veiculo veiculo : alterados) {
+                List<UsoDeVaga> usos = usosEncerrados(estacionamento, veiculo, gravados);
+                if (!usos.isEmpty()) {
+                    comUsosNovos.add(veiculo);
+                    usosNovos.add(usos);
+                }
+            }
+            saida.escreverVarInt(comUsosNovos.size());
+            for (int i = 0; i < comUsosNovos.size(); i++) {
+                saida.escreverString(comUsosNovos.get(i).getPlaca());
+                escreverHistorico(saida, usosNovos.get(i));
+            }
+        });
+    }
+
+    /**
+     * @return se a vaga é a vaga atual de mesmo número do estacionamento, e não
+     *         uma vaga descartada por gerarVagas
+     */
+    private static boolean vagaAtual(Estacionamento estacionamento, Vaga vaga) {
+        return estacionamento.getVaga(vaga.getNumero()) == vaga;
+    }
+
+    /**
+     * @return usos encerrados do veículo no estacionamento, inclusive os feitos
+     *         em vagas já descartadas, sem os usos já gravados como em aberto,
+     *         lidos sob o monitor do veículo
+     */
+    private static List<UsoDeVaga> usosEncerrados(Estacionamento estacionamento, Veiculo veiculo,
+            Set<UsoDeVaga> emAberto) {
+        synchronized (veiculo) {
+            List<UsoDeVaga> usos = new ArrayList<>();
+            veiculo.paraCadaUso(uso -> {
+                if (uso.getSaida() != null && !emAberto.contains(uso) && estacionamento.possuiVaga(uso.getVaga())) {
+                    usos.add(uso);
+                }
+            });
+            return usos;
+        }
+    }
+
+    private static void escreverHistorico(SaidaBinaria saida, List<UsoDeVaga> usos) throws IOException {
+        saida.escreverVarInt(usos.size());
+        long entradaAnterior = 0;
+        for (UsoDeVaga uso : usos) {
+            long entrada = SnapshotBinario.paraEpoca(uso.getEntrada());
+            saida.escreverVarInt(uso.getVaga().getNumero());
+            saida.escreverVarLongComSinal(entrada - entradaAnterior);
+            entradaAnterior = entrada;
+            saida.escreverVarLong(SnapshotBinario.paraEpoca(uso.getSaida()) - entrada + 1);
+            saida.escreverByte(SnapshotBinario.ordinal(uso.getTipoServico()));
+            SnapshotBinario.escreverValor(saida, uso.getCentavosPagos());
+        }
+    }
+
+    /**
+     * Índice de uma geração do snapshot.
+     */
+    private static class Indice {
+        private long ultimoEvento;
+        private long geracao;
+        private final List<String> cadastro = new ArrayList<>();
+        private final List<List<String>> estacionamentos = new ArrayList<>();
+    }
+
+    private static void escreverIndice(Path diretorio, Indice indice) throws IOException {
+        Path arquivo = diretorio.resolve(ARQUIVO_INDICE);
+        Path temporario = diretorio.resolve(ARQUIVO_INDICE + ".tmp");
+        gravar(temporario, (saida, canal) -> {
+            saida.escreverInt(MAGICO_INDICE);
+            saida.escreverShort(VERSAO);
+            saida.escreverVarLong(indice.ultimoEvento);
+            saida.escreverVarLong(indice.geracao);
+            escreverArquivos(saida, indice.cadastro);
+            saida.escreverVarInt(indice.estacionamentos.size());
+            for (List<String> arquivos : indice.estacionamentos) {
+                escreverArquivos(saida, arquivos);
+            }
+        });
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Indice lerIndice(Path diretorio) throws IOException {
+        Path arquivo = diretorio.resolve(ARQUIVO_INDICE);
+        ByteBuffer conteudo = ByteBuffer.wrap(Files.readAllBytes(arquivo));
+        EntradaBinaria entrada = new EntradaBinaria(verificado(conteudo, arquivo));
+        int versao = lerCabecalho(entrada, MAGICO_INDICE, arquivo);
+        Indice indice = new Indice();
+        indice.ultimoEvento = entrada.lerVarLong();
+        indice.geracao = entrada.lerVarLong();
+        indice.cadastro.addAll(lerArquivos(entrada, versao));
+        int quantidade = entrada.lerVarInt();
+        for (int i = 0; i < quantidade; i++) {
+            indice.estacionamentos.add(lerArquivos(entrada, versao));
+        }
+        return indice;
+    }
+
+    private static void escreverArquivos(SaidaBinaria saida, List<String> arquivos) throws IOException {
+        saida.escreverVarInt(arquivos.size());
+        for (String arquivo : arquivos) {
+            saida.escreverString(arquivo);
+        }
+    }
+
+    private static List<String> lerArquivos(EntradaBinaria entrada, int versao) throws IOException {
+        if (versao == 1) {
+            return List.of(entrada.lerString());
+        }
+        int quantidade = entrada.lerVarInt();
+        List<String> arquivos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            arquivos.add(entrada.lerString());
+        }
+        return arquivos;
+    }
+
+    /**
+     * Remove os arquivos de gerações anteriores que não são mais referenciados
+     * pelo índice.
+     */
+    private static void removerNaoReferenciados(Path diretorio, Indice indice) throws IOException {
+        Set<String> referenciados = new HashSet<>(indice.cadastro);
+        for (List<String> arquivos : indice.estacionamentos) {
+            referenciados.addAll(arquivos);
+        }
+        String filtro = "*{" + EXTENSAO + "," + EXTENSAO_DELTA + "}";
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, filtro)) {
+            for (Path arquivo : arquivos) {
+                String nome = arquivo.getFileName().toString();
+                if ((nome.startsWith(PREFIXO_CADASTRO) || nome.startsWith(PREFIXO_ESTACIONAMENTO))
+                        && !referenciados.contains(nome)) {
+                    Files.deleteIfExists(arquivo);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return versão do arquivo
+     */
+    private static int lerCabecalho(EntradaBinaria entrada, int magico, Path arquivo) throws IOException {
+        if (entrada.lerInt() != magico) {
+            throw new ExcecaoArquivoInvalido("O arquivo " + arquivo + " não pertence a um snapshot particionado");
+        }
+        int versao = entrada.lerShort();
+        if (versao < 1 || versao > VERSAO) {
+            throw new ExcecaoArquivoInvalido("Versão de snapshot não suportada em " + arquivo + ": " + versao);
+        }
+        return versao;
+    }
+
+    /**
+     * Confere o CRC32 gravado ao final do conteúdo.
+     *
+     * @return o conteúdo sem o CRC
+     */
+    private static ByteBuffer verificado(ByteBuffer conteudo, Path arquivo) throws ExcecaoArquivoInvalido {
+        int fim = conteudo.limit() - Integer.BYTES;
+        if (fim < conteudo.position()) {
+            throw new ExcecaoArquivoInvalido("O arquivo " + arquivo + " está truncado");
+        }
+        verificar(conteudo, conteudo.position(), fim, conteudo.getInt(fim), arquivo);
+        ByteBuffer semCrc = conteudo.duplicate();
+        semCrc.limit(fim);
+        return semCrc;
+    }
+
+    private static void verificar(ByteBuffer conteudo, int inicio, int fim, int esperado, Path arquivo)
+            throws ExcecaoArquivoInvalido {
+        ByteBuffer trecho = conteudo.duplicate();
+        trecho.limit(fim).position(inicio);
+        CRC32 crc = new CRC32();
+        crc.update(trecho);
+        if ((int) crc.getValue() != esperado) {
+            throw new ExcecaoArquivoInvalido("CRC inválido no arquivo " + arquivo);
+        }
+    }
+
+    private static MappedByteBuffer mapear(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new ExcecaoArquivoInvalido("O arquivo " + arquivo + " excede o tamanho máximo");
+            }
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+    }
+
+    /**
+     * Lê um snapshot gravado por {@link #salvar(Path, List, long)}. O histórico
+     * de usos encerrados continua a ser lido em segundo plano após o retorno.
+     *
+     * @param diretorio diretório do snapshot
+     * @return estacionamentos na ordem em que foram gravados
+     * @throws ExcecaoArquivoInvalido caso algum arquivo seja inválido
+     * @throws IOException            caso a leitura falhe
+     */
+    public static List<Estacionamento> carregar(Path diretorio) throws IOException {
+        return carregar(diretorio, null, null);
+    }
+
+    /**
+     * Lê um snapshot gravado por {@link #salvar(Path, List, long)}, arquivando os
+     * usos encerrados à medida que são lidos. O histórico de usos encerrados
+     * continua a ser lido em segundo plano após o retorno.
+     *
+     * @param diretorio     diretório do snapshot
+     * @param arquivoDeUsos arquivo em que os usos encerrados são arquivados, ou
+     *                      null para mantê-los em memória
+     * @return estacionamentos na ordem em que foram gravados
+     * @throws ExcecaoArquivoInvalido caso algum arquivo seja inválido
+     * @throws IOException            caso a leitura falhe
+     */
+    public static List<Estacionamento> carregar(Path diretorio, ArquivoDeUsos arquivoDeUsos) throws IOException {
+        return carregar(diretorio, arquivoDeUsos, null);
+    }
+
+    /**
+     * Plano de uma compactação: quais arquivos são carregados e como são
+     * regravados.
+     */
+    static class Plano {
+        private boolean cadastroCompleto;
+        private final Set<Integer> completos = new HashSet<>();
+        private final Set<Integer> deltas = new HashSet<>();
+    }
+
+    /**
+     * Planeja a incorporação de um intervalo de eventos do diário ao snapshot.
+     * Os estacionamentos alterados pelos eventos recebem um delta, exceto os que
+     * tiveram vagas geradas novamente ou que já acumulam
+     * {@value #DELTAS_POR_ARQUIVO} deltas, que são consolidados. O cadastro é
+     * consolidado nas mesmas condições, já que vagas geradas novamente deixam
+     * usos fora dos estacionamentos.
+     *
+     * @param diretorio  diretório do snapshot
+     * @param alteracoes alterações feitas pelos eventos a serem incorporados
+     * @return plano para {@link #carregar(Path, ArquivoDeUsos, Plano)} e
+     *         {@link #salvar(Path, List, long, Plano)}
+     * @throws IOException caso a leitura do índice falhe
+     */
+    static Plano planejar(Path diretorio, DiarioDeEventos.Alteracoes alteracoes) throws IOException {
+        Indice indice = lerIndice(diretorio);
+        Plano plano = new Plano();
+        plano.cadastroCompleto = !alteracoes.getVagasGeradas().isEmpty()
+                || indice.cadastro.size() > DELTAS_POR_ARQUIVO;
+        for (int i : alteracoes.getEstacionamentos()) {
+            if (i >= indice.estacionamentos.size() || alteracoes.getVagasGeradas().contains(i)
+                    || indice.estacionamentos.get(i).size() > DELTAS_POR_ARQUIVO) {
+                plano.completos.add(i);
+            } else {
+                plano.deltas.add(i);
+            }
+        }
+        return plano;
+    }
+
+    /**
+     * Lê um snapshot de acordo com um plano: os estacionamentos completos são
+     * carregados inteiros; os que recebem um delta são carregados com as vagas e
+     * as sessões ativas, sem o histórico; os demais são recriados somente com o
+     * cadastro, sem vagas nem usos. As alterações são limpas após a leitura,
+     * de forma que apenas as operações posteriores aparecem como alteradas.
+     *
+     * @param plano plano da compactação, ou null para carregar tudo
+     */
+    static List<Estacionamento> carregar(Path diretorio, ArquivoDeUsos arquivoDeUsos, Plano plano)
+            throws IOException {
+        Indice indice = lerIndice(diretorio);
+        Cadastro cadastro = lerCadastro(diretorio, indice.cadastro, arquivoDeUsos);
+        List<Estacionamento> estacionamentos = cadastro.estacionamentos;
+        if (estacionamentos.size() != indice.estacionamentos.size()) {
+            throw new ExcecaoArquivoInvalido("O cadastro e o índice do snapshot em " + diretorio
+                    + " têm quantidades diferentes de estacionamentos");
+        }
+
+        List<Integer> completos = new ArrayList<>();
+        List<Callable<Void>> leituras = new ArrayList<>();
+        Map<Integer, List<ByteBuffer>> historicos = new ConcurrentHashMap<>();
+        for (int i = 0; i < estacionamentos.size(); i++) {
+            boolean completo = plano == null || plano.completos.contains(i);
+            if (!completo && !plano.deltas.contains(i)) {
+                continue;
+            }
+            if (completo) {
+                completos.add(i);
+            }
+            List<String> arquivos = indice.estacionamentos.get(i);
+            Estacionamento estacionamento = estacionamentos.get(i);
+            int indiceEstacionamento = i;
+            leituras.add(() -> {
+                List<ByteBuffer> historicosDoEstacionamento = new ArrayList<>();
+                for (int j = 0; j < arquivos.size(); j++) {
+                    Path arquivo = diretorio.resolve(arquivos.get(j));
+                    MappedByteBuffer conteudo = mapear(arquivo);
+                    // as vagas e as sessões ativas vêm do último arquivo
+                    int inicio = lerSessoes(conteudo, arquivo, estacionamento, j == arquivos.size() - 1);
+                    ByteBuffer historico = conteudo.duplicate();
+                    historico.position(inicio);
+                    historicosDoEstacionamento.add(historico);
+                }
+                historicos.put(indiceEstacionamento, historicosDoEstacionamento);
+                return null;
+            });
+        }
+        executarEmParalelo("carga-snapshot", leituras);
+        limparAlteracoes(cadastro);
+
+        ExecutorService executor = novoExecutor("carga-snapshot", completos.size());
+        CompletableFuture<?>[] cargas = new CompletableFuture<?>[completos.size()];
+        for (int j = 0; j < cargas.length; j++) {
+            int i = completos.get(j);
+            List<String> arquivos = indice.estacionamentos.get(i);
+            Estacionamento estacionamento = estacionamentos.get(i);
+            List<ByteBuffer> historicosDoEstacionamento = historicos.get(i);
+            cargas[j] = CompletableFuture.runAsync(() -> {
+                try {
+                    for (int k = 0; k < arquivos.size(); k++) {
+                        lerHistorico(historicosDoEstacionamento.get(k), diretorio.resolve(arquivos.get(k)),
+                                estacionamento, cadastro.tiposDeUso);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+            estacionamento.setCargaDoHistorico(cargas[j]);
+        }
+        executor.shutdown();
+
+        CompletableFuture.allOf(cargas).whenComplete((resultado, falha) -> {
+            Throwable causa = falha instanceof CompletionException ? falha.getCause() : falha;
+            for (Veiculo veiculo : cadastro.tiposDeUso.keySet()) {
+                veiculo.concluirCargaDoHistorico(causa);
+            }
+        });
+        return estacionamentos;
+    }
+
+    /**
+     * Cadastro lido de um snapshot particionado.
+     */
+    private static class Cadastro {
+        private final List<Estacionamento> estacionamentos = new ArrayList<>();
+        private final Map<String, Cliente> clientes = new LinkedHashMap<>();
+        private final Map<Veiculo, TipoUso> tiposDeUso = new IdentityHashMap<>();
+    }
+
+    /**
+     * Lê os estacionamentos, clientes e veículos do cadastro, aplicando os deltas
+     * em ordem: um cliente de um delta substitui o tipo de uso do cliente já
+     * lido e acrescenta os veículos e estacionamentos novos. Os clientes são
+     * cadastrados de uma vez em cada estacionamento e os veículos ficam com o
+     * histórico pendente até a leitura dos estacionamentos.
+     */
+    private static Cadastro lerCadastro(Path diretorio, List<String> arquivos, ArquivoDeUsos arquivoDeUsos)
+            throws IOException {
+        Cadastro cadastro = new Cadastro();
+        List<Set<Cliente>> clientesPorEstacionamento = new ArrayList<>();
+        for (String nomeDoArquivo : arquivos) {
+            Path arquivo = diretorio.resolve(nomeDoArquivo);
+            EntradaBinaria entrada = new EntradaBinaria(verificado(mapear(arquivo), arquivo));
+            lerCabecalho(entrada, MAGICO_CADASTRO, arquivo);
+            String[] strings = SnapshotBinario.Dicionario.ler(entrada);
+
+            int quantidadeEstacionamentos = entrada.lerVarInt();
+            for (int i = 0; i < quantidadeEstacionamentos; i++) {
+                String nome = SnapshotBinario.string(strings, entrada.lerVarInt());
+                if (i < cadastro.estacionamentos.size()) {
+                    continue;
+                }
+                Estacionamento estacionamento = new Estacionamento(nome);
+                if (arquivoDeUsos != null) {
+                    estacionamento.arquivarUsosEm(arquivoDeUsos);
+                }
+                cadastro.estacionamentos.add(estacionamento);
+                clientesPorEstacionamento.add(new LinkedHashSet<>());
+            }
+
+            int quantidadeClientes = entrada.lerVarInt();
+            for (int i = 0; i < quantidadeClientes; i++) {
+                String id = SnapshotBinario.string(strings, entrada.lerVarInt());
+                String nome = SnapshotBinario.string(strings, entrada.lerVarInt());
+                TipoUso tipoUsoCliente = SnapshotBinario.enumDoOrdinal(TipoUso.values(), entrada.lerByte());
+                Cliente cliente = cadastro.clientes.get(id);
+                if (cliente == null) {
+                    cliente = new Cliente(nome, id, tipoUsoCliente);
+                    cadastro.clientes.put(id, cliente);
+                } else {
+                    cliente.setTipoUso(tipoUsoCliente);
+                }
+                int quantidadeCadastros = entrada.lerVarInt();
+                for (int j = 0; j < quantidadeCadastros; j++) {
+                    int indice = entrada.lerVarInt();
+                    SnapshotBinario.estacionamentoDoIndice(cadastro.estacionamentos, indice);
+                    clientesPorEstacionamento.get(indice).add(cliente);
+                }
+
+                int quantidadeVeiculos = entrada.lerVarInt();
+                for (int j = 0; j < quantidadeVeiculos; j++) {
+                    String placa = SnapshotBinario.string(strings, entrada.lerVarInt());
+                    TipoUso tipoUso = SnapshotBinario.enumDoOrdinal(TipoUso.values(), entrada.lerByte());
+                    UsoDeVagaFactory fabrica = SnapshotBinario.lerFabrica(entrada);
+                    Veiculo veiculo = cliente.possuiVeiculo(placa);
+                    if (veiculo == null) {
+                        veiculo = new Veiculo(placa, tipoUso, fabrica);
+                        cliente.addVeiculo(veiculo);
+                        veiculo.marcarHistoricoPendente();
+                    } else {
+                        veiculo.setTipoUso(tipoUso);
+                    }
+                    cadastro.tiposDeUso.put(veiculo, tipoUso);
+                    lerUsosAvulsos(entrada, veiculo);
+                }
+            }
+        }
+
+        for (int i = 0; i < cadastro.estacionamentos.size(); i++) {
+            cadastro.estacionamentos.get(i).restaurarClientes(clientesPorEstacionamento.get(i));
+        }
+        return cadastro;
+    }
+
+    /**
+     * Marca os estacionamentos, clientes e veículos recém-carregados como já
+     * gravados.
+     */
+    private static void limparAlteracoes(Cadastro cadastro) {
+        for (Estacionamento estacionamento : cadastro.estacionamentos) {
+            estacionamento.limparAlteracao();
+        }
+        for (Cliente cliente : cadastro.clientes.values()) {
+            cliente.limparAlteracao();
+        }
+        for (Veiculo veiculo : cadastro.tiposDeUso.keySet()) {
+            veiculo.limparAlteracao();
+        }
+    }
+
+    private static void lerUsosAvulsos(EntradaBinaria entrada, Veiculo veiculo) throws IOException {
+        int quantidade = entrada.lerVarInt();
+        for (int i = 0; i < quantidade; i++) {
+            int numeroVaga = entrada.lerVarInt();
+            long inicio = entrada.lerVarLong();
+            long duracao = entrada.lerVarLong();
+            TipoServico servico = SnapshotBinario.enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+            long centavos = SnapshotBinario.lerValor(entrada);
+            UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(new Vaga('i', numeroVaga),
+                    SnapshotBinario.deEpoca(inicio));
+            if (duracao > 0) {
+                uso.setSaida(SnapshotBinario.deEpoca(inicio + duracao - 1));
+                uso.setCentavosPagos(centavos);
+            }
+            uso.setTipoServico(servico);
+            veiculo.registrarUsoDeVaga(uso);
+        }
+    }
+
+    /**
+     * Lê as vagas e as sessões ativas de um arquivo do estacionamento e,
+     * opcionalmente, gera as vagas e restaura as sessões.
+     *
+     * @param restaurar se as vagas e as sessões devem ser restauradas; as de
+     *                  arquivos anteriores ao último são apenas conferidas
+     * @return posição do início do histórico no arquivo
+     */
+    private static int lerSessoes(ByteBuffer conteudo, Path arquivo, Estacionamento estacionamento,
+            boolean restaurar) throws IOException {
+        ByteBuffer leitura = conteudo.duplicate();
+        EntradaBinaria entrada = new EntradaBinaria(leitura);
+        lerCabecalho(entrada, MAGICO_ESTACIONAMENTO, arquivo);
+        int quantidadeVagas = entrada.lerVarInt();
+        int quantidade = entrada.lerVarInt();
+        String[] placas = new String[quantidade];
+        int[] vagas = new int[quantidade];
+        long[] entradas = new long[quantidade];
+        TipoServico[] servicos = new TipoServico[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            placas[i] = entrada.lerString();
+            vagas[i] = entrada.lerVarInt();
+            entradas[i] = entrada.lerVarLong();
+            servicos[i] = SnapshotBinario.enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+        }
+        int fim = leitura.position();
+        verificar(conteudo, 0, fim, entrada.lerInt(), arquivo);
+        if (!restaurar) {
+            return fim + Integer.BYTES;
+        }
+
+        estacionamento.gerarVagas(quantidadeVagas);
+        for (int i = 0; i < quantidade; i++) {
+            Veiculo veiculo = veiculo(estacionamento, placas[i], arquivo);
+            UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(vaga(estacionamento, vagas[i], arquivo),
+                    SnapshotBinario.deEpoca(entradas[i]));
+            uso.setTipoServico(servicos[i]);
+            veiculo.registrarUsoDeVaga(uso);
+            estacionamento.restaurarUso(placas[i], uso);
+        }
+        return fim + Integer.BYTES;
+    }
+
+    /**
+     * Lê o histórico de usos encerrados do estacionamento, da posição atual do
+     * conteúdo até o CRC final, lançando-os no livro-caixa com o tipo de uso
+     * gravado no cadastro.
+     */
+    private static void lerHistorico(ByteBuffer historico, Path arquivo, Estacionamento estacionamento,
+            Map<Veiculo, TipoUso> tiposDeUso) throws IOException {
+        EntradaBinaria entrada = new EntradaBinaria(verificado(historico, arquivo));
+
+        int quantidadeVeiculos = entrada.lerVarInt();
+        for (int i = 0; i < quantidadeVeiculos; i++) {
+            String placa = entrada.lerString();
+            Veiculo veiculo = veiculo(estacionamento, placa, arquivo);
+            TipoUso tipoUso = tiposDeUso.get(veiculo);
+            int quantidadeUsos = entrada.lerVarInt();
+            long entradaAnterior = 0;
+            for (int j = 0; j < quantidadeUsos; j++) {
+                Vaga vaga = vagaDoHistorico(estacionamento, entrada.lerVarInt(), arquivo);
+                long inicio = entradaAnterior + entrada.lerVarLongComSinal();
+                entradaAnterior = inicio;
+                long duracao = entrada.lerVarLong();
+                TipoServico servico = SnapshotBinario.enumDoOrdinal(TipoServico.values(), entrada.lerByte());
+                long centavos = SnapshotBinario.lerValor(entrada);
+                if (duracao == 0) {
+                    throw new ExcecaoArquivoInvalido("Uso em aberto no histórico da placa " + placa + " em " + arquivo);
+                }
+
+                UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(vaga, SnapshotBinario.deEpoca(inicio));
+                uso.setSaida(SnapshotBinario.deEpoca(inicio + duracao - 1));
+                uso.setCentavosPagos(centavos);
+                uso.setTipoServico(servico);
+                veiculo.registrarUsoDeVaga(uso);
+                estacionamento.restaurarUso(placa, uso, tipoUso);
+            }
+        }
+    }
+
+    private static Veiculo veiculo(Estacionamento estacionamento, String placa, Path arquivo)
+            throws ExcecaoArquivoInvalido {
+        Veiculo veiculo = estacionamento.buscarVeiculo(placa);
+        if (veiculo == null) {
+            throw new ExcecaoArquivoInvalido("Veículo inexistente no cadastro: " + placa + " em " + arquivo);
+        }
+        return veiculo;
+    }
+
+    private static Vaga vaga(Estacionamento estacionamento, int numero, Path arquivo) throws ExcecaoArquivoInvalido {
+        Vaga vaga = estacionamento.getVaga(numero);
+        if (vaga == null) {
+            throw new ExcecaoArquivoInvalido("Vaga inexistente: " + numero + " em " + arquivo);
+        }
+        return vaga;
+    }
+
+    private static Vaga vagaDoHistorico(Estacionamento estacionamento, int numero, Path arquivo)
+            throws ExcecaoArquivoInvalido {
+        Vaga vaga = estacionamento.getVagaDoHistorico(numero);
+        if (vaga == null) {
+            throw new ExcecaoArquivoInvalido("Vaga inexistente: " + numero + " em " + arquivo);
+        }
+        return vaga;
+    }
+}
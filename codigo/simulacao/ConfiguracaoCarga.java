@@ -0,0 +1,193 @@
+package simulacao;
+
+/**
+ * Parâmetros do gerador de carga. Os valores podem ser informados pela linha de
+ * comando no formato {@code --chave=valor}, por exemplo:
+ * {@code carga --estacionamentos=3 --clientes=10000 --placas=50000 --eventos=1000000 --cancelas=64 --mix=60,20,20}.
+ */
+public class ConfiguracaoCarga {
+
+    private int estacionamentos = 3;
+    private int vagasPorEstacionamento = 3000;
+    private int clientes = 10_000;
+    private int placas = 50_000;
+    private long eventos = 1_000_000;
+    private int eventosPorSegundo = 0;
+    private int cancelas = 64;
+    private int percentualHorista = 60;
+    private int percentualTurno = 20;
+    private int percentualMensalista = 20;
+    private long semente = 42;
+
+    /**
+     * Cria uma configuração a partir dos argumentos da linha de comando.
+     *
+     * @param args argumentos no formato --chave=valor
+     * @return configuração com os valores informados e os padrões para os demais
+     * @throws IllegalArgumentException caso algum argumento seja desconhecido ou
+     *                                  inválido
+     */
+    public static ConfiguracaoCarga deArgumentos(String[] args) {
+        ConfiguracaoCarga config = new ConfiguracaoCarga();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                continue;
+            }
+            String chave = arg.substring(2, arg.indexOf('='));
+            String valor = arg.substring(arg.indexOf('=') + 1);
+            switch (chave) {
+                case "estacionamentos":
+                    config.setEstacionamentos(Integer.parseInt(valor));
+                    break;
+                case "vagas":
+                    config.setVagasPorEstacionamento(Integer.parseInt(valor));
+                    break;
+                case "clientes":
+                    config.setClientes(Integer.parseInt(valor));
+                    break;
+                case "placas":
+                    config.setPlacas(Integer.parseInt(valor));
+                    break;
+                case "eventos":
+                    config.setEventos(Long.parseLong(valor));
+                    break;
+                case "eventosPorSegundo":
+                    config.setEventosPorSegundo(Integer.parseInt(valor));
+                    break;
+                case "cancelas":
+                    config.setCancelas(Integer.parseInt(valor));
+                    break;
+                case "mix":
+                    String[] partes = valor.split(",");
+                    if (partes.length != 3) {
+                        throw new IllegalArgumentException("O mix deve ter o formato horista,turno,mensalista");
+                    }
+                    config.setMix(Integer.parseInt(partes[0].trim()), Integer.parseInt(partes[1].trim()),
+                            Integer.parseInt(partes[2].trim()));
+                    break;
+                case "semente":
+                    config.setSemente(Long.parseLong(valor));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Parâmetro de carga desconhecido: " + chave);
+            }
+        }
+        return config;
+    }
+
+    public int getEstacionamentos() {
+        return estacionamentos;
+    }
+
+    public void setEstacionamentos(int estacionamentos) {
+        if (estacionamentos < 1) {
+            throw new IllegalArgumentException("Deve haver ao menos um estacionamento");
+        }
+        this.estacionamentos = estacionamentos;
+    }
+
+    public int getVagasPorEstacionamento() {
+        return vagasPorEstacionamento;
+    }
+
+    public void setVagasPorEstacionamento(int vagasPorEstacionamento) {
+        this.vagasPorEstacionamento = vagasPorEstacionamento;
+    }
+
+    public int getClientes() {
+        return clientes;
+    }
+
+    public void setClientes(int clientes) {
+        if (clientes < 1) {
+            throw new IllegalArgumentException("Deve haver ao menos um cliente");
+        }
+        this.clientes = clientes;
+    }
+
+    public int getPlacas() {
+        return placas;
+    }
+
+    public void setPlacas(int placas) {
+        if (placas < 1) {
+            throw new IllegalArgumentException("Deve haver ao menos uma placa");
+        }
+        this.placas = placas;
+    }
+
+    public long getEventos() {
+        return eventos;
+    }
+
+    public void setEventos(long eventos) {
+        this.eventos = eventos;
+    }
+
+    /**
+     * @return limite de eventos por segundo somando todas as cancelas, ou 0 para
+     *         executar sem limite
+     */
+    public int getEventosPorSegundo() {
+        return eventosPorSegundo;
+    }
+
+    public void setEventosPorSegundo(int eventosPorSegundo) {
+        this.eventosPorSegundo = eventosPorSegundo;
+    }
+
+    public int getCancelas() {
+        return cancelas;
+    }
+
+    public void setCancelas(int cancelas) {
+        if (cancelas < 1) {
+            throw new IllegalArgumentException("Deve haver ao menos uma cancela");
+        }
+        this.cancelas = cancelas;
+    }
+
+    public int getPercentualHorista() {
+        return percentualHorista;
+    }
+
+    public int getPercentualTurno() {
+        return percentualTurno;
+    }
+
+    public int getPercentualMensalista() {
+        return percentualMensalista;
+    }
+
+    /**
+     * Define a proporção de clientes de cada tipo de uso.
+     *
+     * @param horista    percentual de clientes horistas
+     * @param turno      percentual de clientes de turno
+     * @param mensalista percentual de clientes mensalistas
+     */
+    public void setMix(int horista, int turno, int mensalista) {
+        if (horista < 0 || turno < 0 || mensalista < 0 || horista + turno + mensalista != 100) {
+            throw new IllegalArgumentException("Os percentuais do mix devem somar 100");
+        }
+        this.percentualHorista = horista;
+        this.percentualTurno = turno;
+        this.percentualMensalista = mensalista;
+    }
+
+    public long getSemente() {
+        return semente;
+    }
+
+    public void setSemente(long semente) {
+        this.semente = semente;
+    }
+
+    @Override
+    public String toString() {
+        return "estacionamentos=" + estacionamentos + ", vagas=" + vagasPorEstacionamento + ", clientes=" + clientes
+                + ", placas=" + placas + ", eventos=" + eventos + ", eventosPorSegundo="
+                + (eventosPorSegundo == 0 ? "sem limite" : eventosPorSegundo) + ", cancelas=" + cancelas
+                + ", mix=" + percentualHorista + "/" + percentualTurno + "/" + percentualMensalista;
+    }
+}
@@ -0,0 +1,274 @@
+package simulacao;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.Enums.TipoTurno;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+/**
+ * Gerador de carga para os estacionamentos. Cada cancela simulada é uma thread
+ * (virtual, quando a JVM oferece suporte) que dispara entradas e saídas pelos
+ * métodos {@link Estacionamento#estacionar} e {@link Estacionamento#sair},
+ * registrando latência e erros de cada operação.
+ */
+public class GeradorDeCarga {
+
+    private final ConfiguracaoCarga config;
+    private final List<Estacionamento> estacionamentos;
+    private final String[] placas;
+
+    /**
+     * Cria um gerador sobre estacionamentos e placas já cadastrados. Cada placa é
+     * atendida sempre pelo mesmo estacionamento.
+     *
+     * @param config          parâmetros da carga
+     * @param estacionamentos estacionamentos que receberão os eventos
+     * @param placas          placas cadastradas nos estacionamentos
+     */
+    public GeradorDeCarga(ConfiguracaoCarga config, List<Estacionamento> estacionamentos, List<String> placas) {
+        if (estacionamentos.isEmpty() || placas.isEmpty()) {
+            throw new IllegalArgumentException("O gerador precisa de ao menos um estacionamento e uma placa");
+        }
+        this.config = config;
+        this.estacionamentos = List.copyOf(estacionamentos);
+        this.placas = placas.toArray(new String[0]);
+    }
+
+    /**
+     * Cria os estacionamentos, clientes e veículos descritos pela configuração e
+     * retorna um gerador pronto para executar.
+     *
+     * @param config parâmetros da carga
+     * @return gerador com a população cadastrada
+     */
+    public static GeradorDeCarga comPopulacao(ConfiguracaoCarga config) {
+        List<Estacionamento> estacionamentos = new ArrayList<>();
+        for (int i = 0; i < config.getEstacionamentos(); i++) {
+            Estacionamento estacionamento = new Estacionamento("Estacionamento " + (i + 1));
+            estacionamento.gerarVagas(config.getVagasPorEstacionamento());
+            estacionamentos.add(estacionamento);
+        }
+
+        Cliente[] clientes = new Cliente[config.getClientes()];
+        for (int i = 0; i < clientes.length; i++) {
+            clientes[i] = new Cliente("Cliente" + (i + 1), "ID" + (i + 1), tipoUsoDoCliente(config, i));
+            for (Estacionamento estacionamento : estacionamentos) {
+                estacionamento.addCliente(clientes[i]);
+            }
+        }
+
+        List<String> placas = new ArrayList<>(config.getPlacas());
+        for (int i = 0; i < config.getPlacas(); i++) {
+            Cliente cliente = clientes[i % clientes.length];
+            String placa = gerarPlaca(i);
+            try {
+                estacionamentos.get(0).addVeiculo(placa, cliente.getId(), cliente.getTipoUso(),
+                        fabricaDoTipo(cliente.getTipoUso(), i), null);
+            } catch (ExcecaoClienteNaoCadastrado e) {
+                throw new IllegalStateException(e);
+            }
+            placas.add(placa);
+        }
+
+        return new GeradorDeCarga(config, estacionamentos, placas);
+    }
+
+    private static TipoUso tipoUsoDoCliente(ConfiguracaoCarga config, int indice) {
+        int faixa = indice % 100;
+        if (faixa < config.getPercentualHorista()) {
+            return TipoUso.HORISTA;
+        } else if (faixa < config.getPercentualHorista() + config.getPercentualTurno()) {
+            return TipoUso.TURNO;
+        }
+        return TipoUso.MENSALISTA;
+    }
+
+    private static UsoDeVagaFactory fabricaDoTipo(TipoUso tipoUso, int indice) {
+        switch (tipoUso) {
+            case HORISTA:
+                return UsoDeVagaFactory.criarHoristaFactory();
+            case TURNO:
+                return UsoDeVagaFactory.criarTurnoFactory(TipoTurno.values()[indice % TipoTurno.values().length]);
+            default:
+                return UsoDeVagaFactory.criarMensalistaFactory();
+        }
+    }
+
+    /**
+     * Gera uma placa no formato antigo (três letras e quatro números) a partir de
+     * um índice sequencial.
+     *
+     * @param indice índice da placa, entre 0 e 175.759.999
+     * @return placa correspondente ao índice
+     */
+    public static String gerarPlaca(int indice) {
+        char[] placa = new char[7];
+        int letras = indice / 10_000;
+        int numeros = indice % 10_000;
+        placa[0] = (char) ('A' + (letras / (26 * 26)) % 26);
+        placa[1] = (char) ('A' + (letras / 26) % 26);
+        placa[2] = (char) ('A' + letras % 26);
+        for (int i = 6; i >= 3; i--) {
+            placa[i] = (char) ('0' + numeros % 10);
+            numeros /= 10;
+        }
+        return new String(placa);
+    }
+
+    public List<Estacionamento> getEstacionamentos() {
+        return estacionamentos;
+    }
+
+    /**
+     * Dispara os eventos configurados distribuídos entre as cancelas e aguarda o
+     * término de todas.
+     *
+     * @return vazão, latências e erros por operação
+     * @throws InterruptedException caso a thread chamadora seja interrompida
+     */
+    public ResultadoCarga executar() throws InterruptedException {
+        int cancelas = config.getCancelas();
+        if (cancelas > placas.length) {
+            throw new IllegalArgumentException("O número de cancelas não pode ser maior que o número de placas");
+        }
+        long eventosPorCancela = config.getEventos() / cancelas;
+        long intervaloNanos = config.getEventosPorSegundo() > 0
+                ? Math.max(1, 1_000_000_000L * cancelas / config.getEventosPorSegundo())
+                : 0;
+
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<ResultadoCarga>> parciais = new ArrayList<>(cancelas);
+        ExecutorService executor = criarExecutorDeCancelas(cancelas);
+        long inicio;
+        try {
+            for (int c = 0; c < cancelas; c++) {
+                int cancela = c;
+                long eventos = eventosPorCancela + (c == 0 ? config.getEventos() % cancelas : 0);
+                SplittableRandom random = new SplittableRandom(config.getSemente() + c);
+                parciais.add(executor.submit(() -> {
+                    largada.await();
+                    return executarCancela(cancela, eventos, intervaloNanos, random);
+                }));
+            }
+            inicio = System.nanoTime();
+            largada.countDown();
+
+            ResultadoCarga resultado = new ResultadoCarga();
+            for (Future<ResultadoCarga> parcial : parciais) {
+                resultado.somar(parcial.get());
+            }
+            resultado.setDuracaoNanos(System.nanoTime() - inicio);
+            return resultado;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha em uma cancela simulada", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Laço de uma cancela. Cada cancela atende uma faixa própria de placas e, a
+     * cada evento, sorteia entre a saída de um veículo que ela estacionou e a
+     * entrada de um veículo que está fora, mantendo a ocupação estável. Quando há
+     * limite de eventos por segundo, a latência é medida a partir do instante em
+     * que o evento deveria ter começado, para que atrasos acumulados não fiquem
+     * escondidos.
+     */
+    private ResultadoCarga executarCancela(int cancela, long eventos, long intervaloNanos, SplittableRandom random) {
+        ResultadoCarga resultado = new ResultadoCarga();
+        int primeiraPlaca = (int) ((long) placas.length * cancela / config.getCancelas());
+        int faixa = (int) ((long) placas.length * (cancela + 1) / config.getCancelas()) - primeiraPlaca;
+        boolean[] estacionada = new boolean[faixa];
+        int[] estacionadas = new int[faixa];
+        int totalEstacionadas = 0;
+        long agendado = System.nanoTime();
+
+        for (long i = 0; i < eventos; i++) {
+            if (intervaloNanos > 0) {
+                agendado += intervaloNanos;
+                long espera = agendado - System.nanoTime();
+                if (espera > 0) {
+                    LockSupport.parkNanos(espera);
+                }
+            }
+
+            int posicao;
+            boolean entrada;
+            if (totalEstacionadas > 0 && (totalEstacionadas == faixa || random.nextBoolean())) {
+                int sorteada = random.nextInt(totalEstacionadas);
+                posicao = estacionadas[sorteada];
+                estacionadas[sorteada] = estacionadas[--totalEstacionadas];
+                estacionada[posicao] = false;
+                entrada = false;
+            } else {
+                posicao = random.nextInt(faixa);
+                while (estacionada[posicao]) {
+                    posicao = random.nextInt(faixa);
+                }
+                entrada = true;
+            }
+
+            int indice = primeiraPlaca + posicao;
+            String placa = placas[indice];
+            Estacionamento estacionamento = estacionamentos.get(indice % estacionamentos.size());
+            ResultadoCarga.Operacao operacao = entrada ? resultado.getEstacionar() : resultado.getSair();
+
+            long inicio = intervaloNanos > 0 ? agendado : System.nanoTime();
+            try {
+                if (entrada) {
+                    estacionamento.estacionar(placa, null);
+                    estacionada[posicao] = true;
+                    estacionadas[totalEstacionadas++] = posicao;
+                } else {
+                    estacionamento.sair(placa);
+                }
+                operacao.registrarSucesso(System.nanoTime() - inicio);
+            } catch (RuntimeException e) {
+                operacao.registrarErro(System.nanoTime() - inicio, e);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cria o executor das cancelas usando threads virtuais quando a JVM em execução
+     * oferece suporte (Java 21 ou superior) e um pool de threads comum caso
+     * contrário.
+     *
+     * @param cancelas quantidade de cancelas simuladas
+     * @return executor das cancelas
+     */
+    static ExecutorService criarExecutorDeCancelas(int cancelas) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(cancelas);
+        }
+    }
+
+    /**
+     * @return true se as cancelas serão executadas em threads virtuais
+     */
+    public static boolean usaThreadsVirtuais() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
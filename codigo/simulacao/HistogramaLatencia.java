@@ -0,0 +1,93 @@
+package simulacao;
+
+/**
+ * Histograma de latências em nanossegundos com buckets log-lineares: cada
+ * potência de dois é dividida em 16 faixas, o que mantém o erro dos percentis
+ * abaixo de ~6% usando memória fixa, independente do número de amostras.
+ *
+ * Não é thread-safe: cada cancela mantém o seu histograma e os resultados são
+ * combinados com {@link #somar(HistogramaLatencia)} ao final.
+ */
+public class HistogramaLatencia {
+
+    private static final int SUB_BUCKETS = 16;
+    private static final int BITS_SUB_BUCKET = 4;
+
+    private final long[] contagens = new long[64 * SUB_BUCKETS];
+    private long total;
+    private long maximo;
+
+    /**
+     * Registra uma amostra.
+     * @param nanos latência em nanossegundos
+     */
+    public void registrar(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        contagens[indice(nanos)]++;
+        total++;
+        if (nanos > maximo) {
+            maximo = nanos;
+        }
+    }
+
+    /**
+     * Soma as amostras de outro histograma a este.
+     * @param outro histograma a ser somado
+     */
+    public void somar(HistogramaLatencia outro) {
+        for (int i = 0; i < contagens.length; i++) {
+            contagens[i] += outro.contagens[i];
+        }
+        total += outro.total;
+        maximo = Math.max(maximo, outro.maximo);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMaximo() {
+        return maximo;
+    }
+
+    /**
+     * Calcula um percentil das amostras registradas.
+     * @param percentil valor entre 0 e 100
+     * @return limite superior do bucket que contém o percentil, em nanossegundos
+     */
+    public long percentil(double percentil) {
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = (long) Math.ceil(total * percentil / 100.0);
+        long acumulado = 0;
+        for (int i = 0; i < contagens.length; i++) {
+            acumulado += contagens[i];
+            if (acumulado >= Math.max(1, alvo)) {
+                return Math.min(limiteSuperior(i), maximo);
+            }
+        }
+        return maximo;
+    }
+
+    private static int indice(long valor) {
+        if (valor < SUB_BUCKETS) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) ((valor >>> (expoente - BITS_SUB_BUCKET)) & (SUB_BUCKETS - 1));
+        return (expoente - BITS_SUB_BUCKET + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long limiteSuperior(int indice) {
+        if (indice < SUB_BUCKETS) {
+            return indice;
+        }
+        int expoente = indice / SUB_BUCKETS + BITS_SUB_BUCKET - 1;
+        long sub = indice % SUB_BUCKETS;
+        long largura = 1L << (expoente - BITS_SUB_BUCKET);
+        return (1L << expoente) + (sub + 1) * largura - 1;
+    }
+}
@@ -0,0 +1,123 @@
+package simulacao;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resultado de uma execução do gerador de carga: vazão, latências e erros de
+ * cada operação.
+ */
+public class ResultadoCarga {
+
+    /**
+     * Estatísticas de uma operação (estacionar ou sair).
+     */
+    public static class Operacao {
+        private final String nome;
+        private final HistogramaLatencia latencias = new HistogramaLatencia();
+        private final Map<String, Long> erros = new TreeMap<>();
+        private long sucessos;
+
+        public Operacao(String nome) {
+            this.nome = nome;
+        }
+
+        void registrarSucesso(long nanos) {
+            sucessos++;
+            latencias.registrar(nanos);
+        }
+
+        void registrarErro(long nanos, Throwable erro) {
+            latencias.registrar(nanos);
+            erros.merge(erro.getClass().getSimpleName(), 1L, Long::sum);
+        }
+
+        void somar(Operacao outra) {
+            sucessos += outra.sucessos;
+            latencias.somar(outra.latencias);
+            outra.erros.forEach((tipo, quantidade) -> erros.merge(tipo, quantidade, Long::sum));
+        }
+
+        public String getNome() {
+            return nome;
+        }
+
+        public long getSucessos() {
+            return sucessos;
+        }
+
+        public long getTotal() {
+            return latencias.getTotal();
+        }
+
+        public long getTotalErros() {
+            return getTotal() - sucessos;
+        }
+
+        public Map<String, Long> getErros() {
+            return erros;
+        }
+
+        public HistogramaLatencia getLatencias() {
+            return latencias;
+        }
+    }
+
+    private final Operacao estacionar = new Operacao("estacionar");
+    private final Operacao sair = new Operacao("sair");
+    private long duracaoNanos;
+
+    public Operacao getEstacionar() {
+        return estacionar;
+    }
+
+    public Operacao getSair() {
+        return sair;
+    }
+
+    public long getDuracaoNanos() {
+        return duracaoNanos;
+    }
+
+    void setDuracaoNanos(long duracaoNanos) {
+        this.duracaoNanos = duracaoNanos;
+    }
+
+    void somar(ResultadoCarga outro) {
+        estacionar.somar(outro.estacionar);
+        sair.somar(outro.sair);
+    }
+
+    public long getTotalEventos() {
+        return estacionar.getTotal() + sair.getTotal();
+    }
+
+    /**
+     * @return eventos processados por segundo
+     */
+    public double getVazao() {
+        if (duracaoNanos == 0) {
+            return 0;
+        }
+        return getTotalEventos() / (duracaoNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder relatorio = new StringBuilder();
+        relatorio.append(String.format("Eventos: %d em %.2f s | Vazão: %.0f eventos/s%n", getTotalEventos(),
+                duracaoNanos / 1e9, getVazao()));
+        relatorio.append(String.format("%-12s %12s %10s %12s %12s %12s%n", "Operação", "Total", "Erros",
+                "p50 (µs)", "p99 (µs)", "máx (µs)"));
+        for (Operacao operacao : new Operacao[] { estacionar, sair }) {
+            HistogramaLatencia latencias = operacao.getLatencias();
+            relatorio.append(String.format("%-12s %12d %10d %12.1f %12.1f %12.1f%n", operacao.getNome(),
+                    operacao.getTotal(), operacao.getTotalErros(), latencias.percentil(50) / 1e3,
+                    latencias.percentil(99) / 1e3, latencias.getMaximo() / 1e3));
+            for (Map.Entry<String, Long> erro : operacao.getErros().entrySet()) {
+                relatorio.append(String.format("    %-40s %10d%n", erro.getKey(), erro.getValue()));
+            }
+        }
+        return relatorio.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoNaoPossuiVagasDisponiveis;
+import excecoes.ExcecaoVeiculoJaEstacionado;
+import excecoes.ExcecaoVeiculoNaoCadastrado;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class AlocacaoDeVagasTest {
+    private Estacionamento estacionamento;
+
+    @BeforeEach
+    void setUp() throws ExcecaoClienteNaoCadastrado {
+        estacionamento = new Estacionamento("Estacionamento Teste");
+        estacionamento.gerarVagas(2);
+        Cliente cliente = new Cliente("Alice", "1", TipoUso.HORISTA);
+        estacionamento.addCliente(cliente);
+        for (String placa : new String[] { "AAA1111", "BBB2222", "CCC3333" }) {
+            estacionamento.addVeiculo(placa, "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        }
+    }
+
+    @Test
+    void testEstacionarOcupaVagaERegistraSessao() {
+        estacionamento.estacionar("AAA1111", null);
+        UsoDeVaga sessao = estacionamento.sessaoAtiva("AAA1111");
+        assertNotNull(sessao);
+        assertFalse(sessao.getVaga().disponivel());
+        assertEquals(1, estacionamento.vagasDisponiveis());
+    }
+
+    @Test
+    void testEstacionarVeiculoJaEstacionado() {
+        estacionamento.estacionar("AAA1111", null);
+        assertThrows(ExcecaoVeiculoJaEstacionado.class, () -> {
+            estacionamento.estacionar("AAA1111", null);
+        });
+        assertEquals(1, estacionamento.vagasDisponiveis());
+    }
+
+    @Test
+    void testSemVagasDisponiveis() {
+        estacionamento.estacionar("AAA1111", null);
+        estacionamento.estacionar("BBB2222", null);
+        assertThrows(ExcecaoNaoPossuiVagasDisponiveis.class, () -> {
+            estacionamento.estacionar("CCC3333", null);
+        });
+    }
+
+    @Test
+    void testSairLiberaVagaParaProximoVeiculo() {
+        estacionamento.estacionar("AAA1111", null);
+        estacionamento.estacionar("BBB2222", null);
+        UsoDeVaga sessao = estacionamento.sessaoAtiva("AAA1111");
+        assertTrue(estacionamento.sair("AAA1111") >= 0);
+        assertNull(estacionamento.sessaoAtiva("AAA1111"));
+        assertTrue(sessao.getVaga().disponivel());
+
+        estacionamento.estacionar("CCC3333", null);
+        assertSame(sessao.getVaga(), estacionamento.sessaoAtiva("CCC3333").getVaga());
+    }
+
+    @Test
+    void testSairVeiculoNaoEstacionado() {
+        assertEquals(0.0, estacionamento.sair("AAA1111"));
+        assertEquals(2, estacionamento.vagasDisponiveis());
+    }
+
+    @Test
+    void testEstacionarVeiculoNaoCadastrado() {
+        assertThrows(ExcecaoVeiculoNaoCadastrado.class, () -> {
+            estacionamento.estacionar("XYZ0000", null);
+        });
+    }
+
+    @Test
+    void testGerarVagasDescartaVagasAntigas() {
+        estacionamento.estacionar("AAA1111", null);
+        estacionamento.gerarVagas(3);
+        estacionamento.sair("AAA1111");
+        assertEquals(3, estacionamento.vagasDisponiveis());
+    }
+}
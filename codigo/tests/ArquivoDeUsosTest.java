@@ -0,0 +1,198 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import estacionamentos.ArquivoDeUsos;
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Vaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import persistencia.SnapshotBinario;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class ArquivoDeUsosTest {
+    @TempDir
+    Path diretorio;
+
+    private ArquivoDeUsos arquivo;
+    private Vaga vaga;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        arquivo = ArquivoDeUsos.criar(diretorio.resolve("usos.arquivo"));
+        vaga = new Vaga('a', 7);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        arquivo.close();
+    }
+
+    private void registrar(Veiculo veiculo, LocalDateTime entrada, int minutos, double valor, TipoServico servico) {
+        UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(vaga, entrada);
+        uso.setSaida(entrada.plusMinutes(minutos));
+        uso.setValorPago(valor);
+        uso.setTipoServico(servico);
+        veiculo.registrarUsoDeVaga(uso);
+    }
+
+    @Test
+    void testConsultasIguaisAoHistoricoEmMemoria() {
+        Veiculo emMemoria = new Veiculo("AAA1111", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+        Veiculo arquivado = new Veiculo("AAA1111", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+        arquivado.arquivarUsosEm(arquivo);
+
+        // mais usos que um segmento do arquivo, alguns fora da ordem de entrada
+        LocalDateTime inicio = LocalDateTime.of(2023, 1, 1, 8, 0);
+        int quantidade = ArquivoDeUsos.USOS_POR_SEGMENTO + 500;
+        for (int i = 0; i < quantidade; i++) {
+            LocalDateTime entrada = inicio.plusMinutes(i * 7L);
+            if (i % 1000 == 999) {
+                entrada = entrada.minusDays(2);
+            }
+            TipoServico servico = i % 9 == 0 ? TipoServico.LAVAGEM : null;
+            registrar(emMemoria, entrada, 30, 4.0 * (1 + i % 5), servico);
+            registrar(arquivado, entrada, 30, 4.0 * (1 + i % 5), servico);
+        }
+        arquivado.estacionar(vaga);
+
+        assertEquals(quantidade, arquivo.quantidade());
+        assertEquals(quantidade + 1, arquivado.totalDeUsos());
+        assertEquals(emMemoria.totalArrecadado(), arquivado.totalArrecadado(), 0.001);
+        for (int mes = 1; mes <= 12; mes++) {
+            assertEquals(emMemoria.totalDeUsoNoMesAno(mes, 2023), arquivado.totalDeUsoNoMesAno(mes, 2023));
+            assertEquals(emMemoria.arrecadadoNoMes(mes, 2023), arquivado.arrecadadoNoMes(mes, 2023), 0.001);
+        }
+
+        List<UsoDeVaga> esperados = emMemoria.getUsosNoMes(3, 2023);
+        List<UsoDeVaga> lidos = arquivado.getUsosNoMes(3, 2023);
+        assertEquals(esperados.size(), lidos.size());
+        for (int i = 0; i < esperados.size(); i++) {
+            assertEquals(esperados.get(i).getEntrada(), lidos.get(i).getEntrada());
+            assertEquals(esperados.get(i).getSaida(), lidos.get(i).getSaida());
+            assertEquals(esperados.get(i).getValorPago(), lidos.get(i).getValorPago());
+            assertEquals(esperados.get(i).getTipoServico(), lidos.get(i).getTipoServico());
+            assertSame(vaga, lidos.get(i).getVaga());
+        }
+
+        LocalDateTime de = inicio.plusDays(10);
+        LocalDateTime ate = inicio.plusDays(12);
+        assertEquals(emMemoria.historico(de, ate), arquivado.historico(de, ate));
+        assertSame(arquivado.getUsoAtivo(), arquivado.getListUsoDeVaga().get(quantidade));
+    }
+
+    @Test
+    void testSaidaMoveOUsoParaOArquivo() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento centro = new Estacionamento("Centro");
+        centro.gerarVagas(2);
+        centro.arquivarUsosEm(arquivo);
+        Cliente alice = new Cliente("Alice", "1", TipoUso.HORISTA);
+        centro.addCliente(alice);
+        centro.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+
+        centro.estacionar("AAA1111", TipoServico.MANOBRISTA);
+        assertEquals(0, arquivo.quantidade());
+        double valor = centro.sair("AAA1111");
+
+        assertEquals(1, arquivo.quantidade());
+        assertEquals("AAA1111", arquivo.getPlaca(arquivo.placa(0)));
+        assertSame(centro.getVaga(1), arquivo.getVaga(arquivo.vaga(0)));
+        assertEquals(TipoServico.MANOBRISTA, arquivo.servico(0));
+        assertEquals(Math.round(valor * 100), arquivo.centavos(0));
+        assertEquals(1, centro.buscarVeiculo("AAA1111").totalDeUsos());
+        assertEquals(2, centro.vagasDisponiveis());
+    }
+
+    @Test
+    void testVeiculosArquivadosEmParalelo() throws InterruptedException {
+        int threads = 4;
+        int usosPorVeiculo = ArquivoDeUsos.USOS_POR_SEGMENTO / 2 + 100;
+        Veiculo[] veiculos = new Veiculo[threads];
+        Vaga[] vagas = new Vaga[threads];
+        Thread[] cancelas = new Thread[threads];
+        LocalDateTime inicio = LocalDateTime.of(2023, 1, 1, 8, 0);
+        for (int t = 0; t < threads; t++) {
+            veiculos[t] = new Veiculo("PAR" + t, TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+            veiculos[t].arquivarUsosEm(arquivo);
+            vagas[t] = new Vaga('p', t + 1);
+            Veiculo veiculo = veiculos[t];
+            Vaga vagaDaCancela = vagas[t];
+            cancelas[t] = new Thread(() -> {
+                for (int i = 0; i < usosPorVeiculo; i++) {
+                    LocalDateTime entrada = inicio.plusMinutes(i * 5L);
+                    UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(i % 2 == 0 ? vaga : vagaDaCancela,
+                            entrada);
+                    uso.setSaida(entrada.plusMinutes(3));
+                    uso.setValorPago(1 + i % 3);
+                    veiculo.registrarUsoDeVaga(uso);
+                }
+            });
+            cancelas[t].start();
+        }
+        for (Thread cancela : cancelas) {
+            cancela.join();
+        }
+
+        assertEquals(threads * usosPorVeiculo, arquivo.quantidade());
+        for (int t = 0; t < threads; t++) {
+            assertEquals(usosPorVeiculo, veiculos[t].totalDeUsos());
+            List<UsoDeVaga> usos = veiculos[t].getListUsoDeVaga();
+            long centavos = 0;
+            for (int i = 0; i < usos.size(); i++) {
+                assertEquals(inicio.plusMinutes(i * 5L), usos.get(i).getEntrada());
+                assertSame(i % 2 == 0 ? vaga : vagas[t], usos.get(i).getVaga());
+                centavos += 100 * (1 + i % 3);
+            }
+            assertEquals(centavos / 100.0, veiculos[t].totalArrecadado(), 0.001);
+        }
+    }
+
+    @Test
+    void testSnapshotCarregadoDiretoParaOArquivo() throws Exception {
+        Estacionamento centro = new Estacionamento("Centro");
+        centro.gerarVagas(3);
+        centro.addCliente(new Cliente("Alice", "1", TipoUso.HORISTA));
+        centro.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        Veiculo veiculo = centro.buscarVeiculo("AAA1111");
+        LocalDateTime marco = LocalDateTime.of(2023, 3, 10, 9, 0);
+        for (int i = 0; i < 10; i++) {
+            UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(centro.getVaga(1 + i % 3),
+                    marco.plusDays(i));
+            uso.setSaida(marco.plusDays(i).plusHours(1));
+            uso.setValorPago(16.0);
+            veiculo.registrarUsoDeVaga(uso);
+            centro.restaurarUso("AAA1111", uso);
+        }
+
+        Path snapshot = diretorio.resolve("estacionamentos.dat");
+        SnapshotBinario.salvar(snapshot, List.of(centro));
+        Estacionamento lido = SnapshotBinario.carregar(snapshot, arquivo).get(0);
+        lido.aguardarHistorico();
+
+        assertSame(arquivo, lido.getArquivoDeUsos());
+        assertEquals(10, arquivo.quantidade());
+        assertEquals(centro.totalArrecadado(), lido.totalArrecadado(), 0.001);
+        Veiculo veiculoLido = lido.buscarVeiculo("AAA1111");
+        assertEquals(160.0, veiculoLido.totalArrecadado(), 0.001);
+        assertEquals(10, veiculoLido.totalDeUsoNoMesAno(3, 2023));
+
+        // o snapshot gravado a partir do arquivo é igual ao original
+        Path regravado = diretorio.resolve("regravado.dat");
+        SnapshotBinario.salvar(regravado, List.of(lido));
+        assertArrayEquals(Files.readAllBytes(snapshot), Files.readAllBytes(regravado));
+    }
+}
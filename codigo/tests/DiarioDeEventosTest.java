@@ -0,0 +1,265 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoTurno;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import persistencia.Armazenamento;
+import persistencia.DiarioDeEventos;
+import persistencia.PoliticaDeSincronizacao;
+import persistencia.SnapshotParticionado;
+
+public class DiarioDeEventosTest {
+    @TempDir
+    Path diretorio;
+
+    private Estacionamento popular(Armazenamento armazenamento) throws Exception {
+        Estacionamento centro = new Estacionamento("Centro");
+        centro.gerarVagas(3);
+        armazenamento.adicionarEstacionamento(centro);
+
+        Cliente alice = new Cliente("Alice", "1", TipoUso.HORISTA);
+        centro.addCliente(alice);
+        centro.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        centro.addCliente(new Cliente("Bruno", "2", TipoUso.TURNO));
+        alice.addVeiculo(new Veiculo("BBB2222", TipoUso.TURNO,
+                UsoDeVagaFactory.criarTurnoFactory(TipoTurno.NOITE)));
+
+        centro.estacionar("AAA1111", TipoServico.MANOBRISTA);
+        centro.sair("AAA1111");
+        centro.estacionar("AAA1111", null);
+        centro.contratarServico("AAA1111", TipoServico.LAVAGEM);
+        centro.estacionar("BBB2222", null);
+        centro.sair("BBB2222");
+        centro.alteraTipoUsoCliente(TipoUso.MENSALISTA, "2");
+        return centro;
+    }
+
+    private void assertMesmoEstado(Estacionamento esperado, Estacionamento lido) {
+        assertEquals(esperado.getNome(), lido.getNome());
+        assertEquals(esperado.getVagas().size(), lido.getVagas().size());
+        assertEquals(esperado.vagasDisponiveis(), lido.vagasDisponiveis());
+        assertEquals(esperado.getId().keySet(), lido.getId().keySet());
+        assertEquals(TipoUso.MENSALISTA, lido.possuiCliente("2").getTipoUso());
+        assertEquals(esperado.totalArrecadado(), lido.totalArrecadado(), 0.001);
+
+        for (String placa : List.of("AAA1111", "BBB2222")) {
+            assertSame(lido.possuiCliente("1"), lido.buscarDono(placa));
+            List<UsoDeVaga> usosEsperados = esperado.buscarVeiculo(placa).getListUsoDeVaga();
+            List<UsoDeVaga> usosLidos = lido.buscarVeiculo(placa).getListUsoDeVaga();
+            assertEquals(usosEsperados.size(), usosLidos.size());
+            for (int i = 0; i < usosEsperados.size(); i++) {
+                UsoDeVaga usoEsperado = usosEsperados.get(i);
+                UsoDeVaga usoLido = usosLidos.get(i);
+                assertEquals(usoEsperado.getEntrada().truncatedTo(ChronoUnit.MILLIS), usoLido.getEntrada());
+                assertEquals(usoEsperado.getValorPago(), usoLido.getValorPago());
+                assertEquals(usoEsperado.getTipoServico(), usoLido.getTipoServico());
+                assertEquals(usoEsperado.getVaga().getNumero(), usoLido.getVaga().getNumero());
+            }
+        }
+
+        UsoDeVaga sessao = lido.sessaoAtiva("AAA1111");
+        assertNotNull(sessao);
+        assertEquals(TipoServico.LAVAGEM, sessao.getTipoServico());
+        assertSame(sessao, lido.buscarVeiculo("AAA1111").getUsoAtivo());
+        assertNull(lido.sessaoAtiva("BBB2222"));
+    }
+
+    @Test
+    void testReaberturaReproduzODiario() throws Exception {
+        Estacionamento centro;
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            centro = popular(armazenamento);
+            assertEquals(12, armazenamento.getDiario().getUltimoEvento());
+        }
+        assertFalse(SnapshotParticionado.existe(diretorio.resolve(Armazenamento.DIRETORIO_SNAPSHOT)));
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            assertEquals(1, armazenamento.getEstacionamentos().size());
+            Estacionamento lido = armazenamento.getEstacionamentos().get(0);
+            assertMesmoEstado(centro, lido);
+
+            lido.sair("AAA1111");
+            assertEquals(13, armazenamento.getDiario().getUltimoEvento());
+        }
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            assertNull(armazenamento.getEstacionamentos().get(0).sessaoAtiva("AAA1111"));
+        }
+    }
+
+    @Test
+    void testCompactacaoIncorporaODiarioAoSnapshot() throws Exception {
+        Estacionamento centro;
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            centro = popular(armazenamento);
+            armazenamento.sincronizar();
+            long tamanhoAntes = armazenamento.getDiario().getTamanho();
+            armazenamento.compactar();
+
+            assertTrue(armazenamento.getDiario().getTamanho() < tamanhoAntes);
+            assertEquals(12, SnapshotParticionado.ultimoEvento(diretorio.resolve(Armazenamento.DIRETORIO_SNAPSHOT)));
+
+            centro.sair("AAA1111");
+            assertEquals(13, armazenamento.getDiario().getUltimoEvento());
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento lido = armazenamento.getEstacionamentos().get(0);
+            assertNull(lido.sessaoAtiva("AAA1111"));
+            assertEquals(centro.totalArrecadado(), lido.totalArrecadado(), 0.001);
+            assertEquals(3, lido.vagasDisponiveis());
+            assertEquals(13, armazenamento.getDiario().getUltimoEvento());
+        }
+    }
+
+    @Test
+    void testFalhaDaCompactacaoPeriodicaFicaDisponivelENaoInterrompeAsExecucoes() throws Exception {
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            // uma idade maior que o calendário faz o cálculo do limite falhar
+            armazenamento.setIdadeDoHistoricoFrio(Duration.ofDays(Long.MAX_VALUE / 86_400));
+            armazenamento.agendarCompactacao(10, TimeUnit.MILLISECONDS);
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (armazenamento.getFalhaDaCompactacao() == null && System.nanoTime() < limite) {
+                Thread.sleep(10);
+            }
+            assertInstanceOf(RuntimeException.class, armazenamento.getFalhaDaCompactacao());
+
+            armazenamento.setIdadeDoHistoricoFrio(null);
+            while (armazenamento.getFalhaDaCompactacao() != null && System.nanoTime() < limite) {
+                Thread.sleep(10);
+            }
+            assertNull(armazenamento.getFalhaDaCompactacao());
+        }
+    }
+
+    @Test
+    void testRegistroInterrompidoEhDescartado() throws Exception {
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            popular(armazenamento);
+        }
+
+        // corrompe o último byte do último registro, como em uma gravação interrompida
+        Path diario = diretorio.resolve(Armazenamento.ARQUIVO_DIARIO);
+        try (FileChannel canal = FileChannel.open(diario, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer conteudo = canal.map(FileChannel.MapMode.READ_WRITE, 0, canal.size());
+            int ultimo = conteudo.capacity() - 1;
+            while (conteudo.get(ultimo) == 0) {
+                ultimo--;
+            }
+            conteudo.put(ultimo, (byte) (conteudo.get(ultimo) ^ 0x7F));
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            assertEquals(11, armazenamento.getDiario().getUltimoEvento());
+            Estacionamento lido = armazenamento.getEstacionamentos().get(0);
+            assertEquals(TipoUso.TURNO, lido.possuiCliente("2").getTipoUso());
+
+            lido.alteraTipoUsoCliente(TipoUso.HORISTA, "2");
+        }
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            assertEquals(12, armazenamento.getDiario().getUltimoEvento());
+            assertEquals(TipoUso.HORISTA, armazenamento.getEstacionamentos().get(0).possuiCliente("2").getTipoUso());
+        }
+    }
+
+    @Test
+    void testConfirmacaoDeDurabilidade() throws Exception {
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio, PoliticaDeSincronizacao.aoFechar())) {
+            popular(armazenamento);
+            CompletableFuture<Long> confirmacao = armazenamento.getDiario().confirmar();
+            assertEquals(12, confirmacao.get(10, TimeUnit.SECONDS));
+            assertTrue(armazenamento.getDiario().getTamanho() > 16);
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            assertEquals(12, armazenamento.getDiario().getUltimoEvento());
+            // depois do fechamento, a confirmação é imediata
+            armazenamento.close();
+            assertEquals(12, armazenamento.getDiario().confirmar().get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testNotificacaoDuranteOFechamentoNaoFalhaNaCancela() throws Exception {
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            popular(armazenamento);
+        }
+
+        Armazenamento armazenamento = Armazenamento.abrir(diretorio);
+        Estacionamento centro = armazenamento.getEstacionamentos().get(0);
+        DiarioDeEventos diario = armazenamento.getDiario();
+        armazenamento.close();
+        assertNull(diario.getFalha());
+
+        // uma cancela notificada antes do fechamento termina a notificação depois dele
+        assertDoesNotThrow(() -> diario.veiculoEstacionado(centro, centro.buscarVeiculo("AAA1111"),
+                centro.sessaoAtiva("AAA1111")));
+        assertNotNull(diario.getFalha());
+        CompletableFuture<Long> confirmacao = diario.confirmar();
+        assertThrows(ExecutionException.class, () -> confirmacao.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCancelasConcorrentesComFilaCheia() throws Exception {
+        int cancelas = 4;
+        int usosPorCancela = 3000;
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio,
+                PoliticaDeSincronizacao.periodica(5, TimeUnit.MILLISECONDS))) {
+            Estacionamento centro = new Estacionamento("Centro");
+            centro.gerarVagas(cancelas);
+            armazenamento.adicionarEstacionamento(centro);
+            for (int i = 0; i < cancelas; i++) {
+                centro.addCliente(new Cliente("Cliente " + i, String.valueOf(i), TipoUso.HORISTA));
+                centro.addVeiculo("PLC000" + i, String.valueOf(i), TipoUso.HORISTA,
+                        UsoDeVagaFactory.criarHoristaFactory(), null);
+            }
+
+            // mais eventos que a capacidade da fila: as cancelas aguardam espaço, sem perder eventos
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < cancelas; i++) {
+                String placa = "PLC000" + i;
+                Thread thread = new Thread(() -> {
+                    for (int j = 0; j < usosPorCancela; j++) {
+                        centro.estacionar(placa, null);
+                        centro.sair(placa);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento lido = armazenamento.getEstacionamentos().get(0);
+            assertEquals(1 + 2 * cancelas + 2 * cancelas * usosPorCancela, armazenamento.getDiario().getUltimoEvento());
+            for (int i = 0; i < cancelas; i++) {
+                assertEquals(usosPorCancela, lido.buscarVeiculo("PLC000" + i).totalDeUsos());
+            }
+            assertEquals(cancelas, lido.vagasDisponiveis());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Vaga;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoNaoPossuiVagasDisponiveis;
+import excecoes.ExcecaoVeiculoJaEstacionado;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class EstacionamentoConcorrenciaTest {
+    private static final int VAGAS = 64;
+    private static final int PLACAS = 512;
+    private static final int OPERACOES_POR_CANCELA = 20_000;
+
+    private Estacionamento estacionamento;
+
+    @BeforeEach
+    void setUp() throws ExcecaoClienteNaoCadastrado {
+        estacionamento = new Estacionamento("Estacionamento Concorrente");
+        estacionamento.gerarVagas(VAGAS);
+        Cliente cliente = new Cliente("Frota", "1", TipoUso.HORISTA);
+        estacionamento.addCliente(cliente);
+        for (int i = 0; i < PLACAS; i++) {
+            estacionamento.addVeiculo(placa(i), "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        }
+    }
+
+    private static String placa(int i) {
+        return String.format("PLC%04d", i);
+    }
+
+    /**
+     * Executa entradas e saídas aleatórias em várias cancelas ao mesmo tempo e
+     * verifica que nenhuma vaga é ocupada por dois veículos. Cada cancela atende
+     * um grupo próprio de placas, mas todas disputam as mesmas vagas.
+     */
+    private void executarCancelas(int cancelas) throws Exception {
+        Set<Vaga> vagasOcupadas = ConcurrentHashMap.newKeySet();
+        AtomicInteger vagaDuplicada = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(cancelas);
+        List<Future<?>> resultados = new ArrayList<>();
+
+        for (int c = 0; c < cancelas; c++) {
+            final int cancela = c;
+            resultados.add(executor.submit(() -> {
+                java.util.Random random = new java.util.Random(cancela);
+                int placasPorCancela = PLACAS / cancelas;
+                largada.await();
+                for (int i = 0; i < OPERACOES_POR_CANCELA; i++) {
+                    String placa = placa(cancela * placasPorCancela + random.nextInt(placasPorCancela));
+                    UsoDeVaga sessao = estacionamento.sessaoAtiva(placa);
+                    if (sessao != null) {
+                        vagasOcupadas.remove(sessao.getVaga());
+                        estacionamento.sair(placa);
+                        continue;
+                    }
+                    try {
+                        estacionamento.estacionar(placa, null);
+                        if (!vagasOcupadas.add(estacionamento.sessaoAtiva(placa).getVaga())) {
+                            vagaDuplicada.incrementAndGet();
+                        }
+                    } catch (ExcecaoNaoPossuiVagasDisponiveis e) {
+                        // estacionamento lotado, a cancela tenta outra placa
+                    }
+                }
+                return null;
+            }));
+        }
+
+        largada.countDown();
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        executor.shutdown();
+
+        assertEquals(0, vagaDuplicada.get());
+        int sessoes = 0;
+        for (int i = 0; i < PLACAS; i++) {
+            if (estacionamento.sessaoAtiva(placa(i)) != null) {
+                sessoes++;
+            }
+        }
+        assertEquals(VAGAS, sessoes + estacionamento.vagasDisponiveis());
+    }
+
+    @Test
+    void testCancelasConcorrentesNaoDuplicamVagas() throws Exception {
+        executarCancelas(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Test
+    void testMesmaPlacaEstacionaApenasUmaVez() throws Exception {
+        int cancelas = 16;
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger sucessos = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(cancelas);
+        List<Future<?>> resultados = new ArrayList<>();
+        for (int c = 0; c < cancelas; c++) {
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                try {
+                    estacionamento.estacionar(placa(0), null);
+                    sucessos.incrementAndGet();
+                } catch (ExcecaoVeiculoJaEstacionado e) {
+                    // esperado para todas as cancelas menos uma
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        executor.shutdown();
+
+        assertEquals(1, sucessos.get());
+        assertEquals(VAGAS - 1, estacionamento.vagasDisponiveis());
+    }
+
+    /**
+     * Dois estacionamentos adicionam veículos ao mesmo cliente ao mesmo tempo.
+     * Cada adição notifica os dois estacionamentos, que não podem esperar um
+     * pelo outro.
+     */
+    @Test
+    void testEstacionamentosAdicionamVeiculosAoMesmoClienteSemDeadlock() throws Exception {
+        Estacionamento centro = new Estacionamento("Centro");
+        Estacionamento shopping = new Estacionamento("Shopping");
+        Cliente cliente = new Cliente("Compartilhado", "2", TipoUso.HORISTA);
+        centro.addCliente(cliente);
+        shopping.addCliente(cliente);
+        int placasPorEstacionamento = 2000;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<?>> resultados = new ArrayList<>();
+        Estacionamento[] estacionamentos = { centro, shopping };
+        for (int e = 0; e < estacionamentos.length; e++) {
+            final int prefixo = e;
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                for (int i = 0; i < placasPorEstacionamento; i++) {
+                    estacionamentos[prefixo].addVeiculo(String.format("C%d%05d", prefixo, i), "2", TipoUso.HORISTA,
+                            UsoDeVagaFactory.criarHoristaFactory(), null);
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        try {
+            for (Future<?> resultado : resultados) {
+                resultado.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2 * placasPorEstacionamento, cliente.getVeiculos().size());
+        for (int e = 0; e < estacionamentos.length; e++) {
+            for (int i = 0; i < placasPorEstacionamento; i++) {
+                String placa = String.format("C%d%05d", e, i);
+                assertSame(cliente, centro.buscarDono(placa));
+                assertSame(cliente, shopping.buscarDono(placa));
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import simulacao.ConfiguracaoCarga;
+import simulacao.GeradorDeCarga;
+import simulacao.HistogramaLatencia;
+import simulacao.ResultadoCarga;
+
+public class GeradorDeCargaTest {
+
+    @Test
+    void testExecutarCargaPequena() throws Exception {
+        ConfiguracaoCarga config = ConfiguracaoCarga.deArgumentos(new String[] { "carga", "--estacionamentos=2",
+                "--vagas=20", "--clientes=30", "--placas=60", "--eventos=10000", "--cancelas=4", "--mix=34,33,33" });
+        ResultadoCarga resultado = GeradorDeCarga.comPopulacao(config).executar();
+
+        assertEquals(10_000, resultado.getTotalEventos());
+        assertEquals(resultado.getEstacionar().getTotal(),
+                resultado.getEstacionar().getSucessos() + resultado.getEstacionar().getTotalErros());
+        assertEquals(0, resultado.getSair().getTotalErros());
+        assertTrue(resultado.getVazao() > 0);
+    }
+
+    @Test
+    void testMixInvalido() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            ConfiguracaoCarga.deArgumentos(new String[] { "--mix=50,50,50" });
+        });
+    }
+
+    @Test
+    void testGerarPlaca() {
+        assertEquals("AAA0000", GeradorDeCarga.gerarPlaca(0));
+        assertEquals("AAB0001", GeradorDeCarga.gerarPlaca(10_001));
+    }
+
+    @Test
+    void testPercentisDoHistograma() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        for (int i = 1; i <= 1000; i++) {
+            histograma.registrar(i * 1000L);
+        }
+        assertEquals(1000, histograma.getTotal());
+        assertEquals(500_000, histograma.percentil(50), 500_000 * 0.07);
+        assertEquals(990_000, histograma.percentil(99), 990_000 * 0.07);
+        assertEquals(1_000_000, histograma.getMaximo());
+    }
+}
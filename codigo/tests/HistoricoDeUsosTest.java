@@ -0,0 +1,156 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.ArquivoDeUsos;
+import estacionamentos.HistoricoDeUsos;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.UsoDeVagaHorista;
+import estacionamentos.Vaga;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.interfaces.VisitanteDeUsos;
+
+public class HistoricoDeUsosTest {
+    private HistoricoDeUsos historico;
+    private Vaga vaga;
+
+    @BeforeEach
+    void setUp() {
+        historico = new HistoricoDeUsos();
+        vaga = new Vaga('a', 1);
+    }
+
+    private UsoDeVaga uso(LocalDateTime entrada) {
+        UsoDeVaga uso = new UsoDeVaga(vaga, new UsoDeVagaHorista(), entrada);
+        historico.adicionar(uso);
+        return uso;
+    }
+
+    @Test
+    void testMantemOrdemDeEntrada() {
+        UsoDeVaga marco = uso(LocalDateTime.of(2023, 3, 10, 9, 0));
+        UsoDeVaga janeiro = uso(LocalDateTime.of(2023, 1, 5, 9, 0));
+        UsoDeVaga fevereiro = uso(LocalDateTime.of(2023, 2, 20, 9, 0));
+
+        assertEquals(List.of(janeiro, fevereiro, marco), historico.todos());
+        assertEquals(3, historico.tamanho());
+    }
+
+    @Test
+    void testNoMesIncluiLimitesDoMes() {
+        uso(LocalDateTime.of(2023, 2, 28, 23, 59));
+        UsoDeVaga inicio = uso(LocalDateTime.of(2023, 3, 1, 0, 0));
+        UsoDeVaga fim = uso(LocalDateTime.of(2023, 3, 31, 23, 59));
+        uso(LocalDateTime.of(2023, 4, 1, 0, 0));
+        uso(LocalDateTime.of(2024, 3, 15, 10, 0));
+
+        assertEquals(List.of(inicio, fim), historico.noMes(3, 2023));
+        assertTrue(historico.noMes(5, 2023).isEmpty());
+    }
+
+    @Test
+    void testEntreDatasExclusivo() {
+        LocalDateTime inicio = LocalDateTime.of(2023, 3, 1, 8, 0);
+        LocalDateTime fim = LocalDateTime.of(2023, 3, 1, 18, 0);
+        uso(inicio);
+        UsoDeVaga meio = uso(inicio.plusHours(2));
+        UsoDeVaga outroMeio = uso(inicio.plusHours(2));
+        uso(fim);
+
+        List<UsoDeVaga> resultado = historico.entre(inicio, fim);
+        assertEquals(List.of(meio, outroMeio), resultado);
+        for (UsoDeVaga uso : historico.todos()) {
+            assertEquals(resultado.contains(uso), uso.ocorrenciaEntreDatas(inicio, fim));
+        }
+        assertTrue(historico.entre(fim, inicio).isEmpty());
+    }
+
+    @Test
+    void testUsosEncerradosCompactadosPreservamOrdemEValores() {
+        LocalDateTime base = LocalDateTime.of(2023, 3, 10, 9, 0);
+        for (int i = 20; i > 0; i--) {
+            UsoDeVaga uso = new UsoDeVaga(vaga, new UsoDeVagaHorista(), base.plusDays(i * 2L));
+            uso.setSaida(uso.getEntrada().plusMinutes(7));
+            uso.setCentavosPagos(187L * i);
+            uso.setTipoServico(i % 5 == 0 ? TipoServico.LAVAGEM : null);
+            historico.adicionar(uso);
+        }
+        UsoDeVaga aberto = uso(base.plusDays(3));
+
+        List<UsoDeVaga> todos = historico.todos();
+        assertEquals(21, historico.tamanho());
+        assertEquals(21, todos.size());
+        assertSame(aberto, todos.get(1));
+        for (int i = 1; i < todos.size(); i++) {
+            assertFalse(todos.get(i).getEntrada().isBefore(todos.get(i - 1).getEntrada()));
+        }
+        UsoDeVaga primeiro = todos.get(0);
+        assertEquals(base.plusDays(2), primeiro.getEntrada());
+        assertEquals(base.plusDays(2).plusMinutes(7), primeiro.getSaida());
+        assertEquals(187, primeiro.getCentavosPagos());
+        assertSame(vaga, primeiro.getVaga());
+        assertEquals(TipoServico.LAVAGEM, todos.get(10).getTipoServico());
+
+        long total = 0;
+        int noMes = 0;
+        long centavosNoMes = 0;
+        for (UsoDeVaga uso : todos) {
+            total += uso.getCentavosPagos();
+            if (uso.getEntrada().getMonthValue() == 4) {
+                noMes++;
+                centavosNoMes += uso.getCentavosPagos();
+            }
+        }
+        assertEquals(total, historico.centavosTotal());
+        assertEquals(noMes, historico.quantidadeNoMes(4, 2023));
+        assertEquals(noMes, historico.noMes(4, 2023).size());
+        assertEquals(centavosNoMes, historico.centavosNoMes(4, 2023));
+        assertEquals(3, historico.entre(base.plusDays(2), base.plusDays(8)).size());
+
+        aberto.setSaida(aberto.getEntrada().plusHours(1));
+        historico.encerrar(aberto);
+        assertEquals(21, historico.tamanho());
+        assertNotSame(aberto, historico.todos().get(1));
+        assertEquals(aberto.getSaida(), historico.todos().get(1).getSaida());
+    }
+
+    @Test
+    void testPercorrerVisitaOsMesmosUsosQueTodosSemRecriaLos() {
+        LocalDateTime base = LocalDateTime.of(2023, 5, 2, 8, 0);
+        for (int i = 0; i < 12; i++) {
+            UsoDeVaga uso = new UsoDeVaga(vaga, new UsoDeVagaHorista(), base.plusHours(i * 5L));
+            uso.setSaida(uso.getEntrada().plusMinutes(30 + i));
+            uso.setCentavosPagos(400L + i);
+            uso.setTipoServico(i == 4 ? TipoServico.POLIMENTO : null);
+            historico.adicionar(uso);
+        }
+        uso(base.plusHours(22));
+
+        List<long[]> visitados = new ArrayList<>();
+        List<TipoServico> servicos = new ArrayList<>();
+        historico.percorrer((entrada, saida, centavos, vagaDoUso, servico) -> {
+            assertSame(vaga, vagaDoUso);
+            visitados.add(new long[] { entrada, saida, centavos });
+            servicos.add(servico);
+        });
+
+        List<UsoDeVaga> todos = historico.todos();
+        assertEquals(todos.size(), visitados.size());
+        for (int i = 0; i < todos.size(); i++) {
+            UsoDeVaga uso = todos.get(i);
+            assertEquals(ArquivoDeUsos.paraEpoca(uso.getEntrada()), visitados.get(i)[0]);
+            assertEquals(uso.getSaida() != null ? ArquivoDeUsos.paraEpoca(uso.getSaida()) : VisitanteDeUsos.SEM_SAIDA,
+                    visitados.get(i)[1]);
+            assertEquals(uso.getCentavosPagos(), visitados.get(i)[2]);
+            assertEquals(uso.getTipoServico(), servicos.get(i));
+        }
+        assertEquals(VisitanteDeUsos.SEM_SAIDA, visitados.get(5)[1]);
+    }
+}
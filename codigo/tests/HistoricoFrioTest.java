@@ -0,0 +1,232 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import estacionamentos.ArquivoDeUsos;
+import estacionamentos.ArquivoFrio;
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Vaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import persistencia.Armazenamento;
+
+public class HistoricoFrioTest {
+    @TempDir
+    Path diretorio;
+
+    private ArquivoFrio frio;
+    private Vaga vaga;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        frio = ArquivoFrio.criar(diretorio.resolve("frio"));
+        vaga = new Vaga('a', 7);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        frio.close();
+    }
+
+    private void registrar(Veiculo veiculo, LocalDateTime entrada, int minutos, double valor, TipoServico servico) {
+        UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(vaga, entrada);
+        uso.setSaida(entrada.plusMinutes(minutos));
+        uso.setValorPago(valor);
+        uso.setTipoServico(servico);
+        veiculo.registrarUsoDeVaga(uso);
+    }
+
+    private void assertConsultasIguais(Veiculo esperado, Veiculo lido, LocalDateTime inicio) throws Exception {
+        assertEquals(esperado.totalDeUsos(), lido.totalDeUsos());
+        assertEquals(esperado.totalArrecadado(), lido.totalArrecadado(), 0.001);
+        long[] percorridos = new long[2];
+        lido.percorrerUsos((entrada, saida, centavos, vagaDoUso, servico) -> {
+            percorridos[0]++;
+            percorridos[1] += centavos;
+        });
+        assertEquals(esperado.totalDeUsos(), percorridos[0]);
+        assertEquals(esperado.totalArrecadadoEmCentavos(), percorridos[1]);
+        for (int mes = 1; mes <= 12; mes++) {
+            assertEquals(esperado.totalDeUsoNoMesAno(mes, 2023), lido.totalDeUsoNoMesAno(mes, 2023));
+            assertEquals(esperado.arrecadadoNoMes(mes, 2023), lido.arrecadadoNoMes(mes, 2023), 0.001);
+            long[] visitados = new long[2];
+            lido.percorrerUsosNoMes(mes, 2023, (entrada, saida, centavos, vaga, servico) -> {
+                visitados[0]++;
+                visitados[1] += centavos;
+            });
+            assertEquals(esperado.totalDeUsoNoMesAno(mes, 2023), visitados[0]);
+            assertEquals(esperado.arrecadadoNoMesEmCentavos(mes, 2023), visitados[1]);
+        }
+        for (int mes = 1; mes <= 4; mes++) {
+            List<UsoDeVaga> esperados = esperado.getUsosNoMes(mes, 2023);
+            List<UsoDeVaga> lidos = lido.getUsosNoMes(mes, 2023);
+            assertEquals(esperados.size(), lidos.size());
+            for (int i = 0; i < esperados.size(); i++) {
+                assertEquals(esperados.get(i).getEntrada(), lidos.get(i).getEntrada());
+                assertEquals(esperados.get(i).getSaida(), lidos.get(i).getSaida());
+                assertEquals(esperados.get(i).getValorPago(), lidos.get(i).getValorPago());
+                assertEquals(esperados.get(i).getTipoServico(), lidos.get(i).getTipoServico());
+                assertSame(vaga, lidos.get(i).getVaga());
+            }
+        }
+        assertEquals(esperado.historico(inicio.plusDays(10), inicio.plusDays(40)),
+                lido.historico(inicio.plusDays(10), inicio.plusDays(40)));
+        assertEquals(esperado.historico(inicio.minusYears(1), inicio.plusYears(1)),
+                lido.historico(inicio.minusYears(1), inicio.plusYears(1)));
+
+        // os relatórios sem recriar os usos seguem as ordens dos comparadores, que
+        // recriam os usos
+        StringBuilder porEntrada = new StringBuilder();
+        lido.relatorio(false, porEntrada);
+        assertEquals(lido.relatorio(Comparator.comparing(UsoDeVaga::getEntrada)), porEntrada.toString());
+        StringBuilder porValor = new StringBuilder();
+        lido.relatorio(true, porValor);
+        assertEquals(lido.relatorio((a, b) -> Long.compare(b.getCentavosPagos(), a.getCentavosPagos())),
+                porValor.toString());
+    }
+
+    @Test
+    void testConsultasLeemAsCamadasQuenteEFria() throws Exception {
+        Veiculo quente = new Veiculo("AAA1111", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+        Veiculo emMemoria = new Veiculo("AAA1111", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+        Veiculo arquivado = new Veiculo("AAA1111", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+        try (ArquivoDeUsos arquivo = ArquivoDeUsos.criarTemporario()) {
+            arquivado.arquivarUsosEm(arquivo);
+
+            // mais usos que um bloco frio, alguns fora da ordem de entrada
+            LocalDateTime inicio = LocalDateTime.of(2023, 1, 1, 8, 0);
+            int quantidade = ArquivoFrio.USOS_POR_BLOCO * 3 + 100;
+            for (int i = 0; i < quantidade; i++) {
+                LocalDateTime entrada = inicio.plusMinutes(i * 97L);
+                if (i % 300 == 299) {
+                    entrada = entrada.minusDays(3);
+                }
+                TipoServico servico = i % 7 == 0 ? TipoServico.POLIMENTO : null;
+                for (Veiculo veiculo : List.of(quente, emMemoria, arquivado)) {
+                    registrar(veiculo, entrada, 45, 2.5 * (1 + i % 4), servico);
+                }
+            }
+            arquivado.estacionar(vaga);
+            quente.estacionar(new Vaga('b', 1));
+            emMemoria.estacionar(new Vaga('c', 1));
+
+            // duas rodadas, com blocos que se sobrepõem por causa dos usos fora de ordem
+            LocalDateTime limite = inicio.plusDays(40);
+            int movidos = emMemoria.esfriarHistorico(frio, limite);
+            assertTrue(movidos > ArquivoFrio.USOS_POR_BLOCO);
+            assertEquals(movidos, arquivado.esfriarHistorico(frio, limite));
+            assertEquals(0, arquivado.esfriarHistorico(frio, limite));
+            for (Veiculo veiculo : List.of(quente, emMemoria, arquivado)) {
+                registrar(veiculo, inicio.plusDays(2), 30, 7.0, null);
+            }
+            limite = inicio.plusDays(100);
+            int segundaRodada = emMemoria.esfriarHistorico(frio, limite);
+            assertTrue(segundaRodada > 1);
+            assertEquals(segundaRodada, arquivado.esfriarHistorico(frio, limite));
+            assertEquals(2L * (movidos + segundaRodada), frio.quantidade());
+
+            assertConsultasIguais(quente, emMemoria, inicio);
+            assertConsultasIguais(quente, arquivado, inicio);
+            assertSame(arquivado.getUsoAtivo(), arquivado.getListUsoDeVaga().get(quantidade + 1));
+            assertTrue(frio.tamanho() > 0);
+        }
+    }
+
+    @Test
+    void testFusaoRegravaBlocosEmOrdemERemoveSegmentos() throws Exception {
+        try (ArquivoFrio log = ArquivoFrio.criar(diretorio.resolve("log"), 1024)) {
+            LocalDateTime inicio = LocalDateTime.of(2023, 1, 1, 8, 0);
+            Veiculo[] quentes = new Veiculo[3];
+            Veiculo[] frios = new Veiculo[3];
+            for (int v = 0; v < 3; v++) {
+                quentes[v] = new Veiculo("PLC" + v, TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+                frios[v] = new Veiculo("PLC" + v, TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+            }
+
+            // rodadas intercaladas entre os veículos, com usos antigos chegando depois
+            for (int rodada = 0; rodada < 6; rodada++) {
+                for (int v = 0; v < 3; v++) {
+                    for (int i = 0; i < 150; i++) {
+                        LocalDateTime entrada = inicio.plusDays(rodada % 2 == 0 ? rodada * 10 : 50 - rodada * 5)
+                                .plusMinutes(i * 41L + v);
+                        registrar(quentes[v], entrada, 20, 1.5 * (1 + i % 3), i % 11 == 0 ? TipoServico.LAVAGEM : null);
+                        registrar(frios[v], entrada, 20, 1.5 * (1 + i % 3), i % 11 == 0 ? TipoServico.LAVAGEM : null);
+                    }
+                    assertEquals(150, frios[v].esfriarHistorico(log, inicio.plusYears(1)));
+                }
+            }
+            int segmentos = log.segmentos();
+            assertTrue(segmentos > 1);
+            assertTrue(Files.exists(log.getDiretorio().resolve("segmento-000001.frio")));
+
+            for (int v = 0; v < 3; v++) {
+                assertEquals(6, frios[v].fundirHistoricoFrio());
+                assertEquals(0, frios[v].fundirHistoricoFrio());
+            }
+            assertEquals(3 * 900, log.quantidade());
+            // os segmentos que só tinham blocos substituídos foram removidos
+            assertFalse(Files.exists(log.getDiretorio().resolve("segmento-000001.frio")));
+            assertTrue(log.segmentos() <= segmentos + 1);
+            for (int v = 0; v < 3; v++) {
+                assertConsultasIguais(quentes[v], frios[v], inicio);
+            }
+        }
+        assertFalse(Files.exists(diretorio.resolve("log")));
+    }
+
+    @Test
+    void testHistoricoFrioIncluidoNoSnapshot() throws Exception {
+        Path dados = diretorio.resolve("dados");
+        double arrecadado;
+        try (Armazenamento armazenamento = Armazenamento.abrir(dados)) {
+            Estacionamento centro = new Estacionamento("Centro");
+            centro.gerarVagas(3);
+            armazenamento.adicionarEstacionamento(centro);
+            centro.addCliente(new Cliente("Alice", "1", TipoUso.HORISTA));
+            centro.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+            LocalDateTime antiga = LocalDateTime.now().minusYears(2);
+            for (int i = 0; i < 20; i++) {
+                UsoDeVaga uso = UsoDeVagaFactory.criarHoristaFactory().criarUsoDeVaga(centro.getVaga(1 + i % 3),
+                        antiga.plusDays(i));
+                uso.setSaida(antiga.plusDays(i).plusHours(1));
+                uso.setValorPago(16.0);
+                centro.importarUso("AAA1111", uso);
+            }
+            centro.estacionar("AAA1111", null);
+            centro.sair("AAA1111");
+            arrecadado = centro.totalArrecadado();
+
+            assertEquals(20, armazenamento.esfriarHistorico(Duration.ofDays(365)));
+            assertEquals(20, armazenamento.getArquivoFrio().quantidade());
+            Veiculo veiculo = centro.buscarVeiculo("AAA1111");
+            assertEquals(21, veiculo.totalDeUsos());
+            assertEquals(arrecadado, centro.totalArrecadado(), 0.001);
+            assertEquals(21, veiculo.getListUsoDeVaga().size());
+            armazenamento.consolidar();
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(dados)) {
+            Estacionamento centro = armazenamento.getEstacionamentos().get(0);
+            centro.aguardarHistorico();
+            assertEquals(21, centro.buscarVeiculo("AAA1111").totalDeUsos());
+            assertEquals(arrecadado, centro.totalArrecadado(), 0.001);
+            assertEquals(0, armazenamento.getArquivoFrio().quantidade());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoUso;
+import excecoes.ExcecaoArquivoInvalido;
+import persistencia.Armazenamento;
+import persistencia.Importador;
+import persistencia.ResultadoImportacao;
+
+public class ImportadorTest {
+    @TempDir
+    Path diretorio;
+
+    private Estacionamento criar(Armazenamento armazenamento, String nome) {
+        Estacionamento estacionamento = new Estacionamento(nome);
+        estacionamento.gerarVagas(5);
+        armazenamento.adicionarEstacionamento(estacionamento);
+        return estacionamento;
+    }
+
+    @Test
+    void testImportacaoPersistidaPeloDiario() throws Exception {
+        Path clientes = diretorio.resolve("clientes.csv");
+        Files.writeString(clientes, String.join("\n",
+                "id,nome,tipoUso,estacionamento",
+                "1,\"Silva, Alice\",horista,Centro",
+                "1,\"Silva, Alice\",horista,Norte",
+                "2,Bruno,TURNO,Centro",
+                "",
+                "3,Carla,DIARISTA,Centro",
+                "4,Davi,MENSALISTA,Sul",
+                "2,Bruno,TURNO,Centro"));
+        Path veiculos = diretorio.resolve("veiculos.ndjson");
+        Files.writeString(veiculos, String.join("\n",
+                "{\"cliente\": \"1\", \"placa\": \"AAA1111\"}",
+                "{\"cliente\": \"2\", \"placa\": \"BBB2222\", \"tipoUso\": \"TURNO\", \"turno\": \"NOITE\"}",
+                "{\"cliente\": \"2\", \"placa\": \"CCC3333\", \"tipoUso\": \"TURNO\"}",
+                "{\"cliente\": \"9\", \"placa\": \"DDD4444\"}",
+                "{\"cliente\": \"1\", \"placa\": \"AAA1111\"}",
+                "{\"cliente\": \"1\", \"placa\": [1]}"));
+        Path usos = diretorio.resolve("usos.csv");
+        Files.writeString(usos, String.join("\n",
+                "estacionamento,placa,vaga,entrada,saida,valor,servico",
+                "Centro,AAA1111,2,2024-03-10T09:00,2024-03-10T10:00,16.0,",
+                "Norte,AAA1111,1,2024-03-11T09:00,2024-03-11T09:30,8.0,LAVAGEM",
+                "Centro,BBB2222,3,2024-03-12T19:00,2024-03-12T20:00,50.0,",
+                "Centro,AAA1111,9,2024-03-13T09:00,2024-03-13T10:00,16.0,",
+                "Centro,AAA1111,2,2024-03-14T10:00,2024-03-14T09:00,16.0,",
+                "Centro,ZZZ9999,2,2024-03-14T10:00,2024-03-14T11:00,16.0,"));
+
+        double arrecadado;
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio.resolve("dados"))) {
+            Estacionamento centro = criar(armazenamento, "Centro");
+            Estacionamento norte = criar(armazenamento, "Norte");
+            Importador importador = new Importador(armazenamento.getEstacionamentos());
+
+            ResultadoImportacao resultado = importador.importarClientes(clientes);
+            assertEquals(6, resultado.getLinhas());
+            assertEquals(3, resultado.getImportadas());
+            assertEquals(1L, resultado.getRejeicoes().get("ExcecaoLinhaInvalida"));
+            assertEquals(1L, resultado.getRejeicoes().get("ExcecaoEstacionamentoNaoCadastrado"));
+            assertEquals(1L, resultado.getRejeicoes().get("ExcecaoClienteJaCadastrado"));
+            assertTrue(resultado.getExemplos().get(0).startsWith("linha 6:"));
+            assertSame(centro.possuiCliente("1"), norte.possuiCliente("1"));
+            assertEquals("Silva, Alice", centro.possuiCliente("1").getNome());
+
+            resultado = importador.importarVeiculos(veiculos);
+            assertEquals(2, resultado.getImportadas());
+            assertEquals(4, resultado.getRejeitadas());
+            Veiculo veiculo = norte.buscarVeiculo("AAA1111");
+            assertSame(veiculo, centro.buscarVeiculo("AAA1111"));
+            assertEquals(TipoUso.HORISTA, veiculo.getTipoUso());
+            assertNull(norte.buscarVeiculo("BBB2222"));
+
+            resultado = importador.importarUsos(usos);
+            assertEquals(3, resultado.getImportadas());
+            assertEquals(3, resultado.getRejeitadas());
+            assertEquals(2, veiculo.totalDeUsos());
+            assertEquals(24.0, veiculo.totalArrecadado(), 0.001);
+            assertEquals(5, centro.vagasDisponiveis());
+            arrecadado = centro.totalArrecadado();
+        }
+
+        // os usos importados são reproduzidos do diário e incorporados ao snapshot
+        for (int i = 0; i < 2; i++) {
+            try (Armazenamento armazenamento = Armazenamento.abrir(diretorio.resolve("dados"))) {
+                Estacionamento centro = armazenamento.getEstacionamentos().get(0);
+                Estacionamento norte = armazenamento.getEstacionamentos().get(1);
+                assertEquals(arrecadado, centro.totalArrecadado(), 0.001);
+                assertEquals(8.0, norte.totalArrecadado(), 0.001);
+                List<UsoDeVaga> historico = norte.buscarVeiculo("AAA1111").getListUsoDeVaga();
+                assertEquals(2, historico.size());
+                UsoDeVaga lavagem = historico.get(1);
+                assertEquals(LocalDateTime.of(2024, 3, 11, 9, 0), lavagem.getEntrada());
+                assertEquals(TipoServico.LAVAGEM, lavagem.getTipoServico());
+                assertSame(norte.getVaga(1), lavagem.getVaga());
+                armazenamento.compactar();
+            }
+        }
+    }
+
+    @Test
+    void testBlocosConvertidosEmParaleloSaoAplicadosEmOrdem() throws Exception {
+        Estacionamento centro = new Estacionamento("Centro");
+        centro.gerarVagas(10);
+        Importador importador = new Importador(List.of(centro));
+        importador.setThreads(4);
+        importador.setLinhasPorBloco(64);
+
+        int quantidade = 5000;
+        StringBuilder clientes = new StringBuilder();
+        StringBuilder veiculos = new StringBuilder("placa,cliente\n");
+        for (int i = 0; i < quantidade; i++) {
+            clientes.append("{\"estacionamento\":\"Centro\",\"id\":\"").append(i)
+                    .append("\",\"nome\":\"Cliente \\u0041").append(i).append("\",\"tipoUso\":\"HORISTA\"}\n");
+            veiculos.append("PLC").append(i).append(',').append(i).append('\n');
+            // a mesma placa para outro cliente é recusada pela ordem do arquivo
+            veiculos.append("PLC").append(i).append(',').append((i + 1) % quantidade).append('\n');
+        }
+
+        ResultadoImportacao resultado = importador.importarClientes(new StringReader(clientes.toString()),
+                Importador.Formato.NDJSON);
+        assertEquals(quantidade, resultado.getImportadas());
+        assertEquals("Cliente A42", centro.possuiCliente("42").getNome());
+
+        resultado = importador.importarVeiculos(new StringReader(veiculos.toString()), Importador.Formato.CSV);
+        assertEquals(quantidade, resultado.getImportadas());
+        assertEquals(quantidade, resultado.getRejeitadas());
+        assertEquals(1L * quantidade, resultado.getRejeicoes().get("ExcecaoVeiculoJaCadastrado"));
+        assertTrue(resultado.getLinhasPorSegundo() > 0);
+        for (int i = 0; i < quantidade; i += 97) {
+            Cliente dono = centro.buscarDono("PLC" + i);
+            assertEquals(String.valueOf(i), dono.getId());
+        }
+    }
+
+    @Test
+    void testCabecalhoSemColunaObrigatoria() {
+        Importador importador = new Importador(List.of(new Estacionamento("Centro")));
+        assertThrows(ExcecaoArquivoInvalido.class, () -> importador.importarClientes(
+                new StringReader("id,nome\n1,Alice\n"), Importador.Formato.CSV));
+    }
+}
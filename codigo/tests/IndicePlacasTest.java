@@ -0,0 +1,150 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.Cliente;
+import estacionamentos.CodigoDePlaca;
+import estacionamentos.Estacionamento;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoClienteNaoCadastrado;
+import excecoes.ExcecaoVeiculoJaCadastrado;
+
+public class IndicePlacasTest {
+    private Estacionamento estacionamento;
+    private Cliente alice;
+    private Cliente bruno;
+
+    @BeforeEach
+    void setUp() {
+        estacionamento = new Estacionamento("Estacionamento Teste");
+        alice = new Cliente("Alice", "1", TipoUso.HORISTA);
+        bruno = new Cliente("Bruno", "2", TipoUso.HORISTA);
+        estacionamento.addCliente(alice);
+        estacionamento.addCliente(bruno);
+    }
+
+    @Test
+    void testAddVeiculoAtualizaIndice() throws ExcecaoClienteNaoCadastrado {
+        estacionamento.addVeiculo("ABC1234", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        assertNotNull(estacionamento.buscarVeiculo("ABC1234"));
+        assertEquals(alice, estacionamento.buscarDono("ABC1234"));
+    }
+
+    @Test
+    void testVeiculoAdicionadoDiretamenteAoClienteEhIndexado() {
+        Veiculo veiculo = new Veiculo("XYZ9876", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory());
+        bruno.addVeiculo(veiculo);
+        assertSame(veiculo, estacionamento.buscarVeiculo("XYZ9876"));
+        assertEquals(bruno, estacionamento.buscarDono("XYZ9876"));
+    }
+
+    @Test
+    void testClienteComVeiculosEhIndexadoAoSerAdicionado() {
+        Cliente carla = new Cliente("Carla", "3", TipoUso.MENSALISTA);
+        Veiculo veiculo = new Veiculo("MER1A23", TipoUso.MENSALISTA, UsoDeVagaFactory.criarMensalistaFactory());
+        carla.addVeiculo(veiculo);
+        estacionamento.addCliente(carla);
+        assertSame(veiculo, estacionamento.buscarVeiculo("MER1A23"));
+    }
+
+    @Test
+    void testPlacaDeOutroClienteNaoPodeSerCadastrada() throws ExcecaoClienteNaoCadastrado {
+        estacionamento.addVeiculo("ABC1234", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        assertThrows(ExcecaoVeiculoJaCadastrado.class, () -> {
+            estacionamento.addVeiculo("ABC1234", "2", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        });
+        assertTrue(bruno.getVeiculos().isEmpty());
+    }
+
+    @Test
+    void testVeiculoDeClienteInexistente() {
+        assertThrows(ExcecaoClienteNaoCadastrado.class, () -> {
+            estacionamento.addVeiculo("ABC1234", "9", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        });
+        assertNull(estacionamento.buscarVeiculo("ABC1234"));
+    }
+
+    @Test
+    void testPlacaRecusadaPorOutroEstacionamentoNaoFicaEmNenhumIndice() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento shopping = new Estacionamento("Shopping");
+        Cliente carla = new Cliente("Carla", "3", TipoUso.HORISTA);
+        shopping.addCliente(carla);
+        shopping.addCliente(alice);
+        shopping.addVeiculo("ABC1234", "3", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        estacionamento.addVeiculo("XYZ9876", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+
+        assertThrows(ExcecaoVeiculoJaCadastrado.class, () -> {
+            estacionamento.addVeiculo("ABC1234", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        });
+        assertNull(alice.possuiVeiculo("ABC1234"));
+        assertNull(estacionamento.buscarVeiculo("ABC1234"));
+        assertSame(carla, shopping.buscarDono("ABC1234"));
+        assertSame(alice, estacionamento.buscarDono("XYZ9876"));
+        assertSame(alice, shopping.buscarDono("XYZ9876"));
+
+        estacionamento.addVeiculo("ABC1235", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        assertSame(alice, shopping.buscarDono("ABC1235"));
+    }
+
+    @Test
+    void testAlterarTipoUsoMantemIndice() throws ExcecaoClienteNaoCadastrado {
+        estacionamento.addVeiculo("ABC1234", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        estacionamento.alteraTipoUsoCliente(TipoUso.MENSALISTA, "1");
+        assertEquals(TipoUso.MENSALISTA, estacionamento.buscarVeiculo("ABC1234").getTipoUso());
+    }
+
+    @Test
+    void testAlterarTipoUsoDeClienteInexistente() {
+        assertThrows(ExcecaoClienteNaoCadastrado.class, () -> {
+            estacionamento.alteraTipoUsoCliente(TipoUso.MENSALISTA, "9");
+        });
+    }
+
+    @Test
+    void testPlacaNaoCadastrada() {
+        assertNull(estacionamento.buscarVeiculo("NAO0000"));
+        assertEquals(0.0, estacionamento.sair("NAO0000"));
+    }
+
+    @Test
+    void testCodigoDePlacaEhReversivelENaoColide() {
+        long antiga = CodigoDePlaca.codificar("ABC1234");
+        long mercosul = CodigoDePlaca.codificar("ABC1D23");
+        assertEquals("ABC1234", CodigoDePlaca.decodificar(antiga));
+        assertEquals("ABC1D23", CodigoDePlaca.decodificar(mercosul));
+        assertEquals("ZZZ9Z99", CodigoDePlaca.decodificar(CodigoDePlaca.codificar("ZZZ9Z99")));
+        assertNotEquals(antiga, mercosul);
+        // zeros à esquerda não se confundem com placas mais curtas
+        assertNotEquals(CodigoDePlaca.codificar("0A"), CodigoDePlaca.codificar("A"));
+        assertEquals(CodigoDePlaca.SEM_CODIGO, CodigoDePlaca.codificar("abc1234"));
+        assertEquals(CodigoDePlaca.SEM_CODIGO, CodigoDePlaca.codificar("ABC-1234"));
+        assertEquals(CodigoDePlaca.SEM_CODIGO, CodigoDePlaca.codificar(""));
+    }
+
+    @Test
+    void testIndiceComMuitasPlacasCodificadasEAvulsas() throws ExcecaoClienteNaoCadastrado {
+        Cliente frota = new Cliente("Frota", "3", TipoUso.HORISTA);
+        estacionamento.addCliente(frota);
+        estacionamento.reservarCapacidade(0, 1000);
+        for (int i = 0; i < 3000; i++) {
+            String placa = i % 3 == 0 ? "placa-" + i : String.format("FRT%04d", i);
+            estacionamento.addVeiculo(placa, "3", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        }
+        for (int i = 0; i < 3000; i++) {
+            String placa = i % 3 == 0 ? "placa-" + i : String.format("FRT%04d", i);
+            assertEquals(placa, estacionamento.buscarVeiculo(placa).getPlaca());
+            assertSame(frota, estacionamento.buscarDono(placa));
+            assertEquals(placa, frota.possuiVeiculo(placa).getPlaca());
+        }
+        assertNull(estacionamento.buscarVeiculo("FRT3000"));
+        assertNull(estacionamento.buscarVeiculo("placa-1"));
+        assertThrows(ExcecaoVeiculoJaCadastrado.class, () -> {
+            estacionamento.addVeiculo("FRT0001", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.LivroCaixa;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class LivroCaixaTest {
+    private LivroCaixa livroCaixa;
+    private LocalDateTime marco;
+    private LocalDateTime abril;
+
+    @BeforeEach
+    void setUp() {
+        livroCaixa = new LivroCaixa();
+        marco = LocalDateTime.of(2023, 3, 10, 9, 0);
+        abril = LocalDateTime.of(2023, 4, 2, 14, 30);
+    }
+
+    @Test
+    void testPagamentosHoristasSomadosPorMes() {
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "1", 12.0);
+        livroCaixa.registrarPagamento(marco.plusDays(5), TipoUso.HORISTA, "2", 8.0);
+        livroCaixa.registrarPagamento(abril, TipoUso.HORISTA, "1", 4.0);
+
+        assertEquals(20.0, livroCaixa.arrecadacaoNoMes(3, 2023), 0.001);
+        assertEquals(4.0, livroCaixa.arrecadacaoNoMes(4, 2023), 0.001);
+        assertEquals(0.0, livroCaixa.arrecadacaoNoMes(3, 2022), 0.001);
+        assertEquals(2, livroCaixa.usosNoMes(3, 2023, TipoUso.HORISTA));
+    }
+
+    @Test
+    void testMensalidadeCobradaUmaVezPorCliente() {
+        livroCaixa.registrarPagamento(marco, TipoUso.MENSALISTA, "1", 500.0);
+        livroCaixa.registrarPagamento(marco.plusDays(1), TipoUso.MENSALISTA, "1", 500.0);
+        livroCaixa.registrarPagamento(marco.plusDays(2), TipoUso.MENSALISTA, "2", 500.0);
+
+        assertEquals(1000.0, livroCaixa.arrecadacaoNoMes(3, 2023, TipoUso.MENSALISTA), 0.001);
+        assertEquals(1000.0, livroCaixa.arrecadacaoNoMes(3, 2023), 0.001);
+    }
+
+    @Test
+    void testTurnoSomaPagamentosETaxaPorCliente() {
+        livroCaixa.registrarPagamento(marco, TipoUso.TURNO, "1", 16.0);
+        livroCaixa.registrarPagamento(marco.plusDays(1), TipoUso.TURNO, "1", 8.0);
+
+        assertEquals(224.0, livroCaixa.arrecadacaoNoMes(3, 2023, TipoUso.TURNO), 0.001);
+    }
+
+    @Test
+    void testTotalArrecadadoSomaTodosOsMeses() {
+        livroCaixa.registrarPagamento(LocalDateTime.of(2001, 1, 1, 8, 0), TipoUso.HORISTA, "1", 40.0);
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "1", 12.0);
+        livroCaixa.registrarPagamento(abril, TipoUso.MENSALISTA, "2", 500.0);
+
+        assertEquals(552.0, livroCaixa.totalArrecadado(), 0.001);
+    }
+
+    @Test
+    void testIncorporarSomaOsLancamentos() {
+        LivroCaixa outro = new LivroCaixa();
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "1", 12.0);
+        livroCaixa.registrarPagamento(marco, TipoUso.TURNO, "2", 10.0);
+        outro.registrarPagamento(marco.plusDays(1), TipoUso.HORISTA, "3", 20.0);
+        outro.registrarPagamento(marco.plusDays(2), TipoUso.TURNO, "2", 5.0);
+        outro.registrarPagamento(abril, TipoUso.MENSALISTA, "4", 500.0);
+
+        livroCaixa.incorporar(outro);
+
+        // a taxa do turno continua sendo cobrada uma vez por cliente no mês
+        assertEquals(12.0 + 20.0 + 15.0 + TipoUso.TURNO.getValor(), livroCaixa.arrecadacaoNoMes(3, 2023), 0.001);
+        assertEquals(TipoUso.MENSALISTA.getValor(), livroCaixa.arrecadacaoNoMes(4, 2023), 0.001);
+        assertEquals(2, livroCaixa.usosNoMes(3, 2023, TipoUso.HORISTA));
+        assertEquals(List.of("3", "2", "1"), livroCaixa.maioresClientes(3, 2023, 3));
+        assertEquals(15.0, livroCaixa.arrecadadoDoClienteNoMes(3, 2023, "2"), 0.001);
+    }
+
+    @Test
+    void testSomasEmCentavosSaoExatasEmQualquerOrdem() {
+        LivroCaixa outro = new LivroCaixa();
+        for (int i = 0; i < 1000; i++) {
+            livroCaixa.registrarPagamento(marco.plusMinutes(i), TipoUso.HORISTA, String.valueOf(i % 7), 0.1);
+            outro.registrarPagamentoEmCentavos(marco.plusMinutes(999 - i), TipoUso.HORISTA,
+                    String.valueOf((999 - i) % 7), 10);
+        }
+
+        assertEquals(10000, livroCaixa.arrecadacaoNoMesEmCentavos(3, 2023));
+        assertEquals(100.0, livroCaixa.arrecadacaoNoMes(3, 2023));
+        assertEquals(livroCaixa.totalArrecadadoEmCentavos(), outro.totalArrecadadoEmCentavos());
+        assertEquals(livroCaixa.maioresClientes(3, 2023, 7), outro.maioresClientes(3, 2023, 7));
+
+        livroCaixa.incorporar(outro);
+        assertEquals(20000, livroCaixa.totalArrecadadoEmCentavos());
+        assertEquals(2 * 143 * 10, livroCaixa.arrecadadoDoClienteNoMesEmCentavos(3, 2023, "0"));
+    }
+
+    @Test
+    void testSairLancaPagamentoNoEstacionamento() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento estacionamento = new Estacionamento("Estacionamento Teste");
+        estacionamento.gerarVagas(2);
+        estacionamento.addCliente(new Cliente("Bruno", "1", TipoUso.MENSALISTA));
+        estacionamento.addVeiculo("AAA1111", "1", TipoUso.MENSALISTA, UsoDeVagaFactory.criarMensalistaFactory(), null);
+        estacionamento.addCliente(new Cliente("Carla", "2", TipoUso.MENSALISTA));
+        estacionamento.addVeiculo("BBB2222", "2", TipoUso.MENSALISTA, UsoDeVagaFactory.criarMensalistaFactory(), null);
+
+        for (int i = 0; i < 3; i++) {
+            estacionamento.estacionar("AAA1111", null);
+            estacionamento.sair("AAA1111");
+        }
+        estacionamento.estacionar("BBB2222", null);
+        estacionamento.sair("BBB2222");
+
+        LocalDateTime agora = LocalDateTime.now();
+        assertEquals(1000.0, estacionamento.arrecadacaoNoMes(agora.getMonthValue(), agora.getYear()), 0.001);
+        assertEquals(1000.0, estacionamento.totalArrecadado(), 0.001);
+        assertEquals(4, estacionamento.getLivroCaixa().usosNoMes(agora.getMonthValue(), agora.getYear(),
+                TipoUso.MENSALISTA));
+    }
+}
@@ -0,0 +1,186 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import persistencia.ProjecaoEstacionamento;
+import persistencia.ReconstrucaoDeProjecoes;
+import persistencia.ResultadoReconstrucao;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class ReconstrucaoDeProjecoesTest {
+
+    private static UsoDeVagaFactory fabrica(TipoUso tipoUso) {
+        switch (tipoUso) {
+            case MENSALISTA:
+                return UsoDeVagaFactory.criarMensalistaFactory();
+            default:
+                return UsoDeVagaFactory.criarHoristaFactory();
+        }
+    }
+
+    private static void importar(Estacionamento estacionamento, String placa, int vaga, LocalDateTime entrada,
+            double valor) {
+        Veiculo veiculo = estacionamento.buscarVeiculo(placa);
+        UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(estacionamento.getVaga(vaga), entrada);
+        uso.setSaida(entrada.plusHours(1));
+        uso.setValorPago(valor);
+        estacionamento.importarUso(placa, uso);
+    }
+
+    @Test
+    void testProjecoesIguaisAosAgregadosDoEstacionamento() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento centro = new Estacionamento("Centro");
+        centro.gerarVagas(20);
+        Estacionamento norte = new Estacionamento("Norte");
+        norte.gerarVagas(10);
+
+        TipoUso[] tipos = { TipoUso.HORISTA, TipoUso.HORISTA, TipoUso.MENSALISTA };
+        for (int c = 0; c < 60; c++) {
+            TipoUso tipoUso = tipos[c % tipos.length];
+            Cliente cliente = new Cliente("Cliente " + c, String.valueOf(c), tipoUso);
+            centro.addCliente(cliente);
+            if (c % 4 == 0) {
+                norte.addCliente(cliente);
+            }
+            for (int v = 0; v < 2; v++) {
+                centro.addVeiculo("P" + c + "V" + v, cliente.getId(), tipoUso, fabrica(tipoUso), null);
+            }
+        }
+
+        LocalDateTime inicio = LocalDateTime.of(2023, 1, 3, 8, 0);
+        for (int c = 0; c < 60; c++) {
+            for (int i = 0; i < 25; i++) {
+                LocalDateTime entrada = inicio.plusDays((c * 7L + i * 11L) % 180).plusMinutes(c);
+                importar(centro, "P" + c + "V" + (i % 2), 1 + (c + i) % 20, entrada, 4.0 + (c * i) % 13);
+                if (c % 4 == 0 && i % 5 == 0) {
+                    importar(norte, "P" + c + "V0", 1 + i % 10, entrada.plusHours(3), 6.0);
+                }
+            }
+        }
+        centro.estacionar("P1V0", null);
+        centro.estacionar("P2V1", null);
+        norte.estacionar("P4V1", null);
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ReconstrucaoDeProjecoes reconstrucao = new ReconstrucaoDeProjecoes(pool);
+            reconstrucao.setParticoes(7);
+            ResultadoReconstrucao resultado = reconstrucao.reconstruir(List.of(centro, norte));
+
+            assertEquals(2, resultado.getProjecoes().size());
+            // as partições de placas são compartilhadas pelos estacionamentos
+            assertEquals(7, resultado.getParticoes());
+            assertTrue(resultado.getEventosPorSegundo() > 0);
+            for (Estacionamento estacionamento : List.of(centro, norte)) {
+                ProjecaoEstacionamento projecao = resultado.getProjecao(estacionamento);
+                assertEquals(estacionamento.totalArrecadado(), projecao.totalArrecadado(), 0.001);
+                for (int mes = 1; mes <= 7; mes++) {
+                    assertEquals(estacionamento.arrecadacaoNoMes(mes, 2023), projecao.arrecadacaoNoMes(mes, 2023),
+                            0.001);
+                    assertEquals(estacionamento.totalDeUsoNoMesAnoEstacionamento(mes, 2023),
+                            projecao.totalDeUsoNoMesAno(mes, 2023));
+                    assertEquals(estacionamento.getLivroCaixa().maioresClientes(mes, 2023, 5),
+                            projecao.maioresClientes(mes, 2023, 5));
+                }
+            }
+            assertEquals(2, resultado.getProjecao(centro).getOcupadas());
+            assertEquals(1, resultado.getProjecao(norte).getOcupadas());
+
+            // os agregados do estacionamento passam a vir do livro-caixa reconstruído
+            List<Cliente> top5 = centro.topClientes(3, 2023, 5);
+            double arrecadado = centro.totalArrecadado();
+            resultado.aplicar();
+            assertSame(resultado.getProjecao(centro).getLivroCaixa(), centro.getLivroCaixa());
+            assertEquals(top5, centro.topClientes(3, 2023, 5));
+            assertEquals(arrecadado, centro.totalArrecadado(), 0.001);
+            double valor = centro.sair("P1V0");
+            assertEquals(arrecadado + valor, centro.totalArrecadado(), 0.001);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testPagamentosDuranteAReconstrucaoNaoSaoPerdidos() throws InterruptedException, ExcecaoClienteNaoCadastrado {
+        Estacionamento centro = new Estacionamento("Centro");
+        centro.gerarVagas(50);
+        Cliente cliente = new Cliente("Frota", "1", TipoUso.HORISTA);
+        centro.addCliente(cliente);
+        LocalDateTime inicio = LocalDateTime.of(2023, 1, 3, 8, 0);
+        for (int v = 0; v < 50; v++) {
+            centro.addVeiculo("F" + v, "1", TipoUso.HORISTA, fabrica(TipoUso.HORISTA), null);
+            importar(centro, "F" + v, 1 + v, inicio.plusDays(v), 5.0);
+        }
+
+        // pagamento depois da leitura dos veículos e antes da substituição
+        ResultadoReconstrucao resultado = new ReconstrucaoDeProjecoes().reconstruir(List.of(centro));
+        importar(centro, "F0", 1, inicio.minusDays(1), 5.0);
+        resultado.aplicar();
+        assertSame(resultado.getProjecao(centro).getLivroCaixa(), centro.getLivroCaixa());
+        assertEquals(51 * 500, centro.totalArrecadadoEmCentavos());
+
+        // pagamentos concorrentes com reconstruções sucessivas
+        Thread cancela = new Thread(() -> {
+            for (int i = 0; i < 5_000; i++) {
+                importar(centro, "F" + (i % 50), 1 + i % 50, inicio.minusDays(2 + i / 50), 5.0);
+            }
+        });
+        cancela.start();
+        for (int i = 0; i < 20; i++) {
+            resultado = new ReconstrucaoDeProjecoes().reconstruir(List.of(centro));
+            resultado.aplicar();
+        }
+        cancela.join();
+
+        assertEquals((51 + 5_000) * 500, centro.totalArrecadadoEmCentavos());
+        assertThrows(IllegalStateException.class, resultado::aplicar);
+        ResultadoReconstrucao anterior = new ReconstrucaoDeProjecoes().reconstruir(List.of(centro));
+        new ReconstrucaoDeProjecoes().reconstruir(List.of(centro)).aplicar();
+        assertThrows(IllegalStateException.class, anterior::aplicar);
+    }
+
+    @Test
+    void testUsosEmVagasSubstituidasSaoReconstruidos() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento centro = new Estacionamento("Centro");
+        centro.gerarVagas(10);
+        Estacionamento norte = new Estacionamento("Norte");
+        norte.gerarVagas(5);
+        Cliente cliente = new Cliente("Frota", "1", TipoUso.HORISTA);
+        centro.addCliente(cliente);
+        norte.addCliente(cliente);
+        centro.addVeiculo("F1", "1", TipoUso.HORISTA, fabrica(TipoUso.HORISTA), null);
+        LocalDateTime inicio = LocalDateTime.of(2023, 1, 3, 8, 0);
+        importar(centro, "F1", 8, inicio, 5.0);
+        importar(norte, "F1", 2, inicio.plusDays(1), 7.0);
+        centro.gerarVagas(4);
+        importar(centro, "F1", 1, inicio.plusDays(2), 3.0);
+
+        ResultadoReconstrucao resultado = new ReconstrucaoDeProjecoes().reconstruir(List.of(centro, norte));
+        assertEquals(3, resultado.getEventos());
+        assertEquals(2, resultado.getProjecao(centro).totalDeUsoNoMesAno(1, 2023));
+        resultado.aplicar();
+        assertEquals(800, centro.totalArrecadadoEmCentavos());
+        assertEquals(700, norte.totalArrecadadoEmCentavos());
+    }
+
+    @Test
+    void testEstacionamentoSemClientes() {
+        Estacionamento vazio = new Estacionamento("Vazio");
+        vazio.gerarVagas(3);
+        ResultadoReconstrucao resultado = new ReconstrucaoDeProjecoes().reconstruir(List.of(vazio));
+        assertEquals(0, resultado.getEventos());
+        assertEquals(0.0, resultado.getProjecao(vazio).totalArrecadado());
+    }
+}
@@ -0,0 +1,223 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.RedeDeEstacionamentos;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Vaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoClienteJaCadastrado;
+import excecoes.ExcecaoClienteNaoCadastrado;
+import excecoes.ExcecaoVeiculoJaCadastrado;
+import excecoes.ExcecaoVeiculoJaEstacionado;
+import excecoes.ExcecaoVeiculoNaoCadastrado;
+
+public class RedeDeEstacionamentosTest {
+    private RedeDeEstacionamentos rede;
+    private Estacionamento centro;
+    private Estacionamento shopping;
+    private Cliente alice;
+
+    @BeforeEach
+    void setUp() throws ExcecaoClienteNaoCadastrado {
+        rede = new RedeDeEstacionamentos();
+        centro = new Estacionamento("Centro");
+        shopping = new Estacionamento("Shopping");
+        centro.gerarVagas(3);
+        shopping.gerarVagas(3);
+        rede.adicionarEstacionamento(centro);
+        rede.adicionarEstacionamento(shopping);
+        alice = new Cliente("Alice", "1", TipoUso.HORISTA);
+        rede.cadastrarCliente(alice);
+        rede.associar("1", centro);
+        rede.associar("1", shopping);
+        centro.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+    }
+
+    @Test
+    void testClienteCompartilhadoEhOMesmoObjetoEmTodaARede() {
+        assertEquals(1, rede.getClientes().size());
+        assertSame(alice, centro.possuiCliente("1"));
+        assertSame(alice, shopping.possuiCliente("1"));
+        Veiculo veiculo = rede.buscarVeiculo("AAA1111");
+        assertSame(veiculo, centro.buscarVeiculo("AAA1111"));
+        assertSame(veiculo, shopping.buscarVeiculo("AAA1111"));
+        assertSame(alice, rede.buscarDono("AAA1111"));
+    }
+
+    @Test
+    void testClienteNaoAssociadoNaoEhVistoNoEstacionamento() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento aeroporto = new Estacionamento("Aeroporto");
+        aeroporto.gerarVagas(1);
+        rede.adicionarEstacionamento(aeroporto);
+        assertNotNull(rede.buscarVeiculo("AAA1111"));
+        assertNull(aeroporto.buscarVeiculo("AAA1111"));
+        assertNull(aeroporto.buscarDono("AAA1111"));
+        assertThrows(ExcecaoVeiculoNaoCadastrado.class, () -> aeroporto.estacionar("AAA1111", null));
+
+        rede.associar("1", aeroporto);
+        assertSame(rede.buscarVeiculo("AAA1111"), aeroporto.buscarVeiculo("AAA1111"));
+        assertSame(alice, aeroporto.buscarDono("AAA1111"));
+    }
+
+    @Test
+    void testEstacionamentoAdicionadoPassaABuscarPlacasNaRede() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento aeroporto = new Estacionamento("Aeroporto");
+        Cliente bruno = new Cliente("Bruno", "2", TipoUso.HORISTA);
+        aeroporto.addCliente(bruno);
+        aeroporto.addVeiculo("BBB2222", "2", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        Veiculo veiculo = aeroporto.buscarVeiculo("BBB2222");
+
+        rede.adicionarEstacionamento(aeroporto);
+        assertSame(veiculo, rede.buscarVeiculo("BBB2222"));
+        assertSame(veiculo, aeroporto.buscarVeiculo("BBB2222"));
+        assertSame(bruno, aeroporto.buscarDono("BBB2222"));
+        assertNull(centro.buscarVeiculo("BBB2222"));
+
+        aeroporto.addVeiculo("CCC3333", "2", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        assertSame(bruno, aeroporto.buscarDono("CCC3333"));
+        assertSame(bruno, rede.buscarDono("CCC3333"));
+    }
+
+    @Test
+    void testAssociarClienteForaDaRede() {
+        assertThrows(ExcecaoClienteNaoCadastrado.class, () -> rede.associar("9", centro));
+        assertThrows(IllegalArgumentException.class,
+                () -> rede.associar("1", new Estacionamento("Avulso")));
+    }
+
+    @Test
+    void testClienteComIdDeOutroClienteDaRede() {
+        Estacionamento aeroporto = new Estacionamento("Aeroporto");
+        rede.adicionarEstacionamento(aeroporto);
+        assertThrows(ExcecaoClienteJaCadastrado.class,
+                () -> aeroporto.addCliente(new Cliente("Outra Alice", "1", TipoUso.HORISTA)));
+        assertEquals(1, rede.getClientes().size());
+    }
+
+    @Test
+    void testPlacaDeOutroClienteEmOutroEstacionamento() {
+        shopping.addCliente(new Cliente("Bruno", "2", TipoUso.HORISTA));
+        assertThrows(ExcecaoVeiculoJaCadastrado.class, () -> {
+            shopping.addVeiculo("AAA1111", "2", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        });
+        assertTrue(rede.getCliente("2").getVeiculos().isEmpty());
+    }
+
+    @Test
+    void testVeiculoEstacionadoNaoEntraEmOutroEstacionamento() {
+        centro.estacionar("AAA1111", null);
+        assertSame(centro, rede.estacionamentoDe("AAA1111"));
+
+        assertThrows(ExcecaoVeiculoJaEstacionado.class, () -> shopping.estacionar("AAA1111", null));
+        assertEquals(3, shopping.vagasDisponiveis());
+        assertNull(shopping.sessaoAtiva("AAA1111"));
+
+        centro.sair("AAA1111");
+        assertNull(rede.estacionamentoDe("AAA1111"));
+        shopping.estacionar("AAA1111", null);
+        assertSame(shopping, rede.estacionamentoDe("AAA1111"));
+        assertEquals(1, rede.sessoesAtivas());
+    }
+
+    @Test
+    void testEstacionamentoAdicionadoLevaSuasSessoesParaARede() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento aeroporto = new Estacionamento("Aeroporto");
+        aeroporto.gerarVagas(1);
+        aeroporto.addCliente(new Cliente("Bruno", "2", TipoUso.HORISTA));
+        aeroporto.addVeiculo("BBB2222", "2", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        aeroporto.estacionar("BBB2222", null);
+
+        rede.adicionarEstacionamento(aeroporto);
+        assertSame(aeroporto, rede.estacionamentoDe("BBB2222"));
+        assertNotNull(rede.getCliente("2"));
+        aeroporto.sair("BBB2222");
+        assertEquals(0, rede.sessoesAtivas());
+    }
+
+    @Test
+    void testTotaisDaRedeContamCadaUsoUmaVez() {
+        LocalDate hoje = LocalDate.now();
+        centro.estacionar("AAA1111", null);
+        centro.sair("AAA1111");
+        shopping.estacionar("AAA1111", null);
+        shopping.sair("AAA1111");
+
+        assertEquals(2, rede.totalDeUsoNoMesAno(hoje.getMonthValue(), hoje.getYear()));
+        assertEquals(1, centro.totalDeUsoNoMesAnoEstacionamento(hoje.getMonthValue(), hoje.getYear()));
+        assertEquals(1, shopping.totalDeUsoNoMesAnoEstacionamento(hoje.getMonthValue(), hoje.getYear()));
+        assertEquals(centro.totalArrecadadoEmCentavos() + shopping.totalArrecadadoEmCentavos(),
+                rede.totalArrecadadoEmCentavos());
+        assertEquals(centro.arrecadacaoNoMesEmCentavos(hoje.getMonthValue(), hoje.getYear())
+                + shopping.arrecadacaoNoMesEmCentavos(hoje.getMonthValue(), hoje.getYear()),
+                rede.arrecadacaoNoMesEmCentavos(hoje.getMonthValue(), hoje.getYear()));
+    }
+
+    @Test
+    void testMensalidadeCobradaUmaVezNaRede() throws ExcecaoClienteNaoCadastrado {
+        LocalDate hoje = LocalDate.now();
+        rede.cadastrarCliente(new Cliente("Bruno", "2", TipoUso.MENSALISTA));
+        rede.associar("2", centro);
+        rede.associar("2", shopping);
+        centro.addVeiculo("BBB2222", "2", TipoUso.MENSALISTA, UsoDeVagaFactory.criarMensalistaFactory(), null);
+        centro.estacionar("BBB2222", null);
+        centro.sair("BBB2222");
+        shopping.estacionar("BBB2222", null);
+        shopping.sair("BBB2222");
+
+        assertEquals(50000, centro.arrecadacaoNoMesEmCentavos(hoje.getMonthValue(), hoje.getYear()));
+        assertEquals(50000, shopping.arrecadacaoNoMesEmCentavos(hoje.getMonthValue(), hoje.getYear()));
+        assertEquals(50000, rede.arrecadacaoNoMesEmCentavos(hoje.getMonthValue(), hoje.getYear()));
+        assertEquals(50000, rede.totalArrecadadoEmCentavos());
+    }
+
+    @Test
+    void testValorMedioPorUsoConsideraApenasAsVagasDoEstacionamento() {
+        importar(centro, 10.0);
+        importar(centro, 20.0);
+        importar(shopping, 60.0);
+
+        assertEquals(15.0, centro.valorMedioPorUso(), 1e-9);
+        assertEquals(60.0, shopping.valorMedioPorUso(), 1e-9);
+        assertEquals(30.0, rede.valorMedioPorUso(), 1e-9);
+    }
+
+    @Test
+    void testUsosEmVagasSubstituidasContinuamNoEstacionamento() {
+        importar(centro, 10.0);
+        Vaga antiga = centro.getVaga(3);
+        centro.gerarVagas(2);
+        importar(centro, 20.0);
+        importar(centro, antiga, 30.0);
+
+        LocalDate ontem = LocalDate.now().minusDays(1);
+        assertTrue(centro.possuiVaga(antiga));
+        assertFalse(shopping.possuiVaga(antiga));
+        assertEquals(20.0, centro.valorMedioPorUso(), 1e-9);
+        assertEquals(3, centro.totalDeUsoNoMesAnoEstacionamento(ontem.getMonthValue(), ontem.getYear()));
+        assertEquals(0, shopping.totalDeUsoNoMesAnoEstacionamento(ontem.getMonthValue(), ontem.getYear()));
+        assertEquals(20.0, rede.valorMedioPorUso(), 1e-9);
+    }
+
+    private void importar(Estacionamento estacionamento, double valor) {
+        importar(estacionamento, estacionamento.getVaga(1), valor);
+    }
+
+    private void importar(Estacionamento estacionamento, Vaga vaga, double valor) {
+        LocalDateTime entrada = LocalDateTime.now().minusDays(1);
+        UsoDeVaga uso = UsoDeVagaFactory.criarHoristaFactory().criarUsoDeVaga(vaga, entrada);
+        uso.setSaida(entrada.plusHours(1));
+        uso.setValorPago(valor);
+        estacionamento.importarUso("AAA1111", uso);
+    }
+}
@@ -0,0 +1,69 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class RelatoriosTest {
+    private Estacionamento estacionamento;
+    private LocalDateTime inicio;
+    private LocalDateTime fim;
+
+    @BeforeEach
+    void setUp() throws ExcecaoClienteNaoCadastrado {
+        estacionamento = new Estacionamento("Estacionamento Teste");
+        estacionamento.gerarVagas(3);
+        estacionamento.addCliente(new Cliente("Alice", "1", TipoUso.HORISTA));
+        estacionamento.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        estacionamento.addVeiculo("BBB2222", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        for (int i = 0; i < 3; i++) {
+            estacionamento.estacionar("AAA1111", null);
+            estacionamento.sair("AAA1111");
+        }
+        estacionamento.estacionar("BBB2222", null);
+        estacionamento.sair("BBB2222");
+        inicio = LocalDateTime.now().minusDays(1);
+        fim = LocalDateTime.now().plusDays(1);
+    }
+
+    @Test
+    void testRelatorioVeiculoEmSaidaIgualAoTexto() throws Exception {
+        StringWriter saida = new StringWriter();
+        estacionamento.relatorioVeiculo("AAA1111", 2, saida);
+
+        assertEquals(estacionamento.relatorioVeiculo("AAA1111", 2), saida.toString());
+        assertTrue(saida.toString().contains("Total Estacionado: 3 vezes"));
+    }
+
+    @Test
+    void testHistoricoClienteEmSaidaIgualAoTexto() throws Exception {
+        StringWriter saida = new StringWriter();
+        estacionamento.historicoCliente("1", inicio, fim, saida);
+
+        String historico = estacionamento.historicoCliente("1", inicio, fim);
+        assertEquals(historico, saida.toString());
+        assertTrue(historico.contains("PLACA: AAA1111"));
+        assertTrue(historico.contains("PLACA: BBB2222"));
+    }
+
+    @Test
+    void testRelatoriosDeTodosVeiculos() throws Exception {
+        StringWriter saida = new StringWriter();
+        estacionamento.gerarRelatoriosDeTodosVeiculos(saida);
+
+        String relatorios = saida.toString();
+        assertTrue(relatorios.contains("Placa: AAA1111"));
+        assertTrue(relatorios.contains("Placa: BBB2222"));
+        assertTrue(relatorios.contains("Total Estacionado: 1 vezes"));
+    }
+}
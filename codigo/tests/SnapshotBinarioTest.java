@@ -0,0 +1,231 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.UsoDeVagaTurnoFactory;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoTurno;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoArquivoInvalido;
+import persistencia.SaidaBinaria;
+import persistencia.SnapshotBinario;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class SnapshotBinarioTest {
+    @TempDir
+    Path diretorio;
+
+    private Estacionamento centro;
+    private Estacionamento shopping;
+    private LocalDateTime marco;
+
+    @BeforeEach
+    void setUp() throws ExcecaoClienteNaoCadastrado {
+        centro = new Estacionamento("Centro");
+        centro.gerarVagas(5);
+        shopping = new Estacionamento("Shopping");
+        shopping.gerarVagas(3);
+        marco = LocalDateTime.of(2023, 3, 10, 9, 0, 15, 123_000_000);
+
+        Cliente alice = new Cliente("Alice", "1", TipoUso.HORISTA);
+        Cliente bruno = new Cliente("Bruno", "2", TipoUso.TURNO);
+        Cliente carla = new Cliente("Carla", "3", TipoUso.MENSALISTA);
+        for (Cliente cliente : List.of(alice, bruno, carla)) {
+            centro.addCliente(cliente);
+        }
+        shopping.addCliente(alice);
+
+        centro.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        centro.addVeiculo("BBB2222", "2", TipoUso.TURNO, UsoDeVagaFactory.criarTurnoFactory(TipoTurno.TARDE), null);
+        centro.addVeiculo("CCC3333", "3", TipoUso.MENSALISTA, UsoDeVagaFactory.criarMensalistaFactory(), null);
+
+        registrarUso(centro, "AAA1111", 1, marco, 95, 24.0, TipoServico.LAVAGEM);
+        registrarUso(shopping, "AAA1111", 2, marco.plusDays(2), 30, 8.0, null);
+        registrarUso(centro, "BBB2222", 3, marco.minusDays(1), 7, 7 / 15.0 * 4.0, null);
+        registrarUso(centro, "CCC3333", 4, marco.plusMonths(1), 60, 500.0, null);
+        centro.estacionar("CCC3333", null);
+    }
+
+    private void registrarUso(Estacionamento estacionamento, String placa, int vaga, LocalDateTime entrada,
+            int minutos, double valor, TipoServico servico) {
+        Veiculo veiculo = estacionamento.buscarVeiculo(placa);
+        UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(estacionamento.getVaga(vaga), entrada);
+        uso.setSaida(entrada.plusMinutes(minutos));
+        uso.setValorPago(valor);
+        uso.setTipoServico(servico);
+        veiculo.registrarUsoDeVaga(uso);
+        estacionamento.restaurarUso(placa, uso);
+    }
+
+    @Test
+    void testSalvarECarregarPreservaCadastroEHistorico() throws Exception {
+        Path arquivo = diretorio.resolve("estacionamentos.dat");
+        long tamanho = SnapshotBinario.salvar(arquivo, List.of(centro, shopping));
+        assertEquals(Files.size(arquivo), tamanho);
+
+        List<Estacionamento> lidos = SnapshotBinario.carregar(arquivo);
+        assertEquals(2, lidos.size());
+        Estacionamento centroLido = lidos.get(0);
+        Estacionamento shoppingLido = lidos.get(1);
+        assertEquals("Centro", centroLido.getNome());
+        assertEquals(5, centroLido.getVagas().size());
+        assertEquals(3, centroLido.getId().size());
+        assertEquals(1, shoppingLido.getId().size());
+        assertSame(centroLido.buscarDono("AAA1111"), shoppingLido.buscarDono("AAA1111"));
+
+        Veiculo turno = centroLido.buscarVeiculo("BBB2222");
+        assertEquals(TipoTurno.TARDE, ((UsoDeVagaTurnoFactory) turno.getUsoDeVagaFactory()).getTipoTurno());
+        // os valores são mantidos em centavos: a fração de centavo da tarifa é arredondada
+        assertEquals(1.87, turno.totalArrecadado());
+        assertEquals(187, turno.totalArrecadadoEmCentavos());
+
+        List<UsoDeVaga> original = centro.buscarVeiculo("AAA1111").getListUsoDeVaga();
+        List<UsoDeVaga> lido = centroLido.buscarVeiculo("AAA1111").getListUsoDeVaga();
+        assertEquals(original.size(), lido.size());
+        for (int i = 0; i < original.size(); i++) {
+            assertEquals(original.get(i).getEntrada(), lido.get(i).getEntrada());
+            assertEquals(original.get(i).getSaida(), lido.get(i).getSaida());
+            assertEquals(original.get(i).getValorPago(), lido.get(i).getValorPago());
+            assertEquals(original.get(i).getTipoServico(), lido.get(i).getTipoServico());
+            assertEquals(original.get(i).getVaga().getNumero(), lido.get(i).getVaga().getNumero());
+        }
+        assertSame(shoppingLido.getVaga(2), lido.get(1).getVaga());
+    }
+
+    @Test
+    void testCarregarRestauraSessoesELivroCaixa() throws Exception {
+        Path arquivo = diretorio.resolve("estacionamentos.dat");
+        SnapshotBinario.salvar(arquivo, List.of(centro, shopping));
+        Estacionamento centroLido = SnapshotBinario.carregar(arquivo).get(0);
+
+        UsoDeVaga sessao = centroLido.sessaoAtiva("CCC3333");
+        assertNotNull(sessao);
+        assertSame(sessao, centroLido.buscarVeiculo("CCC3333").getUsoAtivo());
+        assertFalse(sessao.getVaga().disponivel());
+        assertEquals(centro.vagasDisponiveis(), centroLido.vagasDisponiveis());
+        assertEquals(centro.arrecadacaoNoMes(3, 2023), centroLido.arrecadacaoNoMes(3, 2023), 0.001);
+        assertEquals(centro.arrecadacaoNoMes(4, 2023), centroLido.arrecadacaoNoMes(4, 2023), 0.001);
+        assertEquals(centro.totalArrecadado(), centroLido.totalArrecadado(), 0.001);
+
+        assertTrue(centroLido.sair("CCC3333") > 0);
+        assertEquals(5, centroLido.vagasDisponiveis());
+    }
+
+    @Test
+    void testArquivoInvalido() throws Exception {
+        Path arquivo = diretorio.resolve("invalido.dat");
+        Files.write(arquivo, new byte[] { 1, 2, 3, 4, 5, 6 });
+
+        assertThrows(ExcecaoArquivoInvalido.class, () -> SnapshotBinario.carregar(arquivo));
+    }
+
+    @Test
+    void testHistoricoCarregadoEmFragmentos() throws Exception {
+        // veículos suficientes para vários fragmentos do histórico
+        Estacionamento grande = new Estacionamento("Grande");
+        grande.gerarVagas(10);
+        int quantidade = 2500;
+        for (int i = 0; i < quantidade; i++) {
+            grande.addCliente(new Cliente("Cliente " + i, "c" + i, TipoUso.HORISTA));
+            String placa = String.format("PLA%04d", i);
+            grande.addVeiculo(placa, "c" + i, TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+            for (int j = 0; j < 1 + i % 4; j++) {
+                registrarUso(grande, placa, 1 + j, marco.plusDays(j * 20L).plusMinutes(i), 30, 8.0 + i % 3, null);
+            }
+        }
+        grande.estacionar("PLA0007", TipoServico.MANOBRISTA);
+
+        Path arquivo = diretorio.resolve("grande.dat");
+        SnapshotBinario.salvar(arquivo, List.of(grande));
+        Estacionamento lido = SnapshotBinario.carregar(arquivo).get(0);
+
+        // o cadastro e as sessões ativas estão disponíveis antes do histórico
+        assertNotNull(lido.sessaoAtiva("PLA0007"));
+        assertEquals(grande.vagasDisponiveis(), lido.vagasDisponiveis());
+        assertSame(lido.possuiCliente("c2499"), lido.buscarDono("PLA2499"));
+
+        lido.aguardarHistorico();
+        assertEquals(grande.totalArrecadado(), lido.totalArrecadado(), 0.001);
+        assertEquals(grande.arrecadacaoNoMes(4, 2023), lido.arrecadacaoNoMes(4, 2023), 0.001);
+        for (int i = 0; i < quantidade; i += 97) {
+            String placa = String.format("PLA%04d", i);
+            Veiculo original = grande.buscarVeiculo(placa);
+            Veiculo veiculo = lido.buscarVeiculo(placa);
+            assertEquals(original.totalDeUsos(), veiculo.totalDeUsos());
+            assertEquals(original.totalArrecadado(), veiculo.totalArrecadado(), 0.001);
+            assertEquals(original.getListUsoDeVaga().get(0).getEntrada().withNano(0),
+                    veiculo.getListUsoDeVaga().get(0).getEntrada().withNano(0));
+        }
+        assertSame(lido.sessaoAtiva("PLA0007"), lido.buscarVeiculo("PLA0007").getUsoAtivo());
+        assertEquals(5, lido.buscarVeiculo("PLA0007").totalDeUsos());
+    }
+
+    @Test
+    void testCarregaSnapshotDaVersao2() throws Exception {
+        Path arquivo = diretorio.resolve("versao2.dat");
+        long entrada = marco.withNano(0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                SaidaBinaria saida = new SaidaBinaria(canal)) {
+            saida.escreverInt(SnapshotBinario.MAGICO);
+            saida.escreverShort(2);
+            saida.escreverVarLong(7);
+            saida.escreverVarInt(4);
+            for (String valor : List.of("Centro", "1", "Alice", "AAA1111")) {
+                saida.escreverString(valor);
+            }
+            saida.escreverVarInt(1);
+            saida.escreverVarInt(0);
+            saida.escreverVarInt(2);
+
+            saida.escreverVarInt(1);
+            saida.escreverVarInt(1);
+            saida.escreverVarInt(2);
+            saida.escreverByte(TipoUso.HORISTA.ordinal() + 1);
+            saida.escreverVarInt(1);
+            saida.escreverVarInt(0);
+            saida.escreverVarInt(1);
+            saida.escreverVarInt(3);
+            saida.escreverByte(TipoUso.HORISTA.ordinal() + 1);
+            saida.escreverByte(0);
+            saida.escreverByte(0);
+            // um uso encerrado e um em aberto
+            saida.escreverVarInt(2);
+            saida.escreverVarInt(1);
+            saida.escreverVarInt(1);
+            saida.escreverVarLongComSinal(entrada);
+            saida.escreverVarLong(60 * 60_000 + 1);
+            saida.escreverByte(0);
+            saida.escreverVarLong(1600 << 1);
+            saida.escreverVarInt(1);
+            saida.escreverVarInt(2);
+            saida.escreverVarLongComSinal(86_400_000);
+            saida.escreverVarLong(0);
+            saida.escreverByte(0);
+            saida.escreverVarLong(0);
+        }
+
+        assertEquals(7, SnapshotBinario.ultimoEvento(arquivo));
+        Estacionamento lido = SnapshotBinario.carregar(arquivo).get(0);
+        assertEquals(16.0, lido.totalArrecadado(), 0.001);
+        assertEquals(2, lido.buscarVeiculo("AAA1111").totalDeUsos());
+        assertSame(lido.getVaga(2), lido.sessaoAtiva("AAA1111").getVaga());
+        assertEquals(1, lido.vagasDisponiveis());
+    }
+}
@@ -0,0 +1,314 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.UsoDeVaga;
+import estacionamentos.Veiculo;
+import estacionamentos.Enums.TipoServico;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoArquivoInvalido;
+import excecoes.ExcecaoHistoricoIndisponivel;
+import persistencia.Armazenamento;
+import persistencia.SnapshotBinario;
+import persistencia.SnapshotParticionado;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class SnapshotParticionadoTest {
+    @TempDir
+    Path diretorio;
+
+    private Estacionamento centro;
+    private Estacionamento shopping;
+    private LocalDateTime marco;
+
+    @BeforeEach
+    void setUp() throws ExcecaoClienteNaoCadastrado {
+        centro = new Estacionamento("Centro");
+        centro.gerarVagas(4);
+        shopping = new Estacionamento("Shopping");
+        shopping.gerarVagas(3);
+        marco = LocalDateTime.of(2023, 3, 10, 9, 0);
+        popular(centro, shopping);
+    }
+
+    private void popular(Estacionamento centro, Estacionamento shopping) throws ExcecaoClienteNaoCadastrado {
+        Cliente alice = new Cliente("Alice", "1", TipoUso.HORISTA);
+        centro.addCliente(alice);
+        shopping.addCliente(alice);
+        centro.addCliente(new Cliente("Bruno", "2", TipoUso.MENSALISTA));
+        centro.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        centro.addVeiculo("BBB2222", "2", TipoUso.MENSALISTA, UsoDeVagaFactory.criarMensalistaFactory(), null);
+    }
+
+    private void registrarUso(Estacionamento estacionamento, String placa, int vaga, LocalDateTime entrada,
+            double valor) {
+        Veiculo veiculo = estacionamento.buscarVeiculo(placa);
+        UsoDeVaga uso = veiculo.getUsoDeVagaFactory().criarUsoDeVaga(estacionamento.getVaga(vaga), entrada);
+        uso.setSaida(entrada.plusHours(1));
+        uso.setValorPago(valor);
+        veiculo.registrarUsoDeVaga(uso);
+        estacionamento.restaurarUso(placa, uso);
+    }
+
+    private void registrarUsos() {
+        for (int i = 0; i < 20; i++) {
+            registrarUso(i % 2 == 0 ? centro : shopping, "AAA1111", 1 + i % 3, marco.plusDays(i), 16.0);
+        }
+        registrarUso(centro, "BBB2222", 4, marco.plusHours(2), 500.0);
+        centro.estacionar("BBB2222", TipoServico.LAVAGEM);
+    }
+
+    private Path corromper(Path arquivo, int distanciaDoFim) throws Exception {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer conteudo = canal.map(FileChannel.MapMode.READ_WRITE, 0, canal.size());
+            int posicao = conteudo.capacity() - distanciaDoFim;
+            conteudo.put(posicao, (byte) (conteudo.get(posicao) ^ 0x5A));
+        }
+        return arquivo;
+    }
+
+    @Test
+    void testUmArquivoPorEstacionamentoEUmCadastro() throws Exception {
+        registrarUsos();
+        Path snapshot = diretorio.resolve("snapshot");
+        long tamanho = SnapshotParticionado.salvar(snapshot, List.of(centro, shopping), 9);
+
+        List<Path> arquivos = SnapshotParticionado.arquivos(snapshot);
+        assertEquals(3, arquivos.size());
+        assertEquals(tamanho, SnapshotParticionado.tamanho(snapshot));
+        assertEquals(9, SnapshotParticionado.ultimoEvento(snapshot));
+
+        List<Estacionamento> lidos = SnapshotParticionado.carregar(snapshot);
+        Estacionamento centroLido = lidos.get(0);
+        Estacionamento shoppingLido = lidos.get(1);
+        assertEquals("Shopping", shoppingLido.getNome());
+        assertSame(centroLido.possuiCliente("1"), shoppingLido.possuiCliente("1"));
+        UsoDeVaga sessao = centroLido.sessaoAtiva("BBB2222");
+        assertNotNull(sessao);
+        assertEquals(TipoServico.LAVAGEM, sessao.getTipoServico());
+        assertEquals(centro.vagasDisponiveis(), centroLido.vagasDisponiveis());
+
+        assertEquals(centro.totalArrecadado(), centroLido.totalArrecadado(), 0.001);
+        assertEquals(shopping.totalArrecadado(), shoppingLido.totalArrecadado(), 0.001);
+        assertEquals(20, centroLido.buscarVeiculo("AAA1111").totalDeUsos());
+        assertEquals(centro.buscarVeiculo("AAA1111").totalArrecadado(),
+                shoppingLido.buscarVeiculo("AAA1111").totalArrecadado(), 0.001);
+        assertSame(shoppingLido.getVaga(2), shoppingLido.buscarVeiculo("AAA1111").getListUsoDeVaga().get(1).getVaga());
+    }
+
+    @Test
+    void testCrcInvalido() throws Exception {
+        registrarUsos();
+        Path snapshot = diretorio.resolve("snapshot");
+        SnapshotParticionado.salvar(snapshot, List.of(centro, shopping), 0);
+        List<Path> arquivos = SnapshotParticionado.arquivos(snapshot);
+
+        // histórico corrompido: as cancelas operam, as consultas ao histórico falham
+        corromper(arquivos.get(1), 6);
+        Estacionamento lido = SnapshotParticionado.carregar(snapshot).get(0);
+        assertNotNull(lido.sessaoAtiva("BBB2222"));
+        assertThrows(ExcecaoHistoricoIndisponivel.class, lido::totalArrecadado);
+        assertThrows(ExcecaoHistoricoIndisponivel.class, () -> lido.buscarVeiculo("AAA1111").totalDeUsos());
+
+        corromper(arquivos.get(0), 6);
+        assertThrows(ExcecaoArquivoInvalido.class, () -> SnapshotParticionado.carregar(snapshot));
+    }
+
+    @Test
+    void testCompactacaoRegravaApenasOsArquivosAlterados() throws Exception {
+        Path snapshot = diretorio.resolve(Armazenamento.DIRETORIO_SNAPSHOT);
+        List<Path> antes;
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = new Estacionamento("Centro");
+            centro.gerarVagas(4);
+            Estacionamento shopping = new Estacionamento("Shopping");
+            shopping.gerarVagas(3);
+            armazenamento.adicionarEstacionamento(centro);
+            armazenamento.adicionarEstacionamento(shopping);
+            popular(centro, shopping);
+            shopping.estacionar("AAA1111", null);
+            shopping.sair("AAA1111");
+            armazenamento.compactar();
+            antes = SnapshotParticionado.arquivos(snapshot);
+
+            centro.estacionar("AAA1111", null);
+            centro.sair("AAA1111");
+            centro.estacionar("BBB2222", null);
+            armazenamento.compactar();
+        }
+
+        // apenas um delta do centro é acrescentado; o cadastro e o shopping são mantidos
+        List<Path> depois = SnapshotParticionado.arquivos(snapshot);
+        assertEquals(4, depois.size());
+        assertEquals(antes.get(0), depois.get(0));
+        assertEquals(antes.get(1), depois.get(1));
+        assertTrue(depois.get(2).getFileName().toString().endsWith(".delta"));
+        assertEquals(antes.get(2), depois.get(3));
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = armazenamento.getEstacionamentos().get(0);
+            Estacionamento shopping = armazenamento.getEstacionamentos().get(1);
+            assertNotNull(centro.sessaoAtiva("BBB2222"));
+            assertEquals(2, centro.buscarVeiculo("AAA1111").totalDeUsos());
+            assertEquals(1, centro.buscarVeiculo("BBB2222").totalDeUsos());
+            assertEquals(3, shopping.vagasDisponiveis());
+        }
+    }
+
+    @Test
+    void testUsosEmVagasSubstituidasPermanecemNoEstacionamento() throws Exception {
+        long arrecadado;
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = new Estacionamento("Centro");
+            centro.gerarVagas(4);
+            Estacionamento shopping = new Estacionamento("Shopping");
+            shopping.gerarVagas(3);
+            armazenamento.adicionarEstacionamento(centro);
+            armazenamento.adicionarEstacionamento(shopping);
+            popular(centro, shopping);
+            centro.estacionar("BBB2222", null);
+            centro.sair("BBB2222");
+            UsoDeVaga uso = UsoDeVagaFactory.criarHoristaFactory().criarUsoDeVaga(centro.getVaga(4), marco);
+            uso.setSaida(marco.plusHours(1));
+            uso.setValorPago(16.0);
+            centro.importarUso("AAA1111", uso);
+            centro.gerarVagas(2);
+            arrecadado = centro.totalArrecadadoEmCentavos();
+            assertEquals(50000 + 1600, arrecadado);
+        }
+
+        // o diário reproduz os usos sobre as vagas geradas novamente
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = armazenamento.getEstacionamentos().get(0);
+            assertEquals(arrecadado, centro.totalArrecadadoEmCentavos());
+            armazenamento.compactar();
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = armazenamento.getEstacionamentos().get(0);
+            Estacionamento shopping = armazenamento.getEstacionamentos().get(1);
+            assertEquals(arrecadado, centro.totalArrecadadoEmCentavos());
+            assertEquals(0, shopping.totalArrecadadoEmCentavos());
+            assertEquals(1, centro.buscarVeiculo("AAA1111").totalDeUsos());
+            assertEquals(2, centro.vagasDisponiveis());
+        }
+    }
+
+    @Test
+    void testDeltasSaoConsolidados() throws Exception {
+        Path snapshot = diretorio.resolve(Armazenamento.DIRETORIO_SNAPSHOT);
+        int compactacoes = SnapshotParticionado.DELTAS_POR_ARQUIVO + 2;
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = new Estacionamento("Centro");
+            centro.gerarVagas(4);
+            Estacionamento shopping = new Estacionamento("Shopping");
+            shopping.gerarVagas(3);
+            armazenamento.adicionarEstacionamento(centro);
+            armazenamento.adicionarEstacionamento(shopping);
+            popular(centro, shopping);
+            centro.estacionar("BBB2222", null);
+
+            for (int i = 0; i < compactacoes; i++) {
+                centro.estacionar("AAA1111", null);
+                centro.sair("AAA1111");
+                armazenamento.compactar();
+                // base e deltas até o limite; a compactação seguinte consolida
+                int arquivosDoCentro = i <= SnapshotParticionado.DELTAS_POR_ARQUIVO
+                        ? i + 1
+                        : i - SnapshotParticionado.DELTAS_POR_ARQUIVO;
+                assertEquals(2 + arquivosDoCentro, SnapshotParticionado.arquivos(snapshot).size());
+            }
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = armazenamento.getEstacionamentos().get(0);
+            assertFalse(centro.isAlterado());
+            assertEquals(compactacoes, centro.buscarVeiculo("AAA1111").totalDeUsos());
+            assertNotNull(centro.sessaoAtiva("BBB2222"));
+            assertEquals(3, centro.vagasDisponiveis());
+        }
+    }
+
+    @Test
+    void testDeltaDoCadastroComClientesAlterados() throws Exception {
+        Path snapshot = diretorio.resolve(Armazenamento.DIRETORIO_SNAPSHOT);
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = new Estacionamento("Centro");
+            centro.gerarVagas(4);
+            Estacionamento shopping = new Estacionamento("Shopping");
+            shopping.gerarVagas(3);
+            armazenamento.adicionarEstacionamento(centro);
+            armazenamento.adicionarEstacionamento(shopping);
+            popular(centro, shopping);
+            armazenamento.compactar();
+
+            shopping.addCliente(new Cliente("Carla", "3", TipoUso.HORISTA));
+            shopping.addVeiculo("CCC3333", "3", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+            centro.addVeiculo("AAA2222", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+            centro.alteraTipoUsoCliente(TipoUso.MENSALISTA, "2");
+            shopping.estacionar("CCC3333", null);
+            armazenamento.compactar();
+
+            List<Path> arquivos = SnapshotParticionado.arquivos(snapshot);
+            assertEquals(5, arquivos.size());
+            assertTrue(arquivos.get(1).getFileName().toString().startsWith("clientes-"));
+            assertTrue(arquivos.get(1).getFileName().toString().endsWith(".delta"));
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento centro = armazenamento.getEstacionamentos().get(0);
+            Estacionamento shopping = armazenamento.getEstacionamentos().get(1);
+            assertSame(centro.possuiCliente("1"), shopping.possuiCliente("1"));
+            assertSame(shopping.possuiCliente("1"), shopping.buscarDono("AAA2222"));
+            assertEquals(TipoUso.MENSALISTA, centro.possuiCliente("2").getTipoUso());
+            assertNull(centro.possuiCliente("3"));
+            assertNotNull(shopping.sessaoAtiva("CCC3333"));
+
+            armazenamento.consolidar();
+            assertEquals(3, SnapshotParticionado.arquivos(snapshot).size());
+        }
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento shopping = armazenamento.getEstacionamentos().get(1);
+            assertEquals("Carla", shopping.buscarDono("CCC3333").getNome());
+            assertNotNull(shopping.sessaoAtiva("CCC3333"));
+            assertEquals(2, shopping.vagasDisponiveis());
+        }
+    }
+
+    @Test
+    void testSnapshotDeArquivoUnicoEhMigrado() throws Exception {
+        registrarUsos();
+        Path legado = diretorio.resolve(Armazenamento.ARQUIVO_SNAPSHOT);
+        SnapshotBinario.salvar(legado, List.of(centro, shopping));
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            assertEquals(centro.totalArrecadado(),
+                    armazenamento.getEstacionamentos().get(0).totalArrecadado(), 0.001);
+            armazenamento.compactar();
+        }
+        assertFalse(Files.exists(legado));
+        assertTrue(SnapshotParticionado.existe(diretorio.resolve(Armazenamento.DIRETORIO_SNAPSHOT)));
+
+        try (Armazenamento armazenamento = Armazenamento.abrir(diretorio)) {
+            Estacionamento lido = armazenamento.getEstacionamentos().get(1);
+            assertEquals(shopping.totalArrecadado(), lido.totalArrecadado(), 0.001);
+            assertNotNull(armazenamento.getEstacionamentos().get(0).sessaoAtiva("BBB2222"));
+        }
+    }
+}
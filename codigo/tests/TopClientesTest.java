@@ -0,0 +1,79 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import estacionamentos.Cliente;
+import estacionamentos.Estacionamento;
+import estacionamentos.LivroCaixa;
+import estacionamentos.Enums.TipoUso;
+import estacionamentos.interfaces.UsoDeVagaFactory;
+import excecoes.ExcecaoClienteNaoCadastrado;
+
+public class TopClientesTest {
+    private LivroCaixa livroCaixa;
+    private LocalDateTime marco;
+
+    @BeforeEach
+    void setUp() {
+        livroCaixa = new LivroCaixa();
+        marco = LocalDateTime.of(2023, 3, 10, 9, 0);
+    }
+
+    @Test
+    void testMaioresClientesOrdenadosPorValorAcumulado() {
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "1", 20.0);
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "2", 30.0);
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "3", 10.0);
+        livroCaixa.registrarPagamento(marco.plusDays(3), TipoUso.HORISTA, "1", 15.0);
+
+        assertEquals(List.of("1", "2"), livroCaixa.maioresClientes(3, 2023, 2));
+        assertEquals(List.of("1", "2", "3"), livroCaixa.maioresClientes(3, 2023, 10));
+        assertEquals(35.0, livroCaixa.arrecadadoDoClienteNoMes(3, 2023, "1"), 0.001);
+    }
+
+    @Test
+    void testMaioresClientesSeparadosPorMesEAno() {
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "1", 20.0);
+        livroCaixa.registrarPagamento(marco.plusYears(1), TipoUso.HORISTA, "2", 30.0);
+
+        assertEquals(List.of("1"), livroCaixa.maioresClientes(3, 2023, 5));
+        assertEquals(List.of("2"), livroCaixa.maioresClientes(3, 2024, 5));
+        assertTrue(livroCaixa.maioresClientes(4, 2023, 5).isEmpty());
+    }
+
+    @Test
+    void testEmpateOrdenadoPeloIdentificador() {
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "B", 8.0);
+        livroCaixa.registrarPagamento(marco, TipoUso.HORISTA, "A", 8.0);
+
+        assertEquals(List.of("A", "B"), livroCaixa.maioresClientes(3, 2023, 2));
+    }
+
+    @Test
+    void testTopClientesDoEstacionamento() throws ExcecaoClienteNaoCadastrado {
+        Estacionamento estacionamento = new Estacionamento("Estacionamento Teste");
+        estacionamento.gerarVagas(2);
+        estacionamento.addCliente(new Cliente("Bruno", "1", TipoUso.HORISTA));
+        estacionamento.addVeiculo("AAA1111", "1", TipoUso.HORISTA, UsoDeVagaFactory.criarHoristaFactory(), null);
+        estacionamento.addCliente(new Cliente("Carla", "2", TipoUso.MENSALISTA));
+        estacionamento.addVeiculo("BBB2222", "2", TipoUso.MENSALISTA, UsoDeVagaFactory.criarMensalistaFactory(), null);
+
+        estacionamento.estacionar("AAA1111", null);
+        estacionamento.sair("AAA1111");
+        estacionamento.estacionar("BBB2222", null);
+        estacionamento.sair("BBB2222");
+
+        LocalDateTime agora = LocalDateTime.now();
+        List<Cliente> top = estacionamento.topClientes(agora.getMonthValue(), agora.getYear(), 1);
+        assertEquals(1, top.size());
+        assertEquals("Carla", top.get(0).getNome());
+        assertEquals("[Carla, Bruno, Sem Cliente, Sem Cliente, Sem Cliente]",
+                estacionamento.top5Clientes(agora.getMonthValue()));
+    }
+}